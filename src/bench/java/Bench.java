@@ -0,0 +1,390 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Bench - Runs the benchmarks of the directory and writes the results as
+ * JSON in the layout used by JMH, so that runs of different releases can be
+ * compared with the usual JMH tools. Each benchmark and roster size runs in
+ * a fresh JVM by default, with warmup iterations before the measured ones.
+ *
+ * Usage: java Bench [-e regex] [-s sizes] [-wi n] [-i n] [-r ms] [-f n]
+ * [-rff file]
+ * @author Tony Padilla (apadilla)
+ */
+public final class Bench {
+
+    /**
+     * Constant that represents the prefix of the result line a forked JVM
+     * prints.
+     */
+    private static final String RESULT_PREFIX = "#RESULT ";
+
+    /**
+     * Constant that represents the t values of a 99.9% confidence interval,
+     * by degrees of freedom from 1.
+     */
+    private static final double[] T_999 = {636.62, 31.599, 12.924, 8.610,
+        6.869, 5.959, 5.408, 5.041, 4.781, 4.587, 4.437, 4.318, 4.221, 4.140,
+        4.073, 4.015, 3.965, 3.922, 3.883, 3.850};
+
+    /**
+     * Constant that represents the t value of a 99.9% confidence interval
+     * with many degrees of freedom.
+     */
+    private static final double Z_999 = 3.291;
+
+    /**
+     * This represents the pattern of the benchmarks to run.
+     */
+    private Pattern include = Pattern.compile(".*");
+
+    /**
+     * This holds the roster sizes to run sized benchmarks with.
+     */
+    private int[] sizes = Rosters.DEFAULT_SIZES;
+
+    /**
+     * This represents the number of warmup iterations.
+     */
+    private int warmups = 5;
+
+    /**
+     * This represents the number of measured iterations.
+     */
+    private int iterations = 5;
+
+    /**
+     * This represents the length of an iteration, in milliseconds.
+     */
+    private long iterationMillis = 1000;
+
+    /**
+     * This represents the number of JVMs each benchmark runs in, or 0 to
+     * run in this JVM.
+     */
+    private int forks = 1;
+
+    /**
+     * This is the file the results are written to.
+     */
+    private Path resultFile = Paths.get("bench-results.json");
+
+    /**
+     * This is a private constructor, as the class is only used by main.
+     */
+    private Bench() {
+    }
+
+    /**
+     * Returns every benchmark.
+     * @return The benchmarks, in the order they are run.
+     */
+    static List<BenchCase> cases() {
+        List<BenchCase> cases = new ArrayList<>();
+        cases.addAll(DirectoryBench.cases());
+        cases.addAll(StudentBench.cases());
+        cases.addAll(CsvBench.cases());
+        cases.addAll(ConcurrentBench.cases());
+        cases.addAll(FootprintBench.cases());
+        cases.addAll(StoreBench.cases());
+        cases.addAll(CacheBench.cases());
+        cases.addAll(ShardBench.cases());
+        return cases;
+    }
+
+    /**
+     * Main method for the benchmarks.
+     * @param args These are the options described in the class comment.
+     * @throws Exception if a benchmark fails.
+     */
+    public static void main(String[] args) throws Exception {
+        Bench bench = new Bench();
+        String child = null;
+        int childSize = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-e":
+                    bench.include = Pattern.compile(args[++i]);
+                    break;
+                case "-s":
+                    bench.sizes = Arrays.stream(args[++i].split(","))
+                        .mapToInt(Integer::parseInt).toArray();
+                    break;
+                case "-wi":
+                    bench.warmups = Integer.parseInt(args[++i]);
+                    break;
+                case "-i":
+                    bench.iterations = Integer.parseInt(args[++i]);
+                    break;
+                case "-r":
+                    bench.iterationMillis = Long.parseLong(args[++i]);
+                    break;
+                case "-f":
+                    bench.forks = Integer.parseInt(args[++i]);
+                    break;
+                case "-rff":
+                    bench.resultFile = Paths.get(args[++i]);
+                    break;
+                case "--child":
+                    child = args[++i];
+                    childSize = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    System.err.println("Usage: java Bench [-e regex] "
+                        + "[-s sizes] [-wi n] [-i n] [-r ms] [-f n] "
+                        + "[-rff file]");
+                    System.exit(1);
+            }
+        }
+        if (child != null) {
+            BenchCase c = find(child);
+            double[] scores = bench.measure(c, childSize);
+            System.out.println(RESULT_PREFIX + join(scores));
+            return;
+        }
+        bench.runAll();
+    }
+
+    /**
+     * Runs every selected benchmark with every roster size and writes the
+     * results.
+     * @throws Exception if a benchmark fails.
+     */
+    private void runAll() throws Exception {
+        List<String> results = new ArrayList<>();
+        for (BenchCase c : cases()) {
+            if (!include.matcher(c.getName()).find()) {
+                continue;
+            }
+            int[] runSizes = c.isSized() ? sizes : new int[] {0};
+            for (int size : runSizes) {
+                List<double[]> forkScores = new ArrayList<>();
+                if (forks == 0) {
+                    forkScores.add(measure(c, size));
+                }
+                for (int f = 0; f < forks; f++) {
+                    forkScores.add(fork(c, size));
+                }
+                String result = result(c, size, forkScores);
+                System.out.println(result);
+                results.add(result);
+            }
+        }
+        Path parent = resultFile.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(
+            resultFile, StandardCharsets.UTF_8))) {
+            out.println("[");
+            out.println(String.join(",\n", results));
+            out.println("]");
+        }
+        System.out.println("Results written to " + resultFile);
+    }
+
+    /**
+     * Runs a benchmark in this JVM.
+     * @param c This is the benchmark.
+     * @param size This is the roster size.
+     * @return The scores of the measured iterations.
+     * @throws Exception if the benchmark fails.
+     */
+    private double[] measure(BenchCase c, int size) throws Exception {
+        Sink sink = new Sink();
+        long nanos = iterationMillis * 1000000L;
+        c.setUp(size);
+        try {
+            for (int i = 0; i < warmups; i++) {
+                System.out.printf(Locale.ROOT, "# Warmup %d: %.3f %s%n",
+                    i + 1, c.iteration(sink, nanos), c.unit());
+            }
+            double[] scores = new double[iterations];
+            for (int i = 0; i < iterations; i++) {
+                scores[i] = c.iteration(sink, nanos);
+                System.out.printf(Locale.ROOT, "# Iteration %d: %.3f %s%n",
+                    i + 1, scores[i], c.unit());
+            }
+            return scores;
+        } finally {
+            c.tearDown();
+            System.out.println("# " + c.getName() + " done " + sink);
+        }
+    }
+
+    /**
+     * Runs a benchmark in a new JVM with the same JVM options and class
+     * path as this one.
+     * @param c This is the benchmark.
+     * @param size This is the roster size.
+     * @return The scores of the measured iterations.
+     * @throws IOException if the JVM cannot be started or fails.
+     * @throws InterruptedException if interrupted while waiting for it.
+     */
+    private double[] fork(BenchCase c, int size) throws IOException,
+        InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java")
+            .toString());
+        command.addAll(ManagementFactory.getRuntimeMXBean()
+            .getInputArguments());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(Bench.class.getName());
+        command.addAll(Arrays.asList("-wi", String.valueOf(warmups), "-i",
+            String.valueOf(iterations), "-r", String.valueOf(iterationMillis),
+            "--child", c.getName(), String.valueOf(size)));
+        System.out.println("# Fork: " + c.getName() + " size=" + size);
+        Process process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        double[] scores = null;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+            process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(RESULT_PREFIX)) {
+                    scores = Arrays.stream(line.substring(
+                        RESULT_PREFIX.length()).split(","))
+                        .mapToDouble(Double::parseDouble).toArray();
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        if (process.waitFor() != 0 || scores == null) {
+            throw new IOException("Benchmark fork failed: " + c.getName()
+                + " size=" + size);
+        }
+        return scores;
+    }
+
+    /**
+     * Returns the benchmark with the given name.
+     * @param name This is the name of the benchmark.
+     * @return The benchmark.
+     * @throws IllegalArgumentException if there is no such benchmark.
+     */
+    private static BenchCase find(String name) throws
+        IllegalArgumentException {
+        for (BenchCase c : cases()) {
+            if (c.getName().equals(name)) {
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("No benchmark " + name);
+    }
+
+    /**
+     * Formats the result of a benchmark as a JMH result object.
+     * @param c This is the benchmark.
+     * @param size This is the roster size.
+     * @param forkScores This holds the scores of each fork.
+     * @return The result as JSON.
+     */
+    private String result(BenchCase c, int size, List<double[]> forkScores) {
+        double sum = 0;
+        int n = 0;
+        for (double[] scores : forkScores) {
+            for (double score : scores) {
+                sum += score;
+                n++;
+            }
+        }
+        double mean = sum / n;
+        double squares = 0;
+        for (double[] scores : forkScores) {
+            for (double score : scores) {
+                squares += (score - mean) * (score - mean);
+            }
+        }
+        double error = Double.NaN;
+        if (n > 1) {
+            double t = n - 1 <= T_999.length ? T_999[n - 2] : Z_999;
+            error = t * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+        }
+        StringBuilder raw = new StringBuilder();
+        for (double[] scores : forkScores) {
+            raw.append(raw.length() == 0 ? "[" : ",[").append(join(scores))
+                .append(']');
+        }
+        String params = c.isSized()
+            ? String.format("\"params\":{\"size\":\"%d\"},", size) : "";
+        return String.format(Locale.ROOT, "{\"benchmark\":\"%s\","
+            + "\"mode\":\"avgt\",\"threads\":1,\"forks\":%d,"
+            + "\"warmupIterations\":%d,\"warmupTime\":\"%d ms\","
+            + "\"measurementIterations\":%d,\"measurementTime\":\"%d ms\","
+            + "%s\"primaryMetric\":{\"score\":%s,\"scoreError\":%s,"
+            + "\"scoreConfidence\":[%s,%s],\"scoreUnit\":\"%s\","
+            + "\"rawData\":[%s]}}", c.getName(), forks, warmups,
+            iterationMillis, iterations, iterationMillis, params,
+            number(mean), number(error), number(mean - error),
+            number(mean + error), c.unit(), raw);
+    }
+
+    /**
+     * Formats a number for JSON, writing "NaN" as JMH does.
+     * @param d This is the number.
+     * @return The number as JSON.
+     */
+    private static String number(double d) {
+        return Double.isNaN(d) ? "\"NaN\"" : String.format(Locale.ROOT, "%.6f",
+            d);
+    }
+
+    /**
+     * Joins scores with commas.
+     * @param scores This holds the scores.
+     * @return The scores separated by commas.
+     */
+    private static String join(double[] scores) {
+        StringBuilder out = new StringBuilder();
+        for (double score : scores) {
+            if (out.length() > 0) {
+                out.append(',');
+            }
+            out.append(String.format(Locale.ROOT, "%.6f", score));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Returns a new empty folder for a benchmark's files, which is deleted
+     * when the JVM exits.
+     * @param name This is the start of the folder name.
+     * @return The folder.
+     * @throws IOException if the folder cannot be created.
+     */
+    static Path tempDir(String name) throws IOException {
+        Path dir = Files.createTempDirectory(name);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> delete(
+            dir.toFile())));
+        return dir;
+    }
+
+    /**
+     * Deletes a file or a folder and everything in it.
+     * @param file This is the file or folder.
+     */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
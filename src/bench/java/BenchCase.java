@@ -0,0 +1,106 @@
+/**
+ * BenchCase - A single benchmark run by Bench. A case is set up once for
+ * each roster size and then measured in batches of operations. Anything
+ * done in setUpBatch is left out of the measurement, which lets a case undo
+ * the changes of the previous batch, so every batch starts from the same
+ * state.
+ * @author Tony Padilla (apadilla)
+ */
+abstract class BenchCase {
+
+    /**
+     * This is the name of the benchmark, as Class.method.
+     */
+    private final String name;
+
+    /**
+     * This is the one argument constructor for the BenchCase class.
+     * @param name This is the name of the benchmark.
+     */
+    BenchCase(String name) {
+        this.name = name;
+    }
+
+    /**
+     * This is the getter for the name of the benchmark.
+     * @return This gives the name.
+     */
+    final String getName() {
+        return name;
+    }
+
+    /**
+     * This is the getter for the unit of the scores of the benchmark.
+     * @return This gives the unit.
+     */
+    String unit() {
+        return "ns/op";
+    }
+
+    /**
+     * This is the number of nanoseconds in the unit of the scores of the
+     * benchmark, for benchmarks that report time.
+     * @return This gives the size of the unit in nanoseconds.
+     */
+    double nanosPerUnit() {
+        return 1;
+    }
+
+    /**
+     * Tells whether the benchmark depends on the roster size. A benchmark
+     * that does not is run once rather than once per size.
+     * @return true if the benchmark is run for each roster size.
+     */
+    boolean isSized() {
+        return true;
+    }
+
+    /**
+     * Prepares the benchmark for a roster size.
+     * @param size This is the number of students in the roster.
+     * @throws Exception if the benchmark cannot be set up.
+     */
+    abstract void setUp(int size) throws Exception;
+
+    /**
+     * Prepares the next batch. This is not measured.
+     * @throws Exception if the batch cannot be set up.
+     */
+    void setUpBatch() throws Exception {
+    }
+
+    /**
+     * Runs a batch of operations. This is measured.
+     * @param sink This consumes the results of the operations.
+     * @return The number of operations run.
+     * @throws Exception if an operation fails.
+     */
+    abstract int batch(Sink sink) throws Exception;
+
+    /**
+     * Releases what setUp acquired.
+     * @throws Exception if the benchmark cannot be torn down.
+     */
+    void tearDown() throws Exception {
+    }
+
+    /**
+     * Runs one measurement iteration: batches until the given time has
+     * been spent in them.
+     * @param sink This consumes the results of the operations.
+     * @param nanos This is the time to spend measuring, in nanoseconds.
+     * @return The score of the iteration, in the unit of the benchmark.
+     * @throws Exception if an operation fails.
+     */
+    double iteration(Sink sink, long nanos) throws Exception {
+        long ops = 0;
+        long elapsed = 0;
+        while (elapsed < nanos) {
+            setUpBatch();
+            long start = System.nanoTime();
+            ops += batch(sink);
+            elapsed += System.nanoTime() - start;
+        }
+        return elapsed / nanosPerUnit() / ops;
+    }
+}
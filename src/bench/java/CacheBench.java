@@ -0,0 +1,144 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * CacheBench - Benchmarks of last name searches answered as JSON, the way
+ * DirectoryServer answers them, with no cache and with a SearchCache of
+ * each policy. The names searched for are those of random students, so
+ * they follow the Zipf distribution of the roster, and one search in a
+ * thousand is followed by adding and deleting a student, which
+ * invalidates the entries of that student's names.
+ * @author Tony Padilla (apadilla)
+ */
+final class CacheBench {
+
+    /**
+     * Constant that represents the number of searches in a batch.
+     */
+    private static final int BATCH = 1000;
+
+    /**
+     * Constant that represents the number of names searched for, in turn.
+     */
+    private static final int KEYS = 1 << 16;
+
+    /**
+     * Constant that represents the number of entries of the caches.
+     */
+    private static final int CAPACITY = 1024;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private CacheBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        return Arrays.asList(new LastNameJson(null),
+            new LastNameJson(SearchCache.Policy.LRU),
+            new LastNameJson(SearchCache.Policy.TINY_LFU));
+    }
+
+    /**
+     * Returns the JSON response of a search result.
+     * @param students This holds the students found.
+     * @return The response body, as UTF-8.
+     */
+    private static byte[] encode(List<Student> students) {
+        StringBuilder body = new StringBuilder();
+        Json.appendStudents(body, students);
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * LastNameJson - Searches by last name and encodes the result as JSON,
+     * through a cache of the given policy or none.
+     */
+    private static final class LastNameJson extends BenchCase {
+
+        /**
+         * This is the eviction policy of the cache, or null for no cache.
+         */
+        private final SearchCache.Policy policy;
+
+        /**
+         * This is the directory searched.
+         */
+        private Directory directory;
+
+        /**
+         * This holds the cached responses, or is null.
+         */
+        private SearchCache<byte[]> cache;
+
+        /**
+         * This holds the names searched for.
+         */
+        private String[] keys;
+
+        /**
+         * This holds the students added and deleted between searches.
+         */
+        private Student[] churn;
+
+        /**
+         * This represents the position of the next name.
+         */
+        private int next;
+
+        /**
+         * This is the one argument constructor for the LastNameJson class.
+         * @param policy This is the eviction policy, or null for no cache.
+         */
+        LastNameJson(SearchCache.Policy policy) {
+            super("SearchCache.lastNameJson_" + (policy == null ? "uncached"
+                : policy.name().toLowerCase(Locale.ROOT)));
+            this.policy = policy;
+        }
+
+        @Override
+        void setUp(int size) {
+            List<Student> roster = Rosters.generate(size);
+            directory = new Directory();
+            directory.addAll(roster);
+            if (policy != null) {
+                cache = new SearchCache<>(directory, CAPACITY, policy,
+                    CacheBench::encode);
+            }
+            Random random = new Random(size);
+            keys = new String[KEYS];
+            churn = new Student[KEYS / BATCH + 1];
+            for (int i = 0; i < KEYS; i++) {
+                keys[i] = roster.get(random.nextInt(size)).getLastName();
+            }
+            for (int i = 0; i < churn.length; i++) {
+                Student s = roster.get(random.nextInt(size));
+                churn[i] = new Student.Builder("churn" + i)
+                    .firstName(s.getFirstName()).lastName(s.getLastName())
+                    .phoneNumber(s.getPhoneNumber()).build();
+            }
+        }
+
+        @Override
+        int batch(Sink sink) {
+            for (int i = 0; i < BATCH; i++) {
+                String key = keys[next++ & (KEYS - 1)];
+                byte[] body = cache == null
+                    ? encode(directory.searchByLastName(key))
+                    : cache.searchByLastName(key);
+                sink.consume(body.length);
+            }
+            Student s = churn[(next / BATCH) % churn.length];
+            directory.addStudent(s);
+            directory.deleteStudent(s.getAndrewId());
+            return BATCH;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * ConcurrentBench - Benchmarks of ConcurrentDirectory under a read-mostly
+ * mix of operations run by 1, 2, 4 and 8 threads at once. Each thread
+ * searches by Andrew ID and by last name, and adds and deletes students of
+ * its own. Scores are wall time per operation over all threads, so a score
+ * that drops as threads are added means throughput scales.
+ * @author Tony Padilla (apadilla)
+ */
+final class ConcurrentBench {
+
+    /**
+     * Constant that represents the thread counts measured.
+     */
+    private static final int[] THREADS = {1, 2, 4, 8};
+
+    /**
+     * Constant that represents the number of operations each thread runs in
+     * a batch.
+     */
+    private static final int OPS = 4096;
+
+    /**
+     * Constant that represents one in how many operations is a change.
+     */
+    private static final int WRITE_EVERY = 10;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private ConcurrentBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        List<BenchCase> cases = new ArrayList<>();
+        for (int threads : THREADS) {
+            cases.add(new Mixed(threads));
+        }
+        return cases;
+    }
+
+    /**
+     * Mixed - Runs the read-mostly mix with a given number of threads.
+     */
+    private static final class Mixed extends BenchCase {
+
+        /**
+         * This represents the number of threads.
+         */
+        private final int threads;
+
+        /**
+         * This is the directory of the roster.
+         */
+        private ConcurrentDirectory directory;
+
+        /**
+         * This runs the threads.
+         */
+        private ExecutorService pool;
+
+        /**
+         * This holds the students of the roster.
+         */
+        private List<Student> roster;
+
+        /**
+         * This holds the students each thread adds and deletes.
+         */
+        private List<List<Student>> own;
+
+        /**
+         * This is the one argument constructor for the Mixed class.
+         * @param threads This represents the number of threads.
+         */
+        Mixed(int threads) {
+            super("ConcurrentDirectory.readMostly_t" + threads);
+            this.threads = threads;
+        }
+
+        @Override
+        void setUp(int size) {
+            roster = Rosters.generate(size);
+            directory = new ConcurrentDirectory();
+            directory.addAll(roster);
+            own = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                own.add(Rosters.generate(OPS / WRITE_EVERY + 1,
+                    size + t * OPS, t));
+            }
+            pool = Executors.newFixedThreadPool(threads);
+        }
+
+        @Override
+        int batch(Sink sink) throws Exception {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                List<Student> mine = own.get(t);
+                long seed = t;
+                futures.add(pool.submit(() -> run(mine, seed)));
+            }
+            for (Future<Integer> f : futures) {
+                sink.consume(f.get());
+            }
+            return threads * OPS;
+        }
+
+        /**
+         * Runs the operations of one thread, then deletes the students it
+         * added.
+         * @param mine This holds the students the thread adds.
+         * @param seed This is the seed of the keys searched for.
+         * @return A checksum of the results.
+         */
+        private int run(List<Student> mine, long seed) {
+            Random random = new Random(seed);
+            int sum = 0;
+            int added = 0;
+            for (int i = 0; i < OPS; i++) {
+                Student s = roster.get(random.nextInt(roster.size()));
+                if (i % WRITE_EVERY == 0) {
+                    directory.addStudent(mine.get(added++));
+                } else if (i % 2 == 0) {
+                    sum += directory.searchByLastName(s.getLastName()).size();
+                } else {
+                    sum += directory.searchByAndrewId(s.getAndrewId())
+                        .hashCode();
+                }
+            }
+            for (int i = 0; i < added; i++) {
+                directory.deleteStudent(mine.get(i).getAndrewId());
+            }
+            return sum;
+        }
+
+        @Override
+        void tearDown() {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.JList;
+
+/**
+ * CsvBench - Benchmarks of reading rosters: CSVReader.readCSVLine over an
+ * in-memory roster, BulkLoader loading a roster file of each size,
+ * DirectoryImage reading the same roster as an image, and the time the
+ * GUI's results list takes to show the first page of a result of each size,
+ * both in the model alone and painted by a JList off screen.
+ * @author Tony Padilla (apadilla)
+ */
+final class CsvBench {
+
+    /**
+     * Constant that represents the number of lines read by the CSVReader
+     * benchmark.
+     */
+    private static final int LINES = 10000;
+
+    /**
+     * Constant that represents the number of rows on the first page of the
+     * results list.
+     */
+    private static final int PAGE = 12;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private CsvBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        return Arrays.asList(new ReadLines(), new Load(), new ReadImage(),
+            new FirstPage(), new FirstPaint());
+    }
+
+    /**
+     * ReadLines - Reads every record of an in-memory roster with
+     * CSVReader.readCSVLine.
+     */
+    private static final class ReadLines extends BenchCase {
+
+        /**
+         * This holds the roster as CSV text.
+         */
+        private String text;
+
+        /**
+         * This is the no arg constructor for the ReadLines class.
+         */
+        ReadLines() {
+            super("CSVReader.readCSVLine");
+        }
+
+        @Override
+        boolean isSized() {
+            return false;
+        }
+
+        @Override
+        void setUp(int size) {
+            StringWriter out = new StringWriter();
+            for (Student s : Rosters.generate(LINES)) {
+                out.write(s.getFirstName() + ",\"" + s.getLastName() + "\","
+                    + s.getAndrewId() + "," + s.getPhoneNumber() + "\n");
+            }
+            text = out.toString();
+        }
+
+        @Override
+        int batch(Sink sink) throws Exception {
+            int lines = 0;
+            try (CSVReader in = new CSVReader(new StringReader(text))) {
+                String[] fields;
+                while ((fields = in.readCSVLine()) != null) {
+                    sink.consume(fields);
+                    lines++;
+                }
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * Load - Loads a roster file into an empty directory with BulkLoader.
+     * Scores are per student loaded.
+     */
+    private static final class Load extends BenchCase {
+
+        /**
+         * This is the roster file.
+         */
+        private Path file;
+
+        /**
+         * This is the no arg constructor for the Load class.
+         */
+        Load() {
+            super("BulkLoader.load");
+        }
+
+        @Override
+        void setUp(int size) throws Exception {
+            file = Bench.tempDir("bench-load").resolve("roster.csv");
+            Rosters.writeCsv(file, Rosters.generate(size));
+        }
+
+        @Override
+        int batch(Sink sink) throws Exception {
+            Directory d = new Directory();
+            LoadReport report = new BulkLoader().load(d, file.toString());
+            sink.consume(report);
+            return report.getLoaded();
+        }
+
+        @Override
+        void tearDown() throws Exception {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * ReadImage - Reads a roster image into a new directory with
+     * DirectoryImage. Scores are per student loaded, as for Load.
+     */
+    private static final class ReadImage extends BenchCase {
+
+        /**
+         * This is the image file.
+         */
+        private Path file;
+
+        /**
+         * This is the no arg constructor for the ReadImage class.
+         */
+        ReadImage() {
+            super("DirectoryImage.read");
+        }
+
+        @Override
+        void setUp(int size) throws Exception {
+            file = Bench.tempDir("bench-image").resolve("roster.img");
+            Directory d = new Directory();
+            d.addAll(Rosters.generate(size));
+            DirectoryImage.write(d, file);
+        }
+
+        @Override
+        int batch(Sink sink) throws Exception {
+            Directory d = DirectoryImage.read(file);
+            sink.consume(d);
+            return d.size();
+        }
+
+        @Override
+        void tearDown() throws Exception {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * FirstPage - Adds a result of the given size to an empty results list
+     * and renders the rows of its first page, which is what the GUI does
+     * before the result first appears. Scores are per result shown.
+     */
+    private static final class FirstPage extends BenchCase {
+
+        /**
+         * This holds the result shown.
+         */
+        private List<Student> result;
+
+        /**
+         * This is the no arg constructor for the FirstPage class.
+         */
+        FirstPage() {
+            super("ResultListModel.firstPage");
+        }
+
+        @Override
+        double nanosPerUnit() {
+            return 1000;
+        }
+
+        @Override
+        String unit() {
+            return "us/op";
+        }
+
+        @Override
+        void setUp(int size) {
+            result = new ArrayList<>(Rosters.generate(size));
+        }
+
+        @Override
+        int batch(Sink sink) {
+            ResultListModel model = new ResultListModel();
+            int first = model.appendAll(result);
+            for (int i = first; i < first + PAGE && i < model.getSize(); i++) {
+                sink.consume(model.getElementAt(i).toString());
+            }
+            return 1;
+        }
+    }
+
+    /**
+     * FirstPaint - Clears a results list set up like the GUI's, adds a
+     * result of the given size and paints the rows in view into an image,
+     * which is the time to first paint of the result less the work of the
+     * screen. It runs without a display. Scores are per result shown.
+     */
+    private static final class FirstPaint extends BenchCase {
+
+        /**
+         * This holds the result shown.
+         */
+        private List<Student> result;
+
+        /**
+         * This is the model of the list.
+         */
+        private ResultListModel model;
+
+        /**
+         * This is the list painted.
+         */
+        private JList<Object> list;
+
+        /**
+         * This is the image the list is painted into.
+         */
+        private BufferedImage image;
+
+        /**
+         * This is the no arg constructor for the FirstPaint class.
+         */
+        FirstPaint() {
+            super("ResultListModel.firstPaint");
+        }
+
+        @Override
+        double nanosPerUnit() {
+            return 1000;
+        }
+
+        @Override
+        String unit() {
+            return "us/op";
+        }
+
+        @Override
+        void setUp(int size) {
+            result = new ArrayList<>(Rosters.generate(size));
+            model = new ResultListModel();
+            list = new JList<>(model);
+            list.setPrototypeCellValue(String.format("%"
+                + DirectoryDriver.RESULT_COLS + "s", ""));
+            list.setVisibleRowCount(DirectoryDriver.RESULT_ROWS);
+            Dimension view = list.getPreferredScrollableViewportSize();
+            image = new BufferedImage(view.width, view.height,
+                BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        int batch(Sink sink) {
+            model.clear();
+            int first = model.appendAll(result);
+            list.setSize(image.getWidth(), list.getPreferredSize().height);
+            Rectangle page = list.getCellBounds(first, first);
+            Graphics2D g = image.createGraphics();
+            try {
+                g.translate(0, -page.y);
+                g.setClip(0, page.y, image.getWidth(), image.getHeight());
+                list.paint(g);
+            } finally {
+                g.dispose();
+            }
+            sink.consume(image.getRGB(0, 0));
+            return 1;
+        }
+    }
+}
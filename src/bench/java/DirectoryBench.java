@@ -0,0 +1,441 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * DirectoryBench - Benchmarks of the Directory operations on rosters of
+ * each size: adds and deletes one at a time and in batches, the three
+ * exact searches, normalized name searches for upper case and accented
+ * names, reverse phone lookups of stored and caller ID numbers, phone
+ * prefix searches and queries, prefix completion, fuzzy search and
+ * compound queries.
+ * @author Tony Padilla (apadilla)
+ */
+final class DirectoryBench {
+
+    /**
+     * Constant that represents the number of operations in a batch.
+     */
+    private static final int BATCH = 1024;
+
+    /**
+     * Constant that represents the seed of the keys searched for.
+     */
+    private static final long SEED = 42L;
+
+    /**
+     * Constant that represents the length of the phone prefixes searched
+     * for, an area code and exchange such as "412-268".
+     */
+    private static final int PHONE_PREFIX = 7;
+
+    /**
+     * Constant that represents the most students deleted by the bucket purge
+     * benchmark.
+     */
+    private static final int MAX_PURGE = 200000;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private DirectoryBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        return Arrays.asList(
+            new Mutation("Directory.addStudent", true, false),
+            new Mutation("Directory.deleteStudent", false, false),
+            new Mutation("Directory.applyBatch", true, true),
+            new Search("Directory.searchByAndrewId") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    Student s = d.searchByAndrewId(key);
+                    sink.consume(s);
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByFirstName") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByFirstName(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByLastName") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByLastName(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByLastNameNormalized") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByLastNameNormalized(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByLastNameNormalized.accented") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByLastNameNormalized(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByPhoneNumber") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByPhoneNumber(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByPhoneNumber.callerId") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByPhoneNumber(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.searchByPhonePrefix") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.searchByPhonePrefix(key).size());
+                    return 1;
+                }
+            },
+            new Search("Directory.queryPhonePrefix") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    QueryCursor c = d.query(new Query.Builder()
+                        .phonePrefix(key).build());
+                    int n = 0;
+                    while (c.hasNext()) {
+                        sink.consume(c.next());
+                        n++;
+                    }
+                    sink.consume(n);
+                    return 1;
+                }
+            },
+            new Search("Directory.completeLastName") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.completeLastName(
+                        key.substring(0, Math.min(3, key.length())), 8));
+                    return 1;
+                }
+            },
+            new Search("Directory.fuzzySearchByLastName") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    sink.consume(d.fuzzySearchByLastName(typo(key), 2)
+                        .size());
+                    return 1;
+                }
+            },
+            new Search("Directory.queryFirstAndLast") {
+                @Override
+                int run(Directory d, String key, Sink sink) {
+                    Student s = d.searchByLastName(key).get(0);
+                    QueryCursor c = d.query(new Query.Builder()
+                        .firstName(s.getFirstName()).lastName(key).build());
+                    int n = 0;
+                    while (c.hasNext()) {
+                        sink.consume(c.next());
+                        n++;
+                    }
+                    sink.consume(n);
+                    return 1;
+                }
+            },
+            new BucketPurge());
+    }
+
+    /**
+     * Returns a roster directory with the students of the given roster.
+     * @param students This holds the roster.
+     * @return The directory.
+     */
+    private static Directory directoryOf(List<Student> students) {
+        Directory d = new Directory();
+        d.addAll(students);
+        return d;
+    }
+
+    /**
+     * Returns the name with an acute accent on each e, as a client might
+     * spell it.
+     * @param name This is the name.
+     * @return The accented name, which normalizes as the name does.
+     */
+    static String accented(String name) {
+        return name.replace('e', '\u00e9');
+    }
+
+    /**
+     * Returns the name with its middle two letters swapped, or with a
+     * letter added if it is too short, as a typo of it.
+     * @param name This is the name.
+     * @return A name at edit distance at most 2 from it.
+     */
+    private static String typo(String name) {
+        if (name.length() < 2) {
+            return name + "e";
+        }
+        int i = name.length() / 2;
+        char[] chars = name.toCharArray();
+        char c = chars[i - 1];
+        chars[i - 1] = chars[i];
+        chars[i] = c;
+        return new String(chars);
+    }
+
+    /**
+     * Mutation - Adds or deletes a batch of students, undoing the batch
+     * before the next one.
+     */
+    private static final class Mutation extends BenchCase {
+
+        /**
+         * This tells whether the measured operation is the add.
+         */
+        private final boolean add;
+
+        /**
+         * This tells whether the batch goes through applyBatch.
+         */
+        private final boolean batched;
+
+        /**
+         * This is the directory of the roster.
+         */
+        private Directory directory;
+
+        /**
+         * This holds the students added and deleted by a batch.
+         */
+        private List<Student> pool;
+
+        /**
+         * This holds the add operations of the pool.
+         */
+        private List<BatchOperation> adds;
+
+        /**
+         * This holds the delete operations of the pool.
+         */
+        private List<BatchOperation> deletes;
+
+        /**
+         * This is the three argument constructor for the Mutation class.
+         * @param name This is the name of the benchmark.
+         * @param add This tells whether the measured operation is the add.
+         * @param batched This tells whether the batch goes through
+         * applyBatch.
+         */
+        Mutation(String name, boolean add, boolean batched) {
+            super(name);
+            this.add = add;
+            this.batched = batched;
+        }
+
+        @Override
+        void setUp(int size) {
+            List<Student> roster = Rosters.generate(size);
+            directory = directoryOf(roster);
+            if (add) {
+                pool = Rosters.generate(BATCH, size, SEED);
+            } else {
+                List<Student> shuffled = new ArrayList<>(roster);
+                Collections.shuffle(shuffled, new Random(SEED));
+                pool = new ArrayList<>(shuffled.subList(0,
+                    Math.min(BATCH, size)));
+            }
+            adds = new ArrayList<>();
+            deletes = new ArrayList<>();
+            for (Student s : pool) {
+                adds.add(BatchOperation.add(s));
+                deletes.add(BatchOperation.delete(s.getAndrewId()));
+            }
+        }
+
+        @Override
+        void setUpBatch() {
+            boolean present =
+                directory.searchByAndrewId(pool.get(0).getAndrewId()) != null;
+            if (add && present) {
+                directory.applyBatch(deletes);
+            } else if (!add && !present) {
+                directory.applyBatch(adds);
+            }
+        }
+
+        @Override
+        int batch(Sink sink) {
+            if (batched) {
+                sink.consume(directory.applyBatch(add ? adds : deletes));
+            } else if (add) {
+                for (Student s : pool) {
+                    directory.addStudent(s);
+                }
+            } else {
+                for (Student s : pool) {
+                    directory.deleteStudent(s.getAndrewId());
+                }
+            }
+            return pool.size();
+        }
+    }
+
+    /**
+     * Search - Runs a batch of searches for keys drawn from the roster, so
+     * that common names are searched for more often, as they would be.
+     */
+    private abstract static class Search extends BenchCase {
+
+        /**
+         * This is the directory of the roster.
+         */
+        private Directory directory;
+
+        /**
+         * This holds the keys searched for.
+         */
+        private String[] keys;
+
+        /**
+         * This is the one argument constructor for the Search class.
+         * @param name This is the name of the benchmark.
+         */
+        Search(String name) {
+            super(name);
+        }
+
+        @Override
+        void setUp(int size) {
+            List<Student> roster = Rosters.generate(size);
+            directory = directoryOf(roster);
+            Random random = new Random(SEED);
+            keys = new String[BATCH];
+            for (int i = 0; i < BATCH; i++) {
+                Student s = roster.get(random.nextInt(roster.size()));
+                keys[i] = key(s);
+            }
+        }
+
+        /**
+         * Returns the key searched for to find the given student.
+         * @param s This represents the student.
+         * @return The key.
+         */
+        String key(Student s) {
+            if (getName().endsWith("AndrewId")) {
+                return s.getAndrewId();
+            }
+            if (getName().endsWith("FirstName")) {
+                return s.getFirstName();
+            }
+            if (getName().endsWith("Normalized")) {
+                return s.getLastName().toUpperCase(Locale.ROOT);
+            }
+            if (getName().endsWith("accented")) {
+                return accented(s.getLastName());
+            }
+            if (getName().endsWith("PhoneNumber")) {
+                return s.getPhoneNumber();
+            }
+            if (getName().endsWith("callerId")) {
+                return "+1 " + s.getPhoneNumber();
+            }
+            if (getName().endsWith("PhonePrefix")) {
+                return s.getPhoneNumber().substring(0, PHONE_PREFIX);
+            }
+            return s.getLastName();
+        }
+
+        @Override
+        int batch(Sink sink) {
+            int ops = 0;
+            for (String key : keys) {
+                ops += run(directory, key, sink);
+            }
+            return ops;
+        }
+
+        /**
+         * Runs one search.
+         * @param d This is the directory to search.
+         * @param key This is the key to search for.
+         * @param sink This consumes the result.
+         * @return The number of operations run.
+         */
+        abstract int run(Directory d, String key, Sink sink);
+    }
+
+    /**
+     * BucketPurge - Deletes every student with the most common last name,
+     * then adds them back before the next batch.
+     */
+    private static final class BucketPurge extends BenchCase {
+
+        /**
+         * This is the directory of the roster.
+         */
+        private Directory directory;
+
+        /**
+         * This holds the students with the most common last name.
+         */
+        private List<Student> bucket;
+
+        /**
+         * This is the no arg constructor for the BucketPurge class.
+         */
+        BucketPurge() {
+            super("Directory.deleteLargestBucket");
+        }
+
+        @Override
+        void setUp(int size) {
+            List<Student> roster = Rosters.generate(size);
+            directory = directoryOf(roster);
+            Map<String, Integer> counts = new HashMap<>();
+            String top = null;
+            for (Student s : roster) {
+                int n = counts.merge(s.getLastName(), 1, Integer::sum);
+                if (top == null || n > counts.get(top)) {
+                    top = s.getLastName();
+                }
+            }
+            List<Student> all = directory.searchByLastName(top);
+            bucket = new ArrayList<>(all.subList(0,
+                Math.min(MAX_PURGE, all.size())));
+        }
+
+        @Override
+        void setUpBatch() {
+            if (directory.searchByAndrewId(bucket.get(0).getAndrewId())
+                == null) {
+                directory.addAll(bucket);
+            }
+        }
+
+        @Override
+        int batch(Sink sink) {
+            for (Student s : bucket) {
+                directory.deleteStudent(s.getAndrewId());
+            }
+            sink.consume(directory.size());
+            return bucket.size();
+        }
+    }
+}
@@ -0,0 +1,340 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * FootprintBench - Benchmarks of memory: the heap held per student by a
+ * Directory and by a ColumnarDirectory, the heap held per student by a
+ * Directory loaded from a CSV file by class histogram, and the bytes
+ * allocated per exact and normalized search by last name.
+ * @author Tony Padilla (apadilla)
+ */
+final class FootprintBench {
+
+    /**
+     * Constant that represents the number of searches in an allocation
+     * batch.
+     */
+    private static final int SEARCHES = 1024;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private FootprintBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        return Arrays.asList(
+            new Footprint("Directory.heapPerStudent") {
+                @Override
+                Object build(int size) {
+                    Directory d = new Directory();
+                    d.addAll(Rosters.generate(size));
+                    return d;
+                }
+            },
+            new Footprint("ColumnarDirectory.heapPerStudent") {
+                @Override
+                Object build(int size) {
+                    ColumnarDirectory d = new ColumnarDirectory();
+                    d.addAll(Rosters.generate(size));
+                    return d;
+                }
+            },
+            new Histogram("BulkLoader.heapPerStudent"),
+            new Histogram("BulkLoader.stringHeapPerStudent",
+                "java.lang.String", "[B"),
+            new Allocation("Directory.searchByLastName.alloc", false),
+            new Allocation("Directory.searchByLastNameNormalized.alloc",
+                true));
+    }
+
+    /**
+     * Returns the heap in use after collecting garbage.
+     * @return The bytes of heap in use.
+     */
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Footprint - Measures the heap a directory built from a roster keeps
+     * once the roster list itself is garbage. Every iteration builds a new
+     * directory.
+     */
+    private abstract static class Footprint extends BenchCase {
+
+        /**
+         * This represents the roster size.
+         */
+        private int size;
+
+        /**
+         * This is the one argument constructor for the Footprint class.
+         * @param name This is the name of the benchmark.
+         */
+        Footprint(String name) {
+            super(name);
+        }
+
+        @Override
+        String unit() {
+            return "B/student";
+        }
+
+        @Override
+        void setUp(int size) {
+            this.size = size;
+        }
+
+        @Override
+        int batch(Sink sink) {
+            sink.consume(build(size));
+            return 1;
+        }
+
+        @Override
+        double iteration(Sink sink, long nanos) {
+            long before = usedHeap();
+            Object directory = build(size);
+            long after = usedHeap();
+            sink.consume(directory);
+            return (double) (after - before) / size;
+        }
+
+        /**
+         * Builds the directory measured.
+         * @param size This represents the roster size.
+         * @return The directory.
+         */
+        abstract Object build(int size);
+    }
+
+    /**
+     * Histogram - Measures the heap a Directory loaded from a CSV file of
+     * the roster by BulkLoader keeps, from class histograms taken before and
+     * after loading, either in all or in the given classes. The classes
+     * counted are printed with each iteration, so the share of name Strings
+     * can be followed as rows are added; try a roster of 5000000 with a
+     * heap of a few gigabytes.
+     */
+    private static final class Histogram extends BenchCase {
+
+        /**
+         * This holds the names of the classes counted, or is empty to count
+         * all.
+         */
+        private final String[] classes;
+
+        /**
+         * This represents the roster size.
+         */
+        private int size;
+
+        /**
+         * This is the CSV file of the roster.
+         */
+        private Path file;
+
+        /**
+         * This is the two argument constructor for the Histogram class.
+         * @param name This is the name of the benchmark.
+         * @param classes This holds the names of the classes counted, as
+         * the histogram gives them, or is empty to count all.
+         */
+        Histogram(String name, String... classes) {
+            super(name);
+            this.classes = classes;
+        }
+
+        @Override
+        String unit() {
+            return "B/student";
+        }
+
+        @Override
+        void setUp(int size) throws Exception {
+            this.size = size;
+            file = Files.createTempFile("footprint", ".csv");
+            Rosters.writeCsv(file, Rosters.generate(size));
+        }
+
+        @Override
+        int batch(Sink sink) throws Exception {
+            sink.consume(load());
+            return 1;
+        }
+
+        @Override
+        double iteration(Sink sink, long nanos) throws Exception {
+            long[] before = histogram();
+            Directory directory = load();
+            long[] after = histogram();
+            sink.consume(directory);
+            StringBuilder counted = new StringBuilder("#");
+            for (int i = 0; i < classes.length; i++) {
+                counted.append(' ').append(classes[i]).append(' ')
+                    .append(after[2 * i] - before[2 * i]).append(" objects ")
+                    .append(after[2 * i + 1] - before[2 * i + 1])
+                    .append(" B");
+            }
+            if (classes.length > 0) {
+                System.out.println(counted);
+            }
+            long bytes = 0;
+            for (int i = 1; i < after.length; i += 2) {
+                bytes += after[i] - before[i];
+            }
+            return (double) bytes / size;
+        }
+
+        /**
+         * Loads a new directory from the CSV file.
+         * @return The directory.
+         * @throws Exception if the file cannot be loaded.
+         */
+        private Directory load() throws Exception {
+            Directory directory = new Directory();
+            new BulkLoader().load(directory, file.toString());
+            return directory;
+        }
+
+        /**
+         * Takes a class histogram of the live heap, which collects garbage
+         * first.
+         * @return The number of objects and bytes of each class counted, in
+         * turn, or of the whole heap if all are counted.
+         * @throws JMException if the histogram cannot be taken.
+         */
+        private long[] histogram() throws JMException {
+            String text = (String) ManagementFactory.getPlatformMBeanServer()
+                .invoke(new ObjectName(
+                    "com.sun.management:type=DiagnosticCommand"),
+                    "gcClassHistogram", new Object[] {null},
+                    new String[] {String[].class.getName()});
+            long[] counts = new long[Math.max(2, 2 * classes.length)];
+            for (String line : text.split("\n")) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 3) {
+                    continue;
+                }
+                if (classes.length == 0 && fields[0].equals("Total")) {
+                    counts[0] = Long.parseLong(fields[1]);
+                    counts[1] = Long.parseLong(fields[2]);
+                }
+                for (int i = 0; i < classes.length; i++) {
+                    if (fields.length > 3 && fields[0].endsWith(":")
+                        && fields[3].equals(classes[i])) {
+                        counts[2 * i] = Long.parseLong(fields[1]);
+                        counts[2 * i + 1] = Long.parseLong(fields[2]);
+                    }
+                }
+            }
+            return counts;
+        }
+
+        @Override
+        void tearDown() throws Exception {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Allocation - Measures the bytes the searching thread allocates per
+     * searchByLastName, or per searchByLastNameNormalized of the upper case
+     * name, which should be none as results are views and ASCII names are
+     * normalized without copying.
+     */
+    private static final class Allocation extends BenchCase {
+
+        /**
+         * This is the directory of the roster.
+         */
+        private Directory directory;
+
+        /**
+         * This holds the names searched for.
+         */
+        private String[] keys;
+
+        /**
+         * This is true to search by normalized name.
+         */
+        private final boolean normalized;
+
+        /**
+         * This is the two argument constructor for the Allocation class.
+         * @param name This is the name of the benchmark.
+         * @param normalized This is true to search by normalized name.
+         */
+        Allocation(String name, boolean normalized) {
+            super(name);
+            this.normalized = normalized;
+        }
+
+        @Override
+        String unit() {
+            return "B/op";
+        }
+
+        @Override
+        void setUp(int size) {
+            List<Student> roster = Rosters.generate(size);
+            directory = new Directory();
+            directory.addAll(roster);
+            Random random = new Random(size);
+            keys = new String[SEARCHES];
+            for (int i = 0; i < SEARCHES; i++) {
+                keys[i] = roster.get(random.nextInt(size)).getLastName();
+                if (normalized) {
+                    keys[i] = keys[i].toUpperCase(Locale.ROOT);
+                }
+            }
+        }
+
+        @Override
+        int batch(Sink sink) {
+            for (String key : keys) {
+                sink.consume((normalized
+                    ? directory.searchByLastNameNormalized(key)
+                    : directory.searchByLastName(key)).size());
+            }
+            return SEARCHES;
+        }
+
+        @Override
+        double iteration(Sink sink, long nanos) {
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return Double.NaN;
+            }
+            com.sun.management.ThreadMXBean counter =
+                (com.sun.management.ThreadMXBean) threads;
+            long id = Thread.currentThread().getId();
+            long ops = 0;
+            long start = System.nanoTime();
+            long before = counter.getThreadAllocatedBytes(id);
+            while (System.nanoTime() - start < nanos) {
+                ops += batch(sink);
+            }
+            return (double) (counter.getThreadAllocatedBytes(id) - before)
+                / ops;
+        }
+    }
+}
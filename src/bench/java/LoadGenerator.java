@@ -0,0 +1,366 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LoadGenerator - Drives a DirectoryServer with a mix of requests from
+ * several client threads, each on its own kept-alive connection, and
+ * reports the requests per second and the latency percentiles of each
+ * kind of request. Unless a URL is given, a server is started in this JVM
+ * over a Zipf roster of the given size.
+ *
+ * Usage: java LoadGenerator [-u url] [-n size] [-k cacheSize] [-c clients]
+ * [-w seconds] [-d seconds] [-b batch]
+ * @author Tony Padilla (apadilla)
+ */
+public final class LoadGenerator {
+
+    /**
+     * Kind - The kinds of request sent, with their share of the mix in
+     * percent.
+     */
+    private enum Kind {
+        GET_ID(70), LAST_NAME(15), BATCH_LOOKUP(10), ADD_DELETE(5);
+
+        /**
+         * This represents the share of the mix, in percent.
+         */
+        private final int percent;
+
+        /**
+         * This is the constructor for the Kind enum.
+         * @param percent This is the share of the mix, in percent.
+         */
+        Kind(int percent) {
+            this.percent = percent;
+        }
+    }
+
+    /**
+     * This is the URL of the server, without a trailing slash.
+     */
+    private String url;
+
+    /**
+     * This represents the size of the roster of an in-process server.
+     */
+    private int size = 100000;
+
+    /**
+     * This represents the search cache size of an in-process server.
+     */
+    private int cacheSize;
+
+    /**
+     * This represents the number of client threads.
+     */
+    private int clients = 8;
+
+    /**
+     * This represents the warmup time in seconds.
+     */
+    private int warmupSeconds = 5;
+
+    /**
+     * This represents the measured time in seconds.
+     */
+    private int seconds = 20;
+
+    /**
+     * This represents the number of Andrew IDs per batch lookup.
+     */
+    private int batch = 32;
+
+    /**
+     * This holds the Andrew IDs and last names requests are made for.
+     */
+    private List<Student> roster;
+
+    /**
+     * This holds the latencies of each kind of request, by ordinal.
+     */
+    private volatile Histogram[] latencies;
+
+    /**
+     * This represents the number of requests that failed.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * This is true while the clients should keep sending.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Main method of the load generator.
+     * @param args This holds the options described in the class comment.
+     * @throws Exception if the server cannot be started or reached.
+     */
+    public static void main(String[] args) throws Exception {
+        LoadGenerator load = new LoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                usage();
+            }
+            switch (args[i++]) {
+            case "-u":
+                load.url = value.replaceAll("/+$", "");
+                break;
+            case "-n":
+                load.size = Integer.parseInt(value);
+                break;
+            case "-k":
+                load.cacheSize = Integer.parseInt(value);
+                break;
+            case "-c":
+                load.clients = Integer.parseInt(value);
+                break;
+            case "-w":
+                load.warmupSeconds = Integer.parseInt(value);
+                break;
+            case "-d":
+                load.seconds = Integer.parseInt(value);
+                break;
+            case "-b":
+                load.batch = Integer.parseInt(value);
+                break;
+            default:
+                usage();
+            }
+        }
+        load.run();
+    }
+
+    /**
+     * Prints the usage and exits.
+     */
+    private static void usage() {
+        System.out.println("Usage: java LoadGenerator [-u url] [-n size]"
+            + " [-k cacheSize] [-c clients] [-w seconds] [-d seconds]"
+            + " [-b batch]");
+        System.exit(1);
+    }
+
+    /**
+     * Starts the server if needed, runs the warmup and the measurement, and
+     * prints the report.
+     * @throws Exception if the server cannot be started or reached.
+     */
+    private void run() throws Exception {
+        System.setProperty("http.maxConnections", Integer.toString(clients));
+        DirectoryServer server = null;
+        roster = Rosters.generate(size);
+        if (url == null) {
+            Directory directory = new Directory();
+            directory.addAll(roster);
+            server = new DirectoryServer(directory,
+                new InetSocketAddress("127.0.0.1", 0),
+                Runtime.getRuntime().availableProcessors(), cacheSize);
+            server.start();
+            url = "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+        System.out.printf(Locale.ROOT, "%s, %d students, %d clients%n",
+            url, roster.size(), clients);
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(clients);
+        latencies = newLatencies();
+        for (int i = 0; i < clients; i++) {
+            long seed = i;
+            Thread t = new Thread(() -> {
+                try {
+                    client(new Random(seed));
+                } finally {
+                    done.countDown();
+                }
+            }, "load-client-" + i);
+            t.setDaemon(true);
+            threads.add(t);
+            t.start();
+        }
+        Thread.sleep(warmupSeconds * 1000L);
+        latencies = newLatencies();
+        failures.set(0);
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        Histogram[] measured = latencies;
+        long elapsed = System.nanoTime() - start;
+        running = false;
+        done.await();
+        report(measured, elapsed);
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Returns a fresh set of latency histograms, one per kind of request.
+     * @return The histograms, by ordinal.
+     */
+    private static Histogram[] newLatencies() {
+        Histogram[] histograms = new Histogram[Kind.values().length];
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+        return histograms;
+    }
+
+    /**
+     * Sends requests until told to stop, picking the kind of each from the
+     * mix.
+     * @param random This picks the requests.
+     */
+    private void client(Random random) {
+        int added = 0;
+        String prefix = Thread.currentThread().getName();
+        while (running) {
+            int roll = random.nextInt(100);
+            Kind kind = Kind.GET_ID;
+            for (Kind k : Kind.values()) {
+                if (roll < k.percent) {
+                    kind = k;
+                    break;
+                }
+                roll -= k.percent;
+            }
+            Student s = roster.get(random.nextInt(roster.size()));
+            long start = System.nanoTime();
+            try {
+                switch (kind) {
+                case GET_ID:
+                    send("GET", "/students/" + encode(s.getAndrewId()), null);
+                    break;
+                case LAST_NAME:
+                    send("GET", "/students?lastName="
+                        + encode(s.getLastName()), null);
+                    break;
+                case BATCH_LOOKUP:
+                    send("POST", "/students/lookup", lookupBody(random));
+                    break;
+                default:
+                    String id = prefix + "-" + added++;
+                    send("POST", "/students", "{\"andrewId\":\"" + id
+                        + "\",\"firstName\":\"Load\",\"lastName\":\"Test\"}");
+                    send("DELETE", "/students/" + encode(id), null);
+                }
+                latencies[kind.ordinal()].record(System.nanoTime() - start);
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Returns the body of a batch lookup of random Andrew IDs.
+     * @param random This picks the students.
+     * @return A JSON array of Andrew IDs.
+     */
+    private String lookupBody(Random random) {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < batch; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            Json.appendString(body,
+                roster.get(random.nextInt(roster.size())).getAndrewId());
+        }
+        return body.append(']').toString();
+    }
+
+    /**
+     * Sends a request and reads the whole response, so that the connection
+     * can be kept alive for the next request.
+     * @param method This is the HTTP method.
+     * @param path This is the path and query of the request.
+     * @param body This is the JSON body, or null.
+     * @throws IOException if the request fails or gets a 5xx response.
+     */
+    private void send(String method, String path, String body) throws
+        IOException {
+        HttpURLConnection c =
+            (HttpURLConnection) new URL(url + path).openConnection();
+        c.setRequestMethod(method);
+        if (body != null) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            c.setDoOutput(true);
+            c.setFixedLengthStreamingMode(bytes.length);
+            c.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(bytes);
+            }
+        }
+        int status = c.getResponseCode();
+        InputStream in = status >= 400 ? c.getErrorStream()
+            : c.getInputStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                drain(response);
+            }
+        }
+        if (status >= 500) {
+            throw new IOException(method + " " + path + " got " + status);
+        }
+    }
+
+    /**
+     * Reads a stream to its end.
+     * @param in This is the stream.
+     * @throws IOException if the stream cannot be read.
+     */
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            sink.write(buffer, 0, n);
+        }
+    }
+
+    /**
+     * Percent-encodes a path segment or parameter value.
+     * @param s This is the text to encode.
+     * @return The encoded text.
+     * @throws IOException if UTF-8 is not supported.
+     */
+    private static String encode(String s) throws IOException {
+        return URLEncoder.encode(s, "UTF-8").replace("+", "%20");
+    }
+
+    /**
+     * Prints the throughput and the latency percentiles of the measurement.
+     * @param measured This holds the latencies of each kind of request.
+     * @param elapsed This is the measured time in nanoseconds.
+     */
+    private void report(Histogram[] measured, long elapsed) {
+        long total = 0;
+        System.out.printf(Locale.ROOT, "%-14s %10s %10s %10s %10s %10s%n",
+            "request", "count", "req/s", "p50 us", "p99 us", "max us");
+        for (Kind kind : Kind.values()) {
+            Histogram h = measured[kind.ordinal()];
+            total += h.getCount();
+            System.out.printf(Locale.ROOT,
+                "%-14s %10d %10.0f %10.1f %10.1f %10.1f%n",
+                kind.name().toLowerCase(Locale.ROOT), h.getCount(),
+                h.getCount() * 1e9 / elapsed,
+                h.getValueAtPercentile(50) / 1e3,
+                h.getValueAtPercentile(99) / 1e3, h.getMax() / 1e3);
+        }
+        System.out.printf(Locale.ROOT, "%-14s %10d %10.0f%n", "all", total,
+            total * 1e9 / elapsed);
+        if (failures.get() > 0) {
+            System.out.println("failed requests: " + failures.get());
+        }
+    }
+}
@@ -0,0 +1,412 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ReplicationBench - Measures replication between DirectoryServer processes
+ * on this machine. A primary is started over a Zipf roster of the given
+ * size, and replicas of it load the roster from a snapshot. Client threads
+ * then look up random students on the replicas, spread evenly, while one
+ * writer adds students to the primary at a fixed rate and polls a replica
+ * until each one shows up there. The report has the time each replica took
+ * to catch up, the aggregate lookup throughput and latency, and the
+ * replication lag, from the primary answering an add until a replica
+ * returns the student.
+ *
+ * Usage: java ReplicationBench [-n size] [-r replicas] [-c clients]
+ * [-w writesPerSecond] [-d seconds] [-m maxStalenessMs]
+ * @author Tony Padilla (apadilla)
+ */
+public final class ReplicationBench {
+
+    /**
+     * This represents the size of the roster.
+     */
+    private int size = 100000;
+
+    /**
+     * This represents the number of replicas.
+     */
+    private int replicaCount = 2;
+
+    /**
+     * This represents the number of client threads.
+     */
+    private int clients = 8;
+
+    /**
+     * This represents the number of adds per second.
+     */
+    private int writesPerSecond = 100;
+
+    /**
+     * This represents the measured time in seconds.
+     */
+    private int seconds = 20;
+
+    /**
+     * This represents the staleness bound of the replicas, in milliseconds.
+     */
+    private long maxStaleness = Replica.DEFAULT_MAX_STALENESS_MILLIS;
+
+    /**
+     * This holds the server processes.
+     */
+    private final List<Process> processes = new ArrayList<>();
+
+    /**
+     * This holds the URLs of the replicas.
+     */
+    private final List<String> replicas = new ArrayList<>();
+
+    /**
+     * This holds the students looked up.
+     */
+    private List<Student> roster;
+
+    /**
+     * This represents the number of lookups refused by a stale replica.
+     */
+    private final AtomicLong stale = new AtomicLong();
+
+    /**
+     * This represents the number of requests that failed.
+     */
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * This is true while the clients should keep sending.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * This is a private constructor, as the class is only used by main.
+     */
+    private ReplicationBench() {
+    }
+
+    /**
+     * Main method of the replication benchmark.
+     * @param args This holds the options described in the class comment.
+     * @throws Exception if a server cannot be started or reached.
+     */
+    public static void main(String[] args) throws Exception {
+        ReplicationBench bench = new ReplicationBench();
+        for (int i = 0; i < args.length; i++) {
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            if (value == null) {
+                usage();
+            }
+            switch (args[i++]) {
+            case "-n":
+                bench.size = Integer.parseInt(value);
+                break;
+            case "-r":
+                bench.replicaCount = Integer.parseInt(value);
+                break;
+            case "-c":
+                bench.clients = Integer.parseInt(value);
+                break;
+            case "-w":
+                bench.writesPerSecond = Integer.parseInt(value);
+                break;
+            case "-d":
+                bench.seconds = Integer.parseInt(value);
+                break;
+            case "-m":
+                bench.maxStaleness = Long.parseLong(value);
+                break;
+            default:
+                usage();
+            }
+        }
+        try {
+            bench.run();
+        } finally {
+            for (Process process : bench.processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Prints the usage and exits.
+     */
+    private static void usage() {
+        System.out.println("Usage: java ReplicationBench [-n size]"
+            + " [-r replicas] [-c clients] [-w writesPerSecond]"
+            + " [-d seconds] [-m maxStalenessMs]");
+        System.exit(1);
+    }
+
+    /**
+     * Starts the servers, waits for the replicas to catch up, runs the
+     * measurement and prints the report.
+     * @throws Exception if a server cannot be started or reached.
+     */
+    private void run() throws Exception {
+        System.setProperty("http.maxConnections",
+            Integer.toString(clients + 2));
+        roster = Rosters.generate(size);
+        Path file = Files.createTempFile("roster", ".csv");
+        String primary;
+        String replicationPort;
+        try {
+            Rosters.writeCsv(file, roster);
+            List<String> lines = start("Serving ", "-p", "0", "-r", "0",
+                file.toString());
+            primary = url(lines.get(lines.size() - 1));
+            replicationPort = null;
+            for (String line : lines) {
+                if (line.startsWith("Accepting replicas on port ")) {
+                    replicationPort = line.substring(line.lastIndexOf(' ')
+                        + 1);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        System.out.printf(Locale.ROOT, "primary %s, %d students%n", primary,
+            roster.size());
+        String last = roster.get(roster.size() - 1).getAndrewId();
+        for (int i = 0; i < replicaCount; i++) {
+            long start = System.nanoTime();
+            List<String> lines = start("Serving ", "-p", "0", "-f",
+                "127.0.0.1:" + replicationPort, "-m",
+                Long.toString(maxStaleness));
+            String replica = url(lines.get(lines.size() - 1));
+            while (get(replica, "/students/" + last) != 200) {
+                Thread.sleep(10);
+            }
+            replicas.add(replica);
+            System.out.printf(Locale.ROOT,
+                "replica %s caught up in %d ms, with JVM start%n", replica,
+                (System.nanoTime() - start) / 1000000);
+        }
+        Histogram reads = new Histogram();
+        Histogram lag = new Histogram();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            String replica = replicas.get(i % replicas.size());
+            long seed = i;
+            threads.add(new Thread(() -> read(replica, new Random(seed),
+                reads), "read-client-" + i));
+        }
+        threads.add(new Thread(() -> write(primary, lag), "write-client"));
+        long start = System.nanoTime();
+        for (Thread t : threads) {
+            t.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running = false;
+        for (Thread t : threads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+        report(reads, lag, elapsed);
+    }
+
+    /**
+     * Starts a DirectoryServer process and reads its output up to the line
+     * with the given start.
+     * @param until This is the start of the last line to read.
+     * @param args This holds the arguments of the server.
+     * @return The lines read.
+     * @throws IOException if the server cannot be started or exits.
+     */
+    private List<String> start(String until, String... args) throws
+        IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin",
+            "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("DirectoryServer");
+        for (String arg : args) {
+            command.add(arg);
+        }
+        Process process = new ProcessBuilder(command)
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        processes.add(process);
+        BufferedReader out = new BufferedReader(new InputStreamReader(
+            process.getInputStream(), StandardCharsets.UTF_8));
+        List<String> lines = new ArrayList<>();
+        String line;
+        while ((line = out.readLine()) != null) {
+            lines.add(line);
+            if (line.startsWith(until)) {
+                return lines;
+            }
+        }
+        throw new IOException("Server exited: " + lines);
+    }
+
+    /**
+     * Returns the URL of a server from the line it prints once serving.
+     * @param serving This is the line.
+     * @return The URL, without a trailing slash.
+     */
+    private static String url(String serving) {
+        return "http://127.0.0.1:"
+            + serving.substring(serving.lastIndexOf(' ') + 1);
+    }
+
+    /**
+     * Looks up random students on a replica until told to stop.
+     * @param replica This is the URL of the replica.
+     * @param random This picks the students.
+     * @param latencies This records the latency of each lookup.
+     */
+    private void read(String replica, Random random, Histogram latencies) {
+        while (running) {
+            Student s = roster.get(random.nextInt(roster.size()));
+            long start = System.nanoTime();
+            try {
+                int status = get(replica, "/students/" + s.getAndrewId());
+                if (status == 503) {
+                    stale.incrementAndGet();
+                } else {
+                    synchronized (latencies) {
+                        latencies.record(System.nanoTime() - start);
+                    }
+                }
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Adds students to the primary at the set rate until told to stop, and
+     * records how long each takes to show up on a replica, taking the
+     * replicas in turn.
+     * @param primary This is the URL of the primary.
+     * @param latencies This records the replication lag of each add.
+     */
+    private void write(String primary, Histogram latencies) {
+        long interval = 1000000000L / writesPerSecond;
+        long next = System.nanoTime();
+        for (int i = 0; running; i++) {
+            String id = "replicated-" + i;
+            String replica = replicas.get(i % replicas.size());
+            try {
+                send(primary, "POST", "/students", "{\"andrewId\":\"" + id
+                    + "\",\"firstName\":\"Replica\",\"lastName\":\"Test\"}");
+                long added = System.nanoTime();
+                while (get(replica, "/students/" + id) != 200 && running) {
+                    Thread.yield();
+                }
+                synchronized (latencies) {
+                    latencies.record(System.nanoTime() - added);
+                }
+            } catch (IOException e) {
+                failures.incrementAndGet();
+            }
+            next += interval;
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends a GET request and reads the whole response.
+     * @param server This is the URL of the server.
+     * @param path This is the path of the request.
+     * @return The status of the response.
+     * @throws IOException if the request fails or gets a 5xx response other
+     * than 503.
+     */
+    private static int get(String server, String path) throws IOException {
+        return send(server, "GET", path, null);
+    }
+
+    /**
+     * Sends a request and reads the whole response, so that the connection
+     * can be kept alive for the next request.
+     * @param server This is the URL of the server.
+     * @param method This is the HTTP method.
+     * @param path This is the path of the request.
+     * @param body This is the JSON body, or null.
+     * @return The status of the response.
+     * @throws IOException if the request fails or gets a 5xx response other
+     * than 503.
+     */
+    private static int send(String server, String method, String path,
+        String body) throws IOException {
+        HttpURLConnection c =
+            (HttpURLConnection) new URL(server + path).openConnection();
+        c.setRequestMethod(method);
+        if (body != null) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            c.setDoOutput(true);
+            c.setFixedLengthStreamingMode(bytes.length);
+            c.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = c.getOutputStream()) {
+                out.write(bytes);
+            }
+        }
+        int status = c.getResponseCode();
+        InputStream in = status >= 400 ? c.getErrorStream()
+            : c.getInputStream();
+        if (in != null) {
+            try (InputStream response = in) {
+                byte[] buffer = new byte[8192];
+                ByteArrayOutputStream sink = new ByteArrayOutputStream();
+                int n;
+                while ((n = response.read(buffer)) > 0) {
+                    sink.write(buffer, 0, n);
+                }
+            }
+        }
+        if (status >= 500 && status != 503) {
+            throw new IOException(method + " " + path + " got " + status);
+        }
+        return status;
+    }
+
+    /**
+     * Prints the lookup throughput and latency, and the replication lag.
+     * @param reads This holds the latencies of the lookups.
+     * @param lag This holds the replication lag of the adds.
+     * @param elapsed This is the measured time in nanoseconds.
+     */
+    private void report(Histogram reads, Histogram lag, long elapsed) {
+        System.out.printf(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s%n",
+            "", "count", "per sec", "p50 us", "p99 us", "max us");
+        for (Object[] row : new Object[][] {{"lookups", reads},
+            {"lag", lag}}) {
+            Histogram h = (Histogram) row[1];
+            System.out.printf(Locale.ROOT,
+                "%-10s %10d %10.0f %10.1f %10.1f %10.1f%n", row[0],
+                h.getCount(), h.getCount() * 1e9 / elapsed,
+                h.getValueAtPercentile(50) / 1e3,
+                h.getValueAtPercentile(99) / 1e3, h.getMax() / 1e3);
+        }
+        if (stale.get() > 0) {
+            System.out.println("lookups refused as stale: " + stale.get());
+        }
+        if (failures.get() > 0) {
+            System.out.println("failed requests: " + failures.get());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Rosters - Generates synthetic student rosters for the benchmarks. Names
+ * follow a Zipf distribution, as real names do: a few first and last names
+ * are shared by a large share of the students and most names are rare.
+ * Rosters are generated from a fixed seed, so every run measures the same
+ * data.
+ * @author Tony Padilla (apadilla)
+ */
+final class Rosters {
+
+    /**
+     * Constant that represents the roster sizes measured by default.
+     */
+    static final int[] DEFAULT_SIZES = {1000, 10000, 100000, 1000000,
+        10000000};
+
+    /**
+     * Constant that represents the number of distinct first names.
+     */
+    private static final int FIRST_NAMES = 5000;
+
+    /**
+     * Constant that represents the number of distinct last names.
+     */
+    private static final int LAST_NAMES = 80000;
+
+    /**
+     * Constant that represents the Zipf exponent of first names.
+     */
+    private static final double FIRST_SKEW = 1.0;
+
+    /**
+     * Constant that represents the Zipf exponent of last names.
+     */
+    private static final double LAST_SKEW = 0.9;
+
+    /**
+     * Constant that represents the area codes of phone numbers, most common
+     * first.
+     */
+    private static final String[] AREA_CODES = {"412", "724", "878", "814",
+        "215", "267", "212", "646", "415", "650"};
+
+    /**
+     * Constant that represents the syllables names are made of.
+     */
+    private static final String[] SYLLABLES = {"an", "be", "ca", "da", "el",
+        "fi", "go", "ha", "is", "jo", "ka", "li", "mo", "na", "or", "pe", "qu",
+        "ra", "si", "ta", "ul", "vi", "wa", "xe", "yo", "za", "th", "sh"};
+
+    /**
+     * Constant that represents the seed rosters are generated from.
+     */
+    private static final long SEED = 20240601L;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private Rosters() {
+    }
+
+    /**
+     * Generates a roster.
+     * @param size This is the number of students.
+     * @return The students, with distinct Andrew IDs.
+     */
+    static List<Student> generate(int size) {
+        return generate(size, 0, SEED);
+    }
+
+    /**
+     * Generates a roster whose Andrew IDs do not clash with those of other
+     * rosters generated with a different first number.
+     * @param size This is the number of students.
+     * @param first This is the number the Andrew IDs are counted from.
+     * @param seed This is the seed of the random numbers.
+     * @return The students, with distinct Andrew IDs.
+     */
+    static List<Student> generate(int size, int first, long seed) {
+        Random random = new Random(seed);
+        double[] firstCdf = zipf(FIRST_NAMES, FIRST_SKEW);
+        double[] lastCdf = zipf(LAST_NAMES, LAST_SKEW);
+        double[] areaCdf = zipf(AREA_CODES.length, 1.0);
+        List<Student> students = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String firstName = name(sample(firstCdf, random), 1);
+            String lastName = name(sample(lastCdf, random), 2);
+            String id = (firstName.charAt(0) + lastName.substring(0,
+                Math.min(lastName.length(), 6))).toLowerCase()
+                + (first + i);
+            String phone = String.format("%s-%03d-%04d",
+                AREA_CODES[sample(areaCdf, random)],
+                random.nextInt(1000), random.nextInt(10000));
+            students.add(new Student.Builder(id).firstName(firstName)
+                .lastName(lastName).phoneNumber(phone).build());
+        }
+        return students;
+    }
+
+    /**
+     * Writes a roster as a CSV file in the format read by the loaders.
+     * @param file This is the file to write.
+     * @param students This holds the students to write.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writeCsv(Path file, List<Student> students) throws
+        IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+            StandardCharsets.UTF_8)) {
+            out.write("First Name,Last Name,Andrew ID,Phone Number\n");
+            for (Student s : students) {
+                out.write(s.getFirstName() + "," + s.getLastName() + ","
+                    + s.getAndrewId() + "," + s.getPhoneNumber() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the given rank, built from syllables so that
+     * names have realistic lengths and shared prefixes.
+     * @param rank This is the rank of the name, from 0.
+     * @param minSyllables This is the least number of syllables.
+     * @return The name, capitalized.
+     */
+    private static String name(int rank, int minSyllables) {
+        StringBuilder name = new StringBuilder();
+        int n = rank;
+        int count = 0;
+        do {
+            name.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+            count++;
+        } while (n > 0 || count < minSyllables);
+        name.setCharAt(0, Character.toUpperCase(name.charAt(0)));
+        return name.toString();
+    }
+
+    /**
+     * Returns the cumulative distribution of a Zipf distribution.
+     * @param n This is the number of ranks.
+     * @param skew This is the exponent of the distribution.
+     * @return The probability of each rank or a lower one.
+     */
+    private static double[] zipf(int n, double skew) {
+        double[] cdf = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            total += 1 / Math.pow(i + 1, skew);
+            cdf[i] = total;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= total;
+        }
+        return cdf;
+    }
+
+    /**
+     * Draws a rank from a cumulative distribution.
+     * @param cdf This is the cumulative distribution.
+     * @param random This is the source of random numbers.
+     * @return The rank drawn.
+     */
+    private static int sample(double[] cdf, Random random) {
+        int i = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(i < 0 ? -i - 1 : i, cdf.length - 1);
+    }
+}
@@ -0,0 +1,223 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ShardBench - Benchmarks of a ShardedDirectory of 1, 2, 4 and 8 shards.
+ * Lookups by Andrew ID go to one shard and last name searches to all of
+ * them, with the shards either in this JVM or in DirectoryServer processes
+ * of their own, each loaded from a CSV file of its part of the roster.
+ * Scores are time per search, so a score that drops as shards are added
+ * means the scatter-gather scales.
+ * @author Tony Padilla (apadilla)
+ */
+final class ShardBench {
+
+    /**
+     * Constant that represents the shard counts measured.
+     */
+    private static final int[] SHARDS = {1, 2, 4, 8};
+
+    /**
+     * Constant that represents the number of searches in a batch.
+     */
+    private static final int BATCH = 256;
+
+    /**
+     * Constant that represents the number of students searched for, in
+     * turn.
+     */
+    private static final int KEYS = 1 << 16;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private ShardBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        List<BenchCase> cases = new ArrayList<>();
+        for (int shards : SHARDS) {
+            cases.add(new Search("andrewId", shards, false));
+        }
+        for (int shards : SHARDS) {
+            cases.add(new Search("lastName", shards, false));
+        }
+        for (int shards : SHARDS) {
+            cases.add(new Search("remoteLastName", shards, true));
+        }
+        return cases;
+    }
+
+    /**
+     * Search - Searches a sharded directory by Andrew ID or by last name.
+     */
+    private static final class Search extends BenchCase {
+
+        /**
+         * This represents the number of shards.
+         */
+        private final int shardCount;
+
+        /**
+         * This is true to search by Andrew ID and false by last name.
+         */
+        private final boolean byId;
+
+        /**
+         * This is true to keep the shards in server processes.
+         */
+        private final boolean remote;
+
+        /**
+         * This is the directory searched.
+         */
+        private ShardedDirectory directory;
+
+        /**
+         * This holds the server processes of remote shards.
+         */
+        private final List<Process> servers = new ArrayList<>();
+
+        /**
+         * This holds the CSV files the servers are loaded from.
+         */
+        private final List<Path> files = new ArrayList<>();
+
+        /**
+         * This holds the keys searched for.
+         */
+        private String[] keys;
+
+        /**
+         * This represents the position of the next key.
+         */
+        private int next;
+
+        /**
+         * This is the three argument constructor for the Search class.
+         * @param operation This is the name of the search.
+         * @param shardCount This represents the number of shards.
+         * @param remote This is true to keep the shards in server
+         * processes.
+         */
+        Search(String operation, int shardCount, boolean remote) {
+            super("ShardedDirectory." + operation + "_s" + shardCount);
+            this.shardCount = shardCount;
+            this.byId = operation.equals("andrewId");
+            this.remote = remote;
+        }
+
+        @Override
+        void setUp(int size) throws Exception {
+            List<Student> roster = Rosters.generate(size);
+            List<DirectoryShard> shards = new ArrayList<>();
+            if (remote) {
+                System.setProperty("http.maxConnections",
+                    Integer.toString(2 * shardCount));
+                List<List<Student>> parts = new ArrayList<>();
+                for (int i = 0; i < shardCount; i++) {
+                    parts.add(new ArrayList<>());
+                }
+                for (Student s : roster) {
+                    parts.get(ShardedDirectory.shardOf(s.getAndrewId(),
+                        shardCount)).add(s);
+                }
+                for (List<Student> part : parts) {
+                    shards.add(new RemoteShard(startServer(part)));
+                }
+                directory = new ShardedDirectory(shards);
+            } else {
+                for (int i = 0; i < shardCount; i++) {
+                    shards.add(new LocalShard());
+                }
+                directory = new ShardedDirectory(shards);
+                for (Student s : roster) {
+                    directory.addStudent(s);
+                }
+            }
+            Random random = new Random(size);
+            keys = new String[KEYS];
+            for (int i = 0; i < KEYS; i++) {
+                Student s = roster.get(random.nextInt(size));
+                keys[i] = byId ? s.getAndrewId() : s.getLastName();
+            }
+        }
+
+        /**
+         * Starts a DirectoryServer process loaded with part of the roster.
+         * @param part This holds the students of the shard.
+         * @return The URL of the server.
+         * @throws IOException if the server cannot be started.
+         * @throws InterruptedException if interrupted while waiting for a
+         * server that failed to start.
+         */
+        private String startServer(List<Student> part) throws IOException,
+            InterruptedException {
+            Path file = Files.createTempFile("shard", ".csv");
+            files.add(file);
+            Rosters.writeCsv(file, part);
+            List<String> command = new ArrayList<>();
+            command.add(Paths.get(System.getProperty("java.home"), "bin",
+                "java").toString());
+            command.add("-cp");
+            command.add(System.getProperty("java.class.path"));
+            command.add("DirectoryServer");
+            command.add("-p");
+            command.add("0");
+            command.add(file.toString());
+            Process process = new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            servers.add(process);
+            BufferedReader out = new BufferedReader(new InputStreamReader(
+                process.getInputStream(), StandardCharsets.UTF_8));
+            String line;
+            while ((line = out.readLine()) != null) {
+                if (line.startsWith("Serving ")) {
+                    return "http://127.0.0.1:"
+                        + line.substring(line.lastIndexOf(' ') + 1);
+                }
+            }
+            throw new IOException("Shard server exited with "
+                + process.waitFor());
+        }
+
+        @Override
+        int batch(Sink sink) {
+            for (int i = 0; i < BATCH; i++) {
+                String key = keys[next++ & (KEYS - 1)];
+                if (byId) {
+                    sink.consume(directory.searchByAndrewId(key));
+                } else {
+                    sink.consume(directory.searchByLastName(key).size());
+                }
+            }
+            return BATCH;
+        }
+
+        @Override
+        void tearDown() throws Exception {
+            directory.close();
+            for (Process process : servers) {
+                process.destroy();
+                process.waitFor();
+            }
+            servers.clear();
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+            files.clear();
+        }
+    }
+}
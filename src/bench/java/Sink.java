@@ -0,0 +1,38 @@
+/**
+ * Sink - Consumes the values computed by benchmarks, so that the JIT cannot
+ * drop the work that produced them as dead code.
+ * @author Tony Padilla (apadilla)
+ */
+final class Sink {
+
+    /**
+     * This holds the last object consumed.
+     */
+    private Object last;
+
+    /**
+     * This accumulates the ints consumed.
+     */
+    private int sum;
+
+    /**
+     * Consumes an object.
+     * @param o This is the object to consume.
+     */
+    void consume(Object o) {
+        last = o;
+    }
+
+    /**
+     * Consumes an int.
+     * @param i This is the int to consume.
+     */
+    void consume(int i) {
+        sum += i;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(sum) + (last == null ? 0 : last.hashCode());
+    }
+}
@@ -0,0 +1,71 @@
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * StoreBench - Benchmarks of DirectoryStore: how long it takes to open a
+ * store holding a snapshot of a roster of each size, which is the cold
+ * start time of a persistent directory.
+ * @author Tony Padilla (apadilla)
+ */
+final class StoreBench {
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private StoreBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        return Collections.singletonList(new Open());
+    }
+
+    /**
+     * Open - Opens a store and closes it again.
+     */
+    private static final class Open extends BenchCase {
+
+        /**
+         * This is the folder of the store.
+         */
+        private Path dir;
+
+        /**
+         * This is the no arg constructor for the Open class.
+         */
+        Open() {
+            super("DirectoryStore.open");
+        }
+
+        @Override
+        String unit() {
+            return "ms/op";
+        }
+
+        @Override
+        double nanosPerUnit() {
+            return 1000000;
+        }
+
+        @Override
+        void setUp(int size) throws Exception {
+            dir = Bench.tempDir("bench-store");
+            try (DirectoryStore store = DirectoryStore.open(dir)) {
+                store.getDirectory().addAll(Rosters.generate(size));
+                store.checkpoint();
+            }
+        }
+
+        @Override
+        int batch(Sink sink) throws Exception {
+            try (DirectoryStore store = DirectoryStore.open(dir)) {
+                sink.consume(store.getDirectory().size());
+            }
+            return 1;
+        }
+    }
+}
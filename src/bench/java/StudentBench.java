@@ -0,0 +1,256 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * StudentBench - Benchmarks of the Student value methods: hashCode, equals
+ * against an equal copy and against a different student, and duplicate,
+ * and of the hash sets and maps of whole rosters that use them.
+ * @author Tony Padilla (apadilla)
+ */
+final class StudentBench {
+
+    /**
+     * Constant that represents the number of students used.
+     */
+    private static final int COUNT = 1024;
+
+    /**
+     * Constant that represents the number of lookups in a batch of a hash
+     * benchmark.
+     */
+    private static final int LOOKUPS = 1 << 16;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private StudentBench() {
+    }
+
+    /**
+     * Returns the benchmarks of this class.
+     * @return The benchmarks.
+     */
+    static List<BenchCase> cases() {
+        return Arrays.asList(
+            new StudentCase("Student.hashCode") {
+                @Override
+                int run(Student s, Student copy, Student other, Sink sink) {
+                    sink.consume(s.hashCode());
+                    return 1;
+                }
+            },
+            new StudentCase("Student.equalsCopy") {
+                @Override
+                int run(Student s, Student copy, Student other, Sink sink) {
+                    sink.consume(s.equals(copy) ? 1 : 0);
+                    return 1;
+                }
+            },
+            new StudentCase("Student.equalsOther") {
+                @Override
+                int run(Student s, Student copy, Student other, Sink sink) {
+                    sink.consume(s.equals(other) ? 1 : 0);
+                    return 1;
+                }
+            },
+            new StudentCase("Student.duplicate") {
+                @Override
+                int run(Student s, Student copy, Student other, Sink sink) {
+                    sink.consume(Student.duplicate(s));
+                    return 1;
+                }
+            },
+            new HashSetBuild(),
+            new HashCase("Student.hashSetContains") {
+                @Override
+                int lookup(Student copy) {
+                    return set.contains(copy) ? 1 : 0;
+                }
+            },
+            new HashCase("Student.hashMapGet") {
+                @Override
+                int lookup(Student copy) {
+                    Integer row = map.get(copy);
+                    return row == null ? -1 : row;
+                }
+            });
+    }
+
+    /**
+     * Returns an equal copy of each student of a roster.
+     * @param students This holds the students.
+     * @return The copies, in the same order.
+     */
+    private static Student[] copies(Student[] students) {
+        Student[] copies = new Student[students.length];
+        for (int i = 0; i < students.length; i++) {
+            copies[i] = students[i].toBuilder().build();
+        }
+        return copies;
+    }
+
+    /**
+     * HashSetBuild - Adds every student of a roster to a new hash set, so
+     * that each student is hashed once and compared with the students of
+     * its hash bucket.
+     */
+    private static final class HashSetBuild extends BenchCase {
+
+        /**
+         * This holds the students.
+         */
+        private Student[] students;
+
+        /**
+         * This is the no argument constructor for the HashSetBuild class.
+         */
+        HashSetBuild() {
+            super("Student.hashSetBuild");
+        }
+
+        @Override
+        void setUp(int size) {
+            students = Rosters.generate(size).toArray(new Student[0]);
+        }
+
+        @Override
+        int batch(Sink sink) {
+            Set<Student> set = new HashSet<>(students.length * 4 / 3 + 1);
+            for (Student s : students) {
+                set.add(s);
+            }
+            sink.consume(set.size());
+            return students.length;
+        }
+    }
+
+    /**
+     * HashCase - Looks up equal copies of random students in a hash set
+     * and a hash map holding a whole roster. The copies are distinct
+     * instances, so every lookup that finds its student runs equals.
+     */
+    private abstract static class HashCase extends BenchCase {
+
+        /**
+         * This holds the students of the roster.
+         */
+        Set<Student> set;
+
+        /**
+         * This maps the students of the roster to their position.
+         */
+        Map<Student, Integer> map;
+
+        /**
+         * This holds the copies looked up, in turn.
+         */
+        private Student[] lookups;
+
+        /**
+         * This is the one argument constructor for the HashCase class.
+         * @param name This is the name of the benchmark.
+         */
+        HashCase(String name) {
+            super(name);
+        }
+
+        @Override
+        void setUp(int size) {
+            Student[] students = Rosters.generate(size)
+                .toArray(new Student[0]);
+            set = new HashSet<>(Arrays.asList(students));
+            map = new HashMap<>(size * 4 / 3 + 1);
+            for (int i = 0; i < size; i++) {
+                map.put(students[i], i);
+            }
+            Student[] copies = copies(students);
+            lookups = new Student[LOOKUPS];
+            Random random = new Random(size);
+            for (int i = 0; i < LOOKUPS; i++) {
+                lookups[i] = copies[random.nextInt(size)];
+            }
+        }
+
+        @Override
+        int batch(Sink sink) {
+            for (Student copy : lookups) {
+                sink.consume(lookup(copy));
+            }
+            return LOOKUPS;
+        }
+
+        @Override
+        void tearDown() {
+            set = null;
+            map = null;
+            lookups = null;
+        }
+
+        /**
+         * Looks up one copy.
+         * @param copy This is an equal copy of a student of the roster.
+         * @return A value depending on the result.
+         */
+        abstract int lookup(Student copy);
+    }
+
+    /**
+     * StudentCase - Runs an operation on each student of a small roster.
+     */
+    private abstract static class StudentCase extends BenchCase {
+
+        /**
+         * This holds the students.
+         */
+        private Student[] students;
+
+        /**
+         * This holds an equal copy of each student.
+         */
+        private Student[] copies;
+
+        /**
+         * This is the one argument constructor for the StudentCase class.
+         * @param name This is the name of the benchmark.
+         */
+        StudentCase(String name) {
+            super(name);
+        }
+
+        @Override
+        boolean isSized() {
+            return false;
+        }
+
+        @Override
+        void setUp(int size) {
+            students = Rosters.generate(COUNT).toArray(new Student[0]);
+            copies = copies(students);
+        }
+
+        @Override
+        int batch(Sink sink) {
+            int ops = 0;
+            for (int i = 0; i < COUNT; i++) {
+                ops += run(students[i], copies[i],
+                    copies[(i + 1) % COUNT], sink);
+            }
+            return ops;
+        }
+
+        /**
+         * Runs the operation on one student.
+         * @param s This represents the student.
+         * @param copy This represents an equal copy of the student.
+         * @param other This represents a different student.
+         * @param sink This consumes the result.
+         * @return The number of operations run.
+         */
+        abstract int run(Student s, Student copy, Student other, Sink sink);
+    }
+}
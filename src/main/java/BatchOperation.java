@@ -0,0 +1,85 @@
+/**
+ * BatchOperation - A single add or delete passed to Directory.applyBatch.
+ * An add holds the student to add; a delete holds the Andrew ID of the
+ * student to delete.
+ * @author Tony Padilla (apadilla)
+ */
+public final class BatchOperation {
+
+    /**
+     * This tells whether the operation is an add or a delete.
+     */
+    private final boolean add;
+
+    /**
+     * This represents the Andrew ID the operation applies to.
+     */
+    private final String andrewId;
+
+    /**
+     * This represents the student added, or the student deleted once the
+     * directory has looked it up.
+     */
+    private final Student student;
+
+    /**
+     * This is the constructor used by the factory methods.
+     * @param add This tells whether the operation is an add.
+     * @param andrewId This represents the Andrew ID the operation applies to.
+     * @param student This represents the student added or deleted.
+     */
+    BatchOperation(boolean add, String andrewId, Student student) {
+        this.add = add;
+        this.andrewId = andrewId;
+        this.student = student;
+    }
+
+    /**
+     * Returns an operation that adds the given student.
+     * @param s This represents the student to add.
+     * @return The add operation.
+     */
+    public static BatchOperation add(Student s) {
+        return new BatchOperation(true, s == null ? null : s.getAndrewId(), s);
+    }
+
+    /**
+     * Returns an operation that deletes the student with the given Andrew ID.
+     * @param andrewId This represents the Andrew ID of the student to delete.
+     * @return The delete operation.
+     */
+    public static BatchOperation delete(String andrewId) {
+        return new BatchOperation(false, andrewId, null);
+    }
+
+    /**
+     * Tells whether this operation adds a student.
+     * @return true for an add, false for a delete.
+     */
+    public boolean isAdd() {
+        return add;
+    }
+
+    /**
+     * This is the getter for the Andrew ID the operation applies to.
+     * @return This gives the Andrew ID.
+     */
+    public String getAndrewId() {
+        return andrewId;
+    }
+
+    /**
+     * This is the getter for the student of the operation. For a delete
+     * created with the delete method this is null; the operations passed to
+     * a MutationListener hold the student being deleted.
+     * @return This gives the student added or deleted.
+     */
+    public Student getStudent() {
+        return student;
+    }
+
+    @Override
+    public String toString() {
+        return (add ? "add " : "delete ") + andrewId;
+    }
+}
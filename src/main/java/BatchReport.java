@@ -0,0 +1,146 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * BatchReport - The outcome of Directory.applyBatch. A batch is applied
+ * only if every operation in it is valid; otherwise the directory is left
+ * unchanged and the report says which operations were rejected and why.
+ * @author Tony Padilla (apadilla)
+ */
+public final class BatchReport {
+
+    /**
+     * This holds the error of each operation, or null for a valid one.
+     */
+    private final String[] results;
+
+    /**
+     * This represents the rejected operations, in batch order.
+     */
+    private final List<ItemError> errors;
+
+    /**
+     * This tells whether the batch was applied to the directory.
+     */
+    private boolean applied;
+
+    /**
+     * This is the one argument constructor for the BatchReport class which
+     * starts with every operation valid and the batch not applied.
+     * @param size This is the number of operations in the batch.
+     */
+    BatchReport(int size) {
+        results = new String[size];
+        errors = new ArrayList<>();
+    }
+
+    /**
+     * Records a rejected operation.
+     * @param index This is the position of the operation in the batch.
+     * @param message This describes why the operation was rejected.
+     */
+    void addError(int index, String message) {
+        results[index] = message;
+        errors.add(new ItemError(index, message));
+    }
+
+    /**
+     * Records that the batch was applied.
+     */
+    void setApplied() {
+        applied = true;
+    }
+
+    /**
+     * Tells whether the batch was applied to the directory.
+     * @return true if every operation was applied, false if none was.
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    /**
+     * This represents the number of operations in the batch.
+     * @return The size of the batch.
+     */
+    public int size() {
+        return results.length;
+    }
+
+    /**
+     * Returns the error of the operation at the given position in the batch.
+     * @param index This is the position of the operation in the batch.
+     * @return The reason the operation was rejected, or null if it was
+     * valid. A valid operation is only applied if the whole batch is.
+     */
+    public String getError(int index) {
+        return results[index];
+    }
+
+    /**
+     * This is the getter for the operations that were rejected.
+     * @return This gives a read-only list of the rejected operations in batch
+     * order.
+     */
+    public List<ItemError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        if (applied) {
+            return String.format("%d operations applied", results.length);
+        }
+        return String.format("Batch of %d operations rejected, %d invalid",
+            results.length, errors.size());
+    }
+
+    /**
+     * ItemError - A single operation of the batch that was rejected.
+     */
+    public static final class ItemError {
+
+        /**
+         * This represents the position of the operation in the batch.
+         */
+        private final int index;
+
+        /**
+         * This describes why the operation was rejected.
+         */
+        private final String message;
+
+        /**
+         * This is the two argument constructor for the ItemError class.
+         * @param index This represents the position of the operation in the
+         * batch.
+         * @param message This describes why the operation was rejected.
+         */
+        ItemError(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        /**
+         * This is the getter for the position of the rejected operation.
+         * @return This gives the position in the batch, starting at 0.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * This is the getter for the reason the operation was rejected.
+         * @return This gives the error message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Operation " + index + ": " + message;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * BulkLoader - Loads a roster CSV file into a Directory. The file is split
+ * into chunks at what look like record boundaries, the chunks are memory
+ * mapped and parsed in parallel by MappedCSVParser, and the parsed students
+ * are added to the directory one chunk at a time through Directory.addAll.
+ * A chunk whose start turns out to be inside a record the chunk before it
+ * finished is parsed again from the end of that record. Bad rows are
+ * reported in a LoadReport instead of stopping the load. Only a window of
+ * IN_FLIGHT_PER_THREAD chunks per thread is submitted ahead of the chunk
+ * being added, so the parsed students waiting to be added take a bounded
+ * amount of memory however large the file is.
+ *
+ * Each chunk is added while holding the directory's monitor, so threads
+ * that share the directory by synchronizing on it can use it between
+ * chunks while a load is running. The loader does not make the changes
+ * durable: a caller keeping the directory in a DirectoryStore calls its
+ * sync method from the listener, which is told after each chunk without
+ * the monitor held, or once the load returns.
+ * @author Tony Padilla (apadilla)
+ */
+public final class BulkLoader {
+
+    /**
+     * Constant that represents the max number of columns per line in a valid
+     * CSV file.
+     */
+    private static final int MAX_LEN = 4;
+
+    /**
+     * Constant that represents the min number of columns per line in a valid
+     * CSV file.
+     */
+    private static final int MIN_LEN = 3;
+
+    /**
+     * Constant that represents the default size in bytes of a chunk.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024;
+
+    /**
+     * Constant that represents the number of chunks per thread that are
+     * parsed or parsing ahead of the chunk being added, enough to keep the
+     * threads busy while a chunk is added.
+     */
+    private static final int IN_FLIGHT_PER_THREAD = 2;
+
+    /**
+     * This represents the number of threads parsing chunks.
+     */
+    private final int threads;
+
+    /**
+     * This represents the target size in bytes of a chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * This is the no arg constructor for the BulkLoader class which parses
+     * with one thread per available processor.
+     */
+    public BulkLoader() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * This is the two argument constructor for the BulkLoader class.
+     * @param threads This represents the number of threads parsing chunks.
+     * @param chunkSize This represents the target size in bytes of a chunk.
+     * @throws IllegalArgumentException if either argument is not positive.
+     */
+    public BulkLoader(int threads, int chunkSize) throws
+        IllegalArgumentException {
+        if (threads <= 0 || chunkSize <= 0) {
+            throw new IllegalArgumentException(
+                "Threads and chunk size must be positive");
+        }
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Loads the students of the given CSV file into the given directory. The
+     * first line of the file is a header and is skipped. Rows with missing
+     * data or with an Andrew ID that is already present are skipped and
+     * reported.
+     * @param directory This is the student Directory object to load data into.
+     * @param file This is the CSV file to load entries from.
+     * @return The report of the load.
+     * @throws IOException if data cannot be read.
+     */
+    public LoadReport load(Directory directory, String file) throws
+        IOException {
+        return load(directory, file, null);
+    }
+
+    /**
+     * Loads the students of the given CSV file into the given directory,
+     * telling the listener after each chunk. The first line of the file is a
+     * header and is skipped. Rows with missing data or with an Andrew ID
+     * that is already present are skipped and reported.
+     * @param directory This is the student Directory object to load data into.
+     * @param file This is the CSV file to load entries from.
+     * @param listener This is told the progress of the load, or is null.
+     * @return The report of the load.
+     * @throws IOException if data cannot be read, or if the loading thread
+     * is interrupted.
+     */
+    public LoadReport load(Directory directory, String file,
+        LoadListener listener) throws IOException {
+        LoadReport report = new LoadReport();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try (FileChannel channel = FileChannel.open(Paths.get(file),
+            StandardOpenOption.READ)) {
+            long[] bounds = MappedCSVParser.split(channel, chunkSize);
+            int count = bounds.length - 1;
+            int window = IN_FLIGHT_PER_THREAD * threads;
+            Deque<Future<Chunk>> pending = new ArrayDeque<>(window);
+            int submitted = 0;
+            Set<String> seen = new HashSet<>();
+            long firstLine = 1;
+            long done = 0;
+            for (int i = 0; i < count; i++) {
+                for (; submitted < count && submitted < i + window;
+                    submitted++) {
+                    long start = bounds[submitted];
+                    long end = bounds[submitted + 1];
+                    boolean header = submitted == 0;
+                    pending.add(pool.submit(
+                        () -> parse(channel, start, end, header)));
+                }
+                Chunk chunk = pending.remove().get();
+                if (chunk.start != done) {
+                    chunk = parse(channel, done, bounds[i + 1], false);
+                }
+                synchronized (directory) {
+                    apply(directory, chunk, firstLine, seen, report);
+                }
+                firstLine += chunk.lines;
+                done = chunk.stop;
+                if (listener != null) {
+                    listener.chunkLoaded(report, done,
+                        bounds[bounds.length - 1]);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Load interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        return report;
+    }
+
+    /**
+     * Adds the valid students of a parsed chunk to the directory and reports
+     * the rejected ones.
+     * @param directory This is the directory to add the students to.
+     * @param chunk This is the parsed chunk.
+     * @param firstLine This is the line number of the first line of the chunk.
+     * @param seen This holds the Andrew IDs added so far by this load.
+     * @param report This is the report to record the outcome in.
+     */
+    private static void apply(Directory directory, Chunk chunk,
+        long firstLine, Set<String> seen, LoadReport report) {
+        List<Student> valid = new ArrayList<>(chunk.students.size());
+        int e = 0;
+        for (int i = 0; i < chunk.students.size(); i++) {
+            int line = chunk.studentLines.get(i);
+            while (e < chunk.errors.size() && chunk.errorLines.get(e) < line) {
+                report.addError(firstLine + chunk.errorLines.get(e),
+                    chunk.errors.get(e));
+                e++;
+            }
+            Student s = chunk.students.get(i);
+            String id = s.getAndrewId();
+            if (!seen.add(id) || directory.contains(id)) {
+                report.addError(firstLine + line,
+                    "Student already in directory: " + id);
+            } else {
+                valid.add(s);
+            }
+        }
+        for (; e < chunk.errors.size(); e++) {
+            report.addError(firstLine + chunk.errorLines.get(e),
+                chunk.errors.get(e));
+        }
+        directory.addAll(valid);
+        report.addLoaded(valid.size());
+    }
+
+    /**
+     * Parses the records that start in the given range of the file into
+     * students. The last record is read to its end, even past the range.
+     * @param channel This is the channel of the file to read.
+     * @param start This is the offset of the first byte of the range.
+     * @param end This is the offset after the last byte of the range.
+     * @param header This is true if the first record of the range is the
+     * header.
+     * @return The parsed chunk.
+     * @throws IOException if data cannot be read.
+     */
+    private static Chunk parse(FileChannel channel, long start, long end,
+        boolean header) throws IOException {
+        MappedCSVParser parser = new MappedCSVParser(channel, start, end);
+        Chunk chunk = new Chunk();
+        boolean skip = header;
+        while (parser.next()) {
+            boolean blank = parser.fieldCount() == 1
+                && parser.fieldLength(0) == 0;
+            if (!skip && !blank) {
+                chunk.add(parser);
+            }
+            skip = false;
+        }
+        chunk.start = start;
+        chunk.stop = parser.position();
+        chunk.lines = parser.line();
+        return chunk;
+    }
+
+    /**
+     * Chunk - The students and errors parsed from one range of the file.
+     * Line numbers are relative to the first line of the range.
+     */
+    private static final class Chunk {
+
+        /**
+         * This represents the offset of the first record of the chunk.
+         */
+        private long start;
+
+        /**
+         * This represents the offset after the last record of the chunk.
+         */
+        private long stop;
+
+        /**
+         * This represents the number of lines in the range.
+         */
+        private int lines;
+
+        /**
+         * This holds the parsed students in file order.
+         */
+        private final List<Student> students = new ArrayList<>();
+
+        /**
+         * This holds the line of each parsed student.
+         */
+        private final List<Integer> studentLines = new ArrayList<>();
+
+        /**
+         * This holds the messages of the rejected lines in file order.
+         */
+        private final List<String> errors = new ArrayList<>();
+
+        /**
+         * This holds the line of each rejected line.
+         */
+        private final List<Integer> errorLines = new ArrayList<>();
+
+        /**
+         * Turns the current record of the parser into a student, or records
+         * why it could not be. Strings are only created for the values of
+         * records that become students, and not for names seen before.
+         * @param parser This is the parser positioned on the record.
+         */
+        void add(MappedCSVParser parser) {
+            int count = parser.fieldCount();
+            if (count < MIN_LEN || parser.fieldLength(0) == 0
+                || parser.fieldLength(1) == 0 || parser.fieldLength(2) == 0) {
+                errors.add("Missing student data");
+                errorLines.add(parser.line());
+                return;
+            }
+            Student.Builder student = new Student.Builder(parser.field(2))
+                .firstName(parser.name(0)).lastName(parser.name(1));
+            if (count == MAX_LEN) {
+                student.phoneNumber(parser.field(MAX_LEN - 1));
+            } else {
+                student.phoneNumber("");
+            }
+            students.add(student.build());
+            studentLines.add(parser.line());
+        }
+    }
+}
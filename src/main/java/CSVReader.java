@@ -0,0 +1,112 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CSVReader - Simplified version of CSV Reader taken from lecture 8
+ * examples.
+ */
+class CSVReader extends BufferedReader {
+
+    /**
+     * Initializes the class.
+     * @param in the reader from which to read the CSV lines
+     */
+    CSVReader(Reader in) {
+        super(in);
+    }
+
+    /**
+     * This method uses the readLine method from the superclass to get a
+     * record and returns the comma separated values as an array of strings.
+     * A record whose quoted value contains a newline spans several lines.
+     * @return an array of String containing the values. At the end of file,
+     * it will return null.
+     * @throws IOException throws IOException.
+     */
+    public String[] readCSVLine() throws IOException {
+        String line = super.readLine();
+        if (line == null) {
+            return null;
+        }
+        while (!isComplete(line)) {
+            String more = super.readLine();
+            if (more == null) {
+                break;
+            }
+            line = line + "\n" + more;
+        }
+        return parseLine(line);
+    }
+
+    /**
+     * Checks whether the given text ends outside of a quoted value. As in
+     * parseLine, a quote only opens a quoted value at the start of a value.
+     * @param line This is the text to check.
+     * @return true if every quoted value in the text is closed.
+     */
+    private static boolean isComplete(String line) {
+        boolean inQuotes = false;
+        boolean valueStart = true;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (inQuotes) {
+                if (c != '"') {
+                    continue;
+                } else if (i + 1 < line.length()
+                    && line.charAt(i + 1) == '"') {
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else {
+                inQuotes = c == '"' && valueStart;
+                valueStart = c == ',';
+            }
+        }
+        return !inQuotes;
+    }
+
+    /**
+     * Splits a single record into its comma separated values in one pass.
+     * Quoted values may contain commas, newlines and quotes escaped by
+     * doubling them, as described in RFC 4180. A quote only opens a quoted
+     * value at the start of a value.
+     * @param line This is the record to split, without its line terminator.
+     * @return an array of String containing the values.
+     */
+    static String[] parseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean inQuotes = false;
+        boolean valueStart = true;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            boolean atStart = valueStart;
+            valueStart = false;
+            if (inQuotes) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length()
+                    && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else if (c == '"' && atStart) {
+                inQuotes = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+                valueStart = true;
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values.toArray(new String[values.size()]);
+    }
+}
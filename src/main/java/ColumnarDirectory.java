@@ -0,0 +1,765 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ColumnarDirectory - A student directory with the core API of Directory,
+ * StudentDirectory, that stores students in packed columns instead of
+ * objects. Each
+ * student is a row number. First and last names are kept once each in name
+ * dictionaries and stored per row as int codes, Andrew IDs and phone numbers
+ * are stored as UTF-8 bytes in shared byte arrays, and the name indexes map
+ * a name code to a primitive list of rows. Student objects are only created
+ * for search results, so a student costs a handful of array slots and its
+ * ID and phone bytes instead of a Student object, its Strings and three map
+ * entries.
+ * <p>
+ * Deleting a student leaves its row behind as a tombstone in the postings
+ * of its two names, so a delete costs the same however many students share
+ * them. A posting list is purged of its tombstones once they make up half
+ * of it, and a row purged from both of its lists goes on a free list for
+ * the next add to reuse. The bytes of deleted rows stay in the string
+ * columns until compact squeezes them out, which a delete does on its own
+ * once they outweigh the bytes in use.
+ * @author Tony Padilla (apadilla)
+ */
+public final class ColumnarDirectory implements StudentDirectory {
+
+    /**
+     * Constant that represents the initial number of rows.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Constant that represents the code of a deleted row.
+     */
+    private static final int DELETED = -1;
+
+    /**
+     * Constant that represents the number of unused bytes in the string
+     * columns below which a delete does not compact the directory.
+     */
+    private static final int MIN_COMPACT_BYTES = 64 * 1024;
+
+    /**
+     * This holds the first names of the directory.
+     */
+    private final NameDictionary firstNames;
+
+    /**
+     * This holds the last names of the directory.
+     */
+    private final NameDictionary lastNames;
+
+    /**
+     * This holds the first name code of each row, or DELETED.
+     */
+    private int[] firstCodes;
+
+    /**
+     * This holds the last name code of each row.
+     */
+    private int[] lastCodes;
+
+    /**
+     * This holds the Andrew ID of each row.
+     */
+    private final StringColumn ids;
+
+    /**
+     * This holds the phone number of each row.
+     */
+    private final StringColumn phones;
+
+    /**
+     * This holds the hash code of the Andrew ID of each row.
+     */
+    private int[] idHashes;
+
+    /**
+     * This is an open addressing hash table from Andrew ID to row. Each slot
+     * holds a row plus one, or 0 if it is empty.
+     */
+    private int[] idTable;
+
+    /**
+     * This holds the rows of each first name code, in the order they were
+     * added.
+     */
+    private IntList[] fNamePostings;
+
+    /**
+     * This holds the rows of each last name code, in the order they were
+     * added.
+     */
+    private IntList[] lNamePostings;
+
+    /**
+     * This holds the number of deleted rows in the postings of each first
+     * name code.
+     */
+    private int[] fNameDead;
+
+    /**
+     * This holds the number of deleted rows in the postings of each last
+     * name code.
+     */
+    private int[] lNameDead;
+
+    /**
+     * This holds, for each deleted row, the number of posting lists it has
+     * not yet been purged from.
+     */
+    private byte[] pending;
+
+    /**
+     * This holds the deleted rows that are in no posting list, which adds
+     * reuse before new rows.
+     */
+    private IntList free;
+
+    /**
+     * This represents the number of rows, including deleted and free ones.
+     */
+    private int rows;
+
+    /**
+     * This represents the number of students in the directory.
+     */
+    private int size;
+
+    /**
+     * This is the no arg constructor for the ColumnarDirectory class which
+     * initializes the columns and indexes.
+     */
+    public ColumnarDirectory() {
+        firstNames = new NameDictionary();
+        lastNames = new NameDictionary();
+        firstCodes = new int[INITIAL_CAPACITY];
+        lastCodes = new int[INITIAL_CAPACITY];
+        ids = new StringColumn();
+        phones = new StringColumn();
+        idHashes = new int[INITIAL_CAPACITY];
+        idTable = new int[2 * INITIAL_CAPACITY];
+        fNamePostings = new IntList[INITIAL_CAPACITY];
+        lNamePostings = new IntList[INITIAL_CAPACITY];
+        fNameDead = new int[INITIAL_CAPACITY];
+        lNameDead = new int[INITIAL_CAPACITY];
+        pending = new byte[INITIAL_CAPACITY];
+        free = new IntList();
+    }
+
+    /**
+     * Given a Student object, this will add the new student to the columns
+     * if the given student's Andrew ID is not present in the directory.
+     * @param s This represents the student to add to the directory.
+     * @throws IllegalArgumentException if the student's Andrew ID is already
+     * present, or if student first name or last name are null.
+     */
+    @Override
+    public void addStudent(Student s) throws IllegalArgumentException {
+        checkStudent(s);
+        if (find(s.getAndrewId()) >= 0) {
+            throw new IllegalArgumentException("Student already in directory");
+        }
+        ensureCapacity(rows + 1);
+        insert(s);
+    }
+
+    /**
+     * Given a collection of students, this will add all of them to the
+     * columns. The whole collection is validated before the directory is
+     * changed, so either every student is added or none is.
+     * @param students This represents the students to add to the directory.
+     * @throws IllegalArgumentException if the collection or any student in it
+     * is null, if a student is missing data, or if an Andrew ID is already
+     * present or appears more than once in the collection.
+     */
+    @Override
+    public void addAll(Collection<Student> students) throws
+        IllegalArgumentException {
+        if (students == null) {
+            throw new IllegalArgumentException("Students must be non-null");
+        }
+        Set<String> seen = new HashSet<>();
+        for (Student s : students) {
+            checkStudent(s);
+            if (find(s.getAndrewId()) >= 0 || !seen.add(s.getAndrewId())) {
+                throw new IllegalArgumentException(
+                    "Student already in directory: " + s.getAndrewId());
+            }
+        }
+        ensureCapacity(rows + students.size());
+        for (Student s : students) {
+            insert(s);
+        }
+    }
+
+    /**
+     * Given the Andrew Id string value, this method removes the corresponding
+     * student from the directory. The row is left as a tombstone in its
+     * postings, and its bytes stay in the columns until the next compaction.
+     * @param andrewId This represents the Andrew Id of the student to remove
+     * @throws IllegalArgumentException if there is no Andrew Id match.
+     */
+    @Override
+    public void deleteStudent(String andrewId) throws IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew id must be non-null");
+        }
+        int slot = findSlot(andrewId);
+        if (idTable[slot] == 0) {
+            throw new IllegalArgumentException("Andrew id specified not found");
+        }
+        int row = idTable[slot] - 1;
+        removeSlot(slot);
+        int first = firstCodes[row];
+        int last = lastCodes[row];
+        firstCodes[row] = DELETED;
+        ids.clear(row);
+        phones.clear(row);
+        pending[row] = 2;
+        fNameDead[first]++;
+        lNameDead[last]++;
+        size--;
+        purgeIfSparse(fNamePostings[first], fNameDead, first);
+        purgeIfSparse(lNamePostings[last], lNameDead, last);
+        int unused = ids.unused() + phones.unused();
+        if (unused > MIN_COMPACT_BYTES
+            && 2 * unused > ids.used() + phones.used()) {
+            compact();
+        }
+    }
+
+    /**
+     * Moves the students to the first rows, keeping the order of their
+     * rows and of each posting list, and drops the tombstones, the free
+     * list and the bytes of deleted rows. Deletes call it on their own once
+     * the unused bytes outweigh the ones in use.
+     */
+    public void compact() {
+        int[] moved = new int[rows];
+        int live = 0;
+        for (int row = 0; row < rows; row++) {
+            moved[row] = firstCodes[row] == DELETED ? DELETED : live++;
+        }
+        int[] order = new int[live];
+        for (int row = 0; row < rows; row++) {
+            if (moved[row] != DELETED) {
+                order[moved[row]] = row;
+            }
+        }
+        int capacity = Math.max(INITIAL_CAPACITY, live);
+        int[] first = new int[capacity];
+        int[] last = new int[capacity];
+        int[] hashes = new int[capacity];
+        for (int row = 0; row < live; row++) {
+            first[row] = firstCodes[order[row]];
+            last[row] = lastCodes[order[row]];
+            hashes[row] = idHashes[order[row]];
+        }
+        firstCodes = first;
+        lastCodes = last;
+        idHashes = hashes;
+        ids.compact(order);
+        phones.compact(order);
+        renumber(fNamePostings, fNameDead, moved);
+        renumber(lNamePostings, lNameDead, moved);
+        pending = new byte[capacity];
+        free = new IntList();
+        rows = live;
+        idTable = new int[tableLength(capacity)];
+        for (int row = 0; row < live; row++) {
+            idTable[emptySlot(idHashes[row])] = row + 1;
+        }
+    }
+
+    /**
+     * Given the Andrew Id string value, this method returns the Student with
+     * the matching id in the directory.
+     * @param andewId This represents a student's andrew id.
+     * @return This is the student with the andrew id searched.
+     * @throws IllegalArgumentException if the specified id is null.
+     */
+    @Override
+    public Student searchByAndrewId(String andewId) throws
+        IllegalArgumentException {
+        if (andewId == null) {
+            throw new IllegalArgumentException("Andrew Id must be non-null");
+        }
+        int row = find(andewId);
+        return row < 0 ? null : studentAt(row);
+    }
+
+    /**
+     * Given the first name string value, this method should return a list
+     * containing all students that match the first name.
+     * @param firstName This is the first name to match in the directory search.
+     * @return A read-only list containing all students with the given first
+     * name, or an empty list if there is no match.
+     * @throws IllegalArgumentException if the specified first name is null.
+     */
+    @Override
+    public List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        int code = firstNames.lookup(firstName);
+        return code < 0 || fNamePostings[code] == null
+            ? Collections.emptyList()
+            : studentsAt(fNamePostings[code], fNameDead[code]);
+    }
+
+    /**
+     * Given the last name string value, this method should return a list
+     * containing all students that match the last name.
+     * @param lastName This is the last name to match in the directory search.
+     * @return A read-only list containing all students with the given last
+     * name, or an empty list if there is no match.
+     * @throws IllegalArgumentException if the specified last name is null.
+     */
+    @Override
+    public List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        int code = lastNames.lookup(lastName);
+        return code < 0 || lNamePostings[code] == null
+            ? Collections.emptyList()
+            : studentsAt(lNamePostings[code], lNameDead[code]);
+    }
+
+    /**
+     * This represents the size of the directory.
+     * @return The size of the directory.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Checks that the given student can be added to a directory.
+     * @param s This represents the student to check.
+     * @throws IllegalArgumentException if the student is null or if its first
+     * name, last name or Andrew ID is null.
+     */
+    private static void checkStudent(Student s) throws
+        IllegalArgumentException {
+        if (s == null) {
+            throw new IllegalArgumentException("Student must be non-null");
+        }
+        if (s.getFirstName() == null || s.getLastName() == null
+            || s.getAndrewId() == null) {
+            throw new IllegalArgumentException("Missing student data");
+        }
+    }
+
+    /**
+     * Puts the student in a free row, or a new one if none is free, and
+     * indexes it. The caller must have made room for the row and checked
+     * that its Andrew ID is absent.
+     * @param s This represents the student to add.
+     */
+    private void insert(Student s) {
+        int row = free.size() > 0 ? free.removeLast() : rows++;
+        int first = firstNames.encode(s.getFirstName());
+        int last = lastNames.encode(s.getLastName());
+        firstCodes[row] = first;
+        lastCodes[row] = last;
+        ids.set(row, s.getAndrewId());
+        phones.set(row, s.getPhoneNumber());
+        idHashes[row] = s.getAndrewId().hashCode();
+        idTable[findSlot(s.getAndrewId())] = row + 1;
+        fNamePostings = postings(fNamePostings, first);
+        fNamePostings[first].add(row);
+        fNameDead = counts(fNameDead, fNamePostings.length);
+        lNamePostings = postings(lNamePostings, last);
+        lNamePostings[last].add(row);
+        lNameDead = counts(lNameDead, lNamePostings.length);
+        size++;
+    }
+
+    /**
+     * Drops the deleted rows from a posting list once they make up half of
+     * it, and frees each row that is then in no posting list.
+     * @param postings This is the posting list of a name code.
+     * @param dead This holds the number of deleted rows in the postings of
+     * each code.
+     * @param code This is the name code.
+     */
+    private void purgeIfSparse(IntList postings, int[] dead, int code) {
+        if (2 * dead[code] < postings.size()) {
+            return;
+        }
+        int kept = 0;
+        for (int i = 0; i < postings.size(); i++) {
+            int row = postings.get(i);
+            if (firstCodes[row] != DELETED) {
+                postings.set(kept++, row);
+            } else if (--pending[row] == 0) {
+                free.add(row);
+            }
+        }
+        postings.truncate(kept);
+        dead[code] = 0;
+    }
+
+    /**
+     * Renumbers the rows of every posting list after a compaction, dropping
+     * the deleted ones, and drops the lists left empty.
+     * @param table This holds the posting list of each name code.
+     * @param dead This holds the number of deleted rows in the postings of
+     * each code, which are all reset to 0.
+     * @param moved This holds the new row of each old row, or DELETED.
+     */
+    private static void renumber(IntList[] table, int[] dead, int[] moved) {
+        for (int code = 0; code < table.length; code++) {
+            IntList postings = table[code];
+            if (postings == null) {
+                continue;
+            }
+            int kept = 0;
+            for (int i = 0; i < postings.size(); i++) {
+                int row = moved[postings.get(i)];
+                if (row != DELETED) {
+                    postings.set(kept++, row);
+                }
+            }
+            postings.truncate(kept);
+            table[code] = kept == 0 ? null : postings;
+            dead[code] = 0;
+        }
+    }
+
+    /**
+     * Returns the given counts with room for the given number of codes.
+     * @param counts This holds a count for each name code.
+     * @param length This is the number of codes needed.
+     * @return The counts, grown if needed.
+     */
+    private static int[] counts(int[] counts, int length) {
+        return counts.length < length ? Arrays.copyOf(counts, length)
+            : counts;
+    }
+
+    /**
+     * Returns the given posting table with a list for the given code.
+     * @param table This holds the posting list of each name code.
+     * @param code This is the name code that needs a list.
+     * @return The table, grown if needed.
+     */
+    private static IntList[] postings(IntList[] table, int code) {
+        IntList[] result = table;
+        if (code >= result.length) {
+            result = Arrays.copyOf(result, Math.max(code + 1,
+                2 * result.length));
+        }
+        if (result[code] == null) {
+            result[code] = new IntList();
+        }
+        return result;
+    }
+
+    /**
+     * Grows the columns and the hash table to hold the given number of rows.
+     * @param capacity This is the number of rows needed.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > firstCodes.length) {
+            int length = Math.max(capacity,
+                firstCodes.length + (firstCodes.length >> 1));
+            firstCodes = Arrays.copyOf(firstCodes, length);
+            lastCodes = Arrays.copyOf(lastCodes, length);
+            idHashes = Arrays.copyOf(idHashes, length);
+            pending = Arrays.copyOf(pending, length);
+        }
+        if (2 * capacity > idTable.length) {
+            int[] old = idTable;
+            idTable = new int[tableLength(capacity)];
+            for (int entry : old) {
+                if (entry != 0) {
+                    idTable[emptySlot(idHashes[entry - 1])] = entry;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the length of a hash table with room for the given number of
+     * rows: the smallest power of two that is at least twice the rows.
+     * @param capacity This is the number of rows.
+     * @return The length of the table.
+     */
+    private static int tableLength(int capacity) {
+        int length = 2 * INITIAL_CAPACITY;
+        while (2 * capacity > length) {
+            length *= 2;
+        }
+        return length;
+    }
+
+    /**
+     * Returns the row of the given Andrew ID.
+     * @param andrewId This represents the Andrew ID.
+     * @return The row, or -1 if the Andrew ID is not in the directory.
+     */
+    private int find(String andrewId) {
+        return idTable[findSlot(andrewId)] - 1;
+    }
+
+    /**
+     * Returns the slot of the hash table holding the given Andrew ID, or the
+     * empty slot where it would be added.
+     * @param andrewId This represents the Andrew ID.
+     * @return The index of the slot.
+     */
+    private int findSlot(String andrewId) {
+        int hash = andrewId.hashCode();
+        byte[] key = andrewId.getBytes(StandardCharsets.UTF_8);
+        int mask = idTable.length - 1;
+        int slot = spread(hash) & mask;
+        while (idTable[slot] != 0) {
+            int row = idTable[slot] - 1;
+            if (idHashes[row] == hash && ids.matches(row, key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the first empty slot for the given hash.
+     * @param hash This is the hash code of an Andrew ID.
+     * @return The index of the slot.
+     */
+    private int emptySlot(int hash) {
+        int mask = idTable.length - 1;
+        int slot = spread(hash) & mask;
+        while (idTable[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Empties a slot of the hash table, moving back the entries after it
+     * that would no longer be found.
+     * @param slot This is the index of the slot to empty.
+     */
+    private void removeSlot(int slot) {
+        int mask = idTable.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (idTable[next] != 0) {
+            int home = spread(idHashes[idTable[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                idTable[hole] = idTable[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        idTable[hole] = 0;
+    }
+
+    /**
+     * Mixes the bits of a hash code so that similar IDs spread out over the
+     * hash table.
+     * @param hash This is the hash code.
+     * @return The mixed hash code.
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Creates a Student object for the given row.
+     * @param row This is the row of the student.
+     * @return A new Student holding the row's data.
+     */
+    private Student studentAt(int row) {
+        return new Student.Builder(ids.get(row))
+            .firstName(firstNames.decode(firstCodes[row]))
+            .lastName(lastNames.decode(lastCodes[row]))
+            .phoneNumber(phones.get(row)).build();
+    }
+
+    /**
+     * Creates Student objects for the given rows, skipping deleted ones.
+     * @param postings This holds the rows.
+     * @param dead This represents the number of deleted rows among them.
+     * @return A read-only list of new Students, one per row still in use.
+     */
+    private List<Student> studentsAt(IntList postings, int dead) {
+        List<Student> result = new ArrayList<>(postings.size() - dead);
+        for (int i = 0; i < postings.size(); i++) {
+            int row = postings.get(i);
+            if (firstCodes[row] != DELETED) {
+                result.add(studentAt(row));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * StringColumn - A column of strings stored as UTF-8 bytes back to back
+     * in one array, with the offset and length of each row's bytes. A row
+     * given a new value gets new bytes at the end; the old ones are unused
+     * until the column is compacted.
+     */
+    private static final class StringColumn {
+
+        /**
+         * Constant that represents the length of a null value.
+         */
+        private static final int NULL_LENGTH = -1;
+
+        /**
+         * This holds the bytes of all the rows.
+         */
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+        /**
+         * This represents the number of bytes in use, including unused ones.
+         */
+        private int used;
+
+        /**
+         * This represents the number of bytes of cleared rows.
+         */
+        private int unused;
+
+        /**
+         * This holds the offset of each row's bytes.
+         */
+        private int[] starts = new int[INITIAL_CAPACITY];
+
+        /**
+         * This holds the length of each row's bytes, or NULL_LENGTH.
+         */
+        private int[] lengths = new int[INITIAL_CAPACITY];
+
+        /**
+         * Sets the value of a row, which is new or has been cleared.
+         * @param row This is the row.
+         * @param value This is the value of the row, which may be null.
+         */
+        void set(int row, String value) {
+            byte[] data = value == null ? new byte[0]
+                : value.getBytes(StandardCharsets.UTF_8);
+            if (used + data.length > bytes.length) {
+                long length = Math.max((long) used + data.length,
+                    (long) bytes.length + (bytes.length >> 1));
+                bytes = Arrays.copyOf(bytes,
+                    (int) Math.min(length, Integer.MAX_VALUE - 8));
+            }
+            if (row >= starts.length) {
+                int length = Math.max(row + 1,
+                    starts.length + (starts.length >> 1));
+                starts = Arrays.copyOf(starts, length);
+                lengths = Arrays.copyOf(lengths, length);
+            }
+            System.arraycopy(data, 0, bytes, used, data.length);
+            starts[row] = used;
+            lengths[row] = value == null ? NULL_LENGTH : data.length;
+            used += data.length;
+        }
+
+        /**
+         * Clears the value of a row, leaving its bytes unused.
+         * @param row This is the row.
+         */
+        void clear(int row) {
+            if (lengths[row] > 0) {
+                unused += lengths[row];
+            }
+            lengths[row] = NULL_LENGTH;
+        }
+
+        /**
+         * Returns the value of a row.
+         * @param row This is the row.
+         * @return A new String holding the row's value, or null.
+         */
+        String get(int row) {
+            if (lengths[row] == NULL_LENGTH) {
+                return null;
+            }
+            return new String(bytes, starts[row], lengths[row],
+                StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Checks whether a row holds the given bytes.
+         * @param row This is the row.
+         * @param key This holds the UTF-8 bytes to compare with.
+         * @return true if the row's value has exactly the given bytes.
+         */
+        boolean matches(int row, byte[] key) {
+            if (lengths[row] != key.length) {
+                return false;
+            }
+            int start = starts[row];
+            for (int i = 0; i < key.length; i++) {
+                if (bytes[start + i] != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * This is the getter for the number of bytes in the column.
+         * @return This gives the bytes in use, including unused ones.
+         */
+        int used() {
+            return used;
+        }
+
+        /**
+         * This is the getter for the number of bytes of cleared rows.
+         * @return This gives the unused bytes.
+         */
+        int unused() {
+            return unused;
+        }
+
+        /**
+         * Rewrites the column to hold only the given rows, in the given
+         * order, with their bytes back to back.
+         * @param order This holds the old row of each new row.
+         */
+        void compact(int[] order) {
+            int capacity = Math.max(INITIAL_CAPACITY, order.length);
+            byte[] packed = new byte[Math.max(INITIAL_CAPACITY,
+                used - unused)];
+            int[] newStarts = new int[capacity];
+            int[] newLengths = new int[capacity];
+            int at = 0;
+            for (int row = 0; row < order.length; row++) {
+                int length = lengths[order[row]];
+                newStarts[row] = at;
+                newLengths[row] = length;
+                if (length > 0) {
+                    System.arraycopy(bytes, starts[order[row]], packed, at,
+                        length);
+                    at += length;
+                }
+            }
+            bytes = packed;
+            used = at;
+            unused = 0;
+            starts = newStarts;
+            lengths = newLengths;
+        }
+    }
+}
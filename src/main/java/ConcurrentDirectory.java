@@ -0,0 +1,369 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * ConcurrentDirectory - A thread-safe student directory, a standalone
+ * backend for callers that only need to add, delete and search by Andrew
+ * ID, first name and last name. Searches do not take locks. Adds and
+ * deletes lock one of a fixed set of stripes chosen by Andrew ID, so
+ * writers of different students rarely wait on each other while the three
+ * indexes of a student are always changed together.
+ * <p>
+ * It offers only the core operations, those of StudentDirectory: no
+ * queries, completion, fuzzy, normalized or phone searches, listeners,
+ * persistence or metrics. DirectoryServer, DirectoryDriver and the loaders
+ * use Directory, shared by synchronizing on it, for those.
+ * @author Tony Padilla (apadilla)
+ */
+public final class ConcurrentDirectory implements StudentDirectory {
+
+    /**
+     * Constant that represents the number of write lock stripes. It must be
+     * a power of two.
+     */
+    private static final int STRIPES = 64;
+
+    /**
+     * This has a student's Andrew ID as the key and maps from Andrew ID
+     * to the student's entry.
+     */
+    private final Map<String, Entry> andrewIdMap;
+
+    /**
+     * This has a student's first name as key and maps from first name to
+     * the students with that name in the order they were added.
+     */
+    private final Map<String, ConcurrentSkipListMap<Long, Student>> fNameMap;
+
+    /**
+     * This has a student's last name as key and maps from last name to
+     * the students with that name in the order they were added.
+     */
+    private final Map<String, ConcurrentSkipListMap<Long, Student>> lNameMap;
+
+    /**
+     * This holds the write locks, indexed by a hash of the Andrew ID.
+     */
+    private final ReentrantLock[] stripes;
+
+    /**
+     * This gives out the sequence numbers that order the name lists.
+     */
+    private final AtomicLong sequence;
+
+    /**
+     * This represents the number of students in the directory.
+     */
+    private final AtomicInteger size;
+
+    /**
+     * This is the no arg constructor for the ConcurrentDirectory class which
+     * initializes the student directory Maps.
+     */
+    public ConcurrentDirectory() {
+        andrewIdMap = new ConcurrentHashMap<>();
+        fNameMap = new ConcurrentHashMap<>();
+        lNameMap = new ConcurrentHashMap<>();
+        stripes = new ReentrantLock[STRIPES];
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        sequence = new AtomicLong();
+        size = new AtomicInteger();
+    }
+
+    /**
+     * Given a Student object, this will add the new student to the three maps
+     * if the given student's Andrew ID is not present in the directory.
+     * @param s This represents the student to add to the directory.
+     * @throws IllegalArgumentException if the student's Andrew ID is already
+     * present, or if student first name or last name are null.
+     */
+    @Override
+    public void addStudent(Student s) throws IllegalArgumentException {
+        checkStudent(s);
+        ReentrantLock lock = stripeOf(s.getAndrewId());
+        lock.lock();
+        try {
+            if (andrewIdMap.containsKey(s.getAndrewId())) {
+                throw new IllegalArgumentException(
+                    "Student already in directory");
+            }
+            insert(s);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Given a collection of students, this will add all of them to the three
+     * maps. The stripes of all the students are locked while the collection
+     * is validated and added, so either every student is added or none is.
+     * @param students This represents the students to add to the directory.
+     * @throws IllegalArgumentException if the collection or any student in it
+     * is null, if a student is missing data, or if an Andrew ID is already
+     * present or appears more than once in the collection.
+     */
+    @Override
+    public void addAll(Collection<Student> students) throws
+        IllegalArgumentException {
+        if (students == null) {
+            throw new IllegalArgumentException("Students must be non-null");
+        }
+        Set<Integer> locked = new TreeSet<>();
+        for (Student s : students) {
+            checkStudent(s);
+            locked.add(stripeIndex(s.getAndrewId()));
+        }
+        for (int i : locked) {
+            stripes[i].lock();
+        }
+        try {
+            Set<String> ids = new HashSet<>();
+            for (Student s : students) {
+                String id = s.getAndrewId();
+                if (andrewIdMap.containsKey(id) || !ids.add(id)) {
+                    throw new IllegalArgumentException(
+                        "Student already in directory: " + id);
+                }
+            }
+            for (Student s : students) {
+                insert(s);
+            }
+        } finally {
+            for (int i : locked) {
+                stripes[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Given the Andrew Id string value, this method removes the corresponding
+     * student from all three directory maps.
+     * @param andrewId This represents the Andrew Id of the student to remove
+     * @throws IllegalArgumentException if there is no Andrew Id match.
+     */
+    @Override
+    public void deleteStudent(String andrewId) throws IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew id must be non-null");
+        }
+        ReentrantLock lock = stripeOf(andrewId);
+        lock.lock();
+        try {
+            Entry entry = andrewIdMap.remove(andrewId);
+            if (entry == null) {
+                throw new IllegalArgumentException(
+                    "Andrew id specified not found");
+            }
+            unlink(fNameMap, entry.student.getFirstName(), entry.seq);
+            unlink(lNameMap, entry.student.getLastName(), entry.seq);
+            size.decrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Given the Andrew Id string value, this method returns the Student with
+     * the matching id in the directory.
+     * @param andewId This represents a student's andrew id.
+     * @return This is the student with the andrew id searched.
+     * @throws IllegalArgumentException if the specified id is null.
+     */
+    @Override
+    public Student searchByAndrewId(String andewId) throws
+        IllegalArgumentException {
+        if (andewId == null) {
+            throw new IllegalArgumentException("Andrew Id must be non-null");
+        }
+        Entry entry = andrewIdMap.get(andewId);
+        if (entry == null) {
+            return null;
+        } else {
+            return entry.student;
+        }
+    }
+
+    /**
+     * Given the first name string value, this method should return a list
+     * containing all students that match the first name.
+     * @param firstName This is the first name to match in the directory search.
+     * @return A read-only snapshot of all students with the given first
+     * name, or an empty list if there is no match.
+     * @throws IllegalArgumentException if the specified first name is null.
+     */
+    @Override
+    public List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        return snapshotOf(fNameMap.get(firstName));
+    }
+
+    /**
+     * Given the last name string value, this method should return a list
+     * containing all students that match the last name.
+     * @param lastName This is the last name to match in the directory search.
+     * @return A read-only snapshot of all students with the given last
+     * name, or an empty list if there is no match.
+     * @throws IllegalArgumentException if the specified last name is null.
+     */
+    @Override
+    public List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        return snapshotOf(lNameMap.get(lastName));
+    }
+
+    /**
+     * This represents the size of the directory.
+     * @return The size of the directory.
+     */
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * Checks that the given student can be added to a directory.
+     * @param s This represents the student to check.
+     * @throws IllegalArgumentException if the student is null or if its first
+     * name, last name or Andrew ID is null.
+     */
+    private static void checkStudent(Student s) throws
+        IllegalArgumentException {
+        if (s == null) {
+            throw new IllegalArgumentException("Student must be non-null");
+        }
+        if (s.getFirstName() == null || s.getLastName() == null
+            || s.getAndrewId() == null) {
+            throw new IllegalArgumentException("Missing student data");
+        }
+    }
+
+    /**
+     * Adds the student to the three maps. The caller must hold the
+     * stripe of the student's Andrew ID and have checked that it is absent.
+     * The student is added to the name maps first so that a student found by
+     * Andrew ID can always be found by name as well.
+     * @param s This represents the student to add.
+     */
+    private void insert(Student s) {
+        Entry entry = new Entry(s, sequence.getAndIncrement());
+        link(fNameMap, s.getFirstName(), entry);
+        link(lNameMap, s.getLastName(), entry);
+        andrewIdMap.put(s.getAndrewId(), entry);
+        size.incrementAndGet();
+    }
+
+    /**
+     * Appends the entry's student to the list of the given name, creating
+     * the list if needed. This is atomic with respect to unlink.
+     * @param names This is the name map to change.
+     * @param name This is the name to add the student under.
+     * @param entry This is the entry of the student.
+     */
+    private static void link(
+        Map<String, ConcurrentSkipListMap<Long, Student>> names, String name,
+        Entry entry) {
+        names.compute(name, (k, students) -> {
+            if (students == null) {
+                students = new ConcurrentSkipListMap<>();
+            }
+            students.put(entry.seq, entry.student);
+            return students;
+        });
+    }
+
+    /**
+     * Removes a student from the list of the given name, removing the list
+     * once it is empty. This is atomic with respect to link.
+     * @param names This is the name map to change.
+     * @param name This is the name the student was added under.
+     * @param seq This is the sequence number of the student's entry.
+     */
+    private static void unlink(
+        Map<String, ConcurrentSkipListMap<Long, Student>> names, String name,
+        long seq) {
+        names.computeIfPresent(name, (k, students) -> {
+            students.remove(seq);
+            return students.isEmpty() ? null : students;
+        });
+    }
+
+    /**
+     * Takes a snapshot of the students of a name list. The students are
+     * immutable, so only the references are copied.
+     * @param students This is the name list, or null if there is none.
+     * @return A read-only list of the students, in the order they were added.
+     */
+    private static List<Student> snapshotOf(
+        ConcurrentSkipListMap<Long, Student> students) {
+        if (students == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(
+            new ArrayList<>(students.values()));
+    }
+
+    /**
+     * Returns the index of the stripe guarding the given Andrew ID.
+     * @param andrewId This represents the Andrew ID.
+     * @return The index of the stripe.
+     */
+    private static int stripeIndex(String andrewId) {
+        int h = andrewId.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    /**
+     * Returns the lock guarding the given Andrew ID.
+     * @param andrewId This represents the Andrew ID.
+     * @return The stripe lock.
+     */
+    private ReentrantLock stripeOf(String andrewId) {
+        return stripes[stripeIndex(andrewId)];
+    }
+
+    /**
+     * Entry - A student in the directory together with the sequence number
+     * that orders it in its name lists.
+     */
+    private static final class Entry {
+
+        /**
+         * This is the student.
+         */
+        private final Student student;
+
+        /**
+         * This is the sequence number of the student.
+         */
+        private final long seq;
+
+        /**
+         * This is the two argument constructor for the Entry class.
+         * @param student This is the student.
+         * @param seq This is the sequence number of the student.
+         */
+        Entry(Student student, long seq) {
+            this.student = student;
+            this.seq = seq;
+        }
+    }
+}
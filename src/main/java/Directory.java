@@ -1,56 +1,158 @@
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
 /**
  * Directory - A class to model a collection of students using Maps i.e. a
  * student directory.
  * @author Tony Padilla (apadilla)
  */
-public final class Directory {
+public final class Directory implements StudentDirectory {
+
+    /**
+     * This is the load factor the directory maps are created with.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
 
     /**
      * This has a student's Andrew ID as the key and maps from Andrew ID
-     * to Student object.
+     * to Student object, in the order the students were added.
      */
     private Map<String, Student> andrewIdMap;
 
     /**
      * This has a student's first name as key and maps from first name to
-     * a list of Student objects.
+     * a bucket of Student objects.
      */
-    private Map<String, List<Student>> fNameMap;
+    private Map<String, NameBucket> fNameMap;
 
     /**
      * This has a student's last name as key and maps from last name to
-     * a list of Student objects.
+     * a bucket of Student objects.
+     */
+    private Map<String, NameBucket> lNameMap;
+
+    /**
+     * This holds the keys of fNameMap in sorted order, for prefix searches.
+     */
+    private NavigableSet<String> fNameKeys;
+
+    /**
+     * This holds the keys of lNameMap in sorted order, for prefix searches.
+     */
+    private NavigableSet<String> lNameKeys;
+
+    /**
+     * This indexes the keys of fNameMap by bigram, for fuzzy searches.
+     */
+    private NGramIndex fNameGrams;
+
+    /**
+     * This indexes the keys of lNameMap by bigram, for fuzzy searches.
      */
-    private Map<String, List<Student>> lNameMap;
+    private NGramIndex lNameGrams;
+
+    /**
+     * This groups the students by normalized first name, for searches that
+     * ignore case and accents.
+     */
+    private NormalizedNameIndex fNameNormalized;
+
+    /**
+     * This groups the students by normalized last name, for searches that
+     * ignore case and accents.
+     */
+    private NormalizedNameIndex lNameNormalized;
+
+    /**
+     * This has a student's Andrew ID as the key and maps to the student, in
+     * sorted order, for Andrew ID prefix queries.
+     */
+    private NavigableMap<String, Student> idIndex;
+
+    /**
+     * This groups the students by the digits of their phone number, for
+     * reverse lookups and phone prefix queries. Students without digits in
+     * their phone number are left out.
+     */
+    private PhoneIndex phoneIndex;
 
     /**
      * This represents the number of students in the directory.
      */
     private int size;
 
+    /**
+     * This holds the listeners told about every change to the directory.
+     */
+    private final List<MutationListener> listeners;
+
+    /**
+     * This is told about every change after the listeners, or is null.
+     */
+    private MutationListener journal;
+
+    /**
+     * This holds the listeners told about every change after it is applied.
+     */
+    private final List<MutationListener> appliedListeners;
+
+    /**
+     * This holds the latencies and hit counts of the directory operations.
+     */
+    private final DirectoryMetrics metrics;
+
     /**
      * This is the no arg constructor for the Directory class which initializes
      * the student directory Maps.
      */
     public Directory() {
-        andrewIdMap = new HashMap<>();
+        andrewIdMap = new LinkedHashMap<>();
         fNameMap = new HashMap<>();
         lNameMap = new HashMap<>();
+        fNameKeys = new TreeSet<>();
+        lNameKeys = new TreeSet<>();
+        fNameGrams = new NGramIndex();
+        lNameGrams = new NGramIndex();
+        fNameNormalized = new NormalizedNameIndex();
+        lNameNormalized = new NormalizedNameIndex();
+        idIndex = new TreeMap<>();
+        phoneIndex = new PhoneIndex();
         size = 0;
+        listeners = new ArrayList<>();
+        appliedListeners = new ArrayList<>();
+        metrics = new DirectoryMetrics(this);
     }
 
     /**
      * Given a Student object, this will add the new student to the three maps
      * if the given student's Andrew ID is not present in the directory.
+     * Students are immutable, so the given object is stored as is, unless
+     * its names are not the shared instances of NameDictionary; then a copy
+     * holding the shared names is stored instead.
      * @param s This represents the student to add to the directory.
      * @throws IllegalArgumentException if the student's Andrew ID is already
      * present, or if student first name or last name are null.
      */
+    @Override
     public void addStudent(Student s) throws IllegalArgumentException {
+        long start = metrics.start(DirectoryMetrics.Operation.ADD_STUDENT);
         if (s == null) {
             throw new IllegalArgumentException("Student must be non-null");
         }
@@ -63,36 +165,324 @@ public final class Directory {
         if (andrewIdMap.containsKey(id)) {
             throw new IllegalArgumentException("Student already in directory");
         }
-        Student copy = Student.duplicate(s);
-        andrewIdMap.put(id, copy);
+        s = interned(s);
+        for (MutationListener listener : listeners) {
+            listener.onAdd(s);
+        }
+        if (journal != null) {
+            journal.onAdd(s);
+        }
+        link(s);
+        for (MutationListener listener : appliedListeners) {
+            listener.onAdd(s);
+        }
+        metrics.record(DirectoryMetrics.Operation.ADD_STUDENT, start);
+    }
+
+    /**
+     * Returns the student with its names interned in the shared
+     * NameDictionary, so that every student the directory stores shares one
+     * String per name with the others and with the loaders' students,
+     * however it was built.
+     * @param s This represents the student to add, whose names are
+     * non-null.
+     * @return The student itself if its names are the shared instances, or
+     * else a copy holding them.
+     */
+    private static Student interned(Student s) {
+        NameDictionary names = NameDictionary.shared();
+        String fname = names.intern(s.getFirstName());
+        String lname = names.intern(s.getLastName());
+        if (fname == s.getFirstName() && lname == s.getLastName()) {
+            return s;
+        }
+        return s.toBuilder().firstName(fname).lastName(lname).build();
+    }
+
+    /**
+     * Adds a validated student to the three maps.
+     * @param s This represents the student to add to the directory.
+     */
+    private void link(Student s) {
+        String fname = s.getFirstName();
+        String lname = s.getLastName();
+        andrewIdMap.put(s.getAndrewId(), s);
+        idIndex.put(s.getAndrewId(), s);
+        phoneIndex.add(s);
+        fNameNormalized.add(s, fname);
+        lNameNormalized.add(s, lname);
         if (!fNameMap.containsKey(fname)) {
-            List<Student> students = new ArrayList<>();
-            students.add(copy);
+            NameBucket students = new NameBucket();
+            students.add(s);
             fNameMap.put(fname, students);
+            fNameKeys.add(fname);
+            fNameGrams.add(fname);
         } else {
-            List<Student> students = fNameMap.get(fname);
-            students.add(copy);
-            fNameMap.replace(fname, students);
+            fNameMap.get(fname).add(s);
         }
         if (!lNameMap.containsKey(lname)) {
-            List<Student> students = new ArrayList<>();
-            students.add(copy);
+            NameBucket students = new NameBucket();
+            students.add(s);
             lNameMap.put(lname, students);
+            lNameKeys.add(lname);
+            lNameGrams.add(lname);
         } else {
-            List<Student> students = lNameMap.get(lname);
-            students.add(copy);
-            lNameMap.replace(lname, students);
+            lNameMap.get(lname).add(s);
         }
         size++;
     }
 
+    /**
+     * Given a collection of students, this will add all of them to the three
+     * maps in one step. The whole collection is validated before the
+     * directory is changed, so either every student is added or none is.
+     * The maps are sized up front and students sharing a name are appended
+     * to their name list together, which makes this much cheaper than
+     * calling addStudent once per student for large rosters. Names are
+     * interned as addStudent interns them.
+     * @param students This represents the students to add to the directory.
+     * @throws IllegalArgumentException if the collection or any student in it
+     * is null, if a student is missing data, or if an Andrew ID is already
+     * present or appears more than once in the collection.
+     */
+    @Override
+    public void addAll(Collection<Student> students) throws
+        IllegalArgumentException {
+        long start = metrics.start(DirectoryMetrics.Operation.ADD_ALL);
+        if (students == null) {
+            throw new IllegalArgumentException("Students must be non-null");
+        }
+        Set<String> ids = new HashSet<>(capacityFor(students.size()));
+        List<Student> added = new ArrayList<>(students.size());
+        Map<String, List<Student>> fNames = new HashMap<>();
+        Map<String, List<Student>> lNames = new HashMap<>();
+        for (Student s : students) {
+            if (s == null) {
+                throw new IllegalArgumentException("Student must be non-null");
+            }
+            String id = s.getAndrewId();
+            if (s.getFirstName() == null || s.getLastName() == null
+                || id == null) {
+                throw new IllegalArgumentException("Missing student data");
+            }
+            if (andrewIdMap.containsKey(id) || !ids.add(id)) {
+                throw new IllegalArgumentException(
+                    "Student already in directory: " + id);
+            }
+            Student kept = interned(s);
+            added.add(kept);
+            fNames.computeIfAbsent(kept.getFirstName(),
+                k -> new ArrayList<>()).add(kept);
+            lNames.computeIfAbsent(kept.getLastName(),
+                k -> new ArrayList<>()).add(kept);
+        }
+        students = added;
+        for (MutationListener listener : listeners) {
+            listener.onAddAll(students);
+        }
+        if (journal != null) {
+            journal.onAddAll(students);
+        }
+        reserve(students.size(), fNames.size(), lNames.size());
+        for (Student s : students) {
+            andrewIdMap.put(s.getAndrewId(), s);
+            idIndex.put(s.getAndrewId(), s);
+            phoneIndex.add(s);
+            fNameNormalized.add(s, s.getFirstName());
+            lNameNormalized.add(s, s.getLastName());
+        }
+        mergeNames(fNameMap, fNameKeys, fNameGrams, fNames);
+        mergeNames(lNameMap, lNameKeys, lNameGrams, lNames);
+        size += students.size();
+        for (MutationListener listener : appliedListeners) {
+            listener.onAddAll(students);
+        }
+        metrics.record(DirectoryMetrics.Operation.ADD_ALL, start);
+    }
+
+    /**
+     * Appends each list of students in the batch to the matching list of the
+     * given name map, creating the list if the name is new.
+     * @param names This is the name map of the directory.
+     * @param keys This holds the keys of the name map in sorted order.
+     * @param grams This indexes the keys of the name map by bigram.
+     * @param batch This maps from name to the students being added with it.
+     */
+    private static void mergeNames(Map<String, NameBucket> names,
+        NavigableSet<String> keys, NGramIndex grams,
+        Map<String, List<Student>> batch) {
+        for (Map.Entry<String, List<Student>> e : batch.entrySet()) {
+            NameBucket students = names.get(e.getKey());
+            if (students == null) {
+                students = new NameBucket();
+                names.put(e.getKey(), students);
+                keys.add(e.getKey());
+                grams.add(e.getKey());
+            }
+            students.addAll(e.getValue());
+        }
+    }
+
+    /**
+     * Makes room in the hashed indexes for students about to be added, so
+     * that each grows at most once, here, instead of step by step as the
+     * students are linked. The name counts are upper bounds on the names
+     * that are new to the directory; the normalized indexes are sized from
+     * them too, as a new normalized name is always a new name.
+     * @param adds This represents the number of students to be added.
+     * @param firstNames This represents the most first names they add.
+     * @param lastNames This represents the most last names they add.
+     */
+    private void reserve(int adds, int firstNames, int lastNames) {
+        andrewIdMap = presized(andrewIdMap, size + adds);
+        fNameMap = presized(fNameMap, fNameMap.size() + firstNames);
+        lNameMap = presized(lNameMap, lNameMap.size() + lastNames);
+        fNameNormalized.ensureCapacity(fNameNormalized.size() + firstNames);
+        lNameNormalized.ensureCapacity(lNameNormalized.size() + lastNames);
+        phoneIndex.ensureCapacity(adds);
+    }
+
+    /**
+     * Returns a map holding the same entries as the given one that can take
+     * the expected number of entries without rehashing. The given map is
+     * returned as is when it would have to grow less than twofold. A linked
+     * map stays a linked map, keeping its order.
+     * @param map This is the map to size.
+     * @param expected This is the number of entries the map should hold.
+     * @param <V> This is the type of the map values.
+     * @return A map with room for the expected number of entries.
+     */
+    private static <V> Map<String, V> presized(Map<String, V> map,
+        int expected) {
+        if (expected <= 2 * map.size()) {
+            return map;
+        }
+        Map<String, V> result;
+        if (map instanceof LinkedHashMap) {
+            result = new LinkedHashMap<>(capacityFor(expected));
+        } else {
+            result = new HashMap<>(capacityFor(expected));
+        }
+        result.putAll(map);
+        return result;
+    }
+
+    /**
+     * Returns the initial capacity a HashMap needs to hold the given number
+     * of entries without rehashing.
+     * @param expected This is the number of entries.
+     * @return The initial capacity to use.
+     */
+    private static int capacityFor(int expected) {
+        return (int) (expected / LOAD_FACTOR) + 1;
+    }
+
+    /**
+     * Given a list of adds and deletes, this will apply all of them in order
+     * in one step. Every operation is validated against the directory as the
+     * operations before it would leave it, before anything is changed, so
+     * a batch can delete a student and add a new one with the same Andrew
+     * ID. Either every operation is applied or none is. Instead of throwing
+     * on the first problem, the returned report holds the error of each
+     * rejected operation. Names are interned as addStudent interns them,
+     * and the indexes are sized for the adds before the first is linked.
+     * @param operations This holds the operations to apply.
+     * @return The outcome of the batch.
+     * @throws IllegalArgumentException if the list of operations is null.
+     */
+    public BatchReport applyBatch(List<BatchOperation> operations) throws
+        IllegalArgumentException {
+        long start = metrics.start(DirectoryMetrics.Operation.APPLY_BATCH);
+        if (operations == null) {
+            throw new IllegalArgumentException("Operations must be non-null");
+        }
+        BatchReport report = new BatchReport(operations.size());
+        List<BatchOperation> resolved = new ArrayList<>(operations.size());
+        Map<String, Student> touched =
+            new HashMap<>(capacityFor(operations.size()));
+        int adds = 0;
+        int firstNames = 0;
+        int lastNames = 0;
+        int index = 0;
+        for (BatchOperation op : operations) {
+            String error = null;
+            String id = op == null ? null : op.getAndrewId();
+            Student current = null;
+            if (id != null) {
+                current = touched.containsKey(id) ? touched.get(id)
+                    : andrewIdMap.get(id);
+            }
+            if (op == null) {
+                error = "Operation must be non-null";
+            } else if (op.isAdd()) {
+                Student s = op.getStudent();
+                if (s == null) {
+                    error = "Student must be non-null";
+                } else if (id == null || s.getFirstName() == null
+                    || s.getLastName() == null) {
+                    error = "Missing student data";
+                } else if (current != null) {
+                    error = "Student already in directory";
+                } else {
+                    Student kept = interned(s);
+                    touched.put(id, kept);
+                    resolved.add(kept == s ? op : BatchOperation.add(kept));
+                    adds++;
+                    if (!fNameMap.containsKey(kept.getFirstName())) {
+                        firstNames++;
+                    }
+                    if (!lNameMap.containsKey(kept.getLastName())) {
+                        lastNames++;
+                    }
+                }
+            } else if (id == null) {
+                error = "Andrew id must be non-null";
+            } else if (current == null) {
+                error = "Andrew id specified not found";
+            } else {
+                touched.put(id, null);
+                resolved.add(new BatchOperation(false, id, current));
+            }
+            if (error != null) {
+                report.addError(index, error);
+            }
+            index++;
+        }
+        if (!report.getErrors().isEmpty()) {
+            metrics.record(DirectoryMetrics.Operation.APPLY_BATCH, start);
+            return report;
+        }
+        for (MutationListener listener : listeners) {
+            listener.onBatch(resolved);
+        }
+        if (journal != null) {
+            journal.onBatch(resolved);
+        }
+        reserve(adds, firstNames, lastNames);
+        for (BatchOperation op : resolved) {
+            if (op.isAdd()) {
+                link(op.getStudent());
+            } else {
+                unlink(op.getStudent());
+            }
+        }
+        for (MutationListener listener : appliedListeners) {
+            listener.onBatch(resolved);
+        }
+        report.setApplied();
+        metrics.record(DirectoryMetrics.Operation.APPLY_BATCH, start);
+        return report;
+    }
+
     /**
      * Given the Andrew Id string value, this method removes the corresponding
      * student from all three directory maps.
      * @param andrewId This represents the Andrew Id of the student to remove
      * @throws IllegalArgumentException if there is no Andrew Id match.
      */
+    @Override
     public void deleteStudent(String andrewId) throws IllegalArgumentException {
+        long start = metrics.start(DirectoryMetrics.Operation.DELETE_STUDENT);
         if (andrewId == null) {
             throw new IllegalArgumentException("Andrew id must be non-null");
         }
@@ -100,20 +490,46 @@ public final class Directory {
             throw new IllegalArgumentException("Andrew id specified not found");
         }
         Student s = andrewIdMap.get(andrewId);
+        for (MutationListener listener : listeners) {
+            listener.onDelete(s);
+        }
+        if (journal != null) {
+            journal.onDelete(s);
+        }
+        unlink(s);
+        for (MutationListener listener : appliedListeners) {
+            listener.onDelete(s);
+        }
+        metrics.record(DirectoryMetrics.Operation.DELETE_STUDENT, start);
+    }
+
+    /**
+     * Removes a student in the directory from the three maps.
+     * @param s This represents the student to remove from the directory.
+     */
+    private void unlink(Student s) {
         String fname = s.getFirstName();
         String lname = s.getLastName();
-        andrewIdMap.remove(andrewId);
-        List<Student> fnameList = fNameMap.get(fname);
-        List<Student> lnameList = lNameMap.get(lname);
+        andrewIdMap.remove(s.getAndrewId());
+        idIndex.remove(s.getAndrewId());
+        phoneIndex.remove(s);
+        fNameNormalized.remove(s, fname);
+        lNameNormalized.remove(s, lname);
+        NameBucket fnameList = fNameMap.get(fname);
+        NameBucket lnameList = lNameMap.get(lname);
         if (fnameList.size() == 1) {
             fNameMap.remove(fname);
+            fNameKeys.remove(fname);
+            fNameGrams.remove(fname);
         } else {
-            fnameList.remove(s);
+            fnameList.removeStudent(s);
         }
         if (lnameList.size() == 1) {
             lNameMap.remove(lname);
+            lNameKeys.remove(lname);
+            lNameGrams.remove(lname);
         } else {
-            lnameList.remove(s);
+            lnameList.removeStudent(s);
         }
         size--;
     }
@@ -125,73 +541,843 @@ public final class Directory {
      * @return This is the student with the andrew id searched.
      * @throws IllegalArgumentException if the specified id is null.
      */
+    @Override
     public Student searchByAndrewId(String andewId) throws
         IllegalArgumentException {
         if (andewId == null) {
             throw new IllegalArgumentException("Andrew Id must be non-null");
         }
-        Student student = andrewIdMap.get(andewId);
-        if (student == null) {
-            return null;
-        } else {
-            return Student.duplicate(student);
+        long start =
+            metrics.start(DirectoryMetrics.Operation.SEARCH_BY_ANDREW_ID);
+        Student s = andrewIdMap.get(andewId);
+        metrics.record(DirectoryMetrics.Operation.SEARCH_BY_ANDREW_ID, start,
+            s != null);
+        return s;
+    }
+
+    /**
+     * Given the Andrew Id string value, this method tells whether a student
+     * with that id is in the directory. Unlike searchByAndrewId it is not
+     * counted in the search metrics, so it suits checks made before a
+     * change.
+     * @param andrewId This represents a student's andrew id.
+     * @return true if a student with the andrew id is in the directory.
+     * @throws IllegalArgumentException if the specified id is null.
+     */
+    public boolean contains(String andrewId) throws IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew Id must be non-null");
+        }
+        return andrewIdMap.containsKey(andrewId);
+    }
+
+    /**
+     * Returns the student with the given Andrew ID, like searchByAndrewId
+     * but without counting a search in the metrics, for loaders that read
+     * the current student before changing it.
+     * @param andrewId This represents a student's andrew id.
+     * @return The student, or null if the id is not in the directory.
+     * @throws IllegalArgumentException if the specified id is null.
+     */
+    Student studentWithId(String andrewId) throws IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew Id must be non-null");
         }
+        return andrewIdMap.get(andrewId);
     }
 
     /**
      * Given the first name string value, this method should return a list
      * containing all students that match the first name.
      * @param firstName This is the first name to match in the directory search.
-     * @return A list containing all students with the given first name, or
-     * an empty list if there is no match.
+     * @return A read-only list containing all students with the given first
+     * name, or an empty list if there is no match. The list is a view of the
+     * directory and reflects later changes to it.
      * @throws IllegalArgumentException if the specified first name is null.
      */
+    @Override
     public List<Student> searchByFirstName(String firstName) throws
         IllegalArgumentException {
         if (firstName == null) {
             throw new IllegalArgumentException("First Name must be non-null");
         }
-        if (fNameMap.containsKey(firstName)) {
-            List<Student> result = new ArrayList<>();
-            for (Student student : fNameMap.get(firstName)) {
-                result.add(Student.duplicate(student));
-            }
-            return result;
-        } else {
-            return new ArrayList<>();
+        long start =
+            metrics.start(DirectoryMetrics.Operation.SEARCH_BY_FIRST_NAME);
+        List<Student> students = fNameMap.get(firstName);
+        metrics.record(DirectoryMetrics.Operation.SEARCH_BY_FIRST_NAME, start,
+            students != null);
+        if (students == null) {
+            return Collections.emptyList();
         }
+        return Collections.unmodifiableList(students);
     }
 
     /**
      * Given the last name string value, this method should return a list
      * containing all students that match the last name.
      * @param lastName This is the last name to match in the directory search.
-     * @return A list containing all students with the given last name, or
-     * an empty list if there is no match.
+     * @return A read-only list containing all students with the given last
+     * name, or an empty list if there is no match. The list is a view of the
+     * directory and reflects later changes to it.
      * @throws IllegalArgumentException if the specified last name is null.
      */
+    @Override
     public List<Student> searchByLastName(String lastName) throws
         IllegalArgumentException {
         if (lastName == null) {
             throw new IllegalArgumentException("Last name must be non-null");
         }
-        if (lNameMap.containsKey(lastName)) {
-            List<Student> result = new ArrayList<>();
-            for (Student student : lNameMap.get(lastName)) {
-                result.add(Student.duplicate(student));
+        long start =
+            metrics.start(DirectoryMetrics.Operation.SEARCH_BY_LAST_NAME);
+        List<Student> students = lNameMap.get(lastName);
+        metrics.record(DirectoryMetrics.Operation.SEARCH_BY_LAST_NAME, start,
+            students != null);
+        if (students == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(students);
+    }
+
+    /**
+     * Given a first name, this method returns the students whose first name
+     * is the same once case, accents and compatibility forms are ignored,
+     * so that "tony" and "T&Oacute;NY" find "Tony". Names were normalized
+     * when their students were added, and a name of ASCII characters is
+     * looked up without normalizing it into a new String.
+     * @param firstName This is the first name to match in the directory search.
+     * @return A read-only list containing all matching students in the order
+     * they were added, or an empty list if there is no match. The list is a
+     * view of the directory and reflects later changes to it.
+     * @throws IllegalArgumentException if the specified first name is null.
+     */
+    public List<Student> searchByFirstNameNormalized(String firstName) throws
+        IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        long start = metrics.start(
+            DirectoryMetrics.Operation.SEARCH_BY_FIRST_NAME_NORMALIZED);
+        NameBucket students = fNameNormalized.get(firstName);
+        metrics.record(
+            DirectoryMetrics.Operation.SEARCH_BY_FIRST_NAME_NORMALIZED, start,
+            students != null);
+        if (students == null) {
+            return Collections.emptyList();
+        }
+        return students.readOnlyView();
+    }
+
+    /**
+     * Given a last name, this method returns the students whose last name
+     * is the same once case, accents and compatibility forms are ignored,
+     * so that "padilla" and "PAD&Iacute;LLA" find "Padilla". Names were
+     * normalized when their students were added, and a name of ASCII
+     * characters is looked up without normalizing it into a new String.
+     * @param lastName This is the last name to match in the directory search.
+     * @return A read-only list containing all matching students in the order
+     * they were added, or an empty list if there is no match. The list is a
+     * view of the directory and reflects later changes to it.
+     * @throws IllegalArgumentException if the specified last name is null.
+     */
+    public List<Student> searchByLastNameNormalized(String lastName) throws
+        IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        long start = metrics.start(
+            DirectoryMetrics.Operation.SEARCH_BY_LAST_NAME_NORMALIZED);
+        NameBucket students = lNameNormalized.get(lastName);
+        metrics.record(
+            DirectoryMetrics.Operation.SEARCH_BY_LAST_NAME_NORMALIZED, start,
+            students != null);
+        if (students == null) {
+            return Collections.emptyList();
+        }
+        return students.readOnlyView();
+    }
+
+    /**
+     * Given a phone number, this method returns the students with that
+     * number, for reverse lookups of a caller's number. Punctuation is
+     * ignored, and a North American number finds the students whose number
+     * is written with or without the country code 1, so "+1 (412) 268-3000"
+     * finds "412-268-3000". The number is parsed into a long without
+     * creating Strings, so lookups allocate nothing.
+     * @param phoneNumber This is the phone number to look up.
+     * @return A read-only list containing all students with the number, or
+     * an empty list if there is no match. The list may be a view of the
+     * directory that reflects later changes to it.
+     * @throws IllegalArgumentException if the phone number is null.
+     */
+    public List<Student> searchByPhoneNumber(String phoneNumber) throws
+        IllegalArgumentException {
+        if (phoneNumber == null) {
+            throw new IllegalArgumentException(
+                "Phone number must be non-null");
+        }
+        long start =
+            metrics.start(DirectoryMetrics.Operation.SEARCH_BY_PHONE_NUMBER);
+        List<Student> students = phoneIndex.get(phoneNumber);
+        metrics.record(DirectoryMetrics.Operation.SEARCH_BY_PHONE_NUMBER,
+            start, !students.isEmpty());
+        return students;
+    }
+
+    /**
+     * Given the start of a phone number, such as an area code, this method
+     * returns the students whose number starts with it. Punctuation is
+     * ignored. Only the students returned are visited.
+     * @param prefix This is the start of the phone numbers.
+     * @return A list of the matching students in the order of their phone
+     * numbers.
+     * @throws IllegalArgumentException if the prefix is null or has no
+     * digits.
+     */
+    public List<Student> searchByPhonePrefix(String prefix) throws
+        IllegalArgumentException {
+        String digits = Query.digitsOf(prefix);
+        if (digits.isEmpty()) {
+            throw new IllegalArgumentException("Phone prefix must have digits");
+        }
+        long start =
+            metrics.start(DirectoryMetrics.Operation.SEARCH_BY_PHONE_PREFIX);
+        List<Student> students = new ArrayList<>();
+        phoneIndex.withPrefix(digits).forEachRemaining(students::add);
+        metrics.record(DirectoryMetrics.Operation.SEARCH_BY_PHONE_PREFIX,
+            start, !students.isEmpty());
+        return students;
+    }
+
+    /**
+     * Given a prefix, this method returns the first names in the directory
+     * that start with it, in sorted order. Only the returned names are
+     * visited, so this is fast even for short prefixes of large directories.
+     * @param prefix This is the start of the first names to complete.
+     * @param limit This is the largest number of names to return.
+     * @return A list of at most limit first names starting with the prefix.
+     * @throws IllegalArgumentException if the prefix is null or the limit is
+     * negative.
+     */
+    public List<String> completeFirstName(String prefix, int limit) throws
+        IllegalArgumentException {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must be non-null");
+        }
+        long start =
+            metrics.start(DirectoryMetrics.Operation.COMPLETE_FIRST_NAME);
+        List<String> names = complete(fNameKeys, prefix, limit);
+        metrics.record(DirectoryMetrics.Operation.COMPLETE_FIRST_NAME, start,
+            !names.isEmpty());
+        return names;
+    }
+
+    /**
+     * Given a prefix, this method returns the last names in the directory
+     * that start with it, in sorted order. Only the returned names are
+     * visited, so this is fast even for short prefixes of large directories.
+     * @param prefix This is the start of the last names to complete.
+     * @param limit This is the largest number of names to return.
+     * @return A list of at most limit last names starting with the prefix.
+     * @throws IllegalArgumentException if the prefix is null or the limit is
+     * negative.
+     */
+    public List<String> completeLastName(String prefix, int limit) throws
+        IllegalArgumentException {
+        if (prefix == null) {
+            throw new IllegalArgumentException("Prefix must be non-null");
+        }
+        long start =
+            metrics.start(DirectoryMetrics.Operation.COMPLETE_LAST_NAME);
+        List<String> names = complete(lNameKeys, prefix, limit);
+        metrics.record(DirectoryMetrics.Operation.COMPLETE_LAST_NAME, start,
+            !names.isEmpty());
+        return names;
+    }
+
+    /**
+     * Returns the first keys of the given sorted set that start with the
+     * prefix.
+     * @param keys This holds the names in sorted order.
+     * @param prefix This is the start of the names to complete.
+     * @param limit This is the largest number of names to return.
+     * @return A list of at most limit names starting with the prefix.
+     * @throws IllegalArgumentException if the limit is negative.
+     */
+    private static List<String> complete(NavigableSet<String> keys,
+        String prefix, int limit) throws IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must be non-negative");
+        }
+        List<String> result = new ArrayList<>();
+        for (String name : keys.tailSet(prefix, true)) {
+            if (result.size() == limit || !name.startsWith(prefix)) {
+                break;
+            }
+            result.add(name);
+        }
+        return result;
+    }
+
+    /**
+     * Given a first name, this method returns the students whose first name
+     * is within the given edit distance of it, so that misspelled names still
+     * find their students.
+     * @param firstName This is the first name to match in the directory search.
+     * @param maxDistance This is the largest number of single character
+     * insertions, deletions and substitutions between a match and the name.
+     * @return A list of the matching students, closest names first, and
+     * names at the same distance in sorted order.
+     * @throws IllegalArgumentException if the first name is null or the
+     * distance is negative.
+     */
+    public List<Student> fuzzySearchByFirstName(String firstName,
+        int maxDistance) throws IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        long start =
+            metrics.start(DirectoryMetrics.Operation.FUZZY_FIRST_NAME);
+        List<Student> students =
+            fuzzySearch(fNameGrams, fNameMap, firstName, maxDistance);
+        metrics.record(DirectoryMetrics.Operation.FUZZY_FIRST_NAME,
+            start, !students.isEmpty());
+        return students;
+    }
+
+    /**
+     * Given a last name, this method returns the students whose last name
+     * is within the given edit distance of it, so that misspelled names still
+     * find their students.
+     * @param lastName This is the last name to match in the directory search.
+     * @param maxDistance This is the largest number of single character
+     * insertions, deletions and substitutions between a match and the name.
+     * @return A list of the matching students, closest names first, and
+     * names at the same distance in sorted order.
+     * @throws IllegalArgumentException if the last name is null or the
+     * distance is negative.
+     */
+    public List<Student> fuzzySearchByLastName(String lastName,
+        int maxDistance) throws IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        long start =
+            metrics.start(DirectoryMetrics.Operation.FUZZY_LAST_NAME);
+        List<Student> students =
+            fuzzySearch(lNameGrams, lNameMap, lastName, maxDistance);
+        metrics.record(DirectoryMetrics.Operation.FUZZY_LAST_NAME,
+            start, !students.isEmpty());
+        return students;
+    }
+
+    /**
+     * Returns the students of the names within the given distance of the
+     * query.
+     * @param grams This indexes the keys of the name map by bigram.
+     * @param names This is the name map of the directory.
+     * @param query This is the name to search for.
+     * @param maxDistance This is the largest distance of a match.
+     * @return A list of the matching students, closest names first.
+     * @throws IllegalArgumentException if the distance is negative.
+     */
+    private static List<Student> fuzzySearch(NGramIndex grams,
+        Map<String, NameBucket> names, String query, int maxDistance)
+        throws IllegalArgumentException {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Distance must be non-negative");
+        }
+        SortedMap<Integer, List<String>> byDistance = new TreeMap<>();
+        grams.search(query, maxDistance, (name, d) ->
+            byDistance.computeIfAbsent(d, k -> new ArrayList<>()).add(name));
+        List<Student> result = new ArrayList<>();
+        for (List<String> matches : byDistance.values()) {
+            Collections.sort(matches);
+            for (String name : matches) {
+                result.addAll(names.get(name));
             }
-            return result;
-        } else {
-            return new ArrayList<>();
         }
+        return result;
+    }
+
+    /**
+     * This method returns every student in the directory, in the order they
+     * were added. Adding the students to an empty directory in this order
+     * gives the same name search results as this directory.
+     * @return A read-only view of the students of the directory, which
+     * reflects later changes to it.
+     */
+    public Collection<Student> students() {
+        return Collections.unmodifiableCollection(andrewIdMap.values());
+    }
+
+    /**
+     * Registers a listener to be told about every change to the directory
+     * from now on.
+     * @param listener This is the listener to add.
+     * @throws IllegalArgumentException if the listener is null.
+     */
+    public void addMutationListener(MutationListener listener) throws
+        IllegalArgumentException {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must be non-null");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the listener told about every change after all the listeners,
+     * just before the change is applied, so that it only sees changes no
+     * listener refused. DirectoryStore logs changes through it.
+     * @param journal This is the journal, or null to remove it.
+     * @throws IllegalArgumentException if another journal is set.
+     */
+    void setJournal(MutationListener journal) throws
+        IllegalArgumentException {
+        if (journal != null && this.journal != null) {
+            throw new IllegalArgumentException(
+                "Directory already has a journal");
+        }
+        this.journal = journal;
+    }
+
+    /**
+     * Unregisters a listener added with addMutationListener.
+     * @param listener This is the listener to remove.
+     */
+    public void removeMutationListener(MutationListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener to be told about every change from now on once
+     * the change has been applied, after every listener and the journal
+     * have accepted it. Such a listener cannot prevent a change and should
+     * not throw, as the change stays applied if it does. ReplicationPrimary
+     * ships changes through it, so that it never ships a refused one.
+     * @param listener This is the listener to add.
+     * @throws IllegalArgumentException if the listener is null.
+     */
+    public void addAppliedListener(MutationListener listener) throws
+        IllegalArgumentException {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must be non-null");
+        }
+        appliedListeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener added with addAppliedListener.
+     * @param listener This is the listener to remove.
+     */
+    public void removeAppliedListener(MutationListener listener) {
+        appliedListeners.remove(listener);
+    }
+
+    /**
+     * Runs a query over the directory. The planner starts from the index
+     * that gives the fewest candidates among the query's conditions: the
+     * first or last name buckets, the sorted Andrew IDs, or the sorted phone
+     * numbers, and falls back to every student if the query has none of
+     * these. The candidates are then checked against the rest of the query.
+     * Prefix conditions are only counted up to the size of the best index
+     * found so far, so a broad prefix does not cost a full count. The query
+     * metrics time the planning; reading the cursor is not timed.
+     * @param query This is the query to run.
+     * @return A cursor over the matching students. Students come in the order
+     * of the index the query starts from: insertion order for names and for
+     * a full scan, and sorted order for Andrew ID and phone prefixes.
+     * @throws IllegalArgumentException if the query is null.
+     */
+    public QueryCursor query(Query query) throws IllegalArgumentException {
+        if (query == null) {
+            throw new IllegalArgumentException("Query must be non-null");
+        }
+        long start = metrics.start(DirectoryMetrics.Operation.QUERY);
+        Iterable<Student> best = andrewIdMap.values();
+        int bestCount = size;
+        String bestName = "all students";
+        if (query.getFirstName() != null) {
+            NameBucket bucket = fNameMap.get(query.getFirstName());
+            List<Student> students = bucket == null
+                ? Collections.emptyList() : bucket;
+            if (students.size() < bestCount) {
+                best = students;
+                bestCount = students.size();
+                bestName = "first=" + query.getFirstName();
+            }
+        }
+        if (query.getLastName() != null) {
+            NameBucket bucket = lNameMap.get(query.getLastName());
+            List<Student> students = bucket == null
+                ? Collections.emptyList() : bucket;
+            if (students.size() < bestCount) {
+                best = students;
+                bestCount = students.size();
+                bestName = "last=" + query.getLastName();
+            }
+        }
+        if (query.getAndrewIdPrefix() != null) {
+            NavigableMap<String, Student> ids =
+                withPrefix(idIndex, query.getAndrewIdPrefix());
+            int count = 0;
+            for (Iterator<String> it = ids.keySet().iterator();
+                it.hasNext() && count < bestCount; it.next()) {
+                count++;
+            }
+            if (count < bestCount) {
+                best = ids.values();
+                bestCount = count;
+                bestName = "id=" + query.getAndrewIdPrefix() + "*";
+            }
+        }
+        if (query.getPhonePrefix() != null) {
+            String prefix = query.getPhonePrefix();
+            int count = phoneIndex.count(prefix, bestCount);
+            if (count < bestCount) {
+                best = () -> phoneIndex.withPrefix(prefix);
+                bestCount = count;
+                bestName = "phone=" + query.getPhonePrefix() + "*";
+            }
+        }
+        String plan = String.format("index %s (%d candidates), check %s",
+            bestName, bestCount, query);
+        QueryCursor cursor = new QueryCursor(best.iterator(), query, plan);
+        metrics.record(DirectoryMetrics.Operation.QUERY, start);
+        return cursor;
+    }
+
+    /**
+     * Returns a view of the entries of the sorted map whose keys start with
+     * the given prefix.
+     * @param map This is the map to look in.
+     * @param prefix This is the start of the keys.
+     * @param <V> This is the type of the map values.
+     * @return A view of the entries with keys starting with the prefix.
+     */
+    private static <V> NavigableMap<String, V> withPrefix(
+        NavigableMap<String, V> map, String prefix) {
+        int end = prefix.length();
+        while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) {
+            end--;
+        }
+        if (end == 0) {
+            return map.tailMap(prefix, true);
+        }
+        String after = prefix.substring(0, end - 1)
+            + (char) (prefix.charAt(end - 1) + 1);
+        return map.subMap(prefix, true, after, false);
+    }
+
+    /**
+     * This returns the metrics of the directory: the latencies and hit
+     * counts of its operations and the sizes of its name buckets.
+     * @return The metrics of the directory.
+     */
+    public DirectoryMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * This returns the buckets of the first name map, for DirectoryMetrics.
+     * @return A view of the first name buckets.
+     */
+    Collection<NameBucket> firstNameBuckets() {
+        return fNameMap.values();
+    }
+
+    /**
+     * This returns the buckets of the last name map, for DirectoryMetrics.
+     * @return A view of the last name buckets.
+     */
+    Collection<NameBucket> lastNameBuckets() {
+        return lNameMap.values();
     }
 
     /**
      * This represents the size of the directory.
      * @return The size of the directory.
      */
+    @Override
     public int size() {
         return size;
     }
 
+    /**
+     * This returns the Andrew IDs of the directory in sorted order, for
+     * DirectoryImage.
+     * @return A view of the students in Andrew ID order.
+     */
+    Collection<Student> studentsById() {
+        return idIndex.values();
+    }
+
+    /**
+     * This returns the first names of the directory in sorted order with
+     * their buckets, for DirectoryImage.
+     * @return The first name postings.
+     */
+    DirectoryImage.Postings firstNamePostings() {
+        return postings(fNameKeys, fNameMap);
+    }
+
+    /**
+     * This returns the last names of the directory in sorted order with
+     * their buckets, for DirectoryImage.
+     * @return The last name postings.
+     */
+    DirectoryImage.Postings lastNamePostings() {
+        return postings(lNameKeys, lNameMap);
+    }
+
+    /**
+     * This returns the phone number digits of the directory in sorted order
+     * with their buckets, for DirectoryImage.
+     * @return The phone number postings.
+     */
+    DirectoryImage.Postings phonePostings() {
+        return phoneIndex.postings();
+    }
+
+    /**
+     * Returns the keys of a name map in the given order with their buckets.
+     * @param keys This holds the keys of the map in sorted order.
+     * @param names This is the map.
+     * @return The postings of the map.
+     */
+    private static DirectoryImage.Postings postings(
+        NavigableSet<String> keys, Map<String, NameBucket> names) {
+        String[] sorted = keys.toArray(new String[0]);
+        NameBucket[] buckets = new NameBucket[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            buckets[i] = names.get(sorted[i]);
+        }
+        return new DirectoryImage.Postings(sorted, buckets);
+    }
+
+    /**
+     * Fills this empty directory from prebuilt indexes, as read by
+     * DirectoryImage. The sorted maps are built in one pass from the sorted
+     * keys instead of one insertion at a time, and the name buckets are used
+     * as they are. Listeners are not told.
+     * @param students This holds the students in the order they were added.
+     * @param byId This holds the same students in Andrew ID order, which the
+     * caller has checked to be strictly increasing.
+     * @param first This holds the first names in sorted order with their
+     * buckets.
+     * @param last This holds the last names in sorted order with their
+     * buckets.
+     * @param phones This holds the phone number digits in sorted order with
+     * their buckets.
+     * @throws IllegalArgumentException if the directory is not empty, if
+     * an Andrew ID appears more than once, or if a phone number key is not
+     * all digits.
+     */
+    void restore(Student[] students, Student[] byId,
+        DirectoryImage.Postings first, DirectoryImage.Postings last,
+        DirectoryImage.Postings phones) throws IllegalArgumentException {
+        if (size != 0) {
+            throw new IllegalArgumentException("Directory must be empty");
+        }
+        Map<String, Student> ids =
+            new LinkedHashMap<>(capacityFor(students.length));
+        for (Student s : students) {
+            if (ids.put(s.getAndrewId(), s) != null) {
+                throw new IllegalArgumentException(
+                    "Student already in directory: " + s.getAndrewId());
+            }
+        }
+        String[] idKeys = new String[byId.length];
+        for (int i = 0; i < byId.length; i++) {
+            idKeys[i] = byId[i].getAndrewId();
+        }
+        PhoneIndex phoneNumbers = new PhoneIndex();
+        phoneNumbers.restore(phones);
+        TreeMap<String, NameBucket> firstNames =
+            new TreeMap<>(new SortedEntries<>(first.keys, first.buckets));
+        TreeMap<String, NameBucket> lastNames =
+            new TreeMap<>(new SortedEntries<>(last.keys, last.buckets));
+        andrewIdMap = ids;
+        idIndex = new TreeMap<>(new SortedEntries<>(idKeys, byId));
+        phoneIndex = phoneNumbers;
+        fNameMap = new HashMap<>(firstNames);
+        lNameMap = new HashMap<>(lastNames);
+        fNameKeys = new TreeSet<>(firstNames.navigableKeySet());
+        lNameKeys = new TreeSet<>(lastNames.navigableKeySet());
+        for (String name : first.keys) {
+            fNameGrams.add(name);
+        }
+        for (String name : last.keys) {
+            lNameGrams.add(name);
+        }
+        for (Student s : students) {
+            fNameNormalized.add(s, s.getFirstName());
+            lNameNormalized.add(s, s.getLastName());
+        }
+        size = students.length;
+    }
+
+    /**
+     * SortedEntries - A read-only sorted map over a range of parallel arrays
+     * of sorted keys and their values. A TreeMap copies it in one pass
+     * without comparing keys; its range views are narrower ranges of the
+     * same arrays, found by binary search. A view clamps keys outside its
+     * range to the range rather than rejecting them.
+     * @param <V> This is the type of the values.
+     */
+    private static final class SortedEntries<V> extends AbstractMap<String, V>
+        implements SortedMap<String, V> {
+
+        /**
+         * This holds the keys, in sorted order.
+         */
+        private final String[] keys;
+
+        /**
+         * This holds the value of each key.
+         */
+        private final V[] values;
+
+        /**
+         * This represents the position of the first entry in the map.
+         */
+        private final int from;
+
+        /**
+         * This represents the position just past the last entry in the map.
+         */
+        private final int to;
+
+        /**
+         * This is the two argument constructor for the SortedEntries class.
+         * @param keys This holds the keys, in sorted order.
+         * @param values This holds the value of each key.
+         */
+        SortedEntries(String[] keys, V[] values) {
+            this(keys, values, 0, keys.length);
+        }
+
+        /**
+         * This is the four argument constructor for the SortedEntries class.
+         * @param keys This holds the keys, in sorted order.
+         * @param values This holds the value of each key.
+         * @param from This is the position of the first entry in the map.
+         * @param to This is the position just past the last entry in the map.
+         */
+        private SortedEntries(String[] keys, V[] values, int from, int to) {
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Returns the position of the first key in this map that is not
+         * less than the given key.
+         * @param key This is the key.
+         * @return The position, between from and to.
+         */
+        private int ceiling(String key) {
+            if (key == null) {
+                throw new NullPointerException();
+            }
+            int i = Arrays.binarySearch(keys, from, to, key);
+            return i >= 0 ? i : -i - 1;
+        }
+
+        @Override
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String
+                && Arrays.binarySearch(keys, from, to, key) >= 0;
+        }
+
+        @Override
+        public V get(Object key) {
+            if (!(key instanceof String)) {
+                return null;
+            }
+            int i = Arrays.binarySearch(keys, from, to, key);
+            return i >= 0 ? values[i] : null;
+        }
+
+        @Override
+        public Set<Map.Entry<String, V>> entrySet() {
+            return new AbstractSet<Map.Entry<String, V>>() {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator() {
+                    return new Iterator<Map.Entry<String, V>>() {
+                        /**
+                         * This represents the position of the next entry.
+                         */
+                        private int next = from;
+
+                        @Override
+                        public boolean hasNext() {
+                            return next < to;
+                        }
+
+                        @Override
+                        public Map.Entry<String, V> next() {
+                            if (next == to) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = next++;
+                            return new SimpleImmutableEntry<>(keys[i],
+                                values[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return to - from;
+                }
+            };
+        }
+
+        @Override
+        public SortedMap<String, V> subMap(String fromKey, String toKey) {
+            if (fromKey.compareTo(toKey) > 0) {
+                throw new IllegalArgumentException("fromKey > toKey");
+            }
+            return new SortedEntries<>(keys, values, ceiling(fromKey),
+                ceiling(toKey));
+        }
+
+        @Override
+        public SortedMap<String, V> headMap(String toKey) {
+            return new SortedEntries<>(keys, values, from, ceiling(toKey));
+        }
+
+        @Override
+        public SortedMap<String, V> tailMap(String fromKey) {
+            return new SortedEntries<>(keys, values, ceiling(fromKey), to);
+        }
+
+        @Override
+        public String firstKey() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return keys[from];
+        }
+
+        @Override
+        public String lastKey() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return keys[to - 1];
+        }
+    }
+
 }
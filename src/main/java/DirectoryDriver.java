@@ -3,22 +3,35 @@ import java.awt.Font;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import javax.swing.BoxLayout;
 import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
+import javax.swing.JPopupMenu;
 import javax.swing.JScrollPane;
-import javax.swing.JTextArea;
 import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 /**
  * DirectoryDriver - Swing GUI for the Directory class.
@@ -26,12 +39,6 @@ import javax.swing.JTextField;
  */
 public class DirectoryDriver extends JFrame {
 
-    /**
-     * Constant that represents the max number of columns per line in a valid
-     * CSV file read by DirectoryDriver.
-     */
-    private static final int MAX_LEN = 4;
-
     /**
      * Constant that represents the GUI frame width.
      */
@@ -55,16 +62,16 @@ public class DirectoryDriver extends JFrame {
     private static final int COL_LARGE = 15;
 
     /**
-     * Constant that represents the number of rows for the text area in the
-     * "Results" section of the GUI.
+     * Constant that represents the number of visible rows of the results
+     * list in the "Results" section of the GUI.
      */
-    private static final int TXT_AREA_R = 12;
+    static final int RESULT_ROWS = 12;
 
     /**
-     * Constant that represents the number of rows for the text area in the
-     * "Results" section of the GUI.
+     * Constant that represents the width in characters of the results list
+     * in the "Results" section of the GUI.
      */
-    private static final int TXT_AREA_C = 55;
+    static final int RESULT_COLS = 70;
 
     /**
      * Constant that represents the font size of the GUI's main labels.
@@ -72,26 +79,95 @@ public class DirectoryDriver extends JFrame {
     private static final int FONT_SIZE = 18;
 
     /**
-     * Reference to the text area.
+     * Constant that represents the max number of name suggestions shown
+     * below the search key text field.
+     */
+    private static final int MAX_SUGGESTIONS = 8;
+
+    /**
+     * Constant that represents the max edit distance of the similar names
+     * shown when a name search finds no exact match.
      */
-    private JTextArea textArea;
+    private static final int FUZZY_DISTANCE = 2;
+
+    /**
+     * Reference to the results list.
+     */
+    private JList<Object> resultList;
+
+    /**
+     * Reference to the rows of the results list.
+     */
+    private ResultListModel results;
 
     /**
      * Reference to the student directory.
      */
     private Directory directory;
 
+    /**
+     * Reference to the store keeping the directory on disk, or null.
+     */
+    private DirectoryStore store;
+
     /**
      * Reference to the search key text field.
      */
     private JTextField searchField;
 
     /**
-     * Initializer for the DirectoryDriver. Lays out the GUI.
+     * Reference to the popup listing name suggestions for the search key.
+     */
+    private JPopupMenu suggestions;
+
+    /**
+     * Reference to the label showing the progress of a load.
+     */
+    private JLabel status;
+
+    /**
+     * Reference to the thread that runs every directory operation of the
+     * GUI, one at a time, off the event dispatch thread.
+     */
+    private final ExecutorService worker;
+
+    /**
+     * Reference to the search or suggestion lookup last started, which is
+     * cancelled when another one starts.
+     */
+    private Future<?> pendingSearch;
+
+    /**
+     * This counts the searches started, so that the results of a search
+     * are only shown if no other search was started after it.
+     */
+    private int searchSeq;
+
+    /**
+     * Initializer for the DirectoryDriver. Lays out the GUI. Once the GUI is
+     * shown, the directory is only used from the GUI's worker thread, and
+     * from other threads only while holding the directory's monitor.
      * @param dir The student directory object.
      */
     public DirectoryDriver(Directory dir) {
+        this(dir, null);
+    }
+
+    /**
+     * Initializer for the DirectoryDriver of a directory kept in a store.
+     * Changes made through the GUI and loads are forced to the store's disk
+     * before they are reported done.
+     * @param dir The student directory object.
+     * @param store The store keeping the directory on disk, or null.
+     */
+    public DirectoryDriver(Directory dir, DirectoryStore store) {
         directory = dir;
+        this.store = store;
+        worker = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "directory-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
         setTitle("Student Directory GUI");
         setSize(FRAME_WIDTH, FRAME_HEIGHT);
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -115,6 +191,8 @@ public class DirectoryDriver extends JFrame {
         deleteLabelPanel.add(deleteLabel);
         searchLabelPanel.add(searchLabel);
         resultsLabelPanel.add(resultsLabel);
+        status = new JLabel();
+        resultsLabelPanel.add(status);
         pane.add(addLabelPanel);
         pane.add(initAddPanel());
         pane.add(deleteLabelPanel);
@@ -164,32 +242,40 @@ public class DirectoryDriver extends JFrame {
             String andrewId = andrewField.getText();
             String phoneNum = phoneField.getText();
             if (firstName.equals("")) {
-                textArea.setText(null);
-                textArea.append("First Name Missing (Add Student)\n");
+                clearResults();
+                report("First Name Missing (Add Student)");
             } else if (lastName.equals("")) {
-                textArea.setText(null);
-                textArea.append("Last Name Missing (Add Student)\n");
+                clearResults();
+                report("Last Name Missing (Add Student)");
             } else if (andrewId.equals("")) {
-                textArea.setText(null);
-                textArea.append("Andrew ID Missing (Add Student)\n");
+                clearResults();
+                report("Andrew ID Missing (Add Student)");
             } else {
-                Student student = new Student(andrewId);
-                if (directory.searchByAndrewId(andrewId) == null) {
-                    student.setFirstName(firstName);
-                    student.setLastName(lastName);
-                    student.setPhoneNumber(phoneNum);
-                    directory.addStudent(student);
-                    textArea.append("New Entry Added: " + student + "\n");
-                    firstNameField.setText(null);
-                    lastNameField.setText(null);
-                    andrewField.setText(null);
-                    phoneField.setText(null);
-                } else {
-                    textArea.setText(null);
-                    String s1  = "Data already contains an entry for ";
-                    String s2 = s1 + "this Andrew ID\n";
-                    textArea.setText(s2);
-                }
+                Student student = new Student.Builder(andrewId)
+                    .firstName(firstName).lastName(lastName)
+                    .phoneNumber(phoneNum).build();
+                execute(() -> {
+                    if (directory.contains(andrewId)) {
+                        return () -> {
+                            clearResults();
+                            report("Data already contains an entry for "
+                                + "this Andrew ID");
+                        };
+                    }
+                    try {
+                        directory.addStudent(student);
+                    } catch (UncheckedIOException exception) {
+                        return () -> report("Could not save new entry: "
+                            + exception.getCause().getMessage());
+                    }
+                    return () -> {
+                        report("New Entry Added: " + student);
+                        firstNameField.setText(null);
+                        lastNameField.setText(null);
+                        andrewField.setText(null);
+                        phoneField.setText(null);
+                    };
+                });
             }
         });
         return addLine;
@@ -213,18 +299,25 @@ public class DirectoryDriver extends JFrame {
         deleteButton.addActionListener(e -> {
             String andrewId = andrewField.getText();
             if (andrewId.equals("")) {
-                textArea.setText(null);
-                textArea.append("Andrew ID missing (Delete Student)\n");
+                clearResults();
+                report("Andrew ID missing (Delete Student)");
             } else {
-                try {
-                    Student student = directory.searchByAndrewId(andrewId);
-                    directory.deleteStudent(andrewId);
-                    textArea.append("Entry Deleted: " + student + "\n");
-                    andrewField.setText(null);
-                } catch (IllegalArgumentException exception) {
-                    textArea.append(
-                        "No match found for Andrew ID: " + andrewId + "\n");
-                }
+                execute(() -> {
+                    try {
+                        Student student = directory.studentWithId(andrewId);
+                        directory.deleteStudent(andrewId);
+                        return () -> {
+                            report("Entry Deleted: " + student);
+                            andrewField.setText(null);
+                        };
+                    } catch (IllegalArgumentException exception) {
+                        return () -> report(
+                            "No match found for Andrew ID: " + andrewId);
+                    } catch (UncheckedIOException exception) {
+                        return () -> report("Could not save deletion: "
+                            + exception.getCause().getMessage());
+                    }
+                });
             }
         });
 
@@ -241,6 +334,9 @@ public class DirectoryDriver extends JFrame {
         JLabel searchLabel = new JLabel("Search Key: ");
         searchField = new JTextField(COL_LARGE);
         searchField.addActionListener(new SearchByAndrewActionListener());
+        searchField.getDocument().addDocumentListener(new SuggestListener());
+        suggestions = new JPopupMenu();
+        suggestions.setFocusable(false);
         searchLine.add(searchLabel);
         searchLine.add(searchField);
 
@@ -254,100 +350,321 @@ public class DirectoryDriver extends JFrame {
         fNameButton.addActionListener(e -> {
             String firstName = searchField.getText();
             if (firstName.equals("")) {
-                textArea.setText(null);
-                textArea.append("First Name Missing (Search by First Name)\n");
+                clearResults();
+                report("First Name Missing (Search by First Name)");
             } else {
-                List<Student> students = directory.searchByFirstName(firstName);
-                if (students.size() == 0) {
-                    String s1 = "No Matches Found (Search by First Name): ";
-                    String s2 = s1 + firstName + "\n";
-                    textArea.append(s2);
-                } else {
-                    searchField.setText(null);
-                    for (Student student : students) {
-                        textArea.append(student.toString() + "\n");
+                search(() -> {
+                    List<Student> students =
+                        copyOf(directory.searchByFirstName(firstName));
+                    if (students.size() > 0) {
+                        return () -> {
+                            searchField.setText(null);
+                            report(students);
+                        };
                     }
-                }
+                    List<Student> similar = copyOf(directory
+                        .fuzzySearchByFirstName(firstName, FUZZY_DISTANCE));
+                    return () -> {
+                        String s1 = "No Matches Found (Search by First Name): ";
+                        report(s1 + firstName);
+                        if (similar.size() > 0) {
+                            report("Similar names:");
+                        }
+                        report(similar);
+                    };
+                });
             }
         });
         searchLine.add(lNameButton);
         lNameButton.addActionListener(e -> {
             String lastName = searchField.getText();
             if (lastName.equals("")) {
-                textArea.setText(null);
-                textArea.append("Last Name Missing (Search by Last Name)\n");
+                clearResults();
+                report("Last Name Missing (Search by Last Name)");
             } else {
-                List<Student> students = directory.searchByLastName(lastName);
-                if (students.size() == 0) {
-                    String s1 = "No Matches Found (Search by Last Name): ";
-                    String s2 = s1 + lastName + "\n";
-                    textArea.append(s2);
-                } else {
-                    searchField.setText(null);
-                    for (Student student : students) {
-                        textArea.append(student.toString() + "\n");
+                search(() -> {
+                    List<Student> students =
+                        copyOf(directory.searchByLastName(lastName));
+                    if (students.size() > 0) {
+                        return () -> {
+                            searchField.setText(null);
+                            report(students);
+                        };
                     }
-                }
+                    List<Student> similar = copyOf(directory
+                        .fuzzySearchByLastName(lastName, FUZZY_DISTANCE));
+                    return () -> {
+                        String s1 = "No Matches Found (Search by Last Name): ";
+                        report(s1 + lastName);
+                        if (similar.size() > 0) {
+                            report("Similar names:");
+                        }
+                        report(similar);
+                    };
+                });
             }
         });
         return searchLine;
     }
 
     /**
-     * Initializes the JPanel for the "Results" section of the GUI.
+     * Shows the first and last names in the directory that start with the
+     * search key below the search key text field, or hides the suggestions
+     * if there are none.
+     */
+    private void updateSuggestions() {
+        String prefix = searchField.getText();
+        suggestions.setVisible(false);
+        suggestions.removeAll();
+        if (prefix.equals("")) {
+            cancelSearch();
+            return;
+        }
+        search(() -> {
+            Set<String> names = new TreeSet<>();
+            names.addAll(directory.completeFirstName(prefix, MAX_SUGGESTIONS));
+            names.addAll(directory.completeLastName(prefix, MAX_SUGGESTIONS));
+            return () -> showSuggestions(names);
+        });
+    }
+
+    /**
+     * Shows the given names below the search key text field.
+     * @param names This holds the names to show, in sorted order.
+     */
+    private void showSuggestions(Set<String> names) {
+        int count = 0;
+        for (String name : names) {
+            if (count++ == MAX_SUGGESTIONS) {
+                break;
+            }
+            JMenuItem item = new JMenuItem(name);
+            item.addActionListener(e -> {
+                searchField.setText(name);
+                suggestions.setVisible(false);
+            });
+            suggestions.add(item);
+        }
+        if (count > 0 && searchField.isShowing()) {
+            suggestions.show(searchField, 0, searchField.getHeight());
+        }
+    }
+
+    /**
+     * Initializes the JPanel for the "Results" section of the GUI. Every row
+     * has the same height, so the list only lays out and paints the rows
+     * that are in view, however many there are.
      * @return A JPanel to be added to the main GUI Pane.
      */
     private JPanel initResultsPanel() {
         JPanel resultsPanel = new JPanel();
-        textArea = new JTextArea(TXT_AREA_R, TXT_AREA_C);
-        textArea.setLineWrap(true);
-        textArea.setWrapStyleWord(true);
-        textArea.setEditable(false);
+        results = new ResultListModel();
+        resultList = new JList<>(results);
+        resultList.setPrototypeCellValue(String.format("%" + RESULT_COLS
+            + "s", ""));
+        resultList.setVisibleRowCount(RESULT_ROWS);
 
-        JScrollPane scroller = new JScrollPane(textArea);
+        JScrollPane scroller = new JScrollPane(resultList);
         resultsPanel.add(scroller);
         return resultsPanel;
     }
 
     /**
-     * This method takes entries from the file, creates Student objects, and
-     * loads them into the given Directory.
-     * @param directory This is the student Directory object to load data into.
+     * Removes every row from the results list.
+     */
+    private void clearResults() {
+        results.clear();
+    }
+
+    /**
+     * Adds a line to the results list and scrolls to it.
+     * @param line This is the line to show.
+     */
+    private void report(String line) {
+        resultList.ensureIndexIsVisible(results.append(line));
+    }
+
+    /**
+     * Adds a row per student to the results list and scrolls to the first.
+     * @param students This holds the students to show.
+     */
+    private void report(List<Student> students) {
+        int first = results.appendAll(students);
+        if (first >= 0) {
+            resultList.ensureIndexIsVisible(first);
+        }
+    }
+
+    /**
+     * This method loads entries from the CSV file into the directory on a
+     * background thread, so the GUI can be used while the file loads. The
+     * directory can be searched as soon as the first chunk of the file is
+     * in, and the status label shows how much of the file has loaded. Rows
+     * that cannot be added are reported on standard error.
      * @param file This is the CSV file to load entries from
-     * @throws FileNotFoundException if file is not found.
-     * @throws IOException if data cannot be read.
-     */
-    private static void loadData(Directory directory, String file) throws
-        FileNotFoundException, IOException {
-        FileReader fr = new FileReader(file);
-        CSVReader c = new CSVReader(fr);
-
-        boolean eof = false;
-        boolean first = true;
-        while (!eof) {
-            String[] values = c.readCSVLine();
-            if (values == null) {
-                eof = true;
-            } else {
-                if (!first) {
-                    String firstName = values[0];
-                    String lastName = values[1];
-                    String andrewID = values[2];
-                    Student student = new Student(andrewID);
-                    student.setFirstName(firstName);
-                    student.setLastName(lastName);
-                    if (values.length == MAX_LEN) {
-                        student.setPhoneNumber(values[MAX_LEN - 1]);
-                    } else {
-                        student.setPhoneNumber("");
-                    }
-                    directory.addStudent(student);
+     */
+    private void loadData(String file) {
+        status.setText("Loading " + file);
+        Thread loader = new Thread(() -> {
+            try {
+                LoadReport report = new BulkLoader().load(directory, file,
+                    (progress, loaded, total) -> {
+                        sync();
+                        String text = String.format("Loading %s: %d%%, %s",
+                            file, total == 0 ? 100 : 100 * loaded / total,
+                            progress);
+                        SwingUtilities.invokeLater(() -> status.setText(text));
+                    });
+                for (LoadReport.RowError error : report.getErrors()) {
+                    System.err.println(error);
+                }
+                SwingUtilities.invokeLater(
+                    () -> status.setText(file + ": " + report));
+            } catch (IOException | UncheckedIOException exception) {
+                SwingUtilities.invokeLater(() -> {
+                    status.setText(null);
+                    report("Could not load " + file + ": " + exception);
+                });
+            }
+        }, "directory-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * This method follows the CSV file: it loads the rows already in it and
+     * then keeps applying the rows appended to it, as adds, updates and
+     * deletes, on a background thread. The status label shows how far
+     * behind the end of the file the directory is. Rows that cannot be
+     * applied are reported on standard error.
+     * @param file This is the CSV file to follow.
+     */
+    private void followData(String file) {
+        status.setText("Following " + file);
+        IncrementalLoader follower = new IncrementalLoader(directory,
+            Paths.get(file), 0, (progress, applied, total) -> {
+                for (LoadReport.RowError error : progress.getErrors()) {
+                    System.err.println(error);
                 }
-                first = false;
+                String text = String.format(
+                    "Following %s: %d changes applied, %d bytes behind",
+                    file, progress.getLoaded(), total - applied);
+                try {
+                    sync();
+                    SwingUtilities.invokeLater(() -> status.setText(text));
+                } catch (UncheckedIOException exception) {
+                    SwingUtilities.invokeLater(() -> report(
+                        "Could not save changes: "
+                        + exception.getCause().getMessage()));
+                }
+            });
+        try {
+            follower.start();
+        } catch (IOException exception) {
+            status.setText(null);
+            report("Could not follow " + file + ": " + exception);
+        }
+    }
+
+    /**
+     * Runs a task that uses the directory on the worker thread, then runs
+     * the GUI update it returns on the event dispatch thread. The task holds
+     * the directory's monitor while it runs, as a load does between chunks,
+     * and the changes it made are forced to disk after the monitor is
+     * released.
+     * @param task This uses the directory and returns the GUI update.
+     * @return The pending task.
+     */
+    private Future<?> execute(Supplier<Runnable> task) {
+        return worker.submit(() -> {
+            Runnable update;
+            synchronized (directory) {
+                update = task.get();
+            }
+            try {
+                sync();
+            } catch (UncheckedIOException exception) {
+                update = () -> report("Could not save changes: "
+                    + exception.getCause().getMessage());
+            }
+            SwingUtilities.invokeLater(update);
+        });
+    }
+
+    /**
+     * Forces the changes made to the directory so far to disk, if it is
+     * kept in a store. Called without holding the directory's monitor.
+     * @throws UncheckedIOException if the changes cannot be saved.
+     */
+    private void sync() throws UncheckedIOException {
+        if (store != null) {
+            store.sync();
+        }
+    }
+
+    /**
+     * Runs a search on the worker thread like execute, first cancelling the
+     * search or suggestion lookup still pending, if any. The GUI update of a
+     * search is dropped if another search was started after it.
+     * @param task This searches the directory and returns the GUI update.
+     */
+    private void search(Supplier<Runnable> task) {
+        cancelSearch();
+        int seq = searchSeq;
+        pendingSearch = execute(() -> {
+            if (Thread.currentThread().isInterrupted()) {
+                return () -> { };
             }
+            Runnable update = task.get();
+            return () -> {
+                if (seq == searchSeq) {
+                    update.run();
+                }
+            };
+        });
+    }
+
+    /**
+     * Cancels the search or suggestion lookup still pending, if any, and
+     * makes sure its results are not shown.
+     */
+    private void cancelSearch() {
+        searchSeq++;
+        if (pendingSearch != null) {
+            pendingSearch.cancel(true);
+            pendingSearch = null;
         }
-        c.close();
+    }
 
+    /**
+     * Returns a copy of a search result, so that the GUI does not read the
+     * directory outside the worker thread.
+     * @param students This is the search result.
+     * @return A list holding the same students.
+     */
+    private static List<Student> copyOf(List<Student> students) {
+        return new ArrayList<>(students);
+    }
+
+    /**
+     * SuggestListener - Document listener for the search key text field that
+     * updates the name suggestions as the user types.
+     */
+    private class SuggestListener implements DocumentListener {
+
+        @Override
+        public void insertUpdate(DocumentEvent event) {
+            updateSuggestions();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent event) {
+            updateSuggestions();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent event) {
+        }
     }
 
     /**
@@ -366,97 +683,84 @@ public class DirectoryDriver extends JFrame {
         public void actionPerformed(ActionEvent event) {
             String andrewId = searchField.getText();
             if (andrewId.equals("")) {
-                textArea.setText(null);
-                textArea.append("Andrew ID Missing (Search By Andrew ID)\n");
+                clearResults();
+                report("Andrew ID Missing (Search By Andrew ID)");
             } else {
-                Student student = directory.searchByAndrewId(andrewId);
-                if (student == null) {
-                    textArea.append(
-                        "No Match found for Andrew Id: " + andrewId + "\n");
-                } else {
-                    textArea.append(student.toString() + "\n");
-                    searchField.setText(null);
-                }
-            }
-        }
-    }
-
-    /**
-     * CSVReader - Simplified version of CSV Reader taken from lecture 8
-     * examples.
-     */
-    private static class CSVReader extends BufferedReader {
-
-        /**
-         * Initializes the class.
-         * @param in the reader from which to read the CSV lines
-         */
-        CSVReader(Reader in) {
-            super(in);
-        }
-
-        /**
-         * This method uses the readLine method from the superclass to get a
-         * line and returns the comma separated values as an array of strings.
-         * @return an array of String containing the values. At the end of file,
-         * it will return null.
-         * @throws IOException throws IOException.
-         */
-        public String[] readCSVLine() throws IOException {
-            String line = super.readLine();
-            if (line == null) {
-                return null;
-            }
-            int commaCount = 0;
-            for (int i = 0; i < line.length(); i++) {
-                if (line.charAt(i) == ',') {
-                    commaCount++;
-                }
-            }
-            String[] values = new String[commaCount + 1];
-            int beginIndex = 0;
-            for (int i = 0; i < commaCount; i++) {
-                int endIndex = line.indexOf(',', beginIndex);
-                if (line.charAt(beginIndex) == '"'
-                    && line.charAt(endIndex - 1) == '"') {
-                    values[i] = line.substring(beginIndex + 1, endIndex - 1);
-                } else {
-                    values[i] = line.substring(beginIndex, endIndex);
-                }
-                beginIndex = endIndex + 1;
-            }
-            if (line.charAt(beginIndex) == '"'
-                && line.charAt(line.length() - 1) == '"') {
-                values[commaCount] =
-                    line.substring(beginIndex + 1, line.length() - 1);
-            } else {
-                values[commaCount] = line.substring(beginIndex, line.length());
+                search(() -> {
+                    Student student = directory.searchByAndrewId(andrewId);
+                    if (student == null) {
+                        return () -> report(
+                            "No Match found for Andrew Id: " + andrewId);
+                    }
+                    return () -> {
+                        report(student.toString());
+                        searchField.setText(null);
+                    };
+                });
             }
-
-            return values;
         }
     }
 
     /**
-     * Main method for the Directory GUI. Optionally loads the student directory
-     * with data from a CSV file.
-     * @param args This should be a single optional argument representing the
-     * name of a CSV file.
+     * Main method for the Directory GUI. Optionally keeps the directory in a
+     * data folder so that changes survive a restart, and optionally loads it
+     * with data from a CSV file, or follows a CSV file that is being
+     * appended to. The metrics of the directory are registered with the
+     * platform MBean server under the name main.
+     * @param args This should be an optional -d flag followed by the name of
+     * a data folder, an optional -f flag to follow the CSV file, then a
+     * single optional argument representing the name of a CSV file.
      * @throws FileNotFoundException throws FileNotFoundException
      * @throws IOException throws IOException
      */
     public static void main(String[] args) throws FileNotFoundException,
         IOException {
-        if (args.length > 1) {
-            System.out.println("Usage: java DirectoryDriver <filename>");
-            System.out.println("       java DirectoryDriver");
+        String dataDir = null;
+        boolean follow = false;
+        String file = null;
+        boolean valid = true;
+        for (int i = 0; i < args.length && valid; i++) {
+            if (args[i].equals("-d") && i + 1 < args.length
+                && dataDir == null) {
+                dataDir = args[++i];
+            } else if (args[i].equals("-f") && !follow) {
+                follow = true;
+            } else if (file == null && !args[i].startsWith("-")) {
+                file = args[i];
+            } else {
+                valid = false;
+            }
+        }
+        if (!valid || follow && file == null) {
+            System.out.println("Usage: java DirectoryDriver [-d <dataDir>]"
+                + " [-f] <filename>");
+            System.out.println("       java DirectoryDriver [-d <dataDir>]");
             System.exit(0);
         }
-        Directory directory = new Directory();
-        if (args.length == 1) {
-            loadData(directory, args[0]);
+        Directory directory;
+        DirectoryStore store = null;
+        if (dataDir == null) {
+            directory = new Directory();
+        } else {
+            store = DirectoryStore.open(Paths.get(dataDir));
+            directory = store.getDirectory();
+        }
+        directory.getMetrics().registerMBeans(
+            ManagementFactory.getPlatformMBeanServer(), "main");
+        if (file != null && !new File(file).isFile()) {
+            throw new FileNotFoundException(file);
         }
-        new DirectoryDriver(directory);
+        String csv = file;
+        DirectoryStore kept = store;
+        boolean tail = follow;
+        SwingUtilities.invokeLater(() -> {
+            DirectoryDriver driver = new DirectoryDriver(directory, kept);
+            if (csv != null && tail) {
+                driver.followData(csv);
+            } else if (csv != null) {
+                driver.loadData(csv);
+            }
+        });
     }
 
 }
@@ -0,0 +1,950 @@
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntBinaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * DirectoryImage - Reads and writes a whole Directory in a compact binary
+ * file, the image, which loads much faster than the same roster as CSV. The
+ * image holds the indexes of the directory as well as its students, so
+ * reading it needs no parsing, no hashing of names into buckets and no
+ * sorting.
+ *
+ * An image is, in order: the magic number, the version, the number of
+ * students and the number of names, as ints; the dictionary of distinct
+ * first and last names; a row for each student, in the order they were
+ * added, holding the Andrew ID, the dictionary codes of the first and last
+ * names and the phone number; the students in Andrew ID order; the first
+ * name, last name and phone number postings; and a CRC32 of everything
+ * before it. A string is its length in UTF-8 bytes as an int, or -1 for
+ * null, followed by the bytes. A student is referred to by its position in
+ * the order of adding, and postings are the keys of an index in sorted
+ * order, each followed by the number of students with that key and their
+ * positions.
+ *
+ * Usage: java DirectoryImage toBinary csvFile imageFile, or
+ * java DirectoryImage toCsv imageFile csvFile
+ * @author Tony Padilla (apadilla)
+ */
+public final class DirectoryImage {
+
+    /**
+     * Constant that represents the first bytes of an image.
+     */
+    private static final int MAGIC = 0x5344494d;
+
+    /**
+     * Constant that represents the version of the image layout.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Constant that represents the length written for a null string.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * Constant that represents the size of the buffer images are read and
+     * written through.
+     */
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * Constant that represents the header line of a CSV file.
+     */
+    private static final String CSV_HEADER =
+        "\"First Name\",\"Last Name\",\"Andrew ID\",\"Phone Number\"";
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private DirectoryImage() {
+    }
+
+    /**
+     * Writes the directory to an image file, replacing the file if it
+     * exists. Threads that share the directory by synchronizing on it must
+     * hold its monitor while this runs.
+     * @param directory This is the directory to write.
+     * @param file This is the image file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void write(Directory directory, Path file) throws
+        IOException {
+        try (FileChannel out = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+            write(directory, out);
+            out.force(true);
+        }
+    }
+
+    /**
+     * Writes the directory as an image to the channel. Threads that share
+     * the directory by synchronizing on it must hold its monitor while this
+     * runs.
+     * @param directory This is the directory to write.
+     * @param channel This is the channel to write to, which is left open.
+     * @throws IOException if the image cannot be written.
+     */
+    public static void write(Directory directory, WritableByteChannel channel)
+        throws IOException {
+        Collection<Student> students = directory.students();
+        int count = students.size();
+        NameDictionary names = new NameDictionary();
+        Map<Student, Integer> rows = new IdentityHashMap<>(count);
+        for (Student s : students) {
+            rows.put(s, rows.size());
+            names.encode(s.getFirstName());
+            names.encode(s.getLastName());
+        }
+        Out out = new Out(channel);
+        putRows(out, students, names);
+        int[] order = new int[count];
+        int i = 0;
+        for (Student s : directory.studentsById()) {
+            order[i++] = rows.get(s);
+        }
+        out.putInts(order);
+        for (Postings postings : new Postings[] {
+            directory.firstNamePostings(), directory.lastNamePostings()}) {
+            out.putInt(postings.keys.length);
+            for (int k = 0; k < postings.keys.length; k++) {
+                out.putInt(names.lookup(postings.keys[k]));
+                putRows(out, postings.buckets[k], rows);
+            }
+        }
+        Postings phones = directory.phonePostings();
+        out.putInt(phones.keys.length);
+        for (int k = 0; k < phones.keys.length; k++) {
+            out.putString(phones.keys[k]);
+            putRows(out, phones.buckets[k], rows);
+        }
+        out.finish();
+    }
+
+    /**
+     * Writes the students as the image of a directory they were added to in
+     * this order, without building the directory. The indexes are worked
+     * out from the rows in arrays of ints, so little memory is needed
+     * besides the students; DirectoryStore writes its snapshots this way,
+     * from a copy of the list of students. The image is the one write would
+     * give for such a directory.
+     * @param students This holds the students in the order they were added.
+     * Their Andrew IDs must be distinct.
+     * @param channel This is the channel to write to, which is left open.
+     * @throws IOException if the image cannot be written.
+     */
+    static void write(Student[] students, WritableByteChannel channel)
+        throws IOException {
+        int count = students.length;
+        NameDictionary names = new NameDictionary();
+        int[] first = new int[count];
+        int[] last = new int[count];
+        for (int i = 0; i < count; i++) {
+            first[i] = names.encode(students[i].getFirstName());
+            last[i] = names.encode(students[i].getLastName());
+        }
+        Out out = new Out(channel);
+        putRows(out, Arrays.asList(students), names);
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        sort(order, (a, b) -> students[a].getAndrewId()
+            .compareTo(students[b].getAndrewId()));
+        out.putInts(order);
+        putNamePostings(out, names, first);
+        putNamePostings(out, names, last);
+        putPhonePostings(out, students);
+        out.finish();
+    }
+
+    /**
+     * Writes the header, the dictionary of names and a row for each
+     * student.
+     * @param out This is the image being written.
+     * @param students This holds the students in the order they were added.
+     * @param names This holds the codes of every first and last name.
+     * @throws IOException if the image cannot be written.
+     */
+    private static void putRows(Out out, Collection<Student> students,
+        NameDictionary names) throws IOException {
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(students.size());
+        out.putInt(names.size());
+        for (int code = 0; code < names.size(); code++) {
+            out.putString(names.decode(code));
+        }
+        for (Student s : students) {
+            out.putString(s.getAndrewId());
+            out.putInt(names.lookup(s.getFirstName()));
+            out.putInt(names.lookup(s.getLastName()));
+            out.putString(s.getPhoneNumber());
+        }
+    }
+
+    /**
+     * Writes the postings of a name index from the name code of each row.
+     * The rows are grouped by code with a counting sort, which keeps them
+     * in order within a group, and the codes used are sorted by name.
+     * @param out This is the image being written.
+     * @param names This holds the names of the codes.
+     * @param codes This holds the name code of each row.
+     * @throws IOException if the image cannot be written.
+     */
+    private static void putNamePostings(Out out, NameDictionary names,
+        int[] codes) throws IOException {
+        int[] starts = new int[names.size() + 1];
+        for (int code : codes) {
+            starts[code + 1]++;
+        }
+        int keys = 0;
+        for (int code = 0; code < names.size(); code++) {
+            if (starts[code + 1] > 0) {
+                keys++;
+            }
+            starts[code + 1] += starts[code];
+        }
+        int[] grouped = new int[codes.length];
+        int[] next = Arrays.copyOf(starts, names.size());
+        for (int row = 0; row < codes.length; row++) {
+            grouped[next[codes[row]]++] = row;
+        }
+        int[] used = new int[keys];
+        int k = 0;
+        for (int code = 0; code < names.size(); code++) {
+            if (starts[code + 1] > starts[code]) {
+                used[k++] = code;
+            }
+        }
+        sort(used, (a, b) -> names.decode(a).compareTo(names.decode(b)));
+        out.putInt(keys);
+        for (int code : used) {
+            out.putInt(code);
+            out.putInt(starts[code + 1] - starts[code]);
+            for (int i = starts[code]; i < starts[code + 1]; i++) {
+                out.putInt(grouped[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the postings of the phone number index from the rows, keyed
+     * as PhoneIndex keys them. The rows with a number PhoneIndex can
+     * encode are sorted by its code, which sorts as the digits do, and the
+     * rare longer numbers are merged in by their digits.
+     * @param out This is the image being written.
+     * @param students This holds the students in the order they were added.
+     * @throws IOException if the image cannot be written.
+     */
+    private static void putPhonePostings(Out out, Student[] students)
+        throws IOException {
+        long[] codes = new long[students.length];
+        int encoded = 0;
+        TreeMap<String, List<Integer>> tooLong = new TreeMap<>();
+        for (int row = 0; row < students.length; row++) {
+            String phone = students[row].getPhoneNumber();
+            codes[row] = phone == null ? PhoneIndex.NO_DIGITS
+                : PhoneIndex.encode(phone);
+            if (codes[row] >= 0) {
+                encoded++;
+            } else if (codes[row] == PhoneIndex.TOO_LONG) {
+                tooLong.computeIfAbsent(Query.digitsOf(phone),
+                    d -> new ArrayList<>()).add(row);
+            }
+        }
+        int[] rows = new int[encoded];
+        int r = 0;
+        for (int row = 0; row < students.length; row++) {
+            if (codes[row] >= 0) {
+                rows[r++] = row;
+            }
+        }
+        sort(rows, (a, b) -> Long.compare(codes[a], codes[b]));
+        int keys = tooLong.size();
+        for (int i = 0; i < rows.length; i++) {
+            if (i == 0 || codes[rows[i]] != codes[rows[i - 1]]) {
+                keys++;
+            }
+        }
+        out.putInt(keys);
+        Iterator<Map.Entry<String, List<Integer>>> rest =
+            tooLong.entrySet().iterator();
+        Map.Entry<String, List<Integer>> after = rest.hasNext()
+            ? rest.next() : null;
+        for (int i = 0; i < rows.length;) {
+            long code = codes[rows[i]];
+            int end = i + 1;
+            while (end < rows.length && codes[rows[end]] == code) {
+                end++;
+            }
+            String digits = PhoneIndex.decode(code);
+            while (after != null && after.getKey().compareTo(digits) < 0) {
+                putPosting(out, after.getKey(), after.getValue());
+                after = rest.hasNext() ? rest.next() : null;
+            }
+            out.putString(digits);
+            out.putInt(end - i);
+            for (; i < end; i++) {
+                out.putInt(rows[i]);
+            }
+        }
+        while (after != null) {
+            putPosting(out, after.getKey(), after.getValue());
+            after = rest.hasNext() ? rest.next() : null;
+        }
+    }
+
+    /**
+     * Writes a phone number key and the positions of its students.
+     * @param out This is the image being written.
+     * @param digits This is the key.
+     * @param rows This holds the positions of the students.
+     * @throws IOException if the image cannot be written.
+     */
+    private static void putPosting(Out out, String digits, List<Integer> rows)
+        throws IOException {
+        out.putString(digits);
+        out.putInt(rows.size());
+        for (int row : rows) {
+            out.putInt(row);
+        }
+    }
+
+    /**
+     * Sorts positions in the given order with a merge sort, which keeps
+     * positions that compare equal in the order they are in, without
+     * boxing them.
+     * @param rows This holds the positions to sort.
+     * @param order This compares two positions.
+     */
+    private static void sort(int[] rows, IntBinaryOperator order) {
+        int[] from = rows;
+        int[] to = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int lo = 0; lo < rows.length; lo += 2 * width) {
+                int mid = Math.min(lo + width, rows.length);
+                int hi = Math.min(lo + 2 * width, rows.length);
+                int a = lo;
+                int b = mid;
+                for (int i = lo; i < hi; i++) {
+                    if (b == hi || a < mid
+                        && order.applyAsInt(from[a], from[b]) <= 0) {
+                        to[i] = from[a++];
+                    } else {
+                        to[i] = from[b++];
+                    }
+                }
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        if (from != rows) {
+            System.arraycopy(from, 0, rows, 0, rows.length);
+        }
+    }
+
+    /**
+     * Writes the size of a bucket and the position of each of its students.
+     * @param out This is the image being written.
+     * @param bucket This is the bucket.
+     * @param rows This maps each student to its position.
+     * @throws IOException if the image cannot be written.
+     */
+    private static void putRows(Out out, NameBucket bucket,
+        Map<Student, Integer> rows) throws IOException {
+        out.putInt(bucket.size());
+        for (Student s : bucket) {
+            out.putInt(rows.get(s));
+        }
+    }
+
+    /**
+     * Reads a directory from an image file.
+     * @param file This is the image file.
+     * @return A new directory holding the students of the image.
+     * @throws IOException if the file cannot be read, is not an image of a
+     * supported version, or is corrupt.
+     */
+    public static Directory read(Path file) throws IOException {
+        try (FileChannel in = FileChannel.open(file,
+            StandardOpenOption.READ)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Reads a directory from an image on the channel.
+     * @param channel This is the channel to read from, which is left open.
+     * @return A new directory holding the students of the image.
+     * @throws IOException if the image cannot be read, is not an image of a
+     * supported version, or is corrupt.
+     */
+    public static Directory read(ReadableByteChannel channel) throws
+        IOException {
+        In in = new In(channel);
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a directory image");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported image version " + version);
+        }
+        int count = in.getInt();
+        int nameCount = in.getInt();
+        if (count < 0 || nameCount < 0) {
+            throw new IOException("Corrupt image: bad header");
+        }
+        String[] names = new String[nameCount];
+        for (int i = 0; i < nameCount; i++) {
+            // Names are interned like those of every loader, so that they
+            // are shared with students loaded from elsewhere.
+            names[i] = NameDictionary.shared().intern(in.getString());
+            if (names[i] == null) {
+                throw new IOException("Corrupt image: null name");
+            }
+        }
+        Student[] students = new Student[count];
+        for (int i = 0; i < count; i++) {
+            String id = in.getString();
+            if (id == null) {
+                throw new IOException("Corrupt image: null Andrew ID");
+            }
+            students[i] = new Student.Builder(id)
+                .firstName(names[code(in.getInt(), nameCount)])
+                .lastName(names[code(in.getInt(), nameCount)])
+                .phoneNumber(in.getString()).build();
+        }
+        int[] order = new int[count];
+        in.getInts(order);
+        Student[] byId = new Student[count];
+        for (int i = 0; i < count; i++) {
+            byId[i] = students[code(order[i], count)];
+            if (i > 0 && byId[i - 1].getAndrewId()
+                .compareTo(byId[i].getAndrewId()) >= 0) {
+                throw new IOException("Corrupt image: Andrew IDs not sorted");
+            }
+        }
+        boolean[] seen = new boolean[count];
+        Postings first = readNamePostings(in, names, students, true, seen);
+        Arrays.fill(seen, false);
+        Postings last = readNamePostings(in, names, students, false, seen);
+        Arrays.fill(seen, false);
+        Postings phoneNumbers = readPhonePostings(in, students, seen);
+        int checksum = in.checksum();
+        if (in.getInt() != checksum) {
+            throw new IOException("Image checksum mismatch");
+        }
+        Directory directory = new Directory();
+        try {
+            directory.restore(students, byId, first, last, phoneNumbers);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt image", e);
+        }
+        return directory;
+    }
+
+    /**
+     * Reads the postings of a name index. Every student must be in the
+     * bucket of its own name, exactly once.
+     * @param in This is the image being read.
+     * @param names This holds the name of each code.
+     * @param students This holds the students in the order they were added.
+     * @param firstNames This is true for first names and false for last
+     * names.
+     * @param seen This is all false, and is set for each student read.
+     * @return The postings.
+     * @throws IOException if the image cannot be read or is corrupt.
+     */
+    private static Postings readNamePostings(In in, String[] names,
+        Student[] students, boolean firstNames, boolean[] seen)
+        throws IOException {
+        int keyCount = in.getInt();
+        if (keyCount < 0 || keyCount > names.length) {
+            throw new IOException("Corrupt image: bad name postings");
+        }
+        String[] keys = new String[keyCount];
+        NameBucket[] buckets = new NameBucket[keyCount];
+        int total = 0;
+        for (int k = 0; k < keyCount; k++) {
+            int code = code(in.getInt(), names.length);
+            keys[k] = names[code];
+            if (k > 0 && keys[k - 1].compareTo(keys[k]) >= 0) {
+                throw new IOException("Corrupt image: names not sorted");
+            }
+            Student[] bucket = readRows(in, students, seen);
+            for (Student s : bucket) {
+                String name = firstNames ? s.getFirstName()
+                    : s.getLastName();
+                if (!name.equals(keys[k])) {
+                    throw new IOException("Corrupt image: student "
+                        + s.getAndrewId() + " in wrong bucket");
+                }
+            }
+            buckets[k] = new NameBucket(bucket);
+            total += bucket.length;
+        }
+        if (total != students.length) {
+            throw new IOException("Corrupt image: students missing from "
+                + "name postings");
+        }
+        return new Postings(keys, buckets);
+    }
+
+    /**
+     * Reads the postings of the phone number index.
+     * @param in This is the image being read.
+     * @param students This holds the students in the order they were added.
+     * @param seen This is all false, and is set for each student read.
+     * @return The postings.
+     * @throws IOException if the image cannot be read or is corrupt.
+     */
+    private static Postings readPhonePostings(In in, Student[] students,
+        boolean[] seen) throws IOException {
+        int keyCount = in.getInt();
+        if (keyCount < 0 || keyCount > students.length) {
+            throw new IOException("Corrupt image: bad phone postings");
+        }
+        String[] keys = new String[keyCount];
+        NameBucket[] buckets = new NameBucket[keyCount];
+        for (int k = 0; k < keyCount; k++) {
+            keys[k] = in.getString();
+            if (keys[k] == null || keys[k].isEmpty()
+                || k > 0 && keys[k - 1].compareTo(keys[k]) >= 0) {
+                throw new IOException("Corrupt image: phones not sorted");
+            }
+            buckets[k] = new NameBucket(readRows(in, students, seen));
+        }
+        return new Postings(keys, buckets);
+    }
+
+    /**
+     * Reads the students of one bucket of postings.
+     * @param in This is the image being read.
+     * @param students This holds the students in the order they were added.
+     * @param seen This is set for each student read so far, and is set for
+     * the students of this bucket.
+     * @return The students of the bucket.
+     * @throws IOException if the image cannot be read, or if the bucket is
+     * empty or holds a student already read.
+     */
+    private static Student[] readRows(In in, Student[] students,
+        boolean[] seen) throws IOException {
+        int size = in.getInt();
+        if (size <= 0 || size > students.length) {
+            throw new IOException("Corrupt image: bad bucket size " + size);
+        }
+        Student[] bucket = new Student[size];
+        for (int i = 0; i < size; i++) {
+            int row = code(in.getInt(), students.length);
+            if (seen[row]) {
+                throw new IOException("Corrupt image: student "
+                    + students[row].getAndrewId() + " listed twice");
+            }
+            seen[row] = true;
+            bucket[i] = students[row];
+        }
+        return bucket;
+    }
+
+    /**
+     * Checks that a code or position read from an image is in range.
+     * @param code This is the value read.
+     * @param limit This is the number of valid values.
+     * @return The value.
+     * @throws IOException if the value is out of range.
+     */
+    private static int code(int code, int limit) throws IOException {
+        if (code < 0 || code >= limit) {
+            throw new IOException("Corrupt image: bad reference " + code);
+        }
+        return code;
+    }
+
+    /**
+     * Writes the students of the directory to a CSV file that BulkLoader
+     * can load, in the order they were added, with every field quoted.
+     * @param directory This is the directory to write.
+     * @param file This is the CSV file.
+     * @throws IOException if the file cannot be written.
+     */
+    static void writeCsv(Directory directory, Path file) throws IOException {
+        try (Writer out = new BufferedWriter(Files.newBufferedWriter(file,
+            StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            out.write(CSV_HEADER);
+            out.write('\n');
+            StringBuilder line = new StringBuilder();
+            for (Student s : directory.students()) {
+                line.setLength(0);
+                quote(line, s.getFirstName()).append(',');
+                quote(line, s.getLastName()).append(',');
+                quote(line, s.getAndrewId()).append(',');
+                quote(line, s.getPhoneNumber()).append('\n');
+                out.append(line);
+            }
+        }
+    }
+
+    /**
+     * Appends a CSV field in quotes, doubling the quotes inside it.
+     * @param line This is the line to append to.
+     * @param field This is the field, or null for an empty field.
+     * @return The line.
+     */
+    private static StringBuilder quote(StringBuilder line, String field) {
+        line.append('"');
+        if (field != null) {
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+        }
+        return line.append('"');
+    }
+
+    /**
+     * Main method of the converter between CSV rosters and images.
+     * @param args This holds toBinary or toCsv, the file to read and the
+     * file to write.
+     * @throws IOException if a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !args[0].equals("toBinary")
+            && !args[0].equals("toCsv")) {
+            System.out.println("Usage: java DirectoryImage toBinary"
+                + " <csvFile> <imageFile>\n"
+                + "       java DirectoryImage toCsv <imageFile> <csvFile>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        Directory directory;
+        if (args[0].equals("toBinary")) {
+            directory = new Directory();
+            LoadReport report = new BulkLoader().load(directory, args[1]);
+            for (LoadReport.RowError error : report.getErrors()) {
+                System.err.println(error);
+            }
+            write(directory, Paths.get(args[2]));
+        } else {
+            directory = read(Paths.get(args[1]));
+            writeCsv(directory, Paths.get(args[2]));
+        }
+        System.out.printf("Converted %d students to %s in %d ms%n",
+            directory.size(), args[2],
+            (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Postings - The keys of an index in sorted order, with the bucket of
+     * students of each key.
+     */
+    static final class Postings {
+
+        /**
+         * This holds the keys, in sorted order.
+         */
+        final String[] keys;
+
+        /**
+         * This holds the bucket of each key.
+         */
+        final NameBucket[] buckets;
+
+        /**
+         * This is the two argument constructor for the Postings class.
+         * @param keys This holds the keys, in sorted order.
+         * @param buckets This holds the bucket of each key.
+         */
+        Postings(String[] keys, NameBucket[] buckets) {
+            this.keys = keys;
+            this.buckets = buckets;
+        }
+    }
+
+    /**
+     * Out - Writes an image to a channel through a buffer, keeping a CRC32
+     * of the bytes written.
+     */
+    private static final class Out {
+
+        /**
+         * This is the channel written to.
+         */
+        private final WritableByteChannel channel;
+
+        /**
+         * This is the checksum of the bytes written so far.
+         */
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * This holds the bytes not yet written.
+         */
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /**
+         * This is the one argument constructor for the Out class.
+         * @param channel This is the channel to write to.
+         */
+        Out(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Makes room in the buffer for the given number of bytes.
+         * @param bytes This is the number of bytes needed.
+         * @throws IOException if the buffer cannot be written.
+         */
+        private void reserve(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush(true);
+                if (buffer.capacity() < bytes) {
+                    buffer = ByteBuffer.allocate(bytes);
+                }
+            }
+        }
+
+        /**
+         * Writes an int.
+         * @param value This is the int.
+         * @throws IOException if the buffer cannot be written.
+         */
+        void putInt(int value) throws IOException {
+            reserve(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        /**
+         * Writes an array of ints in bulk.
+         * @param values This holds the ints.
+         * @throws IOException if the buffer cannot be written.
+         */
+        void putInts(int[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                reserve(Integer.BYTES);
+                int n = Math.min(values.length - done,
+                    buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().put(values, done, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                done += n;
+            }
+        }
+
+        /**
+         * Writes a string.
+         * @param s This is the string, which may be null.
+         * @throws IOException if the buffer cannot be written.
+         */
+        void putString(String s) throws IOException {
+            if (s == null) {
+                putInt(NULL_LENGTH);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            reserve(Integer.BYTES + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        /**
+         * Writes the checksum of everything written and empties the buffer.
+         * @throws IOException if the buffer cannot be written.
+         */
+        void finish() throws IOException {
+            flush(true);
+            buffer.putInt((int) crc.getValue());
+            flush(false);
+        }
+
+        /**
+         * Writes the contents of the buffer to the channel and empties it.
+         * @param checked This is true if the bytes count toward the
+         * checksum.
+         * @throws IOException if the bytes cannot be written.
+         */
+        private void flush(boolean checked) throws IOException {
+            buffer.flip();
+            if (checked) {
+                crc.update(buffer.duplicate());
+            }
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * In - Reads an image from a channel through a buffer, keeping a CRC32
+     * of the bytes read.
+     */
+    private static final class In {
+
+        /**
+         * This is the channel read from.
+         */
+        private final ReadableByteChannel channel;
+
+        /**
+         * This is the checksum of the bytes read before checkedUpTo.
+         */
+        private final CRC32 crc = new CRC32();
+
+        /**
+         * This holds the bytes read from the channel and not yet used.
+         */
+        private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+        /**
+         * This represents the position in the buffer up to which the bytes
+         * are in the checksum.
+         */
+        private int checkedUpTo;
+
+        /**
+         * This represents the number of bytes the channel holds that are
+         * not yet read, or Long.MAX_VALUE if that is not known.
+         */
+        private long unread;
+
+        /**
+         * This is the one argument constructor for the In class.
+         * @param channel This is the channel to read from.
+         * @throws IOException if the size of a file channel cannot be read.
+         */
+        In(ReadableByteChannel channel) throws IOException {
+            this.channel = channel;
+            if (channel instanceof SeekableByteChannel) {
+                SeekableByteChannel file = (SeekableByteChannel) channel;
+                unread = file.size() - file.position();
+            } else {
+                unread = Long.MAX_VALUE;
+            }
+            buffer.limit(0);
+        }
+
+        /**
+         * Reads from the channel until the buffer holds the given number of
+         * bytes. A corrupt length is caught before anything is allocated
+         * when the size of the channel is known, and otherwise the buffer
+         * at most doubles per fill, so it never grows far past what the
+         * channel holds.
+         * @param bytes This is the number of bytes needed.
+         * @throws IOException if the channel ends first.
+         */
+        private void require(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            if (bytes - buffer.remaining() > unread) {
+                throw new EOFException("Image ends early");
+            }
+            crc.update(buffer.array(), checkedUpTo,
+                buffer.position() - checkedUpTo);
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (!buffer.hasRemaining()) {
+                    ByteBuffer larger = ByteBuffer.allocate(
+                        (int) Math.min(bytes, 2L * buffer.capacity()));
+                    buffer.flip();
+                    larger.put(buffer);
+                    buffer = larger;
+                }
+                int read = channel.read(buffer);
+                if (read < 0) {
+                    throw new EOFException("Image ends early");
+                }
+                unread -= read;
+            }
+            buffer.flip();
+            checkedUpTo = 0;
+        }
+
+        /**
+         * Reads an int.
+         * @return The int.
+         * @throws IOException if the channel ends first.
+         */
+        int getInt() throws IOException {
+            require(Integer.BYTES);
+            return buffer.getInt();
+        }
+
+        /**
+         * Fills an array with ints read in bulk.
+         * @param values This is the array to fill.
+         * @throws IOException if the channel ends first.
+         */
+        void getInts(int[] values) throws IOException {
+            int done = 0;
+            while (done < values.length) {
+                require(Integer.BYTES);
+                int n = Math.min(values.length - done,
+                    buffer.remaining() / Integer.BYTES);
+                buffer.asIntBuffer().get(values, done, n);
+                buffer.position(buffer.position() + n * Integer.BYTES);
+                done += n;
+            }
+        }
+
+        /**
+         * Reads a string, decoding it straight from the buffer.
+         * @return The string, which may be null.
+         * @throws IOException if the channel ends first or the length is
+         * not valid.
+         */
+        String getString() throws IOException {
+            int length = getInt();
+            if (length == NULL_LENGTH) {
+                return null;
+            }
+            if (length < 0) {
+                throw new IOException("Corrupt image: bad string length "
+                    + length);
+            }
+            require(length);
+            int at = buffer.position();
+            buffer.position(at + length);
+            return new String(buffer.array(), at, length,
+                StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Returns the checksum of every byte read so far.
+         * @return The CRC32 of the bytes read.
+         */
+        int checksum() {
+            crc.update(buffer.array(), checkedUpTo,
+                buffer.position() - checkedUpTo);
+            checkedUpTo = buffer.position();
+            return (int) crc.getValue();
+        }
+    }
+}
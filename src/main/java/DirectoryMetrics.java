@@ -0,0 +1,489 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * DirectoryMetrics - The instrumentation of a Directory. Every operation of
+ * the directory is counted, and searches count whether they found
+ * something. One operation in every sample interval of each kind is timed
+ * into a latency histogram: reading the clock costs more than a fast
+ * search, so timing every call would slow searches down severalfold.
+ * Recording takes a few atomic increments and allocates nothing, so it can
+ * be left on. The sizes of the name buckets are computed from the directory
+ * when they are read. The metrics can be registered as MBeans, or passed to
+ * a MetricsExporter.
+ * @author Tony Padilla (apadilla)
+ */
+public final class DirectoryMetrics {
+
+    /**
+     * Operation - The kinds of operation timed by DirectoryMetrics, one per
+     * public method of Directory that reads or changes it.
+     */
+    public enum Operation {
+        ADD_STUDENT("addStudent"),
+        ADD_ALL("addAll"),
+        APPLY_BATCH("applyBatch"),
+        DELETE_STUDENT("deleteStudent"),
+        SEARCH_BY_ANDREW_ID("searchByAndrewId"),
+        SEARCH_BY_FIRST_NAME("searchByFirstName"),
+        SEARCH_BY_LAST_NAME("searchByLastName"),
+        SEARCH_BY_FIRST_NAME_NORMALIZED("searchByFirstNameNormalized"),
+        SEARCH_BY_LAST_NAME_NORMALIZED("searchByLastNameNormalized"),
+        SEARCH_BY_PHONE_NUMBER("searchByPhoneNumber"),
+        SEARCH_BY_PHONE_PREFIX("searchByPhonePrefix"),
+        COMPLETE_FIRST_NAME("completeFirstName"),
+        COMPLETE_LAST_NAME("completeLastName"),
+        FUZZY_FIRST_NAME("fuzzySearchByFirstName"),
+        FUZZY_LAST_NAME("fuzzySearchByLastName"),
+        QUERY("query");
+
+        /**
+         * This is the name of the Directory method of the operation.
+         */
+        private final String methodName;
+
+        /**
+         * This is the constructor for the Operation enum.
+         * @param methodName This is the name of the Directory method.
+         */
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+
+        /**
+         * This returns the name of the Directory method of the operation.
+         * @return The method name, such as searchByFirstName.
+         */
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    /**
+     * Constant that represents the number of operations of a kind per timed
+     * one, unless set otherwise.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL = 16;
+
+    /**
+     * Constant that represents the start time handed out while recording is
+     * off, which makes the matching record call do nothing.
+     */
+    private static final long OFF = Long.MIN_VALUE;
+
+    /**
+     * Constant that represents the start time handed out to an operation
+     * that is counted but not timed.
+     */
+    private static final long UNTIMED = Long.MIN_VALUE + 1;
+
+    /**
+     * This is the directory the metrics are about.
+     */
+    private final Directory directory;
+
+    /**
+     * This holds the statistics of each operation, by ordinal.
+     */
+    private final OperationStats[] stats;
+
+    /**
+     * This is true while operations are being recorded.
+     */
+    private volatile boolean enabled;
+
+    /**
+     * This represents the number of operations of a kind per timed one.
+     */
+    private volatile int sampleInterval;
+
+    /**
+     * This is the one argument constructor for the DirectoryMetrics class.
+     * Recording starts on.
+     * @param directory This is the directory the metrics are about.
+     */
+    DirectoryMetrics(Directory directory) {
+        this.directory = directory;
+        stats = new OperationStats[Operation.values().length];
+        for (int i = 0; i < stats.length; i++) {
+            stats[i] = new OperationStats();
+        }
+        enabled = true;
+        sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    }
+
+    /**
+     * Switches recording on or off. Statistics already recorded are kept.
+     * @param enabled This is true to record operations from now on.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * This represents whether operations are being recorded.
+     * @return true if operations are being recorded.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets how many operations of each kind there are per timed one. An
+     * interval of 1 times every operation.
+     * @param interval This is the number of operations per timed one.
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public void setSampleInterval(int interval) throws
+        IllegalArgumentException {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        sampleInterval = interval;
+    }
+
+    /**
+     * This represents how many operations of each kind there are per timed
+     * one.
+     * @return The sample interval.
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * This returns the statistics of one kind of operation.
+     * @param operation This is the kind of operation.
+     * @return The statistics of the operation.
+     * @throws IllegalArgumentException if the operation is null.
+     */
+    public OperationStats getStats(Operation operation) throws
+        IllegalArgumentException {
+        if (operation == null) {
+            throw new IllegalArgumentException("Operation must be non-null");
+        }
+        return stats[operation.ordinal()];
+    }
+
+    /**
+     * This returns the distribution of the number of students sharing a
+     * first name, computed now. The directory is locked while it is read.
+     * @return A histogram with one value per first name.
+     */
+    public Histogram firstNameBucketSizes() {
+        synchronized (directory) {
+            return sizesOf(directory.firstNameBuckets());
+        }
+    }
+
+    /**
+     * This returns the distribution of the number of students sharing a
+     * last name, computed now. The directory is locked while it is read.
+     * @return A histogram with one value per last name.
+     */
+    public Histogram lastNameBucketSizes() {
+        synchronized (directory) {
+            return sizesOf(directory.lastNameBuckets());
+        }
+    }
+
+    /**
+     * Returns the distribution of the sizes of the given buckets.
+     * @param buckets This holds the buckets.
+     * @return A histogram with one value per bucket.
+     */
+    private static Histogram sizesOf(Collection<? extends List<Student>>
+        buckets) {
+        Histogram sizes = new Histogram();
+        for (List<Student> bucket : buckets) {
+            sizes.record(bucket.size());
+        }
+        return sizes;
+    }
+
+    /**
+     * Passes every metric to the given exporter: the size of the directory
+     * and of its name maps, the distributions of the name bucket sizes, and
+     * for each operation its count, its sampled latencies and, for searches,
+     * its hits and misses.
+     * @param exporter This is the exporter to pass the metrics to.
+     * @throws IllegalArgumentException if the exporter is null.
+     */
+    public void exportTo(MetricsExporter exporter) throws
+        IllegalArgumentException {
+        if (exporter == null) {
+            throw new IllegalArgumentException("Exporter must be non-null");
+        }
+        Histogram firstNames = firstNameBucketSizes();
+        Histogram lastNames = lastNameBucketSizes();
+        exporter.gauge("directory_students", directory.size());
+        exporter.gauge("directory_first_names", firstNames.getCount());
+        exporter.gauge("directory_last_names", lastNames.getCount());
+        exporter.histogram("directory_first_name_bucket_size", firstNames);
+        exporter.histogram("directory_last_name_bucket_size", lastNames);
+        for (Operation op : Operation.values()) {
+            String name = "directory_" + op.name().toLowerCase(Locale.ROOT);
+            OperationStats s = stats[op.ordinal()];
+            exporter.counter(name + "_total", s.getCount());
+            exporter.histogram(name + "_nanos", s.getLatency());
+            if (s.getHits() + s.getMisses() > 0) {
+                exporter.counter(name + "_hits_total", s.getHits());
+                exporter.counter(name + "_misses_total", s.getMisses());
+            }
+        }
+    }
+
+    /**
+     * Registers the metrics with the given MBean server: one
+     * OperationStatsMXBean per operation, named
+     * Directory:name=&lt;name&gt;,type=Operation,operation=&lt;method&gt;, and
+     * one NameIndexMXBean per name map, named
+     * Directory:name=&lt;name&gt;,type=NameIndex,index=firstName or lastName.
+     * @param server This is the MBean server, such as the platform one.
+     * @param name This is the name telling this directory apart from others
+     * in the same server.
+     * @throws IllegalArgumentException if the server or name is null, or if
+     * the name is not valid in an ObjectName or already registered.
+     */
+    public void registerMBeans(MBeanServer server, String name) throws
+        IllegalArgumentException {
+        if (server == null || name == null) {
+            throw new IllegalArgumentException(
+                "Server and name must be non-null");
+        }
+        List<ObjectName> registered = new ArrayList<>();
+        try {
+            for (Operation op : Operation.values()) {
+                ObjectName objectName = operationName(name, op);
+                server.registerMBean(stats[op.ordinal()], objectName);
+                registered.add(objectName);
+            }
+            ObjectName objectName = nameIndexName(name, "firstName");
+            server.registerMBean(new NameIndex(true), objectName);
+            registered.add(objectName);
+            objectName = nameIndexName(name, "lastName");
+            server.registerMBean(new NameIndex(false), objectName);
+            registered.add(objectName);
+        } catch (JMException e) {
+            for (ObjectName objectName : registered) {
+                try {
+                    unregister(server, objectName);
+                } catch (JMException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+            }
+            throw new IllegalArgumentException(
+                "Cannot register metrics as " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters the MBeans registered by registerMBeans under the given
+     * name. MBeans that are not registered are skipped.
+     * @param server This is the MBean server.
+     * @param name This is the name the metrics were registered under.
+     * @throws IllegalArgumentException if the server or name is null, or if
+     * the name is not valid in an ObjectName.
+     */
+    public void unregisterMBeans(MBeanServer server, String name) throws
+        IllegalArgumentException {
+        if (server == null || name == null) {
+            throw new IllegalArgumentException(
+                "Server and name must be non-null");
+        }
+        try {
+            for (Operation op : Operation.values()) {
+                unregister(server, operationName(name, op));
+            }
+            unregister(server, nameIndexName(name, "firstName"));
+            unregister(server, nameIndexName(name, "lastName"));
+        } catch (JMException e) {
+            throw new IllegalArgumentException(
+                "Cannot unregister metrics of " + name, e);
+        }
+    }
+
+    /**
+     * Unregisters an MBean if it is registered.
+     * @param server This is the MBean server.
+     * @param objectName This is the name of the MBean.
+     * @throws JMException if the MBean cannot be unregistered.
+     */
+    private static void unregister(MBeanServer server, ObjectName objectName)
+        throws JMException {
+        try {
+            server.unregisterMBean(objectName);
+        } catch (InstanceNotFoundException e) {
+            return;
+        }
+    }
+
+    /**
+     * Returns the ObjectName of the statistics of an operation.
+     * @param name This is the name of the directory.
+     * @param op This is the operation.
+     * @return The ObjectName of the operation's MBean.
+     * @throws JMException if the name is not valid.
+     */
+    private static ObjectName operationName(String name, Operation op) throws
+        JMException {
+        return new ObjectName("Directory:name=" + name
+            + ",type=Operation,operation=" + op.getMethodName());
+    }
+
+    /**
+     * Returns the ObjectName of the sizes of a name map.
+     * @param name This is the name of the directory.
+     * @param index This is the name of the name map.
+     * @return The ObjectName of the name map's MBean.
+     * @throws JMException if the name is not valid.
+     */
+    private static ObjectName nameIndexName(String name, String index) throws
+        JMException {
+        return new ObjectName("Directory:name=" + name
+            + ",type=NameIndex,index=" + index);
+    }
+
+    /**
+     * Returns the start time of an operation, to be passed to record when
+     * it completes.
+     * @param op This is the operation.
+     * @return The start time, UNTIMED if the operation is not one of the
+     * sample, or OFF if recording is off.
+     */
+    long start(Operation op) {
+        if (!enabled) {
+            return OFF;
+        }
+        if (!stats[op.ordinal()].sample(sampleInterval)) {
+            return UNTIMED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Records an operation that is not a search.
+     * @param op This is the operation.
+     * @param start This is the value start returned before the operation.
+     */
+    void record(Operation op, long start) {
+        if (start != OFF) {
+            stats[op.ordinal()].record(elapsedSince(start));
+        }
+    }
+
+    /**
+     * Records a search.
+     * @param op This is the operation.
+     * @param start This is the value start returned before the operation.
+     * @param hit This is true if the search found something.
+     */
+    void record(Operation op, long start, boolean hit) {
+        if (start != OFF) {
+            stats[op.ordinal()].record(elapsedSince(start), hit);
+        }
+    }
+
+    /**
+     * Returns the time elapsed since an operation started.
+     * @param start This is the value start returned before the operation.
+     * @return The elapsed nanoseconds, or -1 if the operation is not timed.
+     */
+    private static long elapsedSince(long start) {
+        return start == UNTIMED ? -1 : System.nanoTime() - start;
+    }
+
+    /**
+     * NameIndex - The NameIndexMXBean of one of the name maps. A poll reads
+     * each attribute in turn, so the distribution is computed once and kept
+     * for the attributes read in the next second, instead of locking the
+     * directory and walking every bucket for each of them.
+     */
+    private final class NameIndex implements NameIndexMXBean {
+
+        /**
+         * Constant that represents how long a computed distribution is used
+         * for, in nanoseconds.
+         */
+        private static final long SNAPSHOT_NANOS = 1000000000L;
+
+        /**
+         * This is true for the first name map and false for the last one.
+         */
+        private final boolean first;
+
+        /**
+         * This is the distribution last computed, or null.
+         */
+        private volatile Histogram snapshot;
+
+        /**
+         * This represents the System.nanoTime at which the snapshot was
+         * computed.
+         */
+        private volatile long takenAt;
+
+        /**
+         * This is the one argument constructor for the NameIndex class.
+         * @param first This is true for the first name map.
+         */
+        NameIndex(boolean first) {
+            this.first = first;
+        }
+
+        /**
+         * Returns the distribution of the bucket sizes, computing it again
+         * if the last one is more than a second old. Concurrent polls may
+         * both compute it, which is harmless.
+         * @return A histogram with one value per name.
+         */
+        private Histogram sizes() {
+            Histogram sizes = snapshot;
+            long now = System.nanoTime();
+            if (sizes == null || now - takenAt > SNAPSHOT_NANOS) {
+                sizes = first ? firstNameBucketSizes()
+                    : lastNameBucketSizes();
+                takenAt = now;
+                snapshot = sizes;
+            }
+            return sizes;
+        }
+
+        @Override
+        public int getNames() {
+            return (int) sizes().getCount();
+        }
+
+        @Override
+        public long getSingletonBuckets() {
+            return sizes().getCountAtOrBelow(1);
+        }
+
+        @Override
+        public double getMeanBucketSize() {
+            return sizes().getMean();
+        }
+
+        @Override
+        public long getP50BucketSize() {
+            return sizes().getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getP99BucketSize() {
+            return sizes().getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getLargestBucket() {
+            return sizes().getMax();
+        }
+    }
+}
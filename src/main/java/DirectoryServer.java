@@ -0,0 +1,862 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * DirectoryServer - Serves a Directory over HTTP with JSON bodies, for
+ * services that need student lookups without the GUI. It runs on the HTTP
+ * server of the JDK, which keeps connections alive between requests, and
+ * handles requests on a fixed pool of threads. Each request holds the
+ * directory's lock while it reads or changes it, as the GUI does. Results
+ * are copied and outcomes decided under the lock, and every response is
+ * sent after it is released, so a slow client holds up no other request.
+ * <p>
+ * The resources are:
+ * <ul>
+ * <li>GET /students/{andrewId} returns the student, or 404.</li>
+ * <li>GET /students?firstName=..&amp;lastName=..&amp;andrewIdPrefix=..&amp;
+ * phonePrefix=.. returns the students matching every given condition.
+ * With normalized=true the names are matched ignoring case and accents,
+ * and no prefix may be given.</li>
+ * <li>GET /students?phoneNumber=.. returns the students with the phone
+ * number, in any punctuation, for caller ID lookups.</li>
+ * <li>POST /students with a student object adds it, returning 201, or 409
+ * if the Andrew ID is taken.</li>
+ * <li>DELETE /students/{andrewId} deletes the student and returns it, or
+ * 404. The student is returned rather than an empty 204 response, after
+ * which the JDK server drops kept-alive connections.</li>
+ * <li>POST /students/lookup with an array of Andrew IDs returns an array
+ * with the student of each ID, or null, so that many lookups share one
+ * round trip.</li>
+ * <li>GET /metrics returns the directory metrics in the Prometheus text
+ * format.</li>
+ * </ul>
+ * Bad requests get 400 and a JSON object with an error field. Searches by
+ * a single name can be answered from a SearchCache of encoded responses.
+ * <p>
+ * A server can also serve a Replica of another server's directory. Then
+ * adds and deletes get 403, as changes must be made on the primary, and
+ * reads get 503 while the replica is staler than its bound.
+ * <p>
+ * The JDK server writes the headers and the body of a response separately,
+ * so with Nagle's algorithm on, every small response on a kept-alive
+ * connection waits for a delayed ACK, about 40ms. main turns it off by
+ * setting sun.net.httpserver.nodelay; a program embedding the server
+ * should launch the JVM with -Dsun.net.httpserver.nodelay=true, as the
+ * JDK reads the property once, when its first server is created.
+ * @author Tony Padilla (apadilla)
+ */
+public final class DirectoryServer {
+
+    /**
+     * Constant that represents the port listened on unless given otherwise.
+     */
+    public static final int DEFAULT_PORT = 8080;
+
+    /**
+     * Constant that represents the largest request body accepted, in bytes.
+     */
+    private static final int MAX_BODY = 16 * 1024 * 1024;
+
+    /**
+     * Constant that represents the path of the student resources.
+     */
+    private static final String STUDENTS = "/students";
+
+    /**
+     * Constant that represents the path of the batch lookup resource.
+     */
+    private static final String LOOKUP = "/lookup";
+
+    /**
+     * Constant that represents the content type of JSON responses.
+     */
+    private static final String JSON = "application/json; charset=utf-8";
+
+    /**
+     * This is the directory served.
+     */
+    private final Directory directory;
+
+    /**
+     * This is the HTTP server.
+     */
+    private final HttpServer server;
+
+    /**
+     * This runs the request handlers.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * This holds the encoded responses of single name searches, or is null
+     * if they are not cached.
+     */
+    private final SearchCache<byte[]> cache;
+
+    /**
+     * This is the replica whose copy is served, or null if the directory is
+     * not a replica.
+     */
+    private Replica replica;
+
+    /**
+     * This is the primary shipping the directory's changes, or null.
+     */
+    private ReplicationPrimary primary;
+
+    /**
+     * This is the store keeping the directory on disk, or null.
+     */
+    private DirectoryStore store;
+
+    /**
+     * This is the three argument constructor for the DirectoryServer class.
+     * The server is bound to the address but does not accept requests until
+     * it is started.
+     * @param directory This is the directory to serve.
+     * @param address This is the address to listen on. Port 0 picks a free
+     * port.
+     * @param threads This is the number of threads handling requests.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if the directory or address is null,
+     * or if the number of threads is not positive.
+     */
+    public DirectoryServer(Directory directory, InetSocketAddress address,
+        int threads) throws IOException, IllegalArgumentException {
+        this(directory, address, threads, 0);
+    }
+
+    /**
+     * This is the four argument constructor for the DirectoryServer class.
+     * The server is bound to the address but does not accept requests until
+     * it is started.
+     * @param directory This is the directory to serve.
+     * @param address This is the address to listen on. Port 0 picks a free
+     * port.
+     * @param threads This is the number of threads handling requests.
+     * @param cacheSize This is the number of single name search responses
+     * kept in a W-TinyLFU cache, or 0 for no cache.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if the directory or address is null,
+     * if the number of threads is not positive, or if the cache size is
+     * negative.
+     */
+    public DirectoryServer(Directory directory, InetSocketAddress address,
+        int threads, int cacheSize) throws IOException,
+        IllegalArgumentException {
+        if (directory == null || address == null) {
+            throw new IllegalArgumentException(
+                "Directory and address must be non-null");
+        }
+        if (threads < 1) {
+            throw new IllegalArgumentException("Threads must be positive");
+        }
+        if (cacheSize < 0) {
+            throw new IllegalArgumentException(
+                "Cache size must be non-negative");
+        }
+        this.directory = directory;
+        cache = cacheSize == 0 ? null : new SearchCache<>(directory,
+            cacheSize, SearchCache.Policy.TINY_LFU, DirectoryServer::encode);
+        server = HttpServer.create(address, 0);
+        executor = Executors.newFixedThreadPool(threads);
+        server.setExecutor(executor);
+        server.createContext(STUDENTS, this::handleStudents);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests, waits for the requests being handled to
+     * finish, and releases the address.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        if (cache != null) {
+            synchronized (directory) {
+                cache.close();
+            }
+        }
+    }
+
+    /**
+     * Makes the server serve the copy of a replica, refusing changes and
+     * refusing reads while the copy is stale. This must be called before the
+     * server is started.
+     * @param replica This is the replica, whose directory must be the one
+     * served.
+     * @throws IllegalArgumentException if the replica does not keep its copy
+     * in the directory served.
+     */
+    public void setReplica(Replica replica) throws IllegalArgumentException {
+        if (replica != null && replica.getDirectory() != directory) {
+            throw new IllegalArgumentException(
+                "Replica must keep its copy in the directory served");
+        }
+        this.replica = replica;
+    }
+
+    /**
+     * Adds the metrics of a primary shipping the directory's changes to
+     * those served. This must be called before the server is started.
+     * @param primary This is the primary, or null.
+     */
+    public void setPrimary(ReplicationPrimary primary) {
+        this.primary = primary;
+    }
+
+    /**
+     * Makes the server answer an add or delete only once the change is on
+     * the disk of the store keeping the directory. This must be called
+     * before the server is started.
+     * @param store This is the store, whose directory must be the one
+     * served, or null.
+     * @throws IllegalArgumentException if the store keeps another directory.
+     */
+    public void setStore(DirectoryStore store) throws
+        IllegalArgumentException {
+        if (store != null && store.getDirectory() != directory) {
+            throw new IllegalArgumentException(
+                "Store must keep the directory served");
+        }
+        this.store = store;
+    }
+
+    /**
+     * Waits until the changes made so far are on disk, if the directory is
+     * kept in a store. Called without holding the directory's lock.
+     * @throws UncheckedIOException if the changes cannot be saved.
+     */
+    private void sync() throws UncheckedIOException {
+        if (store != null) {
+            store.sync();
+        }
+    }
+
+    /**
+     * This returns the address the server listens on.
+     * @return The address, with the port picked if port 0 was given.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Handles a request for the student resources.
+     * @param exchange This is the request and its response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleStudents(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getRawPath();
+            String rest = path.substring(STUDENTS.length());
+            String method = exchange.getRequestMethod();
+            if (replica != null) {
+                boolean change = method.equals("DELETE")
+                    || method.equals("POST") && !rest.equals(LOOKUP);
+                if (change) {
+                    error(exchange, 403, "Read-only replica");
+                    return;
+                } else if (replica.isStale()) {
+                    error(exchange, 503, "Replica is stale");
+                    return;
+                }
+            }
+            if (rest.isEmpty() || rest.equals("/")) {
+                if (method.equals("GET")) {
+                    search(exchange);
+                } else if (method.equals("POST")) {
+                    add(exchange);
+                } else {
+                    notAllowed(exchange, "GET, POST");
+                }
+            } else if (rest.equals(LOOKUP) && method.equals("POST")) {
+                lookup(exchange);
+            } else if (rest.charAt(0) == '/' && rest.indexOf('/', 1) < 0) {
+                String id = decode(rest.substring(1));
+                if (method.equals("GET")) {
+                    get(exchange, id);
+                } else if (method.equals("DELETE")) {
+                    delete(exchange, id);
+                } else {
+                    notAllowed(exchange, "GET, DELETE");
+                }
+            } else {
+                error(exchange, 404, "No such resource");
+            }
+        } catch (IllegalArgumentException e) {
+            error(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            error(exchange, 500, e.getMessage());
+        } catch (RuntimeException e) {
+            internalError(exchange, e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles a request for the metrics.
+     * @param exchange This is the request and its response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                notAllowed(exchange, "GET");
+                return;
+            }
+            StringBuilder body = new StringBuilder();
+            PrometheusExporter exporter = new PrometheusExporter(body);
+            directory.getMetrics().exportTo(exporter);
+            if (cache != null) {
+                synchronized (directory) {
+                    cache.exportTo(exporter, "directory_search_cache");
+                }
+            }
+            if (replica != null) {
+                replica.exportTo(exporter, "directory_replica");
+            }
+            if (primary != null) {
+                primary.exportTo(exporter, "directory_primary");
+            }
+            send(exchange, 200, "text/plain; version=0.0.4; charset=utf-8",
+                body);
+        } catch (RuntimeException e) {
+            internalError(exchange, e);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Answers GET /students/{andrewId}.
+     * @param exchange This is the request and its response.
+     * @param id This is the Andrew ID.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void get(HttpExchange exchange, String id) throws IOException {
+        Student s;
+        synchronized (directory) {
+            s = directory.searchByAndrewId(id);
+        }
+        if (s == null) {
+            error(exchange, 404, "Andrew id specified not found");
+            return;
+        }
+        StringBuilder body = new StringBuilder();
+        Json.appendStudent(body, s);
+        send(exchange, 200, JSON, body);
+    }
+
+    /**
+     * Searches the directory by names ignoring case and accents. When both
+     * names are given, the students of the first name are checked against
+     * the last name.
+     * @param first This is the first name, or null.
+     * @param last This is the last name, or null.
+     * @return A copy of the matching students.
+     */
+    private List<Student> searchNormalized(String first, String last) {
+        List<Student> students = new ArrayList<>();
+        synchronized (directory) {
+            if (first == null) {
+                students.addAll(directory.searchByLastNameNormalized(last));
+                return students;
+            }
+            String key = last == null ? null
+                : NormalizedNameIndex.normalize(last);
+            for (Student s : directory.searchByFirstNameNormalized(first)) {
+                if (key == null || key.equals(
+                    NormalizedNameIndex.normalize(s.getLastName()))) {
+                    students.add(s);
+                }
+            }
+        }
+        return students;
+    }
+
+    /**
+     * Answers GET /students with search conditions. A phone number goes to
+     * the reverse lookup, normalized names to the normalized name searches,
+     * a single name condition to the matching name search, and anything else
+     * to a query.
+     * @param exchange This is the request and its response.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void search(HttpExchange exchange) throws IOException {
+        Map<String, String> params =
+            parameters(exchange.getRequestURI().getRawQuery());
+        String first = params.remove("firstName");
+        String last = params.remove("lastName");
+        String idPrefix = params.remove("andrewIdPrefix");
+        String phonePrefix = params.remove("phonePrefix");
+        boolean normalized = Boolean.parseBoolean(params.remove("normalized"));
+        String phoneNumber = params.remove("phoneNumber");
+        if (!params.isEmpty()) {
+            throw new IllegalArgumentException(
+                "Unknown parameter " + params.keySet().iterator().next());
+        }
+        if (first == null && last == null && idPrefix == null
+            && phonePrefix == null && phoneNumber == null) {
+            throw new IllegalArgumentException(
+                "At least one search condition is needed");
+        }
+        List<Student> students;
+        if (phoneNumber != null) {
+            if (first != null || last != null || idPrefix != null
+                || phonePrefix != null || normalized) {
+                throw new IllegalArgumentException(
+                    "Phone number searches take no other conditions");
+            }
+            synchronized (directory) {
+                students = new ArrayList<>(
+                    directory.searchByPhoneNumber(phoneNumber));
+            }
+        } else if (normalized) {
+            if (idPrefix != null || phonePrefix != null) {
+                throw new IllegalArgumentException(
+                    "Normalized searches only take names");
+            }
+            students = searchNormalized(first, last);
+        } else if (idPrefix == null && phonePrefix == null
+            && (first == null || last == null) && cache != null) {
+            byte[] body;
+            synchronized (directory) {
+                body = first != null ? cache.searchByFirstName(first)
+                    : cache.searchByLastName(last);
+            }
+            send(exchange, 200, JSON, body);
+            return;
+        } else if (idPrefix == null && phonePrefix == null
+            && (first == null || last == null)) {
+            synchronized (directory) {
+                students = new ArrayList<>(first != null
+                    ? directory.searchByFirstName(first)
+                    : directory.searchByLastName(last));
+            }
+        } else {
+            Query.Builder query = new Query.Builder();
+            if (first != null) {
+                query.firstName(first);
+            }
+            if (last != null) {
+                query.lastName(last);
+            }
+            if (idPrefix != null) {
+                query.andrewIdPrefix(idPrefix);
+            }
+            if (phonePrefix != null) {
+                query.phonePrefix(phonePrefix);
+            }
+            students = new ArrayList<>();
+            synchronized (directory) {
+                directory.query(query.build()).forEachRemaining(students::add);
+            }
+        }
+        StringBuilder body = new StringBuilder();
+        Json.appendStudents(body, students);
+        send(exchange, 200, JSON, body);
+    }
+
+    /**
+     * Answers POST /students.
+     * @param exchange This is the request and its response.
+     * @throws IOException if the request cannot be read or the response
+     * cannot be sent.
+     */
+    private void add(HttpExchange exchange) throws IOException {
+        Student s = Json.toStudent(Json.parse(body(exchange)));
+        boolean taken;
+        synchronized (directory) {
+            taken = directory.contains(s.getAndrewId());
+            if (!taken) {
+                directory.addStudent(s);
+            }
+        }
+        if (taken) {
+            error(exchange, 409, "Student already in directory");
+            return;
+        }
+        sync();
+        StringBuilder body = new StringBuilder();
+        Json.appendStudent(body, s);
+        send(exchange, 201, JSON, body);
+    }
+
+    /**
+     * Answers DELETE /students/{andrewId}.
+     * @param exchange This is the request and its response.
+     * @param id This is the Andrew ID.
+     * @throws IOException if the response cannot be sent.
+     */
+    private void delete(HttpExchange exchange, String id) throws IOException {
+        Student s;
+        synchronized (directory) {
+            s = directory.studentWithId(id);
+            if (s != null) {
+                directory.deleteStudent(id);
+            }
+        }
+        if (s == null) {
+            error(exchange, 404, "Andrew id specified not found");
+            return;
+        }
+        sync();
+        StringBuilder body = new StringBuilder();
+        Json.appendStudent(body, s);
+        send(exchange, 200, JSON, body);
+    }
+
+    /**
+     * Answers POST /students/lookup.
+     * @param exchange This is the request and its response.
+     * @throws IOException if the request cannot be read or the response
+     * cannot be sent.
+     */
+    private void lookup(HttpExchange exchange) throws IOException {
+        Object ids = Json.parse(body(exchange));
+        if (!(ids instanceof List)) {
+            throw new IllegalArgumentException(
+                "Lookup must be an array of Andrew ids");
+        }
+        List<?> idList = (List<?>) ids;
+        for (Object id : idList) {
+            if (!(id instanceof String)) {
+                throw new IllegalArgumentException(
+                    "Andrew ids must be strings");
+            }
+        }
+        List<Student> students = new ArrayList<>(idList.size());
+        synchronized (directory) {
+            for (Object id : idList) {
+                students.add(directory.searchByAndrewId((String) id));
+            }
+        }
+        StringBuilder body = new StringBuilder();
+        Json.appendStudents(body, students);
+        send(exchange, 200, JSON, body);
+    }
+
+    /**
+     * Returns the JSON response of a search result.
+     * @param students This holds the students found.
+     * @return The response body, as UTF-8.
+     */
+    private static byte[] encode(List<Student> students) {
+        StringBuilder body = new StringBuilder();
+        Json.appendStudents(body, students);
+        return body.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the body of a request as UTF-8 text.
+     * @param exchange This is the request.
+     * @return The body.
+     * @throws IOException if the body cannot be read.
+     * @throws IllegalArgumentException if the body is too large.
+     */
+    private static String body(HttpExchange exchange) throws IOException,
+        IllegalArgumentException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                if (bytes.size() + n > MAX_BODY) {
+                    throw new IllegalArgumentException("Body too large");
+                }
+                bytes.write(buffer, 0, n);
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Splits a raw query string into decoded parameters.
+     * @param query This is the raw query string, or null.
+     * @return The parameters by name.
+     * @throws IllegalArgumentException if a parameter is repeated or cannot
+     * be decoded.
+     */
+    private static Map<String, String> parameters(String query) throws
+        IllegalArgumentException {
+        if (query == null || query.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = decode(eq < 0 ? pair : pair.substring(0, eq));
+            String value = eq < 0 ? "" : decode(pair.substring(eq + 1));
+            if (params.put(name, value) != null) {
+                throw new IllegalArgumentException(
+                    "Repeated parameter " + name);
+            }
+        }
+        return params;
+    }
+
+    /**
+     * Decodes a percent-encoded part of a URI.
+     * @param s This is the encoded text.
+     * @return The decoded text.
+     * @throws IllegalArgumentException if the text cannot be decoded.
+     */
+    private static String decode(String s) throws IllegalArgumentException {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Sends a response with a body.
+     * @param exchange This is the request and its response.
+     * @param status This is the status code.
+     * @param type This is the content type.
+     * @param body This is the body.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void send(HttpExchange exchange, int status, String type,
+        CharSequence body) throws IOException {
+        send(exchange, status, type,
+            body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a response with an encoded body.
+     * @param exchange This is the request and its response.
+     * @param status This is the status code.
+     * @param type This is the content type.
+     * @param bytes This is the body.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void send(HttpExchange exchange, int status, String type,
+        byte[] bytes) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", type);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Sends an error response with a JSON body holding the message.
+     * @param exchange This is the request and its response.
+     * @param status This is the status code.
+     * @param message This describes the error.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void error(HttpExchange exchange, int status,
+        String message) throws IOException {
+        StringBuilder body = new StringBuilder("{\"error\":");
+        Json.appendString(body, message);
+        body.append('}');
+        send(exchange, status, JSON, body);
+    }
+
+    /**
+     * Sends a 500 response for an unexpected error, which is also printed,
+     * so that the client is not left without a response.
+     * @param exchange This is the request and its response.
+     * @param e This is the error.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void internalError(HttpExchange exchange,
+        RuntimeException e) throws IOException {
+        e.printStackTrace();
+        error(exchange, 500, "Internal server error");
+    }
+
+    /**
+     * Sends a 405 response for a method the resource does not support.
+     * @param exchange This is the request and its response.
+     * @param allowed This lists the methods the resource supports.
+     * @throws IOException if the response cannot be sent.
+     */
+    private static void notAllowed(HttpExchange exchange, String allowed)
+        throws IOException {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        error(exchange, 405, "Method not allowed");
+    }
+
+    /**
+     * Parses a port number given on the command line.
+     * @param s This is the argument.
+     * @return The port.
+     * @throws IllegalArgumentException if the argument is not a number from
+     * 0 to 65535.
+     */
+    private static int portOf(String s) throws IllegalArgumentException {
+        int port = Integer.parseInt(s);
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Bad port " + s);
+        }
+        return port;
+    }
+
+    /**
+     * Main method for the headless directory server. Optionally keeps the
+     * directory in a data folder so that changes survive a restart, and
+     * optionally loads it with data from a CSV file before serving it. The
+     * server can ship its changes to replicas, or serve a replica of
+     * another server instead. The metrics of the directory are registered
+     * with the platform MBean server under the name server, and Nagle's
+     * algorithm is turned off unless sun.net.httpserver.nodelay is set.
+     * @param args This should be an optional -p flag followed by a port,
+     * an optional -c flag followed by the number of search responses to
+     * cache, an optional -d flag followed by the name of a data folder, an
+     * optional -r flag followed by the port to accept replicas on, then a
+     * single optional argument representing the name of a CSV file. To
+     * serve a replica, give a -f flag followed by the host:port of the
+     * primary's replication port and optionally a -m flag followed by the
+     * staleness bound in milliseconds, instead of a data folder, a
+     * replication port or a file.
+     * @throws FileNotFoundException if the CSV file does not exist.
+     * @throws IOException if the data cannot be read or a port cannot be
+     * bound.
+     */
+    public static void main(String[] args) throws FileNotFoundException,
+        IOException {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        int port = DEFAULT_PORT;
+        int cacheSize = 0;
+        int replicationPort = -1;
+        long maxStaleness = Replica.DEFAULT_MAX_STALENESS_MILLIS;
+        String dataDir = null;
+        String file = null;
+        InetSocketAddress primaryAddress = null;
+        boolean valid = true;
+        try {
+            for (int i = 0; i < args.length && valid; i++) {
+                if (args[i].equals("-p") && i + 1 < args.length) {
+                    port = portOf(args[++i]);
+                } else if (args[i].equals("-c") && i + 1 < args.length) {
+                    cacheSize = Integer.parseInt(args[++i]);
+                    valid = cacheSize >= 0;
+                } else if (args[i].equals("-d") && i + 1 < args.length) {
+                    dataDir = args[++i];
+                } else if (args[i].equals("-r") && i + 1 < args.length) {
+                    replicationPort = portOf(args[++i]);
+                } else if (args[i].equals("-f") && i + 1 < args.length
+                    && args[i + 1].lastIndexOf(':') > 0) {
+                    String address = args[++i];
+                    int colon = address.lastIndexOf(':');
+                    primaryAddress = new InetSocketAddress(
+                        address.substring(0, colon),
+                        portOf(address.substring(colon + 1)));
+                } else if (args[i].equals("-m") && i + 1 < args.length) {
+                    maxStaleness = Long.parseLong(args[++i]);
+                    valid = maxStaleness > 0;
+                } else if (file == null && !args[i].startsWith("-")) {
+                    file = args[i];
+                } else {
+                    valid = false;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            valid = false;
+        }
+        if (!valid || primaryAddress != null && (dataDir != null
+            || file != null || replicationPort >= 0)) {
+            System.out.println("Usage: java DirectoryServer [-p <port>]"
+                + " [-c <cacheSize>] [-d <dataDir>] [-r <replicationPort>]"
+                + " [<filename>]");
+            System.out.println("       java DirectoryServer [-p <port>]"
+                + " [-c <cacheSize>] -f <host:port> [-m <maxStalenessMs>]");
+            System.exit(0);
+        }
+        if (file != null && !new File(file).isFile()) {
+            throw new FileNotFoundException(file);
+        }
+        DirectoryStore store = null;
+        Directory directory;
+        if (dataDir == null) {
+            directory = new Directory();
+        } else {
+            store = DirectoryStore.open(Paths.get(dataDir));
+            directory = store.getDirectory();
+        }
+        if (file != null) {
+            System.out.println(new BulkLoader().load(directory, file));
+            if (store != null) {
+                store.sync();
+            }
+        }
+        directory.getMetrics().registerMBeans(
+            ManagementFactory.getPlatformMBeanServer(), "server");
+        DirectoryServer server = new DirectoryServer(directory,
+            new InetSocketAddress(port),
+            Math.max(4, Runtime.getRuntime().availableProcessors()),
+            cacheSize);
+        server.setStore(store);
+        ReplicationPrimary primary = null;
+        Replica replica = null;
+        if (replicationPort >= 0) {
+            primary = new ReplicationPrimary(directory,
+                new InetSocketAddress(replicationPort));
+            server.setPrimary(primary);
+            primary.start();
+            System.out.println("Accepting replicas on port "
+                + primary.getAddress().getPort());
+        } else if (primaryAddress != null) {
+            replica = new Replica(directory, primaryAddress, maxStaleness);
+            server.setReplica(replica);
+            replica.start();
+            System.out.println("Replicating from "
+                + primaryAddress.getHostString() + ":"
+                + primaryAddress.getPort());
+        }
+        DirectoryStore closing = store;
+        Closeable replication = primary != null ? primary : replica;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop();
+            try {
+                if (replication != null) {
+                    replication.close();
+                }
+                if (closing != null) {
+                    closing.close();
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot shut down cleanly: " + e);
+            }
+        }));
+        server.start();
+        System.out.println("Serving " + directory.size()
+            + " students on port " + server.getAddress().getPort());
+    }
+}
@@ -0,0 +1,64 @@
+import java.util.List;
+
+/**
+ * DirectoryShard - One partition of a ShardedDirectory. A shard holds the
+ * students whose Andrew IDs hash to it and answers the lookups of a
+ * Directory for them. A ShardedDirectory calls its shards from several
+ * threads at once, so implementations must be thread-safe. LocalShard keeps
+ * the students in a Directory of this JVM, and RemoteShard in a
+ * DirectoryServer, which may run in another process. Failures to reach a
+ * shard are thrown as UncheckedIOException.
+ * @author Tony Padilla (apadilla)
+ */
+public interface DirectoryShard {
+
+    /**
+     * Adds a student to the shard.
+     * @param s This represents the student to add.
+     * @throws IllegalArgumentException if the student is null, if its Andrew
+     * ID is already present, or if its first or last name is null.
+     */
+    void addStudent(Student s) throws IllegalArgumentException;
+
+    /**
+     * Deletes a student from the shard.
+     * @param andrewId This represents the Andrew ID of the student.
+     * @return The student deleted, or null if there was none with the ID.
+     * @throws IllegalArgumentException if the ID is null.
+     */
+    Student deleteStudent(String andrewId) throws IllegalArgumentException;
+
+    /**
+     * Returns the student with the given Andrew ID.
+     * @param andrewId This represents a student's Andrew ID.
+     * @return The student, or null if there is none with the ID.
+     * @throws IllegalArgumentException if the ID is null.
+     */
+    Student searchByAndrewId(String andrewId) throws IllegalArgumentException;
+
+    /**
+     * Returns the students of the shard with the given first name.
+     * @param firstName This is the first name to match.
+     * @return A copy of the matching students, in the order they were added
+     * to the shard.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException;
+
+    /**
+     * Returns the students of the shard with the given last name.
+     * @param lastName This is the last name to match.
+     * @return A copy of the matching students, in the order they were added
+     * to the shard.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException;
+
+    /**
+     * Returns every student of the shard, as used to rebalance the shards.
+     * @return A copy of the students of the shard.
+     */
+    List<Student> students();
+}
@@ -0,0 +1,571 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * DirectoryStore - Keeps a Directory on disk so that changes survive a
+ * restart. Every add and delete is appended to a write-ahead log before it is
+ * applied, and every so many changes the whole directory is written to a
+ * snapshot, a DirectoryImage behind a short header, and a new log is
+ * started. Opening a store loads the latest snapshot with its indexes
+ * already built and replays only the logs written after it.
+ * <p>
+ * The log is appended to while the thread changing the directory holds its
+ * monitor, but not forced there: a change is durable once sync has been
+ * called after it, which the thread that made it does after releasing the
+ * monitor. Threads that change the directory one after the other then wait
+ * for the disk together, and one force covers all of their changes. A
+ * change nobody syncs is forced by the next sync of any thread, by the next
+ * checkpoint or by close. Other threads may see a change before it is
+ * durable.
+ * <p>
+ * Logs are numbered by generation. A snapshot records the generation of the
+ * first log that is not part of it, which is started before the snapshot is
+ * written, so a crash at any point of a checkpoint leaves a snapshot and a
+ * set of logs that together hold every change. The snapshot is written by a
+ * thread of the store from a copy of the list of students, so that changes
+ * are not held up while it is written.
+ * @author Tony Padilla (apadilla)
+ */
+public final class DirectoryStore implements Closeable {
+
+    /**
+     * Constant that represents the number of changes between snapshots by
+     * default.
+     */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 100000;
+
+    /**
+     * Constant that represents the first bytes of a snapshot file.
+     */
+    private static final int MAGIC = 0x53444952;
+
+    /**
+     * Constant that represents the version of the snapshot layout.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Constant that represents the size of the snapshot header: the magic
+     * number, the version, the log generation and a CRC32 of the three.
+     */
+    private static final int HEADER = 3 * Integer.BYTES + Long.BYTES;
+
+    /**
+     * Constant that represents the name of the snapshot file.
+     */
+    private static final String SNAPSHOT = "snapshot.bin";
+
+    /**
+     * Constant that represents the name of a snapshot being written.
+     */
+    private static final String SNAPSHOT_TMP = "snapshot.tmp";
+
+    /**
+     * Constant that represents the start of the name of a log file.
+     */
+    private static final String LOG_PREFIX = "wal-";
+
+    /**
+     * Constant that represents the end of the name of a log file.
+     */
+    private static final String LOG_SUFFIX = ".log";
+
+    /**
+     * This is the folder holding the snapshot and the logs.
+     */
+    private final Path dir;
+
+    /**
+     * This is the directory kept by the store.
+     */
+    private final Directory directory;
+
+    /**
+     * This represents the number of changes between snapshots.
+     */
+    private final int checkpointInterval;
+
+    /**
+     * This is the listener registered with the directory.
+     */
+    private final MutationListener journal;
+
+    /**
+     * This represents the generation of the current log.
+     */
+    private long generation;
+
+    /**
+     * This is the current log. It is only switched holding the directory's
+     * monitor, and is read by sync without it.
+     */
+    private volatile WriteAheadLog log;
+
+    /**
+     * This represents the number of changes logged since the last snapshot.
+     */
+    private int sinceCheckpoint;
+
+    /**
+     * This is true while a checkpoint started by the journal is being
+     * written.
+     */
+    private volatile boolean checkpointing;
+
+    /**
+     * This holds the error of the last checkpoint written in the
+     * background, or is null.
+     */
+    private volatile IOException checkpointError;
+
+    /**
+     * This guards the snapshot files and written.
+     */
+    private final Object checkpointLock = new Object();
+
+    /**
+     * This represents the generation of the newest snapshot written.
+     */
+    private long written;
+
+    /**
+     * This writes the snapshots of checkpoints started by the journal.
+     */
+    private final ExecutorService checkpointer;
+
+    /**
+     * This is the constructor used by the open methods.
+     * @param dir This is the folder holding the snapshot and the logs.
+     * @param directory This is the directory restored from the folder.
+     * @param generation This represents the generation of the current log.
+     * @param checkpointInterval This represents the number of changes between
+     * snapshots.
+     * @throws IOException if the current log cannot be opened.
+     */
+    private DirectoryStore(Path dir, Directory directory, long generation,
+        int checkpointInterval) throws IOException {
+        this.dir = dir;
+        this.directory = directory;
+        this.generation = generation;
+        this.checkpointInterval = checkpointInterval;
+        log = new WriteAheadLog(logFile(generation));
+        checkpointer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "directory-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        journal = new Journal();
+        directory.setJournal(journal);
+    }
+
+    /**
+     * Opens the store in the given folder with the default checkpoint
+     * interval, creating the folder if needed.
+     * @param dir This is the folder holding the snapshot and the logs.
+     * @return The opened store.
+     * @throws IOException if the folder cannot be read or is corrupt.
+     */
+    public static DirectoryStore open(Path dir) throws IOException {
+        return open(dir, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * Opens the store in the given folder, creating the folder if needed.
+     * The latest snapshot is loaded and the logs written after it are
+     * replayed. A record cut short at the end of a log is dropped.
+     * @param dir This is the folder holding the snapshot and the logs.
+     * @param checkpointInterval This represents the number of changes between
+     * snapshots.
+     * @return The opened store.
+     * @throws IOException if the folder cannot be read or is corrupt.
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public static DirectoryStore open(Path dir, int checkpointInterval) throws
+        IOException, IllegalArgumentException {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve(SNAPSHOT_TMP));
+        Directory directory;
+        long generation = 0;
+        Path snapshot = dir.resolve(SNAPSHOT);
+        if (Files.exists(snapshot)) {
+            try (FileChannel in = FileChannel.open(snapshot,
+                StandardOpenOption.READ)) {
+                generation = readSnapshotHeader(in);
+                directory = DirectoryImage.read(in);
+            }
+        } else {
+            directory = new Directory();
+        }
+        for (long g : logGenerations(dir)) {
+            if (g >= generation) {
+                WriteAheadLog.replay(logFile(dir, g), directory);
+                generation = g;
+            }
+        }
+        return new DirectoryStore(dir, directory, generation,
+            checkpointInterval);
+    }
+
+    /**
+     * This is the getter for the directory kept by the store. Changes made
+     * to it are persisted until the store is closed.
+     * @return This gives the directory.
+     */
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Waits until every change made to the directory so far is on disk.
+     * Call it after releasing the directory's monitor, so that other
+     * threads can change the directory meanwhile and share the force.
+     * Returns at once if another thread's sync already forced the changes.
+     * Changes logged before a checkpoint were forced when it switched logs.
+     * @throws UncheckedIOException if the log cannot be written. The changes
+     * stay in the directory but are lost on restart, and the store refuses
+     * further changes.
+     */
+    public void sync() throws UncheckedIOException {
+        WriteAheadLog current = log;
+        current.sync(current.appended());
+    }
+
+    /**
+     * Writes the whole directory to a new snapshot, starts a new log, and
+     * deletes the logs the snapshot replaces. The directory's monitor is
+     * only held while the log is switched, so the caller must not hold it.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    public void checkpoint() throws IOException {
+        Snapshot snapshot;
+        synchronized (directory) {
+            snapshot = roll();
+        }
+        snapshot.write();
+    }
+
+    /**
+     * Starts a new log and copies the list of students for a snapshot of
+     * what the old logs hold. The old log is forced first, so that sync,
+     * which only forces the current log, covers changes logged before the
+     * switch. Called holding the directory's monitor.
+     * @return The snapshot to write.
+     * @throws IOException if the old log cannot be forced or the new log
+     * cannot be created.
+     */
+    private Snapshot roll() throws IOException {
+        try {
+            log.sync(log.appended());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        long next = generation + 1;
+        WriteAheadLog nextLog = new WriteAheadLog(logFile(next));
+        Snapshot snapshot = new Snapshot(log, next,
+            directory.students().toArray(new Student[0]));
+        log = nextLog;
+        generation = next;
+        sinceCheckpoint = 0;
+        return snapshot;
+    }
+
+    /**
+     * Stops persisting changes to the directory, waits for a checkpoint
+     * being written, and closes the log once every record is forced.
+     * @throws IOException if the log cannot be closed, or if the last
+     * checkpoint written in the background failed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (directory) {
+            directory.setJournal(null);
+        }
+        checkpointer.shutdown();
+        try {
+            checkpointer.awaitTermination(Long.MAX_VALUE,
+                TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+        if (checkpointError != null) {
+            throw checkpointError;
+        }
+    }
+
+    /**
+     * Returns the path of the log of the given generation.
+     * @param g This represents the generation.
+     * @return The path of the log file.
+     */
+    private Path logFile(long g) {
+        return logFile(dir, g);
+    }
+
+    /**
+     * Returns the path of the log of the given generation.
+     * @param dir This is the folder holding the logs.
+     * @param g This represents the generation.
+     * @return The path of the log file.
+     */
+    private static Path logFile(Path dir, long g) {
+        return dir.resolve(LOG_PREFIX + g + LOG_SUFFIX);
+    }
+
+    /**
+     * Lists the generations of the logs in the given folder.
+     * @param dir This is the folder holding the logs.
+     * @return The generations, in increasing order.
+     * @throws IOException if the folder cannot be read.
+     */
+    private static List<Long> logGenerations(Path dir) throws IOException {
+        List<Long> result = new ArrayList<>();
+        try (DirectoryStream<Path> files =
+            Files.newDirectoryStream(dir, LOG_PREFIX + "*" + LOG_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    result.add(Long.parseLong(name.substring(
+                        LOG_PREFIX.length(),
+                        name.length() - LOG_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * Writes the students to a snapshot file: the header, then an image of
+     * a directory holding them. The image is written straight from the copy
+     * of the list of students, off the directory's monitor, without
+     * building a second directory.
+     * @param file This is the snapshot file.
+     * @param students This holds the students of the directory, in the
+     * order they were added.
+     * @param generation This represents the generation of the first log not
+     * included in the snapshot.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void writeSnapshot(Path file, Student[] students,
+        long generation) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(generation);
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.position());
+        header.putInt((int) crc.getValue());
+        header.flip();
+        try (FileChannel out = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+            StandardOpenOption.WRITE)) {
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            DirectoryImage.write(students, out);
+            out.force(true);
+        }
+    }
+
+    /**
+     * Reads and checks the header of a snapshot file, leaving the channel
+     * at the start of the image.
+     * @param in This is the channel of the snapshot file.
+     * @return The generation of the first log not included in the snapshot.
+     * @throws IOException if the header cannot be read or is corrupt.
+     */
+    private static long readSnapshotHeader(FileChannel in) throws
+        IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        while (header.hasRemaining()) {
+            if (in.read(header) < 0) {
+                throw new IOException("Snapshot ends early");
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, HEADER - Integer.BYTES);
+        if ((int) crc.getValue() != header.getInt(HEADER - Integer.BYTES)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        header.flip();
+        if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a directory snapshot");
+        }
+        return header.getLong();
+    }
+
+    /**
+     * Snapshot - A checkpoint whose log has been switched and whose
+     * snapshot is still to be written.
+     */
+    private final class Snapshot {
+
+        /**
+         * This is the log the snapshot replaces.
+         */
+        private final WriteAheadLog oldLog;
+
+        /**
+         * This represents the generation of the first log not in the
+         * snapshot.
+         */
+        private final long generation;
+
+        /**
+         * This holds the students of the directory, in the order they were
+         * added.
+         */
+        private final Student[] students;
+
+        /**
+         * This is the three argument constructor for the Snapshot class.
+         * @param oldLog This is the log the snapshot replaces.
+         * @param generation This represents the generation of the first log
+         * not in the snapshot.
+         * @param students This holds the students of the directory.
+         */
+        Snapshot(WriteAheadLog oldLog, long generation, Student[] students) {
+            this.oldLog = oldLog;
+            this.generation = generation;
+            this.students = students;
+        }
+
+        /**
+         * Closes the old log once its records are forced, writes the
+         * snapshot unless a newer one was written first, forces the folder
+         * so that the new snapshot is in place, and only then deletes the
+         * logs it replaces.
+         * @throws IOException if the snapshot cannot be written.
+         */
+        void write() throws IOException {
+            synchronized (checkpointLock) {
+                oldLog.close();
+                if (generation <= written) {
+                    return;
+                }
+                Path tmp = dir.resolve(SNAPSHOT_TMP);
+                writeSnapshot(tmp, students, generation);
+                Files.move(tmp, dir.resolve(SNAPSHOT),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+                WriteAheadLog.forceDirectory(dir);
+                written = generation;
+                for (long g : logGenerations(dir)) {
+                    if (g < generation) {
+                        Files.deleteIfExists(logFile(g));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Journal - Logs each change to the directory before it is applied, and
+     * starts a checkpoint first once enough changes have been logged. It is
+     * the directory's journal, told after every listener, so it only logs
+     * changes no listener refused. It only appends to the log; the thread
+     * making the change forces it with sync.
+     */
+    private final class Journal implements MutationListener {
+
+        @Override
+        public void onAdd(Student s) {
+            rollIfDue();
+            log.append(WriteAheadLog.addPayload(s));
+            sinceCheckpoint++;
+        }
+
+        /**
+         * Logs the students as one batch record, so that a crash leaves
+         * either all of them or none to replay, and a snapshot is never
+         * taken while part of them is logged but not yet in the directory.
+         * @param students This holds the students being added.
+         */
+        @Override
+        public void onAddAll(Collection<Student> students) {
+            if (students.isEmpty()) {
+                return;
+            }
+            List<BatchOperation> operations =
+                new ArrayList<>(students.size());
+            for (Student s : students) {
+                operations.add(BatchOperation.add(s));
+            }
+            onBatch(operations);
+        }
+
+        /**
+         * Logs the operations as one batch record, for the same reasons as
+         * onAddAll.
+         * @param operations This holds the operations being applied.
+         */
+        @Override
+        public void onBatch(List<BatchOperation> operations) {
+            if (operations.isEmpty()) {
+                return;
+            }
+            rollIfDue();
+            log.append(WriteAheadLog.batchPayload(operations));
+            sinceCheckpoint += operations.size();
+        }
+
+        @Override
+        public void onDelete(Student s) {
+            rollIfDue();
+            log.append(WriteAheadLog.deletePayload(s));
+            sinceCheckpoint++;
+        }
+
+        /**
+         * Starts a checkpoint if enough changes have been logged since the
+         * last one and none is being written. The change being made is not
+         * in the directory yet, so it goes to the new log. The snapshot is
+         * written by the store's thread.
+         * @throws UncheckedIOException if the new log cannot be created.
+         */
+        private void rollIfDue() throws UncheckedIOException {
+            if (sinceCheckpoint < checkpointInterval || checkpointing) {
+                return;
+            }
+            Snapshot snapshot;
+            try {
+                snapshot = roll();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            checkpointing = true;
+            checkpointer.execute(() -> {
+                try {
+                    snapshot.write();
+                    checkpointError = null;
+                } catch (IOException e) {
+                    checkpointError = e;
+                } finally {
+                    checkpointing = false;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * FrequencySketch - A count-min sketch of how often keys have been seen,
+ * used by SearchCache to decide which entries are worth keeping. Each key
+ * has four 4-bit counters, and its frequency is the smallest of them, so
+ * collisions only ever overestimate. Once ten times the cache capacity has
+ * been counted, every counter is halved, so that keys that were popular
+ * long ago fade out.
+ * @author Tony Padilla (apadilla)
+ */
+final class FrequencySketch {
+
+    /**
+     * Constant that holds the seeds of the four hash functions.
+     */
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L,
+        0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    /**
+     * Constant that clears the bit each counter receives from its neighbor
+     * when the counters are halved.
+     */
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    /**
+     * Constant that represents the largest value of a counter.
+     */
+    private static final int MAX_COUNT = 15;
+
+    /**
+     * This holds the counters, sixteen to a long.
+     */
+    private final long[] table;
+
+    /**
+     * This represents the number of counts after which the counters are
+     * halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * This represents the number of counts since the counters were last
+     * halved.
+     */
+    private int additions;
+
+    /**
+     * This is the one argument constructor for the FrequencySketch class.
+     * @param capacity This is the number of entries of the cache.
+     */
+    FrequencySketch(int capacity) {
+        int longs = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        table = new long[longs];
+        sampleSize = 10 * Math.max(capacity, 16);
+    }
+
+    /**
+     * Returns the estimated number of times the key has been seen.
+     * @param key This is the key.
+     * @return The estimate, at most 15.
+     */
+    int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int frequency = MAX_COUNT;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long mixed = mix(hash, i);
+            long word = table[index(mixed)];
+            frequency = Math.min(frequency,
+                (int) (word >>> offset(mixed)) & MAX_COUNT);
+        }
+        return frequency;
+    }
+
+    /**
+     * Counts one more sighting of the key.
+     * @param key This is the key.
+     */
+    void increment(Object key) {
+        int hash = spread(key.hashCode());
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            long mixed = mix(hash, i);
+            int index = index(mixed);
+            int offset = offset(mixed);
+            if (((table[index] >>> offset) & MAX_COUNT) < MAX_COUNT) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Halves every counter.
+     */
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    /**
+     * Returns the hash of the key for one of the hash functions.
+     * @param hash This is the spread hash code of the key.
+     * @param i This is the number of the hash function.
+     * @return The hash for that function.
+     */
+    private static long mix(int hash, int i) {
+        long mixed = (hash + SEEDS[i]) * SEEDS[i];
+        return mixed ^ (mixed >>> 29);
+    }
+
+    /**
+     * Returns the long holding the counter of a hash.
+     * @param mixed This is the hash for one of the functions.
+     * @return The index into the table.
+     */
+    private int index(long mixed) {
+        return (int) (mixed >>> 32) & (table.length - 1);
+    }
+
+    /**
+     * Returns the bit offset of the counter of a hash within its long.
+     * @param mixed This is the hash for one of the functions.
+     * @return The offset of the counter.
+     */
+    private static int offset(long mixed) {
+        return ((int) mixed & 15) << 2;
+    }
+
+    /**
+     * Spreads the bits of a hash code.
+     * @param h This is the hash code.
+     * @return The spread hash.
+     */
+    private static int spread(int h) {
+        h ^= h >>> 17;
+        h *= 0xed5ad4bb;
+        h ^= h >>> 11;
+        h *= 0xac4c1b51;
+        return h ^ (h >>> 15);
+    }
+}
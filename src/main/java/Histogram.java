@@ -0,0 +1,212 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram - A distribution of non-negative values such as latencies in
+ * nanoseconds, in the style of an HDR histogram. Values below 128 are counted
+ * exactly. Larger values are counted in buckets whose width is at most 1/64
+ * of the values they hold, so percentiles are within about 1.6% of the real
+ * ones. Values of 2^42 and above, over an hour in nanoseconds, share the
+ * last bucket. Recording a value only updates a few atomic counters, so it
+ * does not allocate and may be done from several threads at once.
+ * @author Tony Padilla (apadilla)
+ */
+public final class Histogram {
+
+    /**
+     * Constant that represents the number of significant bits a bucket
+     * keeps of the values it holds.
+     */
+    private static final int SUB_BITS = 7;
+
+    /**
+     * Constant that represents the number of buckets for each power of two.
+     */
+    private static final int HALF = 1 << (SUB_BITS - 1);
+
+    /**
+     * Constant that represents the highest bit of a value with its own
+     * bucket.
+     */
+    private static final int HIGHEST_BIT = 41;
+
+    /**
+     * Constant that represents the number of buckets, the last one holding
+     * the values above the highest bit.
+     */
+    private static final int BUCKETS =
+        (HIGHEST_BIT - SUB_BITS + 3) * HALF + 1;
+
+    /**
+     * This holds the number of values recorded in each bucket.
+     */
+    private final AtomicLongArray counts;
+
+    /**
+     * This represents the sum of the values recorded.
+     */
+    private final AtomicLong sum;
+
+    /**
+     * This represents the largest value recorded.
+     */
+    private final AtomicLong max;
+
+    /**
+     * This is the no arg constructor for the Histogram class which creates
+     * an empty histogram.
+     */
+    public Histogram() {
+        counts = new AtomicLongArray(BUCKETS);
+        sum = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    /**
+     * Records a value.
+     * @param value This is the value to record.
+     * @throws IllegalArgumentException if the value is negative.
+     */
+    public void record(long value) throws IllegalArgumentException {
+        if (value < 0) {
+            throw new IllegalArgumentException("Value must be non-negative");
+        }
+        counts.incrementAndGet(indexOf(value));
+        sum.addAndGet(value);
+        long largest = max.get();
+        while (value > largest && !max.compareAndSet(largest, value)) {
+            largest = max.get();
+        }
+    }
+
+    /**
+     * This represents the number of values recorded.
+     * @return The number of values recorded.
+     */
+    public long getCount() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    /**
+     * This represents the sum of the values recorded.
+     * @return The sum of the values recorded.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * This represents the largest value recorded.
+     * @return The largest value recorded, or 0 if there are none.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * This represents the mean of the values recorded.
+     * @return The mean of the values recorded, or 0 if there are none.
+     */
+    public double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * Given a percentile, this method returns the value that the given
+     * percentage of the recorded values are at or below. The value returned
+     * is the largest one of its bucket, and never more than the largest
+     * value recorded.
+     * @param percentile This is the percentage, from 0 to 100.
+     * @return The value at the percentile, or 0 if there are no values.
+     * @throws IllegalArgumentException if the percentile is not between 0
+     * and 100.
+     */
+    public long getValueAtPercentile(double percentile) throws
+        IllegalArgumentException {
+        if (!(percentile >= 0 && percentile <= 100)) {
+            throw new IllegalArgumentException(
+                "Percentile must be between 0 and 100");
+        }
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        int i = 0;
+        while (i < BUCKETS - 1) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                break;
+            }
+            i++;
+        }
+        return Math.min(highestOf(i), max.get());
+    }
+
+    /**
+     * Given a value, this method returns the number of recorded values at or
+     * below it. The count is exact for values below 128, and otherwise
+     * leaves out the values sharing a bucket with the given one.
+     * @param value This is the value.
+     * @return The number of values at or below the given one.
+     */
+    public long getCountAtOrBelow(long value) {
+        if (value < 0) {
+            return 0;
+        }
+        int last = indexOf(value);
+        if (highestOf(last) > value) {
+            last--;
+        }
+        long n = 0;
+        for (int i = 0; i <= last; i++) {
+            n += counts.get(i);
+        }
+        return n;
+    }
+
+    /**
+     * Returns the bucket of a value.
+     * @param value This is the value, which is non-negative.
+     * @return The index of the bucket counting the value.
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * HALF) {
+            return (int) value;
+        }
+        int bit = 63 - Long.numberOfLeadingZeros(value);
+        if (bit > HIGHEST_BIT) {
+            return BUCKETS - 1;
+        }
+        int shift = bit - SUB_BITS + 1;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value counted in a bucket.
+     * @param index This is the index of the bucket.
+     * @return The largest value of the bucket.
+     */
+    private static long highestOf(int index) {
+        if (index < 2 * HALF) {
+            return index;
+        }
+        if (index == BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int shift = index / HALF - 1;
+        long mantissa = index - (long) shift * HALF;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
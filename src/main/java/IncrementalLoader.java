@@ -0,0 +1,595 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IncrementalLoader - Follows a roster CSV file that is being appended to,
+ * and applies each new row to a Directory as it arrives. The loader
+ * remembers the byte offset of the end of the last row it applied, and
+ * only reads what was written after it. The file is watched with a
+ * WatchService, and is also checked every second in case an event is
+ * missed.
+ *
+ * A row whose Andrew ID is not in the directory adds the student. A row
+ * whose Andrew ID is already in the directory updates the student when
+ * its data differs, and is ignored when it does not. A row with an Andrew
+ * ID and empty first and last names deletes the student, if present. A
+ * file that shrinks or is replaced is read again from its start, which
+ * leaves the directory as it would be after following the new file from
+ * the beginning, except for students only in the old file.
+ *
+ * Rows are read and parsed without holding the directory's monitor. They
+ * are then applied in batches through Directory.applyBatch, each holding
+ * the monitor, so threads that share the directory by synchronizing on it
+ * wait for at most one batch. The loader does not make the changes
+ * durable: a caller keeping the directory in a DirectoryStore calls its
+ * sync method from the listener, which is told after each check that
+ * changed the directory, before it records the offset to resume from.
+ * @author Tony Padilla (apadilla)
+ */
+public final class IncrementalLoader implements Closeable {
+
+    /**
+     * Constant that represents the number of rows applied while holding
+     * the directory's monitor.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * Constant that represents the number of bytes read from the file at a
+     * time, unless a single row is longer.
+     */
+    private static final int WINDOW_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Constant that represents the milliseconds between checks of the file
+     * when no change is reported.
+     */
+    private static final long POLL_MILLIS = 1000;
+
+    /**
+     * Constant that represents the number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * This is the directory the rows are applied to.
+     */
+    private final Directory directory;
+
+    /**
+     * This is the file followed.
+     */
+    private final Path file;
+
+    /**
+     * This is told the outcome of each check that applied rows, or is null.
+     */
+    private final LoadListener listener;
+
+    /**
+     * This represents the offset of the first byte not yet applied, which
+     * is always the start of a row.
+     */
+    private volatile long offset;
+
+    /**
+     * This represents the line number of the row at the offset.
+     */
+    private long line;
+
+    /**
+     * This is true while the row at the offset is the header.
+     */
+    private boolean header;
+
+    /**
+     * This represents the size of the file when it was last checked.
+     */
+    private volatile long observedSize;
+
+    /**
+     * This represents the System.nanoTime at which the file was first seen
+     * holding bytes not yet applied, or -1 if every byte is applied.
+     */
+    private volatile long behindSince = -1;
+
+    /**
+     * This identifies the file last read, to notice it being replaced.
+     */
+    private Object fileKey;
+
+    /**
+     * This holds the bytes read from the file.
+     */
+    private ByteBuffer window = ByteBuffer.allocate(WINDOW_SIZE);
+
+    /**
+     * This represents the number of students added.
+     */
+    private volatile long added;
+
+    /**
+     * This represents the number of students updated.
+     */
+    private volatile long updated;
+
+    /**
+     * This represents the number of students deleted.
+     */
+    private volatile long deleted;
+
+    /**
+     * This represents the number of rows rejected.
+     */
+    private volatile long rejected;
+
+    /**
+     * This is the last error met while following the file, or null.
+     */
+    private volatile IOException lastError;
+
+    /**
+     * This watches the folder of the file, or is null until started.
+     */
+    private WatchService watcher;
+
+    /**
+     * This is the thread following the file, or is null until started.
+     */
+    private Thread thread;
+
+    /**
+     * This is true until the loader is closed.
+     */
+    private volatile boolean running = true;
+
+    /**
+     * This is the two argument constructor for the IncrementalLoader class,
+     * which follows the file from its start.
+     * @param directory This is the directory to apply the rows to.
+     * @param file This is the CSV file to follow.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public IncrementalLoader(Directory directory, Path file) throws
+        IllegalArgumentException {
+        this(directory, file, 0, null);
+    }
+
+    /**
+     * This is the four argument constructor for the IncrementalLoader
+     * class.
+     * @param directory This is the directory to apply the rows to.
+     * @param file This is the CSV file to follow.
+     * @param offset This is the offset to start reading from, which must be
+     * 0 or an offset returned by getOffset for the same file. At 0, the
+     * first row is a header and is skipped. Otherwise, the line numbers
+     * reported count from the offset.
+     * @param listener This is told the outcome of each check of the file
+     * that applied or rejected rows, or is null.
+     * @throws IllegalArgumentException if the directory or the file is
+     * null, or if the offset is negative.
+     */
+    public IncrementalLoader(Directory directory, Path file, long offset,
+        LoadListener listener) throws IllegalArgumentException {
+        if (directory == null || file == null) {
+            throw new IllegalArgumentException(
+                "Directory and file must be non-null");
+        }
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative");
+        }
+        this.directory = directory;
+        this.file = file.toAbsolutePath();
+        this.offset = offset;
+        this.listener = listener;
+        line = 1;
+        header = offset == 0;
+    }
+
+    /**
+     * Starts following the file on a daemon thread, which checks it at
+     * once and then every time it changes.
+     * @throws IOException if the folder of the file cannot be watched.
+     * @throws IllegalStateException if the loader was already started.
+     */
+    public synchronized void start() throws IOException,
+        IllegalStateException {
+        if (thread != null || !running) {
+            throw new IllegalStateException("Loader already started");
+        }
+        watcher = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watcher,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(this::follow, "incremental-loader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checks the file until the loader is closed.
+     */
+    private void follow() {
+        while (running) {
+            try {
+                poll();
+                lastError = null;
+            } catch (IOException e) {
+                lastError = e;
+            }
+            try {
+                WatchKey key = watcher.poll(POLL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    key.pollEvents();
+                    key.reset();
+                }
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reads the rows appended to the file since the last check and applies
+     * them. A row is complete once the line break that ends it has been
+     * written; a row that is not yet complete is left for the next check.
+     * This is called by the loader's thread once started, and may be called
+     * directly instead of starting the loader.
+     * @return The number of rows that changed the directory.
+     * @throws IOException if the file cannot be read.
+     */
+    public synchronized int poll() throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+        Object key = attributes.fileKey();
+        if (attributes.size() < offset
+            || key != null && fileKey != null && !key.equals(fileKey)) {
+            offset = 0;
+            line = 1;
+            header = true;
+        }
+        fileKey = key;
+        LoadReport report = new LoadReport();
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.READ)) {
+            long size = channel.size();
+            observe(size);
+            while (offset < size) {
+                int length = fill(channel, size);
+                int end = endOfRows();
+                if (end < 0) {
+                    if (offset + length == size) {
+                        break;
+                    }
+                    window = ByteBuffer.allocate(2 * window.capacity());
+                    continue;
+                }
+                String text = new String(window.array(), 0, end,
+                    StandardCharsets.UTF_8);
+                applyRows(text, report);
+                offset += end;
+            }
+            observe(size);
+        }
+        if (listener != null
+            && (report.getLoaded() > 0 || !report.getErrors().isEmpty())) {
+            listener.chunkLoaded(report, offset, observedSize);
+        }
+        return report.getLoaded();
+    }
+
+    /**
+     * Reads the bytes of the file from the offset into the window, as many
+     * as fit.
+     * @param channel This is the open file.
+     * @param size This is the size of the file.
+     * @return The number of bytes read.
+     * @throws IOException if the file cannot be read.
+     */
+    private int fill(FileChannel channel, long size) throws IOException {
+        window.clear();
+        window.limit((int) Math.min(window.capacity(), size - offset));
+        long position = offset;
+        while (window.hasRemaining()) {
+            int n = channel.read(window, position);
+            if (n < 0) {
+                break;
+            }
+            position += n;
+        }
+        window.flip();
+        return window.limit();
+    }
+
+    /**
+     * Returns the length of the complete rows at the start of the window:
+     * the position after its last line break outside of quotes. As in
+     * CSVReader, a quote only opens a quoted value at the start of a value.
+     * Quotes are single bytes in UTF-8, so the bytes can be scanned without
+     * decoding them.
+     * @return The length of the complete rows, or -1 if there are none.
+     */
+    private int endOfRows() {
+        byte[] bytes = window.array();
+        int limit = window.limit();
+        boolean inQuotes = false;
+        boolean valueStart = true;
+        int end = -1;
+        for (int i = 0; i < limit; i++) {
+            byte b = bytes[i];
+            if (inQuotes) {
+                if (b != '"') {
+                    continue;
+                } else if (i + 1 < limit && bytes[i + 1] == '"') {
+                    i++;
+                } else {
+                    inQuotes = false;
+                }
+            } else {
+                inQuotes = b == '"' && valueStart;
+                valueStart = b == ',' || b == '\n';
+                if (b == '\n') {
+                    end = i + 1;
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Parses complete rows with CSVReader and applies them in batches.
+     * @param text This holds the rows, ending with a line break.
+     * @param report This is the report of the check.
+     * @throws IOException if the text cannot be parsed.
+     */
+    private void applyRows(String text, LoadReport report) throws
+        IOException {
+        List<String[]> rows = new ArrayList<>(BATCH_SIZE);
+        List<Long> lines = new ArrayList<>(BATCH_SIZE);
+        try (CSVReader in = new CSVReader(new StringReader(text))) {
+            String[] fields;
+            while ((fields = in.readCSVLine()) != null) {
+                long first = line;
+                line++;
+                for (String field : fields) {
+                    for (int i = field.indexOf('\n'); i >= 0;
+                        i = field.indexOf('\n', i + 1)) {
+                        line++;
+                    }
+                }
+                if (header || fields.length == 1 && fields[0].isEmpty()) {
+                    header = false;
+                    continue;
+                }
+                rows.add(fields);
+                lines.add(first);
+                if (rows.size() == BATCH_SIZE) {
+                    applyBatch(rows, lines, report);
+                    rows.clear();
+                    lines.clear();
+                }
+            }
+        }
+        applyBatch(rows, lines, report);
+    }
+
+    /**
+     * Applies a batch of rows to the directory while holding its monitor.
+     * Each row is checked against the directory as the rows before it leave
+     * it, so the batch as a whole is always valid.
+     * @param rows This holds the fields of each row.
+     * @param lines This holds the line number of each row.
+     * @param report This is the report of the check.
+     */
+    private void applyBatch(List<String[]> rows, List<Long> lines,
+        LoadReport report) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<BatchOperation> operations = new ArrayList<>();
+        Map<String, Student> touched = new HashMap<>();
+        int adds = 0;
+        int updates = 0;
+        int deletes = 0;
+        int errors = 0;
+        synchronized (directory) {
+            for (int i = 0; i < rows.size(); i++) {
+                String[] fields = rows.get(i);
+                if (fields.length < 3 || fields[2].isEmpty()
+                    || fields[0].isEmpty() != fields[1].isEmpty()) {
+                    report.addError(lines.get(i), "Missing student data");
+                    errors++;
+                    continue;
+                }
+                String id = fields[2];
+                Student current = touched.containsKey(id) ? touched.get(id)
+                    : directory.studentWithId(id);
+                if (fields[0].isEmpty()) {
+                    if (current != null) {
+                        operations.add(BatchOperation.delete(id));
+                        touched.put(id, null);
+                        deletes++;
+                    }
+                    continue;
+                }
+                Student s = new Student.Builder(id)
+                    .firstName(NameDictionary.shared().intern(fields[0]))
+                    .lastName(NameDictionary.shared().intern(fields[1]))
+                    .phoneNumber(fields.length > 3 ? fields[3] : "").build();
+                if (s.equals(current)) {
+                    continue;
+                }
+                if (current != null) {
+                    operations.add(BatchOperation.delete(id));
+                    updates++;
+                } else {
+                    adds++;
+                }
+                operations.add(BatchOperation.add(s));
+                touched.put(id, s);
+            }
+            BatchReport batch = directory.applyBatch(operations);
+            if (!batch.isApplied()) {
+                report.addError(lines.get(0), "Batch rejected: " + batch);
+                rejected += rows.size();
+                return;
+            }
+        }
+        added += adds;
+        updated += updates;
+        deleted += deletes;
+        rejected += errors;
+        report.addLoaded(adds + updates + deletes);
+    }
+
+    /**
+     * Records the size of the file and whether it holds bytes not yet
+     * applied.
+     * @param size This is the size of the file.
+     */
+    private void observe(long size) {
+        observedSize = size;
+        if (offset >= size) {
+            behindSince = -1;
+        } else if (behindSince < 0) {
+            behindSince = System.nanoTime();
+        }
+    }
+
+    /**
+     * This is the getter for the offset of the first byte not yet applied,
+     * which can be given to a new loader to carry on from there.
+     * @return The offset, always the start of a row.
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the number of bytes of the file not yet applied, as of the
+     * last check.
+     * @return The lag in bytes.
+     */
+    public long getLagBytes() {
+        return Math.max(0, observedSize - offset);
+    }
+
+    /**
+     * Returns how long the file has held bytes not yet applied: the time
+     * since a check first found them, or 0 if every byte is applied.
+     * @return The lag in milliseconds.
+     */
+    public long getLagMillis() {
+        long since = behindSince;
+        return since < 0 ? 0 : (System.nanoTime() - since) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * This is the getter for the number of students added.
+     * @return The number of rows that added a student.
+     */
+    public long getAdded() {
+        return added;
+    }
+
+    /**
+     * This is the getter for the number of students updated.
+     * @return The number of rows that changed a student.
+     */
+    public long getUpdated() {
+        return updated;
+    }
+
+    /**
+     * This is the getter for the number of students deleted.
+     * @return The number of rows that deleted a student.
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * This is the getter for the number of rows rejected.
+     * @return The number of rows with missing data.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * This is the getter for the last error met by the loader's thread.
+     * @return The error of the last check, or null if it succeeded.
+     */
+    public IOException getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Writes the lag and the counts of the loader through the exporter,
+     * with the given prefix on every name.
+     * @param exporter This receives the values.
+     * @param prefix This starts the name of every value.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public void exportTo(MetricsExporter exporter, String prefix) throws
+        IllegalArgumentException {
+        if (exporter == null || prefix == null) {
+            throw new IllegalArgumentException(
+                "Exporter and prefix must be non-null");
+        }
+        exporter.gauge(prefix + "_lag_bytes", getLagBytes());
+        exporter.gauge(prefix + "_lag_seconds", getLagMillis() / 1000.0);
+        exporter.gauge(prefix + "_offset_bytes", offset);
+        exporter.counter(prefix + "_added_total", added);
+        exporter.counter(prefix + "_updated_total", updated);
+        exporter.counter(prefix + "_deleted_total", deleted);
+        exporter.counter(prefix + "_rejected_total", rejected);
+    }
+
+    /**
+     * Stops following the file and waits for the loader's thread to end.
+     * @throws IOException if the watch service cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            if (watcher != null) {
+                watcher.close();
+            }
+        }
+        if (t != null) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * IntList - A growable list of primitive ints, used for posting lists so
+ * that indexes do not box their entries.
+ * @author Tony Padilla (apadilla)
+ */
+final class IntList {
+
+    /**
+     * Constant that represents the initial capacity of a list.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * This holds the values of the list.
+     */
+    private int[] values;
+
+    /**
+     * This represents the number of values in the list.
+     */
+    private int size;
+
+    /**
+     * This is the no arg constructor for the IntList class which creates an
+     * empty list.
+     */
+    IntList() {
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Appends a value to the list.
+     * @param value This is the value to append.
+     */
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, 2 * size);
+        }
+        values[size++] = value;
+    }
+
+    /**
+     * Returns the value at the given index.
+     * @param i This is the index of the value.
+     * @return The value.
+     */
+    int get(int i) {
+        return values[i];
+    }
+
+    /**
+     * Replaces the value at the given index.
+     * @param i This is the index of the value.
+     * @param value This is the new value.
+     */
+    void set(int i, int value) {
+        values[i] = value;
+    }
+
+    /**
+     * Removes and returns the last value.
+     * @return The last value.
+     */
+    int removeLast() {
+        return values[--size];
+    }
+
+    /**
+     * Drops the values after the given number of values.
+     * @param length This is the number of values to keep, at most the size.
+     */
+    void truncate(int length) {
+        size = length;
+    }
+
+    /**
+     * This represents the number of values in the list.
+     * @return The size of the list.
+     */
+    int size() {
+        return size;
+    }
+}
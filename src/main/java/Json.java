@@ -0,0 +1,374 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Json - Reads and writes the small JSON documents exchanged by
+ * DirectoryServer. A student is written as an object with the fields
+ * andrewId, firstName, lastName and phoneNumber. Parsed objects become
+ * Maps, arrays become Lists, numbers become Doubles, and true, false and
+ * null become Booleans and null.
+ * @author Tony Padilla (apadilla)
+ */
+final class Json {
+
+    /**
+     * This is the private constructor of the Json class, which only has
+     * static methods.
+     */
+    private Json() {
+    }
+
+    /**
+     * Appends a string as a JSON string, or null.
+     * @param out This is where the JSON is written.
+     * @param s This is the string to write, or null.
+     */
+    static void appendString(StringBuilder out, String s) {
+        if (s == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                out.append("\\\"");
+                break;
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            case '\t':
+                out.append("\\t");
+                break;
+            default:
+                if (c < ' ') {
+                    out.append(String.format("\\u%04x", (int) c));
+                } else {
+                    out.append(c);
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Appends a student as a JSON object, or null.
+     * @param out This is where the JSON is written.
+     * @param s This is the student to write, or null.
+     */
+    static void appendStudent(StringBuilder out, Student s) {
+        if (s == null) {
+            out.append("null");
+            return;
+        }
+        out.append("{\"andrewId\":");
+        appendString(out, s.getAndrewId());
+        out.append(",\"firstName\":");
+        appendString(out, s.getFirstName());
+        out.append(",\"lastName\":");
+        appendString(out, s.getLastName());
+        out.append(",\"phoneNumber\":");
+        appendString(out, s.getPhoneNumber());
+        out.append('}');
+    }
+
+    /**
+     * Appends students as a JSON array of objects, with null for a missing
+     * student.
+     * @param out This is where the JSON is written.
+     * @param students This holds the students to write.
+     */
+    static void appendStudents(StringBuilder out, List<Student> students) {
+        out.append('[');
+        for (int i = 0; i < students.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            appendStudent(out, students.get(i));
+        }
+        out.append(']');
+    }
+
+    /**
+     * Creates a student from a parsed JSON object with the fields written
+     * by appendStudent. Missing fields are left null, so that Directory
+     * decides which ones are required. The names are interned in the shared
+     * NameDictionary.
+     * @param value This is the parsed object.
+     * @return The student.
+     * @throws IllegalArgumentException if the value is not an object, if a
+     * field is not a string or null, or if andrewId is missing.
+     */
+    static Student toStudent(Object value) throws IllegalArgumentException {
+        if (!(value instanceof Map)) {
+            throw new IllegalArgumentException("Student must be an object");
+        }
+        Map<?, ?> fields = (Map<?, ?>) value;
+        String id = stringField(fields, "andrewId");
+        if (id == null) {
+            throw new IllegalArgumentException("Andrew id must be non-null");
+        }
+        NameDictionary names = NameDictionary.shared();
+        return new Student.Builder(id)
+            .firstName(names.intern(stringField(fields, "firstName")))
+            .lastName(names.intern(stringField(fields, "lastName")))
+            .phoneNumber(stringField(fields, "phoneNumber"))
+            .build();
+    }
+
+    /**
+     * Returns a string field of a parsed object.
+     * @param fields This holds the fields of the object.
+     * @param name This is the name of the field.
+     * @return The value of the field, or null if it is null or missing.
+     * @throws IllegalArgumentException if the field is not a string.
+     */
+    private static String stringField(Map<?, ?> fields, String name) throws
+        IllegalArgumentException {
+        Object value = fields.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new IllegalArgumentException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /**
+     * Parses a JSON document.
+     * @param text This is the document.
+     * @return The value of the document.
+     * @throws IllegalArgumentException if the document is not valid JSON.
+     */
+    static Object parse(String text) throws IllegalArgumentException {
+        Parser parser = new Parser(text);
+        Object value = parser.value();
+        parser.skipSpace();
+        if (parser.pos != text.length()) {
+            throw parser.error("Unexpected text after the value");
+        }
+        return value;
+    }
+
+    /**
+     * Parser - Reads one JSON value from a string.
+     */
+    private static final class Parser {
+
+        /**
+         * This is the text being parsed.
+         */
+        private final String text;
+
+        /**
+         * This represents the position of the next character to read.
+         */
+        private int pos;
+
+        /**
+         * This is the one argument constructor for the Parser class.
+         * @param text This is the text to parse.
+         */
+        Parser(String text) {
+            this.text = text;
+        }
+
+        /**
+         * Reads a value.
+         * @return The value read.
+         * @throws IllegalArgumentException if there is no valid value.
+         */
+        Object value() throws IllegalArgumentException {
+            skipSpace();
+            if (pos == text.length()) {
+                throw error("Missing value");
+            }
+            char c = text.charAt(pos);
+            if (c == '{') {
+                return object();
+            } else if (c == '[') {
+                return array();
+            } else if (c == '"') {
+                return string();
+            } else if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            } else if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            } else if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            return number();
+        }
+
+        /**
+         * Reads an object.
+         * @return The fields of the object, in order.
+         * @throws IllegalArgumentException if the object is not valid.
+         */
+        private Map<String, Object> object() throws IllegalArgumentException {
+            Map<String, Object> fields = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (consume('}')) {
+                return fields;
+            }
+            do {
+                skipSpace();
+                if (pos == text.length() || text.charAt(pos) != '"') {
+                    throw error("Expected a field name");
+                }
+                String name = string();
+                skipSpace();
+                if (!consume(':')) {
+                    throw error("Expected ':'");
+                }
+                fields.put(name, value());
+                skipSpace();
+            } while (consume(','));
+            if (!consume('}')) {
+                throw error("Expected ',' or '}'");
+            }
+            return fields;
+        }
+
+        /**
+         * Reads an array.
+         * @return The elements of the array.
+         * @throws IllegalArgumentException if the array is not valid.
+         */
+        private List<Object> array() throws IllegalArgumentException {
+            List<Object> elements = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (consume(']')) {
+                return elements;
+            }
+            do {
+                elements.add(value());
+                skipSpace();
+            } while (consume(','));
+            if (!consume(']')) {
+                throw error("Expected ',' or ']'");
+            }
+            return elements;
+        }
+
+        /**
+         * Reads a string.
+         * @return The string, without quotes or escapes.
+         * @throws IllegalArgumentException if the string is not valid.
+         */
+        private String string() throws IllegalArgumentException {
+            StringBuilder s = new StringBuilder();
+            pos++;
+            while (pos < text.length()) {
+                char c = text.charAt(pos++);
+                if (c == '"') {
+                    return s.toString();
+                }
+                if (c != '\\') {
+                    s.append(c);
+                    continue;
+                }
+                if (pos == text.length()) {
+                    break;
+                }
+                char e = text.charAt(pos++);
+                switch (e) {
+                case 'b':
+                    s.append('\b');
+                    break;
+                case 'f':
+                    s.append('\f');
+                    break;
+                case 'n':
+                    s.append('\n');
+                    break;
+                case 'r':
+                    s.append('\r');
+                    break;
+                case 't':
+                    s.append('\t');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("Bad unicode escape");
+                    }
+                    try {
+                        s.append((char) Integer.parseInt(
+                            text.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("Bad unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default:
+                    s.append(e);
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        /**
+         * Reads a number.
+         * @return The number.
+         * @throws IllegalArgumentException if there is no valid number.
+         */
+        private Double number() throws IllegalArgumentException {
+            int start = pos;
+            while (pos < text.length()
+                && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            try {
+                return Double.valueOf(text.substring(start, pos));
+            } catch (NumberFormatException e) {
+                pos = start;
+                throw error("Unexpected character");
+            }
+        }
+
+        /**
+         * Skips whitespace.
+         */
+        void skipSpace() {
+            while (pos < text.length()
+                && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        /**
+         * Reads the given character if it is next.
+         * @param c This is the character.
+         * @return true if the character was read.
+         */
+        private boolean consume(char c) {
+            if (pos < text.length() && text.charAt(pos) == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Returns the exception for a syntax error at the current position.
+         * @param message This describes the error.
+         * @return The exception to throw.
+         */
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(
+                message + " at character " + pos);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * LoadListener - Receives the progress of a BulkLoader load. It is called
+ * on the loading thread after each chunk of the file has been added to the
+ * directory. An IncrementalLoader calls it after each check of the file
+ * that changed the directory, with the report of that check.
+ * @author Tony Padilla (apadilla)
+ */
+public interface LoadListener {
+
+    /**
+     * Called after a chunk of the file has been added to the directory.
+     * @param report This is the report of the load so far.
+     * @param bytesLoaded This is the number of bytes of the file loaded so
+     * far.
+     * @param bytesTotal This is the size of the file in bytes.
+     */
+    void chunkLoaded(LoadReport report, long bytesLoaded, long bytesTotal);
+}
@@ -0,0 +1,115 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * LoadReport - The outcome of a bulk load of a CSV file into a Directory,
+ * including the number of students loaded and the rows that were rejected.
+ * @author Tony Padilla (apadilla)
+ */
+public final class LoadReport {
+
+    /**
+     * This represents the number of students added to the directory.
+     */
+    private int loaded;
+
+    /**
+     * This represents the rows that could not be added, in file order.
+     */
+    private final List<RowError> errors;
+
+    /**
+     * This is the no arg constructor for the LoadReport class which starts
+     * with no students loaded and no errors.
+     */
+    LoadReport() {
+        errors = new ArrayList<>();
+    }
+
+    /**
+     * Records that the given number of students were added.
+     * @param count This is the number of students added.
+     */
+    void addLoaded(int count) {
+        loaded += count;
+    }
+
+    /**
+     * Records a rejected row.
+     * @param row This is the line number of the row in the file.
+     * @param message This describes why the row was rejected.
+     */
+    void addError(long row, String message) {
+        errors.add(new RowError(row, message));
+    }
+
+    /**
+     * This is the getter for the number of students added to the directory.
+     * @return This gives the number of students loaded.
+     */
+    public int getLoaded() {
+        return loaded;
+    }
+
+    /**
+     * This is the getter for the rows that could not be added.
+     * @return This gives a read-only list of the rejected rows in file order.
+     */
+    public List<RowError> getErrors() {
+        return Collections.unmodifiableList(errors);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d students loaded, %d rows rejected", loaded,
+            errors.size());
+    }
+
+    /**
+     * RowError - A single row of the CSV file that was rejected by the load.
+     */
+    public static final class RowError {
+
+        /**
+         * This represents the line number of the row in the file.
+         */
+        private final long row;
+
+        /**
+         * This describes why the row was rejected.
+         */
+        private final String message;
+
+        /**
+         * This is the two argument constructor for the RowError class.
+         * @param row This represents the line number of the row in the file.
+         * @param message This describes why the row was rejected.
+         */
+        RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+
+        /**
+         * This is the getter for the line number of the rejected row.
+         * @return This gives the line number, starting at 1.
+         */
+        public long getRow() {
+            return row;
+        }
+
+        /**
+         * This is the getter for the reason the row was rejected.
+         * @return This gives the error message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return "Line " + row + ": " + message;
+        }
+    }
+}
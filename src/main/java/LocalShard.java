@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * LocalShard - A shard kept in a Directory of this JVM. Each call holds the
+ * directory's lock, as the GUI and DirectoryServer do, so the directory can
+ * also be served or saved by other code that follows that convention.
+ * Search results are copied before the lock is released.
+ * @author Tony Padilla (apadilla)
+ */
+public final class LocalShard implements DirectoryShard {
+
+    /**
+     * This is the directory holding the students of the shard.
+     */
+    private final Directory directory;
+
+    /**
+     * This is the no arg constructor for the LocalShard class, which keeps
+     * the shard in a new empty directory.
+     */
+    public LocalShard() {
+        this(new Directory());
+    }
+
+    /**
+     * This is the one argument constructor for the LocalShard class.
+     * @param directory This is the directory holding the students.
+     * @throws IllegalArgumentException if the directory is null.
+     */
+    public LocalShard(Directory directory) throws IllegalArgumentException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory must be non-null");
+        }
+        this.directory = directory;
+    }
+
+    /**
+     * This is the getter for the directory holding the students.
+     * @return The directory. Callers must hold its lock while using it.
+     */
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void addStudent(Student s) throws IllegalArgumentException {
+        synchronized (directory) {
+            directory.addStudent(s);
+        }
+    }
+
+    @Override
+    public Student deleteStudent(String andrewId) throws
+        IllegalArgumentException {
+        synchronized (directory) {
+            Student s = directory.studentWithId(andrewId);
+            if (s != null) {
+                directory.deleteStudent(andrewId);
+            }
+            return s;
+        }
+    }
+
+    @Override
+    public Student searchByAndrewId(String andrewId) throws
+        IllegalArgumentException {
+        synchronized (directory) {
+            return directory.searchByAndrewId(andrewId);
+        }
+    }
+
+    @Override
+    public List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException {
+        synchronized (directory) {
+            return new ArrayList<>(directory.searchByFirstName(firstName));
+        }
+    }
+
+    @Override
+    public List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException {
+        synchronized (directory) {
+            return new ArrayList<>(directory.searchByLastName(lastName));
+        }
+    }
+
+    @Override
+    public List<Student> students() {
+        synchronized (directory) {
+            return new ArrayList<>(directory.students());
+        }
+    }
+}
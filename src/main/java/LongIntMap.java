@@ -0,0 +1,179 @@
+/**
+ * LongIntMap - A hash map from primitive long keys to primitive int values,
+ * so that indexes keyed by numbers do not box their entries. It is an open
+ * addressing table probed linearly, kept at most half full, and removals
+ * move later keys of the same run back instead of leaving markers. Key 0
+ * marks an empty slot, so it cannot be stored.
+ * @author Tony Padilla (apadilla)
+ */
+final class LongIntMap {
+
+    /**
+     * Constant that represents the value returned for a missing key.
+     */
+    static final int MISSING = -1;
+
+    /**
+     * Constant that represents the initial number of slots of a map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * This holds the key of each slot, or 0 for an empty slot.
+     */
+    private long[] keys;
+
+    /**
+     * This holds the value of each slot.
+     */
+    private int[] values;
+
+    /**
+     * This represents the number of keys in the map.
+     */
+    private int size;
+
+    /**
+     * This is the no arg constructor for the LongIntMap class which creates
+     * an empty map.
+     */
+    LongIntMap() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the value of the given key.
+     * @param key This is the key.
+     * @return The value, or MISSING if the key is not in the map.
+     */
+    int get(long key) {
+        if (key == 0) {
+            return MISSING;
+        }
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask);; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            if (keys[i] == 0) {
+                return MISSING;
+            }
+        }
+    }
+
+    /**
+     * Maps the given key to the given value, replacing any value it had.
+     * @param key This is the key, which must not be 0.
+     * @param value This is the value.
+     * @throws IllegalArgumentException if the key is 0.
+     */
+    void put(long key, int value) throws IllegalArgumentException {
+        if (key == 0) {
+            throw new IllegalArgumentException("Key must be non-zero");
+        }
+        if (2 * (size + 1) > keys.length) {
+            resize(2 * keys.length);
+        }
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = key;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    /**
+     * Removes the given key from the map.
+     * @param key This is the key.
+     * @return The value it had, or MISSING if the key was not in the map.
+     */
+    int remove(long key) {
+        if (key == 0) {
+            return MISSING;
+        }
+        int mask = keys.length - 1;
+        int hole = slot(key, mask);
+        while (keys[hole] != key) {
+            if (keys[hole] == 0) {
+                return MISSING;
+            }
+            hole = (hole + 1) & mask;
+        }
+        int value = values[hole];
+        for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            int home = slot(keys[i], mask);
+            boolean reachable = hole <= i ? hole < home && home <= i
+                : hole < home || home <= i;
+            if (!reachable) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                hole = i;
+            }
+        }
+        keys[hole] = 0;
+        size--;
+        return value;
+    }
+
+    /**
+     * Makes room for the given number of keys, so that adding keys up to
+     * that number grows the map at most once, here.
+     * @param expected This is the number of keys the map should hold.
+     */
+    void ensureCapacity(int expected) {
+        int capacity = keys.length;
+        while (2L * expected > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > keys.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * This represents the number of keys in the map.
+     * @return The size of the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the home slot of a key, mixing all its bits so that keys that
+     * only differ in their high digits spread out.
+     * @param key This is the key.
+     * @param mask This is the number of slots less one.
+     * @return The slot.
+     */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Moves the keys to a table of the given number of slots.
+     * @param capacity This is the number of slots, a power of two.
+     */
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = slot(oldKeys[j], mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+}
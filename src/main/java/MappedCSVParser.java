@@ -0,0 +1,461 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MappedCSVParser - A CSV parser that memory maps a range of a file and scans
+ * its bytes once per record. Quoted values may contain commas, newlines and
+ * escaped quotes as described in RFC 4180. A quote only opens a quoted
+ * value at the start of a value, which is the rule CSVReader follows too.
+ * Instead of creating a String for every value, the parser keeps the offsets
+ * of the values of the current record in the mapped buffer, and a String is
+ * only created when a value is asked for.
+ * @author Tony Padilla (apadilla)
+ */
+final class MappedCSVParser {
+
+    /**
+     * Constant that represents the size in bytes of a mapped window of the
+     * file.
+     */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Constant that represents the initial number of values per record the
+     * parser has room for.
+     */
+    private static final int INITIAL_FIELDS = 8;
+
+    /**
+     * Constant that represents the number of bytes split looks at to find
+     * the start of a record near each boundary.
+     */
+    private static final int PROBE_SIZE = 64 * 1024;
+
+    /**
+     * This is the channel of the file being parsed.
+     */
+    private final FileChannel channel;
+
+    /**
+     * This represents the offset in the file before which records start.
+     */
+    private final long end;
+
+    /**
+     * This represents the size of the file.
+     */
+    private final long size;
+
+    /**
+     * This is the mapped window of the file.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * This represents the offset in the file of the first byte of the window.
+     */
+    private long windowStart;
+
+    /**
+     * This represents the offset in the file of the next record.
+     */
+    private long next;
+
+    /**
+     * This represents the number of lines before the current record.
+     */
+    private int line;
+
+    /**
+     * This represents the number of lines the current record spans.
+     */
+    private int recordLines;
+
+    /**
+     * This represents the number of values in the current record.
+     */
+    private int fieldCount;
+
+    /**
+     * This holds the window offset of the first byte of each value.
+     */
+    private int[] starts;
+
+    /**
+     * This holds the window offset after the last byte of each value.
+     */
+    private int[] ends;
+
+    /**
+     * This holds whether each value contains escaped quotes.
+     */
+    private boolean[] escaped;
+
+    /**
+     * This is the buffer values are copied into before being decoded.
+     */
+    private byte[] scratch;
+
+    /**
+     * This is the three argument constructor for the MappedCSVParser class.
+     * Every record that starts before the end of the range is parsed, and
+     * the last one is read to its end even if that is past the range.
+     * @param channel This is the channel of the file to parse.
+     * @param start This represents the offset in the file of the first record.
+     * @param end This represents the offset in the file before which records
+     * start.
+     * @throws IOException if the size of the file cannot be read.
+     */
+    MappedCSVParser(FileChannel channel, long start, long end) throws
+        IOException {
+        this.channel = channel;
+        this.end = end;
+        size = channel.size();
+        next = start;
+        windowStart = start;
+        starts = new int[INITIAL_FIELDS];
+        ends = new int[INITIAL_FIELDS];
+        escaped = new boolean[INITIAL_FIELDS];
+        scratch = new byte[INITIAL_FIELDS];
+    }
+
+    /**
+     * Moves to the next record of the range.
+     * @return true if there is a next record, false at the end of the range.
+     * @throws IOException if the file cannot be mapped.
+     */
+    boolean next() throws IOException {
+        line += recordLines;
+        recordLines = 0;
+        if (next >= end) {
+            return false;
+        }
+        int size = WINDOW_SIZE;
+        if (window == null || next - windowStart >= window.limit()) {
+            map(next, size);
+        }
+        while (!scan()) {
+            if (windowStart == next) {
+                size *= 2;
+            }
+            map(next, size);
+        }
+        return true;
+    }
+
+    /**
+     * Maps the window of the file starting at the given offset.
+     * @param offset This represents the offset in the file of the window.
+     * @param size This represents the largest size of the window.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private void map(long offset, int size) throws IOException {
+        long length = Math.min(size, this.size - offset);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        windowStart = offset;
+    }
+
+    /**
+     * Scans the record starting at the next offset and records the offsets
+     * of its values.
+     * @return true if the record was scanned, false if it runs past the end
+     * of the window and the window has to be moved.
+     */
+    private boolean scan() {
+        int limit = window.limit();
+        boolean lastWindow = windowStart + limit >= size;
+        int pos = (int) (next - windowStart);
+        int lines = 0;
+        fieldCount = 0;
+        while (true) {
+            int start = pos;
+            int stop;
+            boolean quoted = pos < limit && window.get(pos) == '"';
+            boolean escapes = false;
+            if (quoted) {
+                start = ++pos;
+                while (true) {
+                    if (pos >= limit) {
+                        if (!lastWindow) {
+                            return false;
+                        }
+                        stop = pos;
+                        break;
+                    }
+                    byte b = window.get(pos);
+                    if (b == '"') {
+                        if (pos + 1 < limit && window.get(pos + 1) == '"') {
+                            escapes = true;
+                            pos += 2;
+                            continue;
+                        }
+                        if (pos + 1 >= limit && !lastWindow) {
+                            return false;
+                        }
+                        stop = pos++;
+                        break;
+                    }
+                    if (b == '\n') {
+                        lines++;
+                    }
+                    pos++;
+                }
+                while (pos < limit && window.get(pos) != ','
+                    && window.get(pos) != '\n') {
+                    pos++;
+                }
+            } else {
+                while (pos < limit && window.get(pos) != ','
+                    && window.get(pos) != '\n') {
+                    pos++;
+                }
+                stop = pos;
+            }
+            if (pos >= limit && !lastWindow) {
+                return false;
+            }
+            if (pos >= limit || window.get(pos) == '\n') {
+                if (!quoted && stop > start && window.get(stop - 1) == '\r') {
+                    stop--;
+                }
+                addField(start, stop, escapes);
+                if (pos < limit) {
+                    pos++;
+                    lines++;
+                }
+                break;
+            }
+            addField(start, stop, escapes);
+            pos++;
+        }
+        recordLines = lines;
+        next = windowStart + pos;
+        return true;
+    }
+
+    /**
+     * Records the offsets of a value of the current record.
+     * @param start This is the window offset of the first byte of the value.
+     * @param stop This is the window offset after the last byte of the value.
+     * @param escapes This is true if the value contains escaped quotes.
+     */
+    private void addField(int start, int stop, boolean escapes) {
+        if (fieldCount == starts.length) {
+            int capacity = 2 * starts.length;
+            starts = Arrays.copyOf(starts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            escaped = Arrays.copyOf(escaped, capacity);
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = stop;
+        escaped[fieldCount] = escapes;
+        fieldCount++;
+    }
+
+    /**
+     * This is the getter for the number of lines before the current record,
+     * counted from the start of the range.
+     * @return This gives the index of the first line of the current record.
+     */
+    int line() {
+        return line;
+    }
+
+    /**
+     * This is the getter for the offset in the file after the current
+     * record, where the next record starts. Before the first record it is
+     * the start of the range.
+     * @return This gives the offset after the current record.
+     */
+    long position() {
+        return next;
+    }
+
+    /**
+     * This is the getter for the number of values in the current record.
+     * @return This gives the number of values.
+     */
+    int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns the length in bytes of a value of the current record, without
+     * creating a String for it.
+     * @param i This is the index of the value.
+     * @return The length of the value, counting escaped quotes twice.
+     */
+    int fieldLength(int i) {
+        return ends[i] - starts[i];
+    }
+
+    /**
+     * Returns a value of the current record as a String.
+     * @param i This is the index of the value.
+     * @return The value, with escaped quotes replaced by single quotes.
+     */
+    String field(int i) {
+        int n = unescape(i);
+        return new String(scratch, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns a value of the current record as a name interned in the
+     * shared NameDictionary. A name already in the dictionary is found from
+     * the bytes of the record, without creating a String.
+     * @param i This is the index of the value.
+     * @return The canonical String of the value, with escaped quotes
+     * replaced by single quotes.
+     */
+    String name(int i) {
+        int n = unescape(i);
+        return NameDictionary.shared().intern(scratch, 0, n);
+    }
+
+    /**
+     * Copies a value of the current record into the scratch array,
+     * replacing escaped quotes by single quotes.
+     * @param i This is the index of the value.
+     * @return The number of bytes copied.
+     */
+    private int unescape(int i) {
+        int start = starts[i];
+        int length = ends[i] - start;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, 2 * scratch.length)];
+        }
+        int n = 0;
+        for (int pos = start; pos < start + length; pos++) {
+            byte b = window.get(pos);
+            scratch[n++] = b;
+            if (b == '"' && escaped[i]) {
+                pos++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Splits the given file into ranges of about the given size that each
+     * start at the beginning of a record. Only a few bytes near each
+     * boundary are read: a boundary is put after the first newline that the
+     * quotes nearby show to be outside a quoted value. That guess can be
+     * wrong for a quoted value that looks like records, so a range must be
+     * parsed again from where the range before it really ended if the two
+     * do not meet.
+     * @param channel This is the channel of the file to split.
+     * @param chunkSize This represents the target size in bytes of a range.
+     * @return The offsets of the range boundaries, starting with 0 and ending
+     * with the size of the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    static long[] split(FileChannel channel, long chunkSize) throws
+        IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long target = chunkSize;
+        while (target < size) {
+            long bound = recordStart(channel, target, size);
+            if (bound < 0) {
+                target += chunkSize;
+            } else if (bound < size) {
+                bounds.add(bound);
+                target = bound + chunkSize;
+            } else {
+                break;
+            }
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the start of the first record after the given offset, looking
+     * at the probe of bytes that starts just before it.
+     * @param channel This is the channel of the file.
+     * @param from This represents the offset to look from, which is not 0.
+     * @param size This represents the size of the file.
+     * @return The offset after the first newline at or after from that is
+     * outside a quoted value, or -1 if the probe holds none.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private static long recordStart(FileChannel channel, long from, long size)
+        throws IOException {
+        int length = (int) Math.min(PROBE_SIZE, size - from + 1);
+        MappedByteBuffer probe =
+            channel.map(FileChannel.MapMode.READ_ONLY, from - 1, length);
+        boolean inQuotes = startsInQuotes(probe);
+        for (int i = 1; i < length; i++) {
+            byte b = probe.get(i);
+            if (inQuotes) {
+                if (b == '"') {
+                    if (i + 1 < length && probe.get(i + 1) == '"') {
+                        i++;
+                    } else {
+                        inQuotes = false;
+                    }
+                }
+            } else if (b == '\n') {
+                return from + i;
+            } else if (b == '"' && isDelimiter(probe.get(i - 1))) {
+                inQuotes = true;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Guesses whether the second byte of the probe is inside a quoted
+     * value. A quote after a delimiter and before other text opens a value,
+     * and a quote after other text and before a delimiter closes one. The
+     * first quote that is one or the other tells which side of the quotes
+     * the probe starts on, counting the single quotes before it. Doubled
+     * quotes do not change the side.
+     * @param probe This holds the bytes from just before the offset.
+     * @return true if the probe seems to start inside a quoted value.
+     */
+    private static boolean startsInQuotes(MappedByteBuffer probe) {
+        int length = probe.limit();
+        boolean flipped = false;
+        for (int i = 1; i < length; i++) {
+            if (probe.get(i) != '"') {
+                continue;
+            }
+            if (i + 1 < length && probe.get(i + 1) == '"') {
+                i++;
+                continue;
+            }
+            boolean after = isDelimiter(probe.get(i - 1));
+            boolean before = i + 1 == length || isDelimiter(probe.get(i + 1))
+                || probe.get(i + 1) == '\r';
+            if (after && !before) {
+                return flipped;
+            }
+            if (before && !after) {
+                return !flipped;
+            }
+            flipped = !flipped;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether a byte ends a value, so that a quote after it starts
+     * the next value.
+     * @param b This is the byte.
+     * @return true for a comma or a newline.
+     */
+    private static boolean isDelimiter(byte b) {
+        return b == ',' || b == '\n';
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * MetricsExporter - Receives the metrics of a Directory, one at a time, when
+ * DirectoryMetrics.exportTo is called. An implementation writes them to a
+ * monitoring system in its own format. Metric names are lower case words
+ * joined by underscores, such as directory_search_by_first_name_nanos.
+ * @author Tony Padilla (apadilla)
+ */
+public interface MetricsExporter {
+
+    /**
+     * Called with a value that can go up and down, such as a size.
+     * @param name This is the name of the metric.
+     * @param value This is the current value.
+     */
+    void gauge(String name, double value);
+
+    /**
+     * Called with a count that only goes up.
+     * @param name This is the name of the metric.
+     * @param value This is the count so far.
+     */
+    void counter(String name, long value);
+
+    /**
+     * Called with a distribution of values.
+     * @param name This is the name of the metric.
+     * @param histogram This holds the values recorded so far.
+     */
+    void histogram(String name, Histogram histogram);
+}
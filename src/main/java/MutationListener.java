@@ -0,0 +1,55 @@
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * MutationListener - Receives the changes made to a Directory. A listener is
+ * called after a change has been validated and before it is applied, so a
+ * listener that throws an exception prevents the change. A listener
+ * registered with Directory.addAppliedListener is instead called once the
+ * change has been applied, and cannot prevent it; the method comments
+ * below then read "after" for "before".
+ * @author Tony Padilla (apadilla)
+ */
+public interface MutationListener {
+
+    /**
+     * Called before a student is added to the directory.
+     * @param s This represents the student being added.
+     */
+    void onAdd(Student s);
+
+    /**
+     * Called before a batch of students is added to the directory in one
+     * step. None of the students has been added when this is called. By
+     * default each student is passed to onAdd in turn.
+     * @param students This holds the students being added.
+     */
+    default void onAddAll(Collection<Student> students) {
+        for (Student s : students) {
+            onAdd(s);
+        }
+    }
+
+    /**
+     * Called before a student is deleted from the directory.
+     * @param s This represents the student being deleted.
+     */
+    void onDelete(Student s);
+
+    /**
+     * Called before a batch of adds and deletes is applied to the directory
+     * in one step. None of the operations has been applied when this is
+     * called, and each delete holds the student being deleted. By default
+     * each operation is passed to onAdd or onDelete in turn.
+     * @param operations This holds the operations being applied, in order.
+     */
+    default void onBatch(List<BatchOperation> operations) {
+        for (BatchOperation op : operations) {
+            if (op.isAdd()) {
+                onAdd(op.getStudent());
+            } else {
+                onDelete(op.getStudent());
+            }
+        }
+    }
+}
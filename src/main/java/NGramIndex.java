@@ -0,0 +1,359 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * NGramIndex - An index of names by their bigrams, used to find the names
+ * within a small Levenshtein distance of a query without comparing the query
+ * against every name. Each name is padded with a marker at both ends, so a
+ * name of length n has n + 1 bigrams, and a name within distance k of the
+ * query shares at least (length of the query + 1 - 2k) of them. The index
+ * counts the shared bigrams of every name in the query's posting lists and
+ * only computes the distance for names that reach that count and whose
+ * length is within k of the query's.
+ * <p>
+ * Queries too short for the count to filter anything, three characters or
+ * fewer at distance 2, are answered from a BK-tree of the names instead:
+ * each name hangs under the first name on its path at the distance between
+ * the two, so by the triangle inequality a search only descends to the
+ * children whose distance is within k of the query's distance to their
+ * parent. A removed name stays in the tree to route searches, and is
+ * dropped when the index is rebuilt.
+ * <p>
+ * Searches only read the index: the counts of shared bigrams and the rows
+ * of the distance matrix belong to each search, so any number of threads
+ * may search while none is adding or removing names.
+ * @author Tony Padilla (apadilla)
+ */
+final class NGramIndex {
+
+    /**
+     * Constant that represents the character used to pad names.
+     */
+    private static final char PAD = '\u0000';
+
+    /**
+     * Constant that represents the initial capacity of the name table.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * This is the number of removed names the index may hold beyond the
+     * names in it before it is rebuilt.
+     */
+    private static final int SLACK = 1024;
+
+    /**
+     * Constant that represents the id of no name, ending a list of
+     * children in the tree.
+     */
+    private static final int NONE = -1;
+
+    /**
+     * This has a name as key and maps from name to its id.
+     */
+    private final Map<String, Integer> ids;
+
+    /**
+     * This holds the name of each id, or null if the name was removed.
+     */
+    private String[] names;
+
+    /**
+     * This represents the number of ids given out.
+     */
+    private int count;
+
+    /**
+     * This maps from a bigram to the ids of the names containing it, once
+     * for each time it occurs.
+     */
+    private Map<Integer, IntList> grams;
+
+    /**
+     * This holds the name of each id, kept after the name is removed so
+     * that the tree can still route through it.
+     */
+    private String[] labels;
+
+    /**
+     * This holds the id of the first child of each id in the tree, or
+     * NONE.
+     */
+    private int[] child;
+
+    /**
+     * This holds the id of the next child of the same parent as each id, or
+     * NONE.
+     */
+    private int[] sibling;
+
+    /**
+     * This holds the distance between each id and its parent in the tree.
+     */
+    private int[] edge;
+
+    /**
+     * This is the id of the root of the tree, or NONE while it is empty.
+     */
+    private int root;
+
+    /**
+     * This represents the length of the longest name added.
+     */
+    private int longest;
+
+    /**
+     * This is the no arg constructor for the NGramIndex class which creates
+     * an empty index.
+     */
+    NGramIndex() {
+        ids = new HashMap<>();
+        clear();
+    }
+
+    /**
+     * Empties the index.
+     */
+    private void clear() {
+        ids.clear();
+        names = new String[INITIAL_CAPACITY];
+        count = 0;
+        grams = new HashMap<>();
+        labels = new String[INITIAL_CAPACITY];
+        child = new int[INITIAL_CAPACITY];
+        sibling = new int[INITIAL_CAPACITY];
+        edge = new int[INITIAL_CAPACITY];
+        root = NONE;
+        longest = 0;
+    }
+
+    /**
+     * Adds a name to the index if it is not in it yet.
+     * @param name This is the name to add.
+     */
+    void add(String name) {
+        if (ids.containsKey(name)) {
+            return;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, 2 * count);
+            labels = Arrays.copyOf(labels, 2 * count);
+            child = Arrays.copyOf(child, 2 * count);
+            sibling = Arrays.copyOf(sibling, 2 * count);
+            edge = Arrays.copyOf(edge, 2 * count);
+        }
+        int id = count++;
+        names[id] = name;
+        labels[id] = name;
+        ids.put(name, id);
+        longest = Math.max(longest, name.length());
+        insert(id);
+        char last = PAD;
+        for (int i = 0; i <= name.length(); i++) {
+            char c = i < name.length() ? name.charAt(i) : PAD;
+            grams.computeIfAbsent(gram(last, c), k -> new IntList()).add(id);
+            last = c;
+        }
+    }
+
+    /**
+     * Removes a name from the index. Its postings and its node in the tree
+     * are dropped the next time the index is rebuilt, which happens once
+     * removed names outnumber the names in the index.
+     * @param name This is the name to remove.
+     */
+    void remove(String name) {
+        Integer id = ids.remove(name);
+        if (id == null) {
+            return;
+        }
+        names[id] = null;
+        if (count - ids.size() > ids.size() + SLACK) {
+            String[] live = ids.keySet().toArray(new String[ids.size()]);
+            clear();
+            for (String n : live) {
+                add(n);
+            }
+        }
+    }
+
+    /**
+     * Calls the consumer with every name in the index within the given
+     * distance of the query, together with its distance.
+     * @param query This is the name to search for.
+     * @param maxDistance This is the largest distance of a match.
+     * @param matches This is called with each match and its distance.
+     */
+    void search(String query, int maxDistance,
+        ObjIntConsumer<String> matches) {
+        int[] prev = new int[Math.max(longest, query.length()) + 1];
+        int[] curr = new int[prev.length];
+        int needed = query.length() + 1 - 2 * maxDistance;
+        if (needed <= 0) {
+            searchTree(query, maxDistance, matches, prev, curr);
+            return;
+        }
+        LongIntMap shared = new LongIntMap();
+        IntList touched = new IntList();
+        char last = PAD;
+        for (int i = 0; i <= query.length(); i++) {
+            char c = i < query.length() ? query.charAt(i) : PAD;
+            IntList p = grams.get(gram(last, c));
+            for (int j = 0; p != null && j < p.size(); j++) {
+                int id = p.get(j);
+                int n = shared.get(id + 1);
+                if (n == LongIntMap.MISSING) {
+                    touched.add(id);
+                    n = 0;
+                }
+                shared.put(id + 1, n + 1);
+            }
+            last = c;
+        }
+        for (int i = 0; i < touched.size(); i++) {
+            int id = touched.get(i);
+            if (shared.get(id + 1) >= needed) {
+                check(query, id, maxDistance, matches, prev, curr);
+            }
+        }
+    }
+
+    /**
+     * Hangs a new id in the tree, under the first id on its path at the
+     * distance between the two.
+     * @param id This is the id of the name to insert.
+     */
+    private void insert(int id) {
+        child[id] = NONE;
+        sibling[id] = NONE;
+        if (root == NONE) {
+            root = id;
+            return;
+        }
+        String name = labels[id];
+        int[] prev = new int[longest + 1];
+        int[] curr = new int[prev.length];
+        int node = root;
+        while (true) {
+            int d = distance(name, labels[node], longest, prev, curr);
+            int next = child[node];
+            while (next != NONE && edge[next] != d) {
+                next = sibling[next];
+            }
+            if (next == NONE) {
+                edge[id] = d;
+                sibling[id] = child[node];
+                child[node] = id;
+                return;
+            }
+            node = next;
+        }
+    }
+
+    /**
+     * Calls the consumer with every name in the tree within the given
+     * distance of the query, descending only to the children whose distance
+     * to their parent is within maxDistance of the query's.
+     * @param query This is the name to search for.
+     * @param maxDistance This is the largest distance of a match.
+     * @param matches This is called with each match and its distance.
+     * @param prev This is a row of the distance matrix, longer than any name.
+     * @param curr This is another row of the same length.
+     */
+    private void searchTree(String query, int maxDistance,
+        ObjIntConsumer<String> matches, int[] prev, int[] curr) {
+        if (root == NONE) {
+            return;
+        }
+        IntList pending = new IntList();
+        pending.add(root);
+        while (pending.size() > 0) {
+            int node = pending.removeLast();
+            String label = labels[node];
+            int d = distance(query, label,
+                Math.max(query.length(), label.length()), prev, curr);
+            if (d <= maxDistance && names[node] != null) {
+                matches.accept(label, d);
+            }
+            for (int c = child[node]; c != NONE; c = sibling[c]) {
+                if (Math.abs(edge[c] - d) <= maxDistance) {
+                    pending.add(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Passes the name of the given id to the consumer if it is still in the
+     * index and within the given distance of the query.
+     * @param query This is the name to search for.
+     * @param id This is the id of the name to check.
+     * @param maxDistance This is the largest distance of a match.
+     * @param matches This is called with the name if it matches.
+     * @param prev This is a row of the distance matrix, longer than any name.
+     * @param curr This is another row of the same length.
+     */
+    private void check(String query, int id, int maxDistance,
+        ObjIntConsumer<String> matches, int[] prev, int[] curr) {
+        String name = names[id];
+        if (name == null
+            || Math.abs(name.length() - query.length()) > maxDistance) {
+            return;
+        }
+        int d = distance(query, name, maxDistance, prev, curr);
+        if (d <= maxDistance) {
+            matches.accept(name, d);
+        }
+    }
+
+    /**
+     * Computes the Levenshtein distance between two names, the least number
+     * of single character insertions, deletions and substitutions that turn
+     * one into the other, giving up once it exceeds the given bound.
+     * @param a This is the first name.
+     * @param b This is the second name.
+     * @param bound This is the largest distance of interest.
+     * @param prev This is a row of the distance matrix, longer than the
+     * second name, which is overwritten.
+     * @param curr This is another row of the same length.
+     * @return The distance between the names, or bound + 1 if it is larger
+     * than the bound.
+     */
+    private static int distance(String a, String b, int bound, int[] prev,
+        int[] curr) {
+        int n = b.length();
+        for (int j = 0; j <= n; j++) {
+            prev[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            curr[0] = i;
+            int best = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int cost = c == b.charAt(j - 1) ? 0 : 1;
+                curr[j] = Math.min(Math.min(curr[j - 1] + 1, prev[j] + 1),
+                    prev[j - 1] + cost);
+                best = Math.min(best, curr[j]);
+            }
+            if (best > bound) {
+                return bound + 1;
+            }
+            int[] row = prev;
+            prev = curr;
+            curr = row;
+        }
+        return prev[n];
+    }
+
+    /**
+     * Packs a bigram into an int.
+     * @param first This is the first character of the bigram.
+     * @param second This is the second character of the bigram.
+     * @return The packed bigram.
+     */
+    private static int gram(char first, char second) {
+        return (first << Character.SIZE) | second;
+    }
+}
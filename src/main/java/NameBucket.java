@@ -0,0 +1,291 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * NameBucket - The students sharing one name, in the order they were added.
+ * Removing a student leaves an empty slot behind instead of shifting the
+ * students after it, so a removal costs the same however large the bucket
+ * is. Empty slots are squeezed out by writes, once they outnumber the
+ * students or when the slots are full. Reads never change the bucket, so
+ * threads may read it together: iterating skips empty slots as it goes.
+ * Searches hand the bucket out as a list, so reading by position must stay
+ * cheap: while there are empty slots, the first such read copies the
+ * students into a dense array kept until the next write, and reads by
+ * position index that array. Readers racing to make the copy make equal
+ * ones, and the array is published through a volatile field, so the copy
+ * needs no lock of its own. Buckets larger than a few students find a
+ * student's slot through a map keyed by Andrew ID, built when a student is
+ * first removed, so that buckets that are only searched never pay for it;
+ * smaller ones scan for it.
+ * @author Tony Padilla (apadilla)
+ */
+final class NameBucket extends AbstractList<Student> {
+
+    /**
+     * Constant that represents the initial capacity of a bucket.
+     */
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Constant that represents the number of slots above which a bucket
+     * keeps a map from Andrew ID to slot.
+     */
+    private static final int INDEX_THRESHOLD = 16;
+
+    /**
+     * This holds the students of the bucket, with null for an empty slot.
+     */
+    private Student[] slots;
+
+    /**
+     * This represents the number of slots in use, empty or not.
+     */
+    private int used;
+
+    /**
+     * This represents the number of empty slots among the used ones.
+     */
+    private int holes;
+
+    /**
+     * This has a student's Andrew ID as key and maps to the student's slot,
+     * or is null while the bucket is small.
+     */
+    private Map<String, Integer> index;
+
+    /**
+     * This holds the students without the empty slots, for reads by
+     * position, or is null until one is made after the last write.
+     */
+    private volatile Student[] dense;
+
+    /**
+     * This is the read-only view of the bucket, or null until one is asked
+     * for.
+     */
+    private List<Student> view;
+
+    /**
+     * This is the no arg constructor for the NameBucket class which creates
+     * an empty bucket.
+     */
+    NameBucket() {
+        slots = new Student[INITIAL_CAPACITY];
+    }
+
+    /**
+     * This is the one argument constructor for the NameBucket class which
+     * creates a bucket holding the given students, in order. The bucket
+     * takes the array over instead of copying it. Like any bucket, a large
+     * one builds its map from Andrew ID to slot when a student is first
+     * removed.
+     * @param students This holds the students of the bucket, with no null
+     * elements.
+     */
+    NameBucket(Student[] students) {
+        slots = students;
+        used = students.length;
+    }
+
+    @Override
+    public boolean add(Student s) {
+        if (used == slots.length) {
+            if (holes > used / 4) {
+                compact();
+            } else {
+                slots = Arrays.copyOf(slots, 2 * used);
+            }
+        }
+        if (index != null) {
+            index.put(s.getAndrewId(), used);
+        }
+        slots[used++] = s;
+        dense = null;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends Student> students) {
+        int needed = used - holes + students.size();
+        if (needed > slots.length) {
+            compact();
+            slots = Arrays.copyOf(slots, Math.max(needed, 2 * used));
+        }
+        for (Student s : students) {
+            add(s);
+        }
+        return !students.isEmpty();
+    }
+
+    /**
+     * Returns a read-only view of the bucket. The view is created once and
+     * then kept, so searches that hand it out allocate nothing.
+     * @return The view, which reflects later changes to the bucket.
+     */
+    List<Student> readOnlyView() {
+        if (view == null) {
+            view = Collections.unmodifiableList(this);
+        }
+        return view;
+    }
+
+    /**
+     * Removes the given student from the bucket, keeping the order of the
+     * other students.
+     * @param s This represents the student to remove, which must be the
+     * instance stored in the bucket.
+     * @return true if the student was in the bucket.
+     */
+    boolean removeStudent(Student s) {
+        int slot = slotOf(s);
+        if (slot < 0) {
+            return false;
+        }
+        slots[slot] = null;
+        holes++;
+        dense = null;
+        if (index != null) {
+            index.remove(s.getAndrewId());
+        }
+        modCount++;
+        if (holes > used - holes) {
+            compact();
+        }
+        return true;
+    }
+
+    @Override
+    public Student get(int i) {
+        if (i < 0 || i >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + i);
+        }
+        if (holes == 0) {
+            return slots[i];
+        }
+        Student[] students = dense;
+        if (students == null) {
+            students = new Student[size()];
+            int k = 0;
+            for (int slot = 0; slot < used; slot++) {
+                if (slots[slot] != null) {
+                    students[k++] = slots[slot];
+                }
+            }
+            dense = students;
+        }
+        return students[i];
+    }
+
+    @Override
+    public Iterator<Student> iterator() {
+        return new Iterator<Student>() {
+            /**
+             * This represents the slot of the next student, or used.
+             */
+            private int next = skipHoles(0);
+
+            /**
+             * This represents the modification count the iterator expects.
+             */
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            public Student next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= used) {
+                    throw new NoSuchElementException();
+                }
+                Student s = slots[next];
+                next = skipHoles(next + 1);
+                return s;
+            }
+        };
+    }
+
+    @Override
+    public int size() {
+        return used - holes;
+    }
+
+    /**
+     * Returns the first slot at or after the given one that holds a
+     * student.
+     * @param slot This represents the slot to start from.
+     * @return The slot of the student, or used if there is none.
+     */
+    private int skipHoles(int slot) {
+        while (slot < used && slots[slot] == null) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the slot holding the given student.
+     * @param s This represents the student to find.
+     * @return The slot of the student, or -1 if it is not in the bucket.
+     */
+    private int slotOf(Student s) {
+        if (index == null && used > INDEX_THRESHOLD) {
+            buildIndex();
+        }
+        if (index != null) {
+            Integer slot = index.get(s.getAndrewId());
+            return slot == null || slots[slot] != s ? -1 : slot;
+        }
+        for (int i = used - 1; i >= 0; i--) {
+            if (slots[i] == s) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves the students to the front of the slots, in order, so that there
+     * are no empty slots, and updates the index to match.
+     */
+    private void compact() {
+        int j = 0;
+        for (int i = 0; i < used; i++) {
+            Student s = slots[i];
+            if (s != null) {
+                if (index != null && i != j) {
+                    index.put(s.getAndrewId(), j);
+                }
+                slots[j++] = s;
+            }
+        }
+        Arrays.fill(slots, j, used, null);
+        used = j;
+        holes = 0;
+    }
+
+    /**
+     * Creates the map from Andrew ID to slot for the students in the bucket.
+     */
+    private void buildIndex() {
+        index = new HashMap<>();
+        for (int i = 0; i < used; i++) {
+            if (slots[i] != null) {
+                index.put(slots[i].getAndrewId(), i);
+            }
+        }
+    }
+}
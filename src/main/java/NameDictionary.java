@@ -0,0 +1,333 @@
+import java.nio.charset.StandardCharsets;
+
+/**
+ * NameDictionary - Gives each distinct name a small int code, so that a name
+ * repeated by many students is stored once and referred to by its code.
+ * Codes are handed out from 0 in the order names are first seen and are
+ * never reused.
+ * <p>
+ * The dictionary is an open addressing table of codes next to arrays of the
+ * names and their hash codes, so a name costs a few ints beyond the String
+ * itself rather than a map entry and a boxed Integer. The String kept for a
+ * code is the canonical instance of the name: intern returns it for any
+ * equal name, which lets the name String of a roster be shared by every
+ * student who has it. Names are looked up without locking and added holding
+ * the dictionary's monitor, so one dictionary can be shared by every
+ * thread, as the one returned by shared() is.
+ * @author Tony Padilla (apadilla)
+ */
+final class NameDictionary {
+
+    /**
+     * Constant that represents the initial capacity of the dictionary.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Constant that represents the largest number of names the shared
+     * dictionary keeps. Names beyond it are not interned, so that a stream
+     * of distinct names cannot grow it without bound.
+     */
+    private static final int SHARED_LIMIT = 1 << 20;
+
+    /**
+     * Constant that is the dictionary the loaders and Directory intern
+     * names with.
+     */
+    private static final NameDictionary SHARED =
+        new NameDictionary(SHARED_LIMIT);
+
+    /**
+     * This represents the largest number of names kept.
+     */
+    private final int limit;
+
+    /**
+     * This holds the arrays of the dictionary, replaced as a whole when
+     * they grow.
+     */
+    private volatile Table table;
+
+    /**
+     * This represents the number of names in the dictionary.
+     */
+    private volatile int size;
+
+    /**
+     * This represents the code of the null name, or -1 if it has none.
+     */
+    private int nullCode = -1;
+
+    /**
+     * This is the no arg constructor for the NameDictionary class which
+     * creates an empty dictionary.
+     */
+    NameDictionary() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * This is the one argument constructor for the NameDictionary class
+     * which creates an empty dictionary keeping at most the given number of
+     * names.
+     * @param limit This represents the largest number of names kept.
+     */
+    private NameDictionary(int limit) {
+        this.limit = limit;
+        table = new Table(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Returns the dictionary shared by the whole JVM, which the parsers and
+     * loaders intern first and last names with, and which Directory interns
+     * the names of every student it stores with.
+     * @return The shared dictionary.
+     */
+    static NameDictionary shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the code of the given name, giving it a new code if it is not
+     * in the dictionary yet.
+     * @param name This is the name to encode.
+     * @return The code of the name, or -1 if the dictionary is full.
+     */
+    int encode(String name) {
+        int code = lookup(name);
+        return code >= 0 ? code : add(name);
+    }
+
+    /**
+     * Returns the code of the given name without adding it.
+     * @param name This is the name to look up.
+     * @return The code of the name, or -1 if it is not in the dictionary.
+     */
+    int lookup(String name) {
+        if (name == null) {
+            synchronized (this) {
+                return nullCode;
+            }
+        }
+        Table t = table;
+        int hash = name.hashCode();
+        int mask = t.slots.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            int code = t.slots[i] - 1;
+            if (code < 0) {
+                return -1;
+            }
+            String s = t.names[code];
+            if (t.hashes[code] == hash && s != null && s.equals(name)) {
+                return code;
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the given code. The same String instance is
+     * returned for every call with the same code.
+     * @param code This is the code of the name.
+     * @return The name.
+     */
+    String decode(int code) {
+        return table.names[code];
+    }
+
+    /**
+     * This represents the number of names in the dictionary.
+     * @return The number of distinct names encoded so far.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the canonical instance of the given name, adding the name if
+     * it is not in the dictionary yet.
+     * @param name This is the name to intern, which may be null.
+     * @return The String kept for the name, or the name itself if it is
+     * null or the dictionary is full.
+     */
+    String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        int code = encode(name);
+        return code < 0 ? name : table.names[code];
+    }
+
+    /**
+     * Returns the canonical instance of the name encoded in the given UTF-8
+     * bytes, adding the name if it is not in the dictionary yet. A name of
+     * ASCII characters that is in the dictionary is found without creating
+     * a String, so parsers can intern names straight from their buffers.
+     * @param utf8 This holds the encoded name.
+     * @param offset This is the index of the first byte of the name.
+     * @param length This represents the number of bytes of the name.
+     * @return The String kept for the name, or a new String if the
+     * dictionary is full.
+     */
+    String intern(byte[] utf8, int offset, int length) {
+        int hash = 0;
+        for (int i = offset; i < offset + length; i++) {
+            if (utf8[i] < 0) {
+                return intern(new String(utf8, offset, length,
+                    StandardCharsets.UTF_8));
+            }
+            hash = 31 * hash + utf8[i];
+        }
+        Table t = table;
+        int mask = t.slots.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            int code = t.slots[i] - 1;
+            if (code < 0) {
+                break;
+            }
+            String s = t.names[code];
+            if (t.hashes[code] == hash && s != null
+                && matches(s, utf8, offset, length)) {
+                return s;
+            }
+        }
+        return intern(new String(utf8, offset, length,
+            StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Tells whether a name equals the given ASCII bytes.
+     * @param s This is the name.
+     * @param ascii This holds the bytes.
+     * @param offset This is the index of the first byte.
+     * @param length This represents the number of bytes.
+     * @return true if the name has the characters of the bytes.
+     */
+    private static boolean matches(String s, byte[] ascii, int offset,
+        int length) {
+        if (s.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (s.charAt(i) != ascii[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gives a name that was not found a code, unless another thread gave it
+     * one first.
+     * @param name This is the name to add.
+     * @return The code of the name, or -1 if the dictionary is full.
+     */
+    private synchronized int add(String name) {
+        if (name == null) {
+            if (nullCode < 0 && size < limit) {
+                nullCode = append(null, 0);
+            }
+            return nullCode;
+        }
+        int code = lookup(name);
+        if (code >= 0 || size >= limit) {
+            return code;
+        }
+        code = append(name, name.hashCode());
+        Table t = table;
+        int mask = t.slots.length - 1;
+        int i = spread(t.hashes[code]) & mask;
+        while (t.slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        t.slots[i] = code + 1;
+        return code;
+    }
+
+    /**
+     * Stores a name under the next code, growing the arrays if they are
+     * full. Called holding the dictionary's monitor.
+     * @param name This is the name.
+     * @param hash This is the hash code of the name.
+     * @return The code of the name.
+     */
+    private int append(String name, int hash) {
+        int code = size;
+        if (code == table.names.length) {
+            table = table.grow();
+        }
+        Table t = table;
+        t.hashes[code] = hash;
+        t.names[code] = name;
+        size = code + 1;
+        return code;
+    }
+
+    /**
+     * Mixes the bits of a hash code, so that names whose hash codes only
+     * differ in their high bits land apart.
+     * @param hash This is the hash code.
+     * @return The mixed hash code.
+     */
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    /**
+     * Table - Holds the arrays of a dictionary. Threads that look names up
+     * without locking may not see the latest names added to a table, but
+     * then they find an empty slot or a null name and add the name holding
+     * the monitor, where they see them.
+     */
+    private static final class Table {
+
+        /**
+         * This holds one more than the code of the name hashed to each
+         * slot, or 0 for an empty slot. It has twice as many slots as there
+         * are codes, so it is never more than half full.
+         */
+        final int[] slots;
+
+        /**
+         * This holds the hash code of the name of each code.
+         */
+        final int[] hashes;
+
+        /**
+         * This holds the name of each code.
+         */
+        final String[] names;
+
+        /**
+         * This is the one argument constructor for the Table class.
+         * @param capacity This represents the number of codes it has room
+         * for.
+         */
+        Table(int capacity) {
+            slots = new int[2 * capacity];
+            hashes = new int[capacity];
+            names = new String[capacity];
+        }
+
+        /**
+         * Returns a table with twice the room holding the same names.
+         * @return The new table.
+         */
+        Table grow() {
+            Table t = new Table(2 * names.length);
+            System.arraycopy(hashes, 0, t.hashes, 0, hashes.length);
+            System.arraycopy(names, 0, t.names, 0, names.length);
+            int mask = t.slots.length - 1;
+            for (int code = 0; code < names.length; code++) {
+                if (names[code] == null) {
+                    continue;
+                }
+                int i = spread(hashes[code]) & mask;
+                while (t.slots[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                t.slots[i] = code + 1;
+            }
+            return t;
+        }
+    }
+}
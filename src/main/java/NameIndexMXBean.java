@@ -0,0 +1,47 @@
+/**
+ * NameIndexMXBean - The management interface of the sizes of one of the
+ * name maps of a Directory, where each distinct name maps to the bucket of
+ * students sharing it. The values come from one distribution of the bucket
+ * sizes, computed when an attribute is read and reused for a second, so the
+ * attributes read in one poll agree and the map is walked once per poll.
+ * @author Tony Padilla (apadilla)
+ */
+public interface NameIndexMXBean {
+
+    /**
+     * This represents the number of distinct names.
+     * @return The number of buckets in the map.
+     */
+    int getNames();
+
+    /**
+     * This represents the number of names held by a single student.
+     * @return The number of buckets with one student.
+     */
+    long getSingletonBuckets();
+
+    /**
+     * This represents the mean number of students sharing a name.
+     * @return The mean bucket size.
+     */
+    double getMeanBucketSize();
+
+    /**
+     * This represents the median number of students sharing a name.
+     * @return The median bucket size.
+     */
+    long getP50BucketSize();
+
+    /**
+     * This represents the 99th percentile of the number of students sharing
+     * a name.
+     * @return The 99th percentile bucket size.
+     */
+    long getP99BucketSize();
+
+    /**
+     * This represents the largest number of students sharing a name.
+     * @return The largest bucket size.
+     */
+    long getLargestBucket();
+}
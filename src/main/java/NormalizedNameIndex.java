@@ -0,0 +1,287 @@
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * NormalizedNameIndex - Groups students by their name with case, accents
+ * and compatibility forms ignored, so that "tony", "TONY" and "T&oacute;ny" all
+ * find a student named "Tony". A name is normalized by NFKD decomposition,
+ * removal of combining marks, case folding and NFKC composition, once when
+ * its student is added. Names of ASCII characters are looked up by folding
+ * their case while hashing and comparing, without creating the normalized
+ * String, so a query of ASCII characters allocates nothing. The students of
+ * a normalized name are kept in a NameBucket, in the order they were added.
+ * @author Tony Padilla (apadilla)
+ */
+final class NormalizedNameIndex {
+
+    /**
+     * Constant that represents the initial number of slots of the index.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * This holds the normalized name of each slot, or null for an empty
+     * slot.
+     */
+    private String[] keys;
+
+    /**
+     * This holds the students of the name of each slot.
+     */
+    private NameBucket[] buckets;
+
+    /**
+     * This represents the number of names in the index.
+     */
+    private int count;
+
+    /**
+     * This is the no arg constructor for the NormalizedNameIndex class which
+     * creates an empty index.
+     */
+    NormalizedNameIndex() {
+        keys = new String[INITIAL_CAPACITY];
+        buckets = new NameBucket[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Returns the normalized form of a name, the key it is indexed by.
+     * @param name This is the name to normalize.
+     * @return The name folded to lower case, without accents and with
+     * compatibility characters replaced. A name of lower case ASCII
+     * characters is returned as is.
+     */
+    static String normalize(String name) {
+        boolean lower = true;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return normalizeFully(name);
+            }
+            if (c >= 'A' && c <= 'Z') {
+                lower = false;
+            }
+        }
+        return lower ? name : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalizes a name that may hold characters beyond ASCII.
+     * @param name This is the name to normalize.
+     * @return The normalized name.
+     */
+    private static String normalizeFully(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFKD);
+        StringBuilder stripped = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length();) {
+            int c = decomposed.codePointAt(i);
+            i += Character.charCount(c);
+            int type = Character.getType(c);
+            if (type != Character.NON_SPACING_MARK
+                && type != Character.COMBINING_SPACING_MARK
+                && type != Character.ENCLOSING_MARK) {
+                stripped.appendCodePoint(c);
+            }
+        }
+        String folded = stripped.toString().toUpperCase(Locale.ROOT)
+            .toLowerCase(Locale.ROOT);
+        return Normalizer.normalize(folded, Normalizer.Form.NFKC);
+    }
+
+    /**
+     * Returns the students whose name normalizes as the given one does.
+     * @param name This is the name to look up, in any case.
+     * @return The bucket of the students, or null if there are none.
+     */
+    NameBucket get(String name) {
+        int slot = slotOf(name);
+        return slot < 0 ? null : buckets[slot];
+    }
+
+    /**
+     * Adds a student under the given name.
+     * @param s This represents the student.
+     * @param name This is the student's name, as given.
+     */
+    void add(Student s, String name) {
+        if (2 * (count + 1) > keys.length) {
+            resize(2 * keys.length);
+        }
+        int slot = slotOf(name);
+        if (slot < 0) {
+            slot = -slot - 1;
+            keys[slot] = normalize(name);
+            buckets[slot] = new NameBucket();
+            count++;
+        }
+        buckets[slot].add(s);
+    }
+
+    /**
+     * Removes a student added under the given name.
+     * @param s This represents the student, which must be the instance
+     * added.
+     * @param name This is the student's name, as given when added.
+     */
+    void remove(Student s, String name) {
+        int slot = slotOf(name);
+        if (slot < 0) {
+            return;
+        }
+        NameBucket bucket = buckets[slot];
+        bucket.removeStudent(s);
+        if (bucket.isEmpty()) {
+            removeSlot(slot);
+        }
+    }
+
+    /**
+     * Makes room for the given number of normalized names, so that adding
+     * names up to that number grows the index at most once, here.
+     * @param expected This is the number of names the index should hold.
+     */
+    void ensureCapacity(int expected) {
+        int capacity = keys.length;
+        while (2L * expected > capacity) {
+            capacity *= 2;
+        }
+        if (capacity > keys.length) {
+            resize(capacity);
+        }
+    }
+
+    /**
+     * This represents the number of normalized names in the index.
+     * @return The number of names.
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * Finds the slot of the normalized form of a name.
+     * @param name This is the name, in any case.
+     * @return The slot holding the name, or minus one minus the empty slot
+     * where it would be added.
+     */
+    private int slotOf(String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return slotOfKey(normalizeFully(name));
+            }
+            hash = 31 * hash + toLower(c);
+        }
+        int mask = keys.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            String key = keys[i];
+            if (key == null) {
+                return -i - 1;
+            }
+            if (key.hashCode() == hash && foldedEquals(key, name)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a normalized name.
+     * @param key This is the normalized name.
+     * @return The slot holding the name, or minus one minus the empty slot
+     * where it would be added.
+     */
+    private int slotOfKey(String key) {
+        int hash = key.hashCode();
+        int mask = keys.length - 1;
+        for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+            if (keys[i] == null) {
+                return -i - 1;
+            }
+            if (keys[i].equals(key)) {
+                return i;
+            }
+        }
+    }
+
+    /**
+     * Tells whether a normalized name equals an ASCII name with its case
+     * folded.
+     * @param key This is the normalized name.
+     * @param name This is the ASCII name.
+     * @return true if the names are equal ignoring the case of the ASCII
+     * name.
+     */
+    private static boolean foldedEquals(String key, String name) {
+        if (key.length() != name.length()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            if (key.charAt(i) != toLower(name.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Folds the case of an ASCII character.
+     * @param c This is the character.
+     * @return The lower case letter of an upper case letter, or the
+     * character itself.
+     */
+    private static char toLower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Mixes the bits of a hash code, so that names whose hash codes only
+     * differ in their high bits land apart.
+     * @param hash This is the hash code.
+     * @return The mixed hash code.
+     */
+    private static int spread(int hash) {
+        return (hash ^ (hash >>> 16)) * 0x9E3779B9;
+    }
+
+    /**
+     * Empties a slot, moving later names of the same run back so that every
+     * name can still be reached from its home slot.
+     * @param slot This is the slot to empty.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int i = (hole + 1) & mask; keys[i] != null; i = (i + 1) & mask) {
+            int home = spread(keys[i].hashCode()) & mask;
+            boolean reachable = hole <= i ? hole < home && home <= i
+                : hole < home || home <= i;
+            if (!reachable) {
+                keys[hole] = keys[i];
+                buckets[hole] = buckets[i];
+                hole = i;
+            }
+        }
+        keys[hole] = null;
+        buckets[hole] = null;
+        count--;
+    }
+
+    /**
+     * Moves the names to a table of the given number of slots.
+     * @param capacity This is the number of slots, a power of two.
+     */
+    private void resize(int capacity) {
+        String[] oldKeys = keys;
+        NameBucket[] oldBuckets = buckets;
+        keys = new String[capacity];
+        buckets = new NameBucket[keys.length];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int slot = -slotOfKey(oldKeys[i]) - 1;
+                keys[slot] = oldKeys[i];
+                buckets[slot] = oldBuckets[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * OperationStats - The statistics of one kind of Directory operation: the
+ * number of operations, a histogram of the latencies of a sample of them,
+ * and, for searches, the number of hits and misses. Only operations that
+ * complete are counted; calls rejected with an exception are not.
+ * @author Tony Padilla (apadilla)
+ */
+public final class OperationStats implements OperationStatsMXBean {
+
+    /**
+     * This holds the latencies of the timed operations in nanoseconds.
+     */
+    private final Histogram latency;
+
+    /**
+     * This represents the number of operations completed.
+     */
+    private final AtomicLong count;
+
+    /**
+     * This represents the number of searches that found something.
+     */
+    private final AtomicLong hits;
+
+    /**
+     * This represents the number of searches that found nothing.
+     */
+    private final AtomicLong misses;
+
+    /**
+     * This represents the number of operations left before the next one is
+     * timed. It is not atomic, as a lost update only moves the sample.
+     */
+    private int untilTimed;
+
+    /**
+     * This is the no arg constructor for the OperationStats class which
+     * creates empty statistics.
+     */
+    OperationStats() {
+        latency = new Histogram();
+        count = new AtomicLong();
+        hits = new AtomicLong();
+        misses = new AtomicLong();
+    }
+
+    /**
+     * Tells whether the operation starting now should be timed.
+     * @param interval This is the number of operations per timed one.
+     * @return true for one operation in every interval.
+     */
+    boolean sample(int interval) {
+        if (--untilTimed > 0) {
+            return false;
+        }
+        untilTimed = interval;
+        return true;
+    }
+
+    /**
+     * Records an operation that is not a search.
+     * @param nanos This is the latency of the operation, or -1 if it was not
+     * timed.
+     */
+    void record(long nanos) {
+        count.incrementAndGet();
+        if (nanos >= 0) {
+            latency.record(nanos);
+        }
+    }
+
+    /**
+     * Records a search.
+     * @param nanos This is the latency of the search, or -1 if it was not
+     * timed.
+     * @param hit This is true if the search found something.
+     */
+    void record(long nanos, boolean hit) {
+        record(nanos);
+        if (hit) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * This returns the latencies of the timed operations.
+     * @return The histogram of the latencies in nanoseconds.
+     */
+    public Histogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public long getCount() {
+        return count.get();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? Double.NaN : (double) h / total;
+    }
+
+    @Override
+    public double getMeanNanos() {
+        return latency.getMean();
+    }
+
+    @Override
+    public long getP50Nanos() {
+        return latency.getValueAtPercentile(50);
+    }
+
+    @Override
+    public long getP99Nanos() {
+        return latency.getValueAtPercentile(99);
+    }
+
+    @Override
+    public long getP999Nanos() {
+        return latency.getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getMaxNanos() {
+        return latency.getMax();
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * OperationStatsMXBean - The management interface of the statistics of one
+ * kind of Directory operation. Latencies are in nanoseconds and cover the
+ * operation from its call to its return, including the time spent in
+ * mutation listeners. They are taken from the sample of operations that
+ * DirectoryMetrics times.
+ * @author Tony Padilla (apadilla)
+ */
+public interface OperationStatsMXBean {
+
+    /**
+     * This represents the number of operations completed.
+     * @return The number of operations completed.
+     */
+    long getCount();
+
+    /**
+     * This represents the number of searches that found something.
+     * @return The number of searches with a result.
+     */
+    long getHits();
+
+    /**
+     * This represents the number of searches that found nothing.
+     * @return The number of searches without a result.
+     */
+    long getMisses();
+
+    /**
+     * This represents the share of searches that found something.
+     * @return The hits over the hits and misses, or NaN if there are none.
+     */
+    double getHitRatio();
+
+    /**
+     * This represents the mean latency of the operations.
+     * @return The mean latency in nanoseconds.
+     */
+    double getMeanNanos();
+
+    /**
+     * This represents the median latency of the operations.
+     * @return The median latency in nanoseconds.
+     */
+    long getP50Nanos();
+
+    /**
+     * This represents the 99th percentile latency of the operations.
+     * @return The 99th percentile latency in nanoseconds.
+     */
+    long getP99Nanos();
+
+    /**
+     * This represents the 99.9th percentile latency of the operations.
+     * @return The 99.9th percentile latency in nanoseconds.
+     */
+    long getP999Nanos();
+
+    /**
+     * This represents the largest latency of the operations.
+     * @return The largest latency in nanoseconds.
+     */
+    long getMaxNanos();
+}
@@ -0,0 +1,715 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * PhoneIndex - Groups students by the digits of their phone number, for
+ * reverse lookups of a caller's number and for area code and other prefix
+ * searches. Punctuation is ignored, so "(412) 268-3000" and "412-268-3000"
+ * are the same number.
+ * <p>
+ * The digits of a number are encoded in a long: padded with zeros to
+ * MAX_DIGITS digits, read as a number, and multiplied by LENGTH_RANGE with
+ * the number of digits added. Codes then sort as the digit strings do, so
+ * the numbers starting with a prefix have the codes of a range. A
+ * LongIntMap maps each code to the number of its group of students, and
+ * the codes are also kept in sorted chunks of a long array, for ranges.
+ * Nothing is boxed, and a lookup of a number allocates nothing. The rare
+ * numbers of more digits than can be encoded are kept apart and scanned.
+ * @author Tony Padilla (apadilla)
+ */
+final class PhoneIndex {
+
+    /**
+     * Constant that represents the most digits a code holds.
+     */
+    static final int MAX_DIGITS = 17;
+
+    /**
+     * Constant that represents the factor the padded digits are multiplied
+     * by, leaving room for the number of digits.
+     */
+    private static final int LENGTH_RANGE = 32;
+
+    /**
+     * Constant that represents the code of a number without digits.
+     */
+    static final long NO_DIGITS = -1;
+
+    /**
+     * Constant that represents the code of a number of more than MAX_DIGITS
+     * digits.
+     */
+    static final long TOO_LONG = -2;
+
+    /**
+     * Constant that represents the number of digits of a North American
+     * number without its country code.
+     */
+    private static final int NATIONAL_DIGITS = 10;
+
+    /**
+     * Constant that holds the powers of ten up to MAX_DIGITS.
+     */
+    private static final long[] POWERS = new long[MAX_DIGITS + 1];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i <= MAX_DIGITS; i++) {
+            POWERS[i] = 10 * POWERS[i - 1];
+        }
+    }
+
+    /**
+     * This maps the code of each number to the number of its group.
+     */
+    private final LongIntMap groupOf;
+
+    /**
+     * This holds the students of each group.
+     */
+    private NameBucket[] groups;
+
+    /**
+     * This holds the code of each group.
+     */
+    private long[] groupCodes;
+
+    /**
+     * This represents the number of groups.
+     */
+    private int groupCount;
+
+    /**
+     * This holds the codes in sorted order.
+     */
+    private final SortedCodes sorted;
+
+    /**
+     * This holds the students whose number has too many digits to encode.
+     */
+    private final NameBucket unencoded;
+
+    /**
+     * This represents the number of changes made to the index, so that
+     * iterators can fail fast.
+     */
+    private int modCount;
+
+    /**
+     * This is the no arg constructor for the PhoneIndex class which creates
+     * an empty index.
+     */
+    PhoneIndex() {
+        groupOf = new LongIntMap();
+        groups = new NameBucket[16];
+        groupCodes = new long[16];
+        sorted = new SortedCodes();
+        unencoded = new NameBucket();
+    }
+
+    /**
+     * Returns the code of the digits of a phone number.
+     * @param phone This is the phone number, which may hold punctuation.
+     * @return The code, or a negative number if the phone number has no
+     * digits or more than MAX_DIGITS of them.
+     */
+    static long encode(CharSequence phone) {
+        long value = 0;
+        int digits = 0;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits == MAX_DIGITS) {
+                    return TOO_LONG;
+                }
+                value = 10 * value + (c - '0');
+                digits++;
+            }
+        }
+        return digits == 0 ? NO_DIGITS : code(value, digits);
+    }
+
+    /**
+     * Returns the digits of a code.
+     * @param code This is the code.
+     * @return The digits, with any leading zeros.
+     */
+    static String decode(long code) {
+        int digits = (int) (code % LENGTH_RANGE);
+        long value = code / LENGTH_RANGE / POWERS[MAX_DIGITS - digits];
+        String s = Long.toString(value);
+        StringBuilder result = new StringBuilder(digits);
+        for (int i = s.length(); i < digits; i++) {
+            result.append('0');
+        }
+        return result.append(s).toString();
+    }
+
+    /**
+     * Returns the code of the given digits.
+     * @param value This is the value of the digits.
+     * @param digits This represents the number of digits.
+     * @return The code.
+     */
+    private static long code(long value, int digits) {
+        return value * POWERS[MAX_DIGITS - digits] * LENGTH_RANGE + digits;
+    }
+
+    /**
+     * Adds a student under its phone number, if it has digits.
+     * @param s This represents the student.
+     */
+    void add(Student s) {
+        String phone = s.getPhoneNumber();
+        long code = phone == null ? NO_DIGITS : encode(phone);
+        modCount++;
+        if (code == TOO_LONG) {
+            unencoded.add(s);
+        } else if (code != NO_DIGITS) {
+            int group = groupOf.get(code);
+            if (group == LongIntMap.MISSING) {
+                group = newGroup(code, new NameBucket());
+                sorted.add(code);
+            }
+            groups[group].add(s);
+        }
+    }
+
+    /**
+     * Removes a student added under its phone number.
+     * @param s This represents the student, which must be the instance
+     * added.
+     */
+    void remove(Student s) {
+        String phone = s.getPhoneNumber();
+        long code = phone == null ? NO_DIGITS : encode(phone);
+        modCount++;
+        if (code == TOO_LONG) {
+            unencoded.removeStudent(s);
+            return;
+        }
+        int group = groupOf.get(code);
+        if (group == LongIntMap.MISSING) {
+            return;
+        }
+        groups[group].removeStudent(s);
+        if (groups[group].isEmpty()) {
+            groupOf.remove(code);
+            sorted.remove(code);
+            int last = --groupCount;
+            if (group != last) {
+                groups[group] = groups[last];
+                groupCodes[group] = groupCodes[last];
+                groupOf.put(groupCodes[group], group);
+            }
+            groups[last] = null;
+        }
+    }
+
+    /**
+     * Makes room for students about to be added, so that the map of codes
+     * and the arrays of groups grow at most once, here, rather than step by
+     * step as the students are added. Each student may start a group.
+     * @param adds This represents the number of students to be added.
+     */
+    void ensureCapacity(int adds) {
+        int expected = groupCount + adds;
+        groupOf.ensureCapacity(expected);
+        if (expected > groups.length) {
+            groups = Arrays.copyOf(groups, expected);
+            groupCodes = Arrays.copyOf(groupCodes, expected);
+        }
+    }
+
+    /**
+     * Starts a group of students for a code.
+     * @param code This is the code.
+     * @param students This holds the students of the group.
+     * @return The number of the group.
+     */
+    private int newGroup(long code, NameBucket students) {
+        if (groupCount == groups.length) {
+            groups = Arrays.copyOf(groups, 2 * groupCount);
+            groupCodes = Arrays.copyOf(groupCodes, 2 * groupCount);
+        }
+        groups[groupCount] = students;
+        groupCodes[groupCount] = code;
+        groupOf.put(code, groupCount);
+        return groupCount++;
+    }
+
+    /**
+     * Returns the students whose phone number has the digits of the given
+     * one. A number of ten digits is also looked up with the North American
+     * country code 1 in front, and a number of eleven digits starting with 1
+     * without it, so that a caller ID in either form finds the students
+     * stored in both forms.
+     * @param phone This is the phone number, which may hold punctuation.
+     * @return A read-only list of the students, those stored in the form
+     * given first. It is a view of the index if only one form is stored.
+     */
+    List<Student> get(String phone) {
+        long code = encode(phone);
+        if (code == TOO_LONG) {
+            String digits = Query.digitsOf(phone);
+            List<Student> result = new ArrayList<>();
+            for (Student s : unencoded) {
+                if (Query.digitsOf(s.getPhoneNumber()).equals(digits)) {
+                    result.add(s);
+                }
+            }
+            return Collections.unmodifiableList(result);
+        }
+        if (code == NO_DIGITS) {
+            return Collections.emptyList();
+        }
+        int group = groupOf.get(code);
+        int other = groupOf.get(national(code));
+        if (other == LongIntMap.MISSING) {
+            return group == LongIntMap.MISSING ? Collections.emptyList()
+                : groups[group].readOnlyView();
+        }
+        if (group == LongIntMap.MISSING) {
+            return groups[other].readOnlyView();
+        }
+        List<Student> both =
+            new ArrayList<>(groups[group].size() + groups[other].size());
+        both.addAll(groups[group]);
+        both.addAll(groups[other]);
+        return Collections.unmodifiableList(both);
+    }
+
+    /**
+     * Returns the code of the same North American number with or without
+     * its country code.
+     * @param code This is the code of a number.
+     * @return The code of the number of eleven digits for one of ten, the
+     * code of the number of ten digits for one of eleven starting with 1,
+     * or 0 otherwise, which is not the code of any number.
+     */
+    private static long national(long code) {
+        int digits = (int) (code % LENGTH_RANGE);
+        long value = code / LENGTH_RANGE / POWERS[MAX_DIGITS - digits];
+        if (digits == NATIONAL_DIGITS) {
+            return code(POWERS[NATIONAL_DIGITS] + value, NATIONAL_DIGITS + 1);
+        }
+        if (digits == NATIONAL_DIGITS + 1
+            && value / POWERS[NATIONAL_DIGITS] == 1) {
+            return code(value - POWERS[NATIONAL_DIGITS], NATIONAL_DIGITS);
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the students whose phone number starts with the given digits,
+     * visiting only the groups of the numbers that do.
+     * @param prefix This holds the digits, without punctuation.
+     * @return An iterator over the students in the order of their numbers,
+     * then those of numbers too long to encode. It fails with a
+     * ConcurrentModificationException if the index is changed before it is
+     * done.
+     */
+    Iterator<Student> withPrefix(String prefix) {
+        return new PrefixIterator(prefix);
+    }
+
+    /**
+     * Counts the students whose phone number starts with the given digits,
+     * stopping once the count reaches the limit.
+     * @param prefix This holds the digits, without punctuation.
+     * @param limit This is the count at which to stop.
+     * @return The number of students, or a number at least the limit.
+     */
+    int count(String prefix, int limit) {
+        int count = 0;
+        SortedCodes.Cursor codes = cursor(prefix);
+        while (count < limit && codes.hasNext()) {
+            count += groups[groupOf.get(codes.next())].size();
+        }
+        if (count < limit && !unencoded.isEmpty()) {
+            for (Student s : unencoded) {
+                if (Query.digitsOf(s.getPhoneNumber()).startsWith(prefix)) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a cursor over the codes of the numbers starting with the given
+     * digits.
+     * @param prefix This holds the digits.
+     * @return The cursor, which is empty if the prefix is too long for any
+     * code.
+     */
+    private SortedCodes.Cursor cursor(String prefix) {
+        int digits = prefix.length();
+        if (digits > MAX_DIGITS) {
+            return sorted.new Cursor(0, 0);
+        }
+        long value = digits == 0 ? 0 : Long.parseLong(prefix);
+        long span = POWERS[MAX_DIGITS - digits] * LENGTH_RANGE;
+        return sorted.new Cursor(code(value, digits), (value + 1) * span);
+    }
+
+    /**
+     * Returns the digits of the phone numbers in sorted order with the
+     * students of each, for DirectoryImage.
+     * @return The postings.
+     */
+    DirectoryImage.Postings postings() {
+        Map<String, List<Student>> tooLong = new TreeMap<>();
+        for (Student s : unencoded) {
+            tooLong.computeIfAbsent(Query.digitsOf(s.getPhoneNumber()),
+                k -> new ArrayList<>()).add(s);
+        }
+        String[] keys = new String[groupCount + tooLong.size()];
+        NameBucket[] buckets = new NameBucket[keys.length];
+        Iterator<Map.Entry<String, List<Student>>> rest =
+            tooLong.entrySet().iterator();
+        Map.Entry<String, List<Student>> next = rest.hasNext() ? rest.next()
+            : null;
+        SortedCodes.Cursor codes = sorted.new Cursor(0, Long.MAX_VALUE);
+        int k = 0;
+        while (codes.hasNext()) {
+            long code = codes.next();
+            String digits = decode(code);
+            while (next != null && next.getKey().compareTo(digits) < 0) {
+                keys[k] = next.getKey();
+                buckets[k++] = new NameBucket(
+                    next.getValue().toArray(new Student[0]));
+                next = rest.hasNext() ? rest.next() : null;
+            }
+            keys[k] = digits;
+            buckets[k++] = groups[groupOf.get(code)];
+        }
+        while (next != null) {
+            keys[k] = next.getKey();
+            buckets[k++] = new NameBucket(
+                next.getValue().toArray(new Student[0]));
+            next = rest.hasNext() ? rest.next() : null;
+        }
+        return new DirectoryImage.Postings(keys, buckets);
+    }
+
+    /**
+     * Fills this empty index from postings, as read by DirectoryImage. The
+     * buckets are used as they are.
+     * @param phones This holds the digits of the phone numbers in sorted
+     * order with their buckets.
+     * @throws IllegalArgumentException if a key is not all digits.
+     */
+    void restore(DirectoryImage.Postings phones) throws
+        IllegalArgumentException {
+        for (int k = 0; k < phones.keys.length; k++) {
+            String digits = phones.keys[k];
+            long code = encode(digits);
+            if (code == NO_DIGITS || !Query.digitsOf(digits).equals(digits)) {
+                throw new IllegalArgumentException(
+                    "Phone key must be digits: " + digits);
+            }
+            modCount++;
+            if (code == TOO_LONG) {
+                unencoded.addAll(phones.buckets[k]);
+            } else {
+                newGroup(code, phones.buckets[k]);
+                sorted.add(code);
+            }
+        }
+    }
+
+    /**
+     * PrefixIterator - Iterates over the students of the groups of a range
+     * of codes, then over those of numbers too long to encode that start
+     * with the prefix.
+     */
+    private final class PrefixIterator implements Iterator<Student> {
+
+        /**
+         * This holds the digits the numbers start with.
+         */
+        private final String prefix;
+
+        /**
+         * This is the cursor over the codes of the range.
+         */
+        private final SortedCodes.Cursor codes;
+
+        /**
+         * This iterates over the group of the last code.
+         */
+        private Iterator<Student> group = Collections.emptyIterator();
+
+        /**
+         * This iterates over the students of numbers too long to encode, or
+         * is null until the codes are done.
+         */
+        private Iterator<Student> rest;
+
+        /**
+         * This is the next student, or null at the end.
+         */
+        private Student next;
+
+        /**
+         * This represents the modCount of the index the iterator started
+         * from.
+         */
+        private final int expectedModCount = modCount;
+
+        /**
+         * This is the one argument constructor for the PrefixIterator class.
+         * @param prefix This holds the digits the numbers start with.
+         */
+        PrefixIterator(String prefix) {
+            this.prefix = prefix;
+            codes = cursor(prefix);
+            advance();
+        }
+
+        /**
+         * Finds the next student.
+         */
+        private void advance() {
+            next = null;
+            while (rest == null) {
+                if (group.hasNext()) {
+                    next = group.next();
+                    return;
+                }
+                if (codes.hasNext()) {
+                    group = groups[groupOf.get(codes.next())].iterator();
+                } else {
+                    rest = unencoded.iterator();
+                }
+            }
+            while (rest.hasNext()) {
+                Student s = rest.next();
+                if (Query.digitsOf(s.getPhoneNumber()).startsWith(prefix)) {
+                    next = s;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Student next() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Student s = next;
+            advance();
+            return s;
+        }
+    }
+
+    /**
+     * SortedCodes - A sorted set of codes held in chunks of a long array,
+     * so that adding or removing a code moves at most one chunk, and a
+     * range is read in order from the chunk of its first code.
+     */
+    private static final class SortedCodes {
+
+        /**
+         * Constant that represents the most codes in a chunk.
+         */
+        private static final int CHUNK = 256;
+
+        /**
+         * This holds the chunks in order. Every chunk but a lone first one
+         * holds at least one code.
+         */
+        private long[][] chunks;
+
+        /**
+         * This holds the number of codes in each chunk.
+         */
+        private int[] counts;
+
+        /**
+         * This represents the number of chunks.
+         */
+        private int chunkCount;
+
+        /**
+         * This is the no arg constructor for the SortedCodes class which
+         * creates an empty set.
+         */
+        SortedCodes() {
+            chunks = new long[][] {new long[CHUNK]};
+            counts = new int[1];
+            chunkCount = 1;
+        }
+
+        /**
+         * Returns the chunk a code belongs in: the last one whose first
+         * code is not above it, or the first.
+         * @param code This is the code.
+         * @return The index of the chunk.
+         */
+        private int chunkOf(long code) {
+            int lo = 0;
+            int hi = chunkCount - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (chunks[mid][0] <= code) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Adds a code, splitting its chunk if it is full. A code added past
+         * the end of the last chunk starts a new chunk instead, so codes
+         * added in order fill their chunks.
+         * @param code This is the code.
+         */
+        void add(long code) {
+            int c = chunkOf(code);
+            int pos = Arrays.binarySearch(chunks[c], 0, counts[c], code);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (counts[c] == CHUNK) {
+                if (pos == CHUNK && c == chunkCount - 1) {
+                    insertChunk(c + 1, new long[CHUNK], 0);
+                    c++;
+                    pos = 0;
+                } else {
+                    int moved = CHUNK / 2;
+                    long[] half = new long[CHUNK];
+                    System.arraycopy(chunks[c], CHUNK - moved, half, 0,
+                        moved);
+                    counts[c] -= moved;
+                    insertChunk(c + 1, half, moved);
+                    if (pos > counts[c]) {
+                        pos -= counts[c];
+                        c++;
+                    }
+                }
+            }
+            long[] chunk = chunks[c];
+            System.arraycopy(chunk, pos, chunk, pos + 1, counts[c] - pos);
+            chunk[pos] = code;
+            counts[c]++;
+        }
+
+        /**
+         * Removes a code, and its chunk if that empties it.
+         * @param code This is the code.
+         */
+        void remove(long code) {
+            int c = chunkOf(code);
+            int pos = Arrays.binarySearch(chunks[c], 0, counts[c], code);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(chunks[c], pos + 1, chunks[c], pos,
+                counts[c] - pos - 1);
+            counts[c]--;
+            if (counts[c] == 0 && chunkCount > 1) {
+                System.arraycopy(chunks, c + 1, chunks, c,
+                    chunkCount - c - 1);
+                System.arraycopy(counts, c + 1, counts, c,
+                    chunkCount - c - 1);
+                chunks[--chunkCount] = null;
+            }
+        }
+
+        /**
+         * Inserts a chunk at the given index.
+         * @param c This is the index.
+         * @param chunk This holds the codes of the chunk.
+         * @param count This represents the number of codes in it.
+         */
+        private void insertChunk(int c, long[] chunk, int count) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, 2 * chunkCount);
+                counts = Arrays.copyOf(counts, 2 * chunkCount);
+            }
+            System.arraycopy(chunks, c, chunks, c + 1, chunkCount - c);
+            System.arraycopy(counts, c, counts, c + 1, chunkCount - c);
+            chunks[c] = chunk;
+            counts[c] = count;
+            chunkCount++;
+        }
+
+        /**
+         * Cursor - Reads the codes of a range in order.
+         */
+        final class Cursor {
+
+            /**
+             * This is the index of the chunk of the next code.
+             */
+            private int chunk;
+
+            /**
+             * This is the position of the next code in its chunk.
+             */
+            private int pos;
+
+            /**
+             * This is the code the range ends before.
+             */
+            private final long end;
+
+            /**
+             * This is the two argument constructor for the Cursor class.
+             * @param start This is the first code of the range.
+             * @param end This is the code the range ends before.
+             */
+            Cursor(long start, long end) {
+                chunk = chunkOf(start);
+                int p = Arrays.binarySearch(chunks[chunk], 0, counts[chunk],
+                    start);
+                pos = p >= 0 ? p : -p - 1;
+                this.end = end;
+            }
+
+            /**
+             * Tells whether the range has another code.
+             * @return true if there is a next code.
+             */
+            boolean hasNext() {
+                while (chunk < chunkCount && pos == counts[chunk]) {
+                    chunk++;
+                    pos = 0;
+                }
+                return chunk < chunkCount && chunks[chunk][pos] < end;
+            }
+
+            /**
+             * Returns the next code of the range.
+             * @return The code.
+             * @throws NoSuchElementException if there is none.
+             */
+            long next() throws NoSuchElementException {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return chunks[chunk][pos++];
+            }
+        }
+    }
+}
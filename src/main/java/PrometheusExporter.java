@@ -0,0 +1,100 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * PrometheusExporter - A MetricsExporter that writes the metrics in the
+ * Prometheus text format, so a scraper can read them from a file or an HTTP
+ * response. Histograms are written as summaries with the 50th, 90th, 99th
+ * and 99.9th percentiles.
+ * @author Tony Padilla (apadilla)
+ */
+public final class PrometheusExporter implements MetricsExporter {
+
+    /**
+     * Constant that holds the percentiles written for each histogram.
+     */
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Constant that holds the quantile labels of the percentiles.
+     */
+    private static final String[] QUANTILES = {"0.5", "0.9", "0.99", "0.999"};
+
+    /**
+     * This is where the metrics are written.
+     */
+    private final Appendable out;
+
+    /**
+     * This is the one argument constructor for the PrometheusExporter class.
+     * @param out This is where the metrics are written, such as a Writer or
+     * a StringBuilder.
+     * @throws IllegalArgumentException if out is null.
+     */
+    public PrometheusExporter(Appendable out) throws IllegalArgumentException {
+        if (out == null) {
+            throw new IllegalArgumentException("Output must be non-null");
+        }
+        this.out = out;
+    }
+
+    @Override
+    public void gauge(String name, double value) {
+        type(name, "gauge");
+        line(name, "", value);
+    }
+
+    @Override
+    public void counter(String name, long value) {
+        type(name, "counter");
+        line(name, "", value);
+    }
+
+    @Override
+    public void histogram(String name, Histogram histogram) {
+        type(name, "summary");
+        for (int i = 0; i < PERCENTILES.length; i++) {
+            line(name, "{quantile=\"" + QUANTILES[i] + "\"}",
+                histogram.getValueAtPercentile(PERCENTILES[i]));
+        }
+        line(name + "_sum", "", histogram.getSum());
+        line(name + "_count", "", histogram.getCount());
+    }
+
+    /**
+     * Writes the type line of a metric.
+     * @param name This is the name of the metric.
+     * @param type This is the Prometheus type of the metric.
+     * @throws UncheckedIOException if the line cannot be written.
+     */
+    private void type(String name, String type) throws UncheckedIOException {
+        write("# TYPE " + name + " " + type + "\n");
+    }
+
+    /**
+     * Writes a sample of a metric.
+     * @param name This is the name of the metric.
+     * @param labels This holds the labels of the sample, or is empty.
+     * @param value This is the value of the sample.
+     * @throws UncheckedIOException if the line cannot be written.
+     */
+    private void line(String name, String labels, double value) throws
+        UncheckedIOException {
+        String text = value == Math.rint(value) && !Double.isInfinite(value)
+            ? Long.toString((long) value) : Double.toString(value);
+        write(name + labels + " " + text + "\n");
+    }
+
+    /**
+     * Writes text to the output.
+     * @param text This is the text to write.
+     * @throws UncheckedIOException if the text cannot be written.
+     */
+    private void write(String text) throws UncheckedIOException {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Query - A search for the students of a Directory matching every one of a
+ * set of conditions: an exact first name, an exact last name, a start of
+ * the Andrew ID, a start of the phone number, and any number of other
+ * predicates over a student. Queries are created with a Query.Builder and
+ * run with Directory.query, which decides which condition to start from.
+ * @author Tony Padilla (apadilla)
+ */
+public final class Query {
+
+    /**
+     * This represents the first name to match, or null for any.
+     */
+    private final String firstName;
+
+    /**
+     * This represents the last name to match, or null for any.
+     */
+    private final String lastName;
+
+    /**
+     * This represents the start of the Andrew ID to match, or null for any.
+     */
+    private final String idPrefix;
+
+    /**
+     * This represents the digits the phone number must start with, or null
+     * for any.
+     */
+    private final String phonePrefix;
+
+    /**
+     * This holds the other conditions a student must meet.
+     */
+    private final List<Predicate<Student>> filters;
+
+    /**
+     * This is the constructor used by the Builder class.
+     * @param b This is the builder holding the conditions.
+     */
+    private Query(Builder b) {
+        firstName = b.firstName;
+        lastName = b.lastName;
+        idPrefix = b.idPrefix;
+        phonePrefix = b.phonePrefix;
+        filters = Collections.unmodifiableList(new ArrayList<>(b.filters));
+    }
+
+    /**
+     * This is the getter for the first name to match.
+     * @return This gives the first name, or null if any matches.
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * This is the getter for the last name to match.
+     * @return This gives the last name, or null if any matches.
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * This is the getter for the start of the Andrew ID to match.
+     * @return This gives the Andrew ID prefix, or null if any matches.
+     */
+    public String getAndrewIdPrefix() {
+        return idPrefix;
+    }
+
+    /**
+     * This is the getter for the digits the phone number must start with.
+     * @return This gives the phone prefix digits, or null if any matches.
+     */
+    public String getPhonePrefix() {
+        return phonePrefix;
+    }
+
+    /**
+     * This is the getter for the other conditions a student must meet.
+     * @return This gives a read-only list of the predicates.
+     */
+    public List<Predicate<Student>> getFilters() {
+        return filters;
+    }
+
+    /**
+     * Tells whether the given student meets every condition of the query.
+     * @param s This represents the student to test.
+     * @return true if the student matches the query.
+     */
+    public boolean matches(Student s) {
+        if (firstName != null && !firstName.equals(s.getFirstName())) {
+            return false;
+        }
+        if (lastName != null && !lastName.equals(s.getLastName())) {
+            return false;
+        }
+        if (idPrefix != null && !s.getAndrewId().startsWith(idPrefix)) {
+            return false;
+        }
+        if (phonePrefix != null
+            && !digitsOf(s.getPhoneNumber()).startsWith(phonePrefix)) {
+            return false;
+        }
+        for (Predicate<Student> filter : filters) {
+            if (!filter.test(s)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the digits of a phone number, dropping spaces, dashes and
+     * other punctuation, so that "(412) 268-3000" and "412-268-3000" are
+     * indexed and matched the same way.
+     * @param phone This is the phone number, which may be null.
+     * @return The digits of the phone number, or an empty string if it is
+     * null.
+     */
+    static String digitsOf(String phone) {
+        if (phone == null) {
+            return "";
+        }
+        StringBuilder digits = null;
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            boolean digit = c >= '0' && c <= '9';
+            if (!digit && digits == null) {
+                digits = new StringBuilder(phone.length());
+                digits.append(phone, 0, i);
+            } else if (digit && digits != null) {
+                digits.append(c);
+            }
+        }
+        return digits == null ? phone : digits.toString();
+    }
+
+    @Override
+    public String toString() {
+        List<String> terms = new ArrayList<>();
+        if (firstName != null) {
+            terms.add("first=" + firstName);
+        }
+        if (lastName != null) {
+            terms.add("last=" + lastName);
+        }
+        if (idPrefix != null) {
+            terms.add("id=" + idPrefix + "*");
+        }
+        if (phonePrefix != null) {
+            terms.add("phone=" + phonePrefix + "*");
+        }
+        for (int i = 0; i < filters.size(); i++) {
+            terms.add("filter");
+        }
+        return terms.isEmpty() ? "all" : String.join(" AND ", terms);
+    }
+
+    /**
+     * Builder - Collects the conditions of a Query. A condition left unset
+     * matches every student.
+     */
+    public static final class Builder {
+
+        /**
+         * This represents the first name to match.
+         */
+        private String firstName;
+
+        /**
+         * This represents the last name to match.
+         */
+        private String lastName;
+
+        /**
+         * This represents the start of the Andrew ID to match.
+         */
+        private String idPrefix;
+
+        /**
+         * This represents the digits the phone number must start with.
+         */
+        private String phonePrefix;
+
+        /**
+         * This holds the other conditions a student must meet.
+         */
+        private final List<Predicate<Student>> filters = new ArrayList<>();
+
+        /**
+         * Sets the first name to match exactly.
+         * @param name This is the first name.
+         * @return This builder.
+         * @throws IllegalArgumentException if the name is null.
+         */
+        public Builder firstName(String name) throws IllegalArgumentException {
+            if (name == null) {
+                throw new IllegalArgumentException(
+                    "First Name must be non-null");
+            }
+            firstName = name;
+            return this;
+        }
+
+        /**
+         * Sets the last name to match exactly.
+         * @param name This is the last name.
+         * @return This builder.
+         * @throws IllegalArgumentException if the name is null.
+         */
+        public Builder lastName(String name) throws IllegalArgumentException {
+            if (name == null) {
+                throw new IllegalArgumentException(
+                    "Last name must be non-null");
+            }
+            lastName = name;
+            return this;
+        }
+
+        /**
+         * Sets the start of the Andrew ID to match.
+         * @param prefix This is the start of the Andrew ID.
+         * @return This builder.
+         * @throws IllegalArgumentException if the prefix is null.
+         */
+        public Builder andrewIdPrefix(String prefix) throws
+            IllegalArgumentException {
+            if (prefix == null) {
+                throw new IllegalArgumentException("Prefix must be non-null");
+            }
+            idPrefix = prefix;
+            return this;
+        }
+
+        /**
+         * Sets the start of the phone number to match, such as an area code.
+         * Only the digits of the prefix and of the phone numbers are
+         * compared.
+         * @param prefix This is the start of the phone number.
+         * @return This builder.
+         * @throws IllegalArgumentException if the prefix is null or has no
+         * digits.
+         */
+        public Builder phonePrefix(String prefix) throws
+            IllegalArgumentException {
+            if (prefix == null || digitsOf(prefix).isEmpty()) {
+                throw new IllegalArgumentException(
+                    "Phone prefix must have digits");
+            }
+            phonePrefix = digitsOf(prefix);
+            return this;
+        }
+
+        /**
+         * Adds a condition that is checked on each student found through the
+         * other conditions.
+         * @param filter This is the condition.
+         * @return This builder.
+         * @throws IllegalArgumentException if the condition is null.
+         */
+        public Builder where(Predicate<Student> filter) throws
+            IllegalArgumentException {
+            if (filter == null) {
+                throw new IllegalArgumentException("Filter must be non-null");
+            }
+            filters.add(filter);
+            return this;
+        }
+
+        /**
+         * Creates the query.
+         * @return A query with the conditions set on this builder.
+         */
+        public Query build() {
+            return new Query(this);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * QueryCursor - The students matching a Query, found one at a time as the
+ * cursor is advanced. Nothing is copied up front, so reading the first few
+ * matches of a large result is cheap. The cursor reads the directory as it
+ * goes and fails with a ConcurrentModificationException if the directory is
+ * changed before it is done.
+ * @author Tony Padilla (apadilla)
+ */
+public final class QueryCursor implements Iterator<Student> {
+
+    /**
+     * This gives the candidates from the index the query starts from.
+     */
+    private final Iterator<Student> candidates;
+
+    /**
+     * This is the query the candidates are checked against.
+     */
+    private final Query query;
+
+    /**
+     * This describes how the query is run.
+     */
+    private final String plan;
+
+    /**
+     * This is the next match, or null if it has not been found yet.
+     */
+    private Student next;
+
+    /**
+     * This is the three argument constructor for the QueryCursor class.
+     * @param candidates This gives the candidates to check.
+     * @param query This is the query the candidates are checked against.
+     * @param plan This describes how the query is run.
+     */
+    QueryCursor(Iterator<Student> candidates, Query query, String plan) {
+        this.candidates = candidates;
+        this.query = query;
+        this.plan = plan;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && candidates.hasNext()) {
+            Student s = candidates.next();
+            if (query.matches(s)) {
+                next = s;
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Student next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Student s = next;
+        next = null;
+        return s;
+    }
+
+    /**
+     * Returns the remaining matches as a sequential stream, which reads the
+     * cursor lazily.
+     * @return A stream of the remaining matches.
+     */
+    public Stream<Student> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * This is the getter for the plan of the query, which names the index
+     * the query starts from and the conditions checked on each candidate.
+     * @return This gives the plan.
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return plan;
+    }
+}
@@ -0,0 +1,229 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RemoteShard - A shard kept in a DirectoryServer, usually one running in
+ * another process, reached over the server's HTTP API. Requests share the
+ * kept-alive connections of the JDK client, so a shard should not be given
+ * more concurrent callers than http.maxConnections allows for without
+ * opening new connections.
+ * @author Tony Padilla (apadilla)
+ */
+public final class RemoteShard implements DirectoryShard {
+
+    /**
+     * Constant that represents the connect and read timeouts, in
+     * milliseconds.
+     */
+    private static final int TIMEOUT_MILLIS = 30000;
+
+    /**
+     * This is the URL of the server, without a trailing slash.
+     */
+    private final String url;
+
+    /**
+     * This is the one argument constructor for the RemoteShard class.
+     * @param url This is the URL of the server, such as
+     * http://127.0.0.1:8080.
+     * @throws IllegalArgumentException if the URL is null.
+     */
+    public RemoteShard(String url) throws IllegalArgumentException {
+        if (url == null) {
+            throw new IllegalArgumentException("URL must be non-null");
+        }
+        this.url = url.replaceAll("/+$", "");
+    }
+
+    @Override
+    public void addStudent(Student s) throws IllegalArgumentException {
+        if (s == null) {
+            throw new IllegalArgumentException("Student must be non-null");
+        }
+        StringBuilder body = new StringBuilder();
+        Json.appendStudent(body, s);
+        send("POST", "/students", body.toString());
+    }
+
+    @Override
+    public Student deleteStudent(String andrewId) throws
+        IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew id must be non-null");
+        }
+        String body = send("DELETE", "/students/" + encode(andrewId), null);
+        return body == null ? null : Json.toStudent(Json.parse(body));
+    }
+
+    @Override
+    public Student searchByAndrewId(String andrewId) throws
+        IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew Id must be non-null");
+        }
+        String body = send("GET", "/students/" + encode(andrewId), null);
+        return body == null ? null : Json.toStudent(Json.parse(body));
+    }
+
+    @Override
+    public List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        return students("/students?firstName=" + encode(firstName));
+    }
+
+    @Override
+    public List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        return students("/students?lastName=" + encode(lastName));
+    }
+
+    /**
+     * Returns every student of the shard, found with an empty Andrew ID
+     * prefix, which the server answers in a single response.
+     * @return The students of the shard, in Andrew ID order.
+     */
+    @Override
+    public List<Student> students() {
+        return students("/students?andrewIdPrefix=");
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteShard " + url;
+    }
+
+    /**
+     * Gets an array of students.
+     * @param path This is the path and query of the search.
+     * @return The students of the response.
+     */
+    private List<Student> students(String path) {
+        Object value = Json.parse(send("GET", path, null));
+        if (!(value instanceof List)) {
+            throw new UncheckedIOException(new IOException(
+                "Expected an array of students from " + url + path));
+        }
+        List<?> values = (List<?>) value;
+        List<Student> students = new ArrayList<>(values.size());
+        for (Object v : values) {
+            students.add(Json.toStudent(v));
+        }
+        return students;
+    }
+
+    /**
+     * Sends a request and reads the whole response, so that the connection
+     * can be kept alive for the next request.
+     * @param method This is the HTTP method.
+     * @param path This is the path and query of the request.
+     * @param body This is the JSON body, or null.
+     * @return The response body, or null if the response is 404.
+     * @throws IllegalArgumentException with the server's message if the
+     * request is refused with a 4xx response other than 404.
+     * @throws UncheckedIOException if the server cannot be reached or gets a
+     * 5xx response.
+     */
+    private String send(String method, String path, String body) throws
+        IllegalArgumentException {
+        try {
+            HttpURLConnection c =
+                (HttpURLConnection) new URL(url + path).openConnection();
+            c.setConnectTimeout(TIMEOUT_MILLIS);
+            c.setReadTimeout(TIMEOUT_MILLIS);
+            c.setRequestMethod(method);
+            if (body != null) {
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                c.setDoOutput(true);
+                c.setFixedLengthStreamingMode(bytes.length);
+                c.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = c.getOutputStream()) {
+                    out.write(bytes);
+                }
+            }
+            int status = c.getResponseCode();
+            InputStream in = status >= 400 ? c.getErrorStream()
+                : c.getInputStream();
+            String response = "";
+            if (in != null) {
+                try (InputStream stream = in) {
+                    response = read(stream);
+                }
+            }
+            if (status == 404) {
+                return null;
+            } else if (status >= 500) {
+                throw new IOException(method + " " + url + path + " got "
+                    + status + ": " + response);
+            } else if (status >= 400) {
+                throw new IllegalArgumentException(errorOf(response));
+            }
+            return response;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns the message of an error response.
+     * @param response This is the body of the response.
+     * @return The error field of the body, or the body if it has none.
+     */
+    private static String errorOf(String response) {
+        try {
+            Object value = Json.parse(response);
+            if (value instanceof Map
+                && ((Map<?, ?>) value).get("error") instanceof String) {
+                return (String) ((Map<?, ?>) value).get("error");
+            }
+        } catch (IllegalArgumentException e) {
+            // Not JSON, so the body is the message.
+        }
+        return response;
+    }
+
+    /**
+     * Reads a stream to its end as UTF-8 text.
+     * @param in This is the stream.
+     * @return The text read.
+     * @throws IOException if the stream cannot be read.
+     */
+    private static String read(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, n);
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Percent-encodes a path segment or parameter value.
+     * @param s This is the text to encode.
+     * @return The encoded text.
+     */
+    private static String encode(String s) {
+        try {
+            return URLEncoder.encode(s, "UTF-8").replace("+", "%20");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
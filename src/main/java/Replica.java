@@ -0,0 +1,423 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Replica - Keeps a read-only copy of the Directory of a ReplicationPrimary.
+ * A thread connects to the primary, loads a snapshot if it has no copy or
+ * has fallen too far behind, and then applies each batch of changes through
+ * Directory.applyBatch, holding the directory's lock, so that threads
+ * reading the directory by synchronizing on it see each batch whole. The
+ * thread reconnects whenever the connection is lost, asking for the changes
+ * after the last one applied.
+ * <p>
+ * Every batch the primary sends, including the empty ones it sends while
+ * idle, tells the primary's latest sequence number. Once the replica has
+ * applied every change up to that number it holds every change the primary
+ * made before sending the batch. The staleness of the replica is the time
+ * since the last batch after which it was up to date, so a replica whose
+ * staleness is within the bound given holds every change the primary made
+ * more than that long ago, apart from the time the batch spent in transit.
+ * Readers should check isStale before trusting the copy, as DirectoryServer
+ * does when serving a replica.
+ * @author Tony Padilla (apadilla)
+ */
+public final class Replica implements Closeable {
+
+    /**
+     * Constant that represents the staleness bound used by default, in
+     * milliseconds.
+     */
+    public static final long DEFAULT_MAX_STALENESS_MILLIS = 1000;
+
+    /**
+     * Constant that represents the milliseconds between attempts to
+     * connect to the primary.
+     */
+    private static final int RETRY_MILLIS = 1000;
+
+    /**
+     * Constant that represents the milliseconds without any batch after
+     * which the connection is given up, a number of missed heartbeats.
+     */
+    private static final int READ_TIMEOUT_MILLIS =
+        (int) (20 * ReplicationPrimary.HEARTBEAT_MILLIS);
+
+    /**
+     * Constant that represents the number of nanoseconds in a millisecond.
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * This is the directory holding the copy.
+     */
+    private final Directory directory;
+
+    /**
+     * This is the address of the primary.
+     */
+    private final InetSocketAddress primary;
+
+    /**
+     * This represents the staleness bound, in milliseconds.
+     */
+    private final long maxStalenessMillis;
+
+    /**
+     * This identifies the run of the primary the copy comes from.
+     */
+    private long epoch;
+
+    /**
+     * This represents the sequence number of the last change applied, or -1
+     * if the copy must be loaded from a snapshot.
+     */
+    private volatile long applied = -1;
+
+    /**
+     * This represents the latest sequence number of the primary, as of the
+     * last batch received.
+     */
+    private volatile long head;
+
+    /**
+     * This represents the System.nanoTime at which the last batch after
+     * which the copy was up to date was received, or -1 if there was none.
+     */
+    private volatile long freshSince = -1;
+
+    /**
+     * This represents the number of snapshots loaded.
+     */
+    private volatile long snapshots;
+
+    /**
+     * This represents the number of adds and deletes applied from
+     * batches.
+     */
+    private volatile long changes;
+
+    /**
+     * This holds the reason the connection was last lost, or is null.
+     */
+    private volatile String lastError;
+
+    /**
+     * This is false once the replica is closed.
+     */
+    private volatile boolean running;
+
+    /**
+     * This is the thread following the primary, or null until started.
+     */
+    private Thread thread;
+
+    /**
+     * This is the current connection to the primary, or null.
+     */
+    private Socket socket;
+
+    /**
+     * This is the three argument constructor for the Replica class. The
+     * replica does not connect until it is started.
+     * @param directory This is the directory to keep the copy in. Students
+     * in it that the primary does not have are deleted by the first
+     * snapshot.
+     * @param primary This is the address the primary listens on.
+     * @param maxStalenessMillis This represents the staleness bound, in
+     * milliseconds.
+     * @throws IllegalArgumentException if the directory or address is null,
+     * or if the bound is not positive.
+     */
+    public Replica(Directory directory, InetSocketAddress primary,
+        long maxStalenessMillis) throws IllegalArgumentException {
+        if (directory == null || primary == null) {
+            throw new IllegalArgumentException(
+                "Directory and address must be non-null");
+        }
+        if (maxStalenessMillis <= 0) {
+            throw new IllegalArgumentException(
+                "Staleness bound must be positive");
+        }
+        this.directory = directory;
+        this.primary = primary;
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * Starts following the primary on a daemon thread.
+     */
+    public synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::follow, "replica");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * This is the getter for the directory holding the copy.
+     * @return The directory. Callers must hold its lock while using it.
+     */
+    public Directory getDirectory() {
+        return directory;
+    }
+
+    /**
+     * This is the getter for the sequence number of the last change
+     * applied.
+     * @return The sequence number, or -1 if no snapshot is loaded yet.
+     */
+    public long getAppliedSequence() {
+        return applied;
+    }
+
+    /**
+     * This returns the number of changes the primary had made but the
+     * replica had not applied, as of the last batch received.
+     * @return The number of changes behind.
+     */
+    public long getLag() {
+        long a = applied;
+        return a < 0 ? head : Math.max(0, head - a);
+    }
+
+    /**
+     * This returns the time since the replica was last known to be up to
+     * date with the primary.
+     * @return The staleness in milliseconds, or Long.MAX_VALUE if the
+     * replica has never been up to date.
+     */
+    public long getStalenessMillis() {
+        long since = freshSince;
+        if (since < 0) {
+            return Long.MAX_VALUE;
+        }
+        return (System.nanoTime() - since) / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Tells whether the copy is staler than the bound, as when the primary
+     * cannot be reached or the replica cannot keep up.
+     * @return true if reads should not be served from the copy.
+     */
+    public boolean isStale() {
+        return getStalenessMillis() > maxStalenessMillis;
+    }
+
+    /**
+     * This is the getter for the reason the connection was last lost.
+     * @return The reason, or null if it never was.
+     */
+    public String getLastError() {
+        return lastError;
+    }
+
+    /**
+     * Connects to the primary and applies what it sends, again after each
+     * lost connection, until the replica is closed.
+     */
+    private void follow() {
+        while (running) {
+            try (Socket s = new Socket()) {
+                synchronized (this) {
+                    if (!running) {
+                        return;
+                    }
+                    socket = s;
+                }
+                s.connect(primary, READ_TIMEOUT_MILLIS);
+                s.setTcpNoDelay(true);
+                s.setSoTimeout(READ_TIMEOUT_MILLIS);
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(s.getOutputStream()));
+                out.writeInt(ReplicationPrimary.MAGIC);
+                out.writeInt(ReplicationPrimary.VERSION);
+                out.writeLong(epoch);
+                out.writeLong(applied);
+                out.flush();
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(s.getInputStream()));
+                while (running) {
+                    byte type = in.readByte();
+                    long received = System.nanoTime();
+                    if (type == ReplicationPrimary.SNAPSHOT) {
+                        loadSnapshot(in, received);
+                    } else if (type == ReplicationPrimary.BATCH) {
+                        applyBatch(in, received);
+                    } else {
+                        throw new IOException("Unknown frame type " + type);
+                    }
+                }
+            } catch (IOException e) {
+                lastError = e.toString();
+            }
+            synchronized (this) {
+                socket = null;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(RETRY_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a snapshot frame and makes the directory hold the students of
+     * the image. Students that are in both and equal are kept as they are,
+     * and the rest are deleted and added in one batch. The image is taken
+     * before the frame is sent, so the copy is then up to date as of the
+     * frame's arrival.
+     * @param in This is the stream from the primary.
+     * @param received This is the System.nanoTime at which the frame
+     * started to arrive.
+     * @throws IOException if the frame cannot be read or the image is
+     * corrupt.
+     */
+    private void loadSnapshot(DataInputStream in, long received) throws
+        IOException {
+        long snapshotEpoch = in.readLong();
+        long seq = in.readLong();
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        Directory image = DirectoryImage.read(
+            Channels.newChannel(new ByteArrayInputStream(bytes)));
+        synchronized (directory) {
+            List<BatchOperation> operations = new ArrayList<>();
+            Set<String> replaced = new HashSet<>();
+            for (Student s : directory.students()) {
+                if (!s.equals(image.studentWithId(s.getAndrewId()))) {
+                    operations.add(BatchOperation.delete(s.getAndrewId()));
+                    replaced.add(s.getAndrewId());
+                }
+            }
+            for (Student s : image.students()) {
+                if (!directory.contains(s.getAndrewId())
+                    || replaced.contains(s.getAndrewId())) {
+                    operations.add(BatchOperation.add(s));
+                }
+            }
+            BatchReport report = directory.applyBatch(operations);
+            if (!report.isApplied()) {
+                throw new IOException("Snapshot cannot be applied: "
+                    + report);
+            }
+        }
+        epoch = snapshotEpoch;
+        applied = seq;
+        head = seq;
+        freshSince = received;
+        snapshots++;
+    }
+
+    /**
+     * Reads a batch frame and applies its changes in one step, so that a
+     * batch made on the primary is never seen half applied.
+     * @param in This is the stream from the primary.
+     * @param received This is the System.nanoTime at which the frame
+     * started to arrive.
+     * @throws IOException if the frame cannot be read, does not follow the
+     * last change applied, or cannot be applied, in which case a snapshot
+     * is asked for on reconnecting.
+     */
+    private void applyBatch(DataInputStream in, long received) throws
+        IOException {
+        long latest = in.readLong();
+        long first = in.readLong();
+        int count = in.readInt();
+        List<BatchOperation> operations = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[in.readInt()];
+            in.readFully(record);
+            operations.addAll(
+                WriteAheadLog.decodeRecord(ByteBuffer.wrap(record)));
+        }
+        if (applied < 0 || first != applied + 1) {
+            String message = "Batch from " + first
+                + " does not follow change " + applied;
+            applied = -1;
+            throw new IOException(message);
+        }
+        if (count > 0) {
+            BatchReport report;
+            synchronized (directory) {
+                report = directory.applyBatch(operations);
+            }
+            if (!report.isApplied()) {
+                applied = -1;
+                throw new IOException("Batch cannot be applied: " + report);
+            }
+            applied += count;
+            changes += operations.size();
+        }
+        head = latest;
+        if (applied >= latest) {
+            freshSince = received;
+        }
+    }
+
+    /**
+     * Exports the replication metrics under names starting with the given
+     * prefix.
+     * @param exporter This is the exporter to write to.
+     * @param prefix This is the start of the metric names.
+     * @throws IllegalArgumentException if the exporter or prefix is null.
+     */
+    public void exportTo(MetricsExporter exporter, String prefix) throws
+        IllegalArgumentException {
+        if (exporter == null || prefix == null) {
+            throw new IllegalArgumentException(
+                "Exporter and prefix must be non-null");
+        }
+        long staleness = getStalenessMillis();
+        exporter.gauge(prefix + "_applied_sequence", applied);
+        exporter.gauge(prefix + "_lag_changes", getLag());
+        exporter.gauge(prefix + "_staleness_seconds",
+            staleness == Long.MAX_VALUE ? Double.POSITIVE_INFINITY
+            : staleness / 1000.0);
+        exporter.counter(prefix + "_snapshots_total", snapshots);
+        exporter.counter(prefix + "_changes_total", changes);
+    }
+
+    /**
+     * Stops following the primary and waits for the replica's thread to
+     * end. The directory keeps the copy as it is.
+     * @throws IOException if the connection cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Thread t;
+        synchronized (this) {
+            t = thread;
+            if (socket != null) {
+                socket.close();
+            }
+        }
+        if (t != null) {
+            t.interrupt();
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,444 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * ReplicationPrimary - Ships the changes made to a Directory to read-only
+ * replicas over sockets. It is told about each change once the directory
+ * has applied it, gives every add, delete and batch a sequence number and
+ * keeps the latest changes in a bounded backlog, encoded as WriteAheadLog
+ * records. A batch, from addAll or applyBatch, is one change: it is one
+ * record, is never split between frames, and is applied by a replica in
+ * one step. Each replica that connects says which change it has applied
+ * last, and is sent the changes after it in batches, or a DirectoryImage of
+ * the whole directory first if those changes are no longer in the backlog.
+ * Replicas that are idle are sent an empty batch every HEARTBEAT_MILLIS, so
+ * that they can tell how fresh their copy is even when nothing changes.
+ * <p>
+ * Changes must be made holding the directory's lock, as elsewhere, since a
+ * snapshot is taken holding it and must see every change numbered so far.
+ * The primary is registered with Directory.addAppliedListener, so a change
+ * refused by a listener or by the log of a DirectoryStore is never numbered
+ * or shipped. Every run of a primary has a random epoch, so a replica of
+ * an earlier run is sent a snapshot rather than changes numbered by another
+ * run.
+ * <p>
+ * A replica sends the magic number, the protocol version, the epoch it
+ * follows and the sequence number it has applied, or -1 if it has no copy.
+ * The primary then sends frames, each starting with a type byte. A
+ * snapshot frame holds the epoch, the sequence number of the image and
+ * the image, preceded by its length. A batch frame holds the primary's
+ * latest sequence number when it was sent, the sequence number of its
+ * first change, the number of changes and each change's record, preceded
+ * by its length.
+ * @author Tony Padilla (apadilla)
+ */
+public final class ReplicationPrimary implements MutationListener, Closeable {
+
+    /**
+     * Constant that represents the first bytes a replica sends.
+     */
+    static final int MAGIC = 0x53445250;
+
+    /**
+     * Constant that represents the version of the protocol.
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Constant that represents the type byte of a snapshot frame.
+     */
+    static final byte SNAPSHOT = 1;
+
+    /**
+     * Constant that represents the type byte of a batch frame.
+     */
+    static final byte BATCH = 2;
+
+    /**
+     * Constant that represents the milliseconds between batches sent to a
+     * replica that is up to date.
+     */
+    static final long HEARTBEAT_MILLIS = 100;
+
+    /**
+     * Constant that represents the number of changes kept in the backlog by
+     * default.
+     */
+    public static final int DEFAULT_BACKLOG = 100000;
+
+    /**
+     * Constant that represents the largest number of changes in a batch.
+     */
+    private static final int MAX_BATCH = 4096;
+
+    /**
+     * This is the directory replicated.
+     */
+    private final Directory directory;
+
+    /**
+     * This accepts the connections of replicas.
+     */
+    private final ServerSocket server;
+
+    /**
+     * This identifies this run of the primary.
+     */
+    private final long epoch;
+
+    /**
+     * This holds the latest changes, the change numbered seq at index
+     * (seq - 1) modulo its length.
+     */
+    private final byte[][] backlog;
+
+    /**
+     * This represents the sequence number of the latest change, which is
+     * also the number of changes made since the primary was created.
+     */
+    private long sequence;
+
+    /**
+     * This holds the sockets of the connected replicas.
+     */
+    private final List<Socket> replicas;
+
+    /**
+     * This represents the number of snapshots sent.
+     */
+    private long snapshots;
+
+    /**
+     * This is false once the primary is closed.
+     */
+    private volatile boolean running;
+
+    /**
+     * This is the thread accepting replicas, or null until started.
+     */
+    private Thread acceptor;
+
+    /**
+     * This is the two argument constructor for the ReplicationPrimary class,
+     * which keeps DEFAULT_BACKLOG changes.
+     * @param directory This is the directory to replicate.
+     * @param address This is the address to listen on. Port 0 picks a free
+     * port.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if the directory or address is null.
+     */
+    public ReplicationPrimary(Directory directory, InetSocketAddress address)
+        throws IOException, IllegalArgumentException {
+        this(directory, address, DEFAULT_BACKLOG);
+    }
+
+    /**
+     * This is the three argument constructor for the ReplicationPrimary
+     * class. The primary is registered with the directory, but does not
+     * accept replicas until it is started.
+     * @param directory This is the directory to replicate.
+     * @param address This is the address to listen on. Port 0 picks a free
+     * port.
+     * @param backlogSize This represents the number of changes kept for
+     * replicas that fall behind. A replica further behind is sent a
+     * snapshot.
+     * @throws IOException if the address cannot be bound.
+     * @throws IllegalArgumentException if the directory or address is null,
+     * or if the backlog size is not positive.
+     */
+    public ReplicationPrimary(Directory directory, InetSocketAddress address,
+        int backlogSize) throws IOException, IllegalArgumentException {
+        if (directory == null || address == null) {
+            throw new IllegalArgumentException(
+                "Directory and address must be non-null");
+        }
+        if (backlogSize < 1) {
+            throw new IllegalArgumentException("Backlog must be positive");
+        }
+        this.directory = directory;
+        backlog = new byte[backlogSize][];
+        replicas = new ArrayList<>();
+        epoch = new Random().nextLong();
+        server = new ServerSocket();
+        server.bind(address);
+        synchronized (directory) {
+            directory.addAppliedListener(this);
+        }
+    }
+
+    /**
+     * Starts accepting replicas, each served by a thread of its own.
+     */
+    public synchronized void start() {
+        if (acceptor != null) {
+            return;
+        }
+        running = true;
+        acceptor = new Thread(this::accept, "replication-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * This returns the address the primary listens on.
+     * @return The address, with the port picked if port 0 was given.
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) server.getLocalSocketAddress();
+    }
+
+    /**
+     * This is the getter for the sequence number of the latest change.
+     * @return The number of changes made since the primary was created.
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * This is the getter for the number of replicas connected.
+     * @return The number of replicas.
+     */
+    public synchronized int getReplicaCount() {
+        return replicas.size();
+    }
+
+    @Override
+    public void onAdd(Student s) {
+        record(WriteAheadLog.addPayload(s));
+    }
+
+    /**
+     * Numbers the students added as one change, a batch record.
+     * @param students This holds the students added.
+     */
+    @Override
+    public void onAddAll(Collection<Student> students) {
+        if (students.isEmpty()) {
+            return;
+        }
+        List<BatchOperation> operations = new ArrayList<>(students.size());
+        for (Student s : students) {
+            operations.add(BatchOperation.add(s));
+        }
+        onBatch(operations);
+    }
+
+    @Override
+    public void onDelete(Student s) {
+        record(WriteAheadLog.deletePayload(s));
+    }
+
+    /**
+     * Numbers the operations applied as one change, a batch record, so that
+     * a replica applies all of them or none.
+     * @param operations This holds the operations applied.
+     */
+    @Override
+    public void onBatch(List<BatchOperation> operations) {
+        if (operations.isEmpty()) {
+            return;
+        }
+        record(WriteAheadLog.batchPayload(operations));
+    }
+
+    /**
+     * Numbers a change and adds it to the backlog, waking the replica
+     * threads.
+     * @param payload This holds the record of the change, which fills its
+     * array.
+     */
+    private synchronized void record(ByteBuffer payload) {
+        sequence++;
+        backlog[(int) ((sequence - 1) % backlog.length)] = payload.array();
+        notifyAll();
+    }
+
+    /**
+     * Accepts replicas until the primary is closed.
+     */
+    private void accept() {
+        while (running) {
+            Socket socket;
+            try {
+                socket = server.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException e) {
+                continue;
+            }
+            synchronized (this) {
+                replicas.add(socket);
+            }
+            Thread t = new Thread(() -> serve(socket), "replication-sender");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    /**
+     * Sends a replica the changes it is missing until it disconnects or
+     * the primary is closed.
+     * @param socket This is the connection of the replica.
+     */
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(s.getInputStream()));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(s.getOutputStream()));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            long replicaEpoch = in.readLong();
+            long sent = in.readLong();
+            synchronized (this) {
+                if (replicaEpoch != epoch || sent < oldest() - 1
+                    || sent > sequence) {
+                    sent = -1;
+                }
+            }
+            while (running) {
+                if (sent < 0) {
+                    sent = sendSnapshot(out);
+                }
+                sent = sendBatch(out, sent);
+            }
+        } catch (IOException e) {
+            // The replica disconnected; it reconnects when it can.
+        } finally {
+            synchronized (this) {
+                replicas.remove(socket);
+            }
+        }
+    }
+
+    /**
+     * Returns the sequence number of the oldest change in the backlog. Called
+     * holding this primary's monitor.
+     * @return The sequence number, which is one past the latest change if
+     * there are none.
+     */
+    private long oldest() {
+        return Math.max(1, sequence - backlog.length + 1);
+    }
+
+    /**
+     * Sends a snapshot of the directory, taken holding its lock.
+     * @param out This is the stream to the replica.
+     * @return The sequence number of the snapshot.
+     * @throws IOException if the snapshot cannot be sent.
+     */
+    private long sendSnapshot(DataOutputStream out) throws IOException {
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        long seq;
+        synchronized (directory) {
+            DirectoryImage.write(directory, Channels.newChannel(image));
+            synchronized (this) {
+                seq = sequence;
+                snapshots++;
+            }
+        }
+        out.writeByte(SNAPSHOT);
+        out.writeLong(epoch);
+        out.writeLong(seq);
+        out.writeInt(image.size());
+        image.writeTo(out);
+        out.flush();
+        return seq;
+    }
+
+    /**
+     * Waits for changes after the given one, up to HEARTBEAT_MILLIS, and
+     * sends them in a batch, which is empty if there are none.
+     * @param out This is the stream to the replica.
+     * @param sent This is the sequence number of the last change sent.
+     * @return The sequence number of the last change now sent, or -1 if the
+     * replica fell out of the backlog and needs a snapshot.
+     * @throws IOException if the batch cannot be sent.
+     */
+    private long sendBatch(DataOutputStream out, long sent) throws
+        IOException {
+        long head;
+        List<byte[]> records = new ArrayList<>();
+        synchronized (this) {
+            if (sequence == sent && running) {
+                try {
+                    wait(HEARTBEAT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            if (sent < oldest() - 1) {
+                return -1;
+            }
+            head = sequence;
+            long last = Math.min(head, sent + MAX_BATCH);
+            for (long seq = sent + 1; seq <= last; seq++) {
+                records.add(backlog[(int) ((seq - 1) % backlog.length)]);
+            }
+        }
+        out.writeByte(BATCH);
+        out.writeLong(head);
+        out.writeLong(sent + 1);
+        out.writeInt(records.size());
+        for (byte[] record : records) {
+            out.writeInt(record.length);
+            out.write(record);
+        }
+        out.flush();
+        return sent + records.size();
+    }
+
+    /**
+     * Exports the replication metrics under names starting with the given
+     * prefix.
+     * @param exporter This is the exporter to write to.
+     * @param prefix This is the start of the metric names.
+     * @throws IllegalArgumentException if the exporter or prefix is null.
+     */
+    public synchronized void exportTo(MetricsExporter exporter, String prefix)
+        throws IllegalArgumentException {
+        if (exporter == null || prefix == null) {
+            throw new IllegalArgumentException(
+                "Exporter and prefix must be non-null");
+        }
+        exporter.counter(prefix + "_sequence_total", sequence);
+        exporter.gauge(prefix + "_replicas", replicas.size());
+        exporter.counter(prefix + "_snapshots_total", snapshots);
+    }
+
+    /**
+     * Stops accepting replicas, disconnects them and unregisters the
+     * primary from the directory.
+     * @throws IOException if the listening socket cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        synchronized (directory) {
+            directory.removeAppliedListener(this);
+        }
+        server.close();
+        synchronized (this) {
+            for (Socket socket : replicas) {
+                socket.close();
+            }
+            notifyAll();
+        }
+    }
+}
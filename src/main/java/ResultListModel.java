@@ -0,0 +1,164 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * ResultListModel - The rows shown in the "Results" section of the GUI. Rows
+ * are kept in segments: each search result is one segment holding the
+ * matched students as they are, and consecutive message lines share a
+ * segment. A row is only turned into text when the list asks for it, which
+ * is when it is about to be painted, so a result of any size costs the same
+ * to show. The oldest segments are dropped once the model holds more than
+ * MAX_ROWS rows.
+ * @author Tony Padilla (apadilla)
+ */
+final class ResultListModel extends AbstractListModel<Object> {
+
+    /**
+     * Constant that represents the version of the serialized form.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constant that represents the number of rows kept before the oldest
+     * results are dropped. The latest result is always kept whole.
+     */
+    static final int MAX_ROWS = 200000;
+
+    /**
+     * This holds the segments of rows, oldest first.
+     */
+    private final List<List<?>> segments;
+
+    /**
+     * This holds the index of the first row of each segment.
+     */
+    private int[] starts;
+
+    /**
+     * This represents the number of rows in the model.
+     */
+    private int size;
+
+    /**
+     * This is the message segment lines are appended to, or null if the
+     * last segment is a search result.
+     */
+    private List<Object> lines;
+
+    /**
+     * This is the no arg constructor for the ResultListModel class which
+     * creates an empty model.
+     */
+    ResultListModel() {
+        segments = new ArrayList<>();
+        starts = new int[0];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public Object getElementAt(int index) {
+        int lo = 0;
+        int hi = segments.size() - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= index) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return segments.get(lo).get(index - starts[lo]);
+    }
+
+    /**
+     * Removes every row.
+     */
+    void clear() {
+        int removed = size;
+        segments.clear();
+        starts = new int[0];
+        lines = null;
+        size = 0;
+        if (removed > 0) {
+            fireIntervalRemoved(this, 0, removed - 1);
+        }
+    }
+
+    /**
+     * Appends a message line.
+     * @param line This is the message to show.
+     * @return The index of the new row.
+     */
+    int append(String line) {
+        if (lines == null) {
+            lines = new ArrayList<>();
+            addSegment(lines);
+        }
+        lines.add(line);
+        size++;
+        fireIntervalAdded(this, size - 1, size - 1);
+        trim();
+        return size - 1;
+    }
+
+    /**
+     * Appends the students of a search result, one row per student. The
+     * students are copied by reference, so later changes to the directory do
+     * not change the rows already shown.
+     * @param students This holds the students to show.
+     * @return The index of the first new row, or -1 if there are no students.
+     */
+    int appendAll(List<Student> students) {
+        if (students.isEmpty()) {
+            return -1;
+        }
+        lines = null;
+        int first = size;
+        addSegment(Arrays.asList(students.toArray()));
+        size += students.size();
+        fireIntervalAdded(this, first, size - 1);
+        return first - trim();
+    }
+
+    /**
+     * Adds a segment after the existing ones.
+     * @param rows This holds the rows of the segment.
+     */
+    private void addSegment(List<?> rows) {
+        segments.add(rows);
+        starts = Arrays.copyOf(starts, segments.size());
+        starts[segments.size() - 1] = size;
+    }
+
+    /**
+     * Drops the oldest segments while there are more than MAX_ROWS rows,
+     * keeping at least the last one.
+     * @return The number of rows dropped.
+     */
+    private int trim() {
+        int drop = 0;
+        int count = 0;
+        while (count < segments.size() - 1 && size - drop > MAX_ROWS) {
+            drop += segments.get(count).size();
+            count++;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        segments.subList(0, count).clear();
+        starts = new int[segments.size()];
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] = starts[i - 1] + segments.get(i - 1).size();
+        }
+        size -= drop;
+        fireIntervalRemoved(this, 0, drop - 1);
+        return drop;
+    }
+}
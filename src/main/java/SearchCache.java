@@ -0,0 +1,575 @@
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * SearchCache - A bounded read-through cache of first and last name search
+ * results in front of a Directory. Each result is turned into a value by a
+ * function given when the cache is created, such as a copy of the students
+ * or their JSON encoding, so that a popular name is only turned into a
+ * value once. The cache listens to the directory and drops the entries of
+ * the first and last name of every student added or deleted, and no
+ * others. Entries are evicted either least recently used first, or by
+ * W-TinyLFU, which keeps the names searched most often over time and so
+ * holds up better against one-off searches of rare names.
+ * <p>
+ * Like Directory, the cache is not thread-safe: callers sharing a directory
+ * across threads must hold the directory's lock while using the cache, as
+ * they do while using the directory.
+ * @param <V> This is the type of the cached values.
+ * @author Tony Padilla (apadilla)
+ */
+public final class SearchCache<V> implements MutationListener {
+
+    /**
+     * Policy - The eviction policies of a SearchCache.
+     */
+    public enum Policy {
+        LRU, TINY_LFU
+    }
+
+    /**
+     * This is the directory the results come from.
+     */
+    private final Directory directory;
+
+    /**
+     * This turns a search result into the value cached for it.
+     */
+    private final Function<List<Student>, V> encoder;
+
+    /**
+     * This holds the entries and evicts them by the policy.
+     */
+    private final Store<V> store;
+
+    /**
+     * This represents the largest number of entries.
+     */
+    private final int capacity;
+
+    /**
+     * This represents the number of searches answered from the cache.
+     */
+    private long hits;
+
+    /**
+     * This represents the number of searches passed to the directory.
+     */
+    private long misses;
+
+    /**
+     * This represents the number of entries dropped by a change to the
+     * directory.
+     */
+    private long invalidations;
+
+    /**
+     * This is the four argument constructor for the SearchCache class. The
+     * cache registers itself as a listener of the directory.
+     * @param directory This is the directory the results come from.
+     * @param capacity This is the largest number of entries.
+     * @param policy This is the eviction policy.
+     * @param encoder This turns a search result into the value cached for
+     * it. The result is a read-only view of the directory, so the value must
+     * not keep it.
+     * @throws IllegalArgumentException if an argument is null or the
+     * capacity is not positive.
+     */
+    public SearchCache(Directory directory, int capacity, Policy policy,
+        Function<List<Student>, V> encoder) throws IllegalArgumentException {
+        if (directory == null || policy == null || encoder == null) {
+            throw new IllegalArgumentException(
+                "Directory, policy and encoder must be non-null");
+        }
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.directory = directory;
+        this.capacity = capacity;
+        this.encoder = encoder;
+        store = policy == Policy.LRU ? new LruStore<>(capacity)
+            : new TinyLfuStore<>(capacity);
+        directory.addMutationListener(this);
+    }
+
+    /**
+     * Returns a cache whose values are read-only copies of the results.
+     * @param directory This is the directory the results come from.
+     * @param capacity This is the largest number of entries.
+     * @param policy This is the eviction policy.
+     * @return The cache.
+     * @throws IllegalArgumentException if an argument is null or the
+     * capacity is not positive.
+     */
+    public static SearchCache<List<Student>> copying(Directory directory,
+        int capacity, Policy policy) throws IllegalArgumentException {
+        return new SearchCache<>(directory, capacity, policy,
+            students -> Collections.unmodifiableList(
+                new ArrayList<>(students)));
+    }
+
+    /**
+     * Given the first name string value, this method returns the value of
+     * the students with that first name, from the cache if it is there.
+     * @param firstName This is the first name to match in the directory search.
+     * @return The value of the search result.
+     * @throws IllegalArgumentException if the specified first name is null.
+     */
+    public V searchByFirstName(String firstName) throws
+        IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        return get(new Key(true, firstName));
+    }
+
+    /**
+     * Given the last name string value, this method returns the value of
+     * the students with that last name, from the cache if it is there.
+     * @param lastName This is the last name to match in the directory search.
+     * @return The value of the search result.
+     * @throws IllegalArgumentException if the specified last name is null.
+     */
+    public V searchByLastName(String lastName) throws
+        IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        return get(new Key(false, lastName));
+    }
+
+    /**
+     * Returns the value of a search, loading it from the directory if it is
+     * not cached.
+     * @param key This is the search.
+     * @return The value of the search result.
+     */
+    private V get(Key key) {
+        V value = store.get(key);
+        if (value != null) {
+            hits++;
+            return value;
+        }
+        misses++;
+        List<Student> students = key.first
+            ? directory.searchByFirstName(key.name)
+            : directory.searchByLastName(key.name);
+        value = encoder.apply(students);
+        store.put(key, value);
+        return value;
+    }
+
+    @Override
+    public void onAdd(Student s) {
+        invalidate(s);
+    }
+
+    @Override
+    public void onDelete(Student s) {
+        invalidate(s);
+    }
+
+    /**
+     * Drops the entries of the first and last name of a student.
+     * @param s This represents the student added or deleted.
+     */
+    private void invalidate(Student s) {
+        if (store.remove(new Key(true, s.getFirstName()))) {
+            invalidations++;
+        }
+        if (store.remove(new Key(false, s.getLastName()))) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Drops every entry.
+     */
+    public void clear() {
+        store.clear();
+    }
+
+    /**
+     * Unregisters the cache from the directory and drops every entry. The
+     * cache must not be used afterwards.
+     */
+    public void close() {
+        directory.removeMutationListener(this);
+        store.clear();
+    }
+
+    /**
+     * This represents the number of searches answered from the cache.
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * This represents the number of searches passed to the directory.
+     * @return The number of misses.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * This represents the share of searches answered from the cache.
+     * @return The hits over all searches, or NaN if there are none.
+     */
+    public double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? Double.NaN : (double) hits / total;
+    }
+
+    /**
+     * This represents the number of entries evicted to make room.
+     * @return The number of evictions.
+     */
+    public long getEvictions() {
+        return store.evictions;
+    }
+
+    /**
+     * This represents the number of entries dropped by a change to the
+     * directory.
+     * @return The number of invalidations.
+     */
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * This represents the number of entries.
+     * @return The number of entries.
+     */
+    public int size() {
+        return store.size();
+    }
+
+    /**
+     * This represents the largest number of entries.
+     * @return The capacity.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Passes the statistics of the cache to the given exporter, with names
+     * starting with the given prefix.
+     * @param exporter This is the exporter to pass the statistics to.
+     * @param prefix This is the start of the metric names, such as
+     * directory_search_cache.
+     * @throws IllegalArgumentException if an argument is null.
+     */
+    public void exportTo(MetricsExporter exporter, String prefix) throws
+        IllegalArgumentException {
+        if (exporter == null || prefix == null) {
+            throw new IllegalArgumentException(
+                "Exporter and prefix must be non-null");
+        }
+        exporter.counter(prefix + "_hits_total", hits);
+        exporter.counter(prefix + "_misses_total", misses);
+        exporter.counter(prefix + "_evictions_total", store.evictions);
+        exporter.counter(prefix + "_invalidations_total", invalidations);
+        exporter.gauge(prefix + "_entries", store.size());
+    }
+
+    /**
+     * Key - A search, by first or last name.
+     */
+    private static final class Key {
+
+        /**
+         * This is true for a first name search.
+         */
+        private final boolean first;
+
+        /**
+         * This is the name searched for.
+         */
+        private final String name;
+
+        /**
+         * This is the two argument constructor for the Key class.
+         * @param first This is true for a first name search.
+         * @param name This is the name searched for.
+         */
+        Key(boolean first, String name) {
+            this.first = first;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return k.first == first && k.name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return first ? name.hashCode() : ~name.hashCode();
+        }
+    }
+
+    /**
+     * Store - The entries of a cache, evicted by a policy.
+     * @param <V> This is the type of the values.
+     */
+    private abstract static class Store<V> {
+
+        /**
+         * This represents the number of entries evicted to make room.
+         */
+        long evictions;
+
+        /**
+         * Returns the value of a key and records the access.
+         * @param key This is the key.
+         * @return The value, or null if the key is not cached.
+         */
+        abstract V get(Key key);
+
+        /**
+         * Adds the value of a key that is not cached, evicting an entry if
+         * the store is full.
+         * @param key This is the key.
+         * @param value This is the value.
+         */
+        abstract void put(Key key, V value);
+
+        /**
+         * Removes the entry of a key.
+         * @param key This is the key.
+         * @return true if the key was cached.
+         */
+        abstract boolean remove(Key key);
+
+        /**
+         * Removes every entry.
+         */
+        abstract void clear();
+
+        /**
+         * Returns the number of entries.
+         * @return The number of entries.
+         */
+        abstract int size();
+    }
+
+    /**
+     * LruStore - Evicts the least recently used entry.
+     * @param <V> This is the type of the values.
+     */
+    private static final class LruStore<V> extends Store<V> {
+
+        /**
+         * This holds the entries, least recently used first.
+         */
+        private final LinkedHashMap<Key, V> entries;
+
+        /**
+         * This represents the largest number of entries.
+         */
+        private final int capacity;
+
+        /**
+         * This is the one argument constructor for the LruStore class.
+         * @param capacity This is the largest number of entries.
+         */
+        LruStore(int capacity) {
+            this.capacity = capacity;
+            entries = new LinkedHashMap<>(16, 0.75f, true);
+        }
+
+        @Override
+        V get(Key key) {
+            return entries.get(key);
+        }
+
+        @Override
+        void put(Key key, V value) {
+            if (entries.size() == capacity) {
+                Iterator<Key> eldest = entries.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+                evictions++;
+            }
+            entries.put(key, value);
+        }
+
+        @Override
+        boolean remove(Key key) {
+            return entries.remove(key) != null;
+        }
+
+        @Override
+        void clear() {
+            entries.clear();
+        }
+
+        @Override
+        int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * TinyLfuStore - Evicts by W-TinyLFU. New entries go to a small LRU
+     * window. An entry leaving the window only enters the main space if
+     * its key has been seen more often than the key it would evict, going
+     * by a frequency sketch. The main space is split into a probation part
+     * for entries not accessed since they entered, and a protected part for
+     * entries accessed again, which are evicted last.
+     * @param <V> This is the type of the values.
+     */
+    private static final class TinyLfuStore<V> extends Store<V> {
+
+        /**
+         * This holds the newest entries, least recently used first.
+         */
+        private final LinkedHashMap<Key, V> window;
+
+        /**
+         * This holds the main entries not accessed since they entered,
+         * least recently used first.
+         */
+        private final LinkedHashMap<Key, V> probation;
+
+        /**
+         * This holds the main entries accessed again, least recently used
+         * first.
+         */
+        private final LinkedHashMap<Key, V> protectedEntries;
+
+        /**
+         * This counts how often keys are searched.
+         */
+        private final FrequencySketch sketch;
+
+        /**
+         * This represents the largest number of entries in the window.
+         */
+        private final int windowCapacity;
+
+        /**
+         * This represents the largest number of entries in the main space.
+         */
+        private final int mainCapacity;
+
+        /**
+         * This represents the largest number of protected entries.
+         */
+        private final int protectedCapacity;
+
+        /**
+         * This is the one argument constructor for the TinyLfuStore class.
+         * One percent of the entries are for the window, and four fifths of
+         * the main space are for protected entries.
+         * @param capacity This is the largest number of entries.
+         */
+        TinyLfuStore(int capacity) {
+            windowCapacity = Math.max(1, capacity / 100);
+            mainCapacity = capacity - windowCapacity;
+            protectedCapacity = mainCapacity * 4 / 5;
+            window = new LinkedHashMap<>(16, 0.75f, true);
+            probation = new LinkedHashMap<>(16, 0.75f, true);
+            protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+            sketch = new FrequencySketch(capacity);
+        }
+
+        @Override
+        V get(Key key) {
+            sketch.increment(key);
+            V value = window.get(key);
+            if (value != null) {
+                return value;
+            }
+            value = protectedEntries.get(key);
+            if (value != null) {
+                return value;
+            }
+            value = probation.remove(key);
+            if (value != null) {
+                protectedEntries.put(key, value);
+                if (protectedEntries.size() > protectedCapacity) {
+                    Map.Entry<Key, V> demoted = removeEldest(protectedEntries);
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+            return value;
+        }
+
+        @Override
+        void put(Key key, V value) {
+            window.put(key, value);
+            if (window.size() <= windowCapacity) {
+                return;
+            }
+            Map.Entry<Key, V> candidate = removeEldest(window);
+            if (probation.size() + protectedEntries.size() < mainCapacity) {
+                probation.put(candidate.getKey(), candidate.getValue());
+                return;
+            }
+            LinkedHashMap<Key, V> victims = probation.isEmpty()
+                ? protectedEntries : probation;
+            if (victims.isEmpty()) {
+                evictions++;
+                return;
+            }
+            Key victim = victims.keySet().iterator().next();
+            if (sketch.frequency(candidate.getKey())
+                > sketch.frequency(victim)) {
+                victims.remove(victim);
+                probation.put(candidate.getKey(), candidate.getValue());
+            }
+            evictions++;
+        }
+
+        /**
+         * Removes the least recently used entry of a segment.
+         * @param segment This is the segment, which is not empty.
+         * @param <T> This is the type of the values.
+         * @return The entry removed.
+         */
+        private static <T> Map.Entry<Key, T> removeEldest(
+            LinkedHashMap<Key, T> segment) {
+            Iterator<Map.Entry<Key, T>> it = segment.entrySet().iterator();
+            Map.Entry<Key, T> eldest = it.next();
+            Map.Entry<Key, T> copy =
+                new AbstractMap.SimpleImmutableEntry<>(eldest);
+            it.remove();
+            return copy;
+        }
+
+        @Override
+        boolean remove(Key key) {
+            return window.remove(key) != null
+                || probation.remove(key) != null
+                || protectedEntries.remove(key) != null;
+        }
+
+        @Override
+        void clear() {
+            window.clear();
+            probation.clear();
+            protectedEntries.clear();
+        }
+
+        @Override
+        int size() {
+            return window.size() + probation.size() + protectedEntries.size();
+        }
+    }
+}
@@ -0,0 +1,486 @@
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * ShardedDirectory - A student directory partitioned by Andrew ID across
+ * shards, each of which may be a Directory of this JVM or a DirectoryServer
+ * of another process. Andrew IDs are given to shards by jump consistent
+ * hashing, which spreads them evenly and, when a shard is added, moves to
+ * it only the students it now owns, about one in the new number of shards,
+ * and never moves a student between the older shards. Lookups by Andrew ID
+ * go to the owning shard, and name searches go to every shard in parallel
+ * and are merged in shard order, so the students found come grouped by
+ * shard, each group in the order the students were added to that shard.
+ * <p>
+ * The directory is thread-safe. Searches take no locks, and adds and
+ * deletes only wait for the rebalancing described below, as each shard
+ * guards its own students. Shards can be added while the directory is in
+ * use: addShard moves the students the new shard owns in small batches,
+ * and until it is done, lookups by Andrew ID also try the shard a student
+ * was in before, so that every student stays visible. A name search that
+ * overlaps a batch being moved is run again, so it never sees a student
+ * twice or misses one that is being moved.
+ * <p>
+ * To spread a directory over local processes, start a DirectoryServer for
+ * each shard, such as java DirectoryServer -p 8081, and give this class a
+ * RemoteShard for the URL of each. The shards must be given in the same
+ * order every time, as the order decides which shard owns a student.
+ * @author Tony Padilla (apadilla)
+ */
+public final class ShardedDirectory implements Closeable {
+
+    /**
+     * Constant that represents the number of students moved at a time while
+     * rebalancing. Name searches wait for a batch to be moved.
+     */
+    private static final int MOVE_BATCH = 256;
+
+    /**
+     * This is the current layout of the shards.
+     */
+    private volatile Layout layout;
+
+    /**
+     * This represents the number of batch moves started and finished. It is
+     * odd while a batch is being moved, and name searches that see it change
+     * are run again.
+     */
+    private volatile long moves;
+
+    /**
+     * This is held shared by adds and deletes, and exclusively while a batch
+     * of students is moved or the layout is changed.
+     */
+    private final ReadWriteLock moveLock;
+
+    /**
+     * This is held while the shards are being rebalanced, so that one
+     * rebalance runs at a time.
+     */
+    private final Object rebalanceLock;
+
+    /**
+     * This runs the searches of all but the first shard.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * This is the one argument constructor for the ShardedDirectory class.
+     * The shards must be empty, or hold the students this class gives them,
+     * as after using a ShardedDirectory over the same shards in the same
+     * order.
+     * @param shards This holds the shards, in order.
+     * @throws IllegalArgumentException if the list is null or empty, or
+     * holds a null shard.
+     */
+    public ShardedDirectory(List<DirectoryShard> shards) throws
+        IllegalArgumentException {
+        if (shards == null || shards.isEmpty()) {
+            throw new IllegalArgumentException(
+                "At least one shard is needed");
+        }
+        DirectoryShard[] array = shards.toArray(new DirectoryShard[0]);
+        for (DirectoryShard shard : array) {
+            if (shard == null) {
+                throw new IllegalArgumentException("Shards must be non-null");
+            }
+        }
+        layout = new Layout(array, array.length);
+        moveLock = new ReentrantReadWriteLock();
+        rebalanceLock = new Object();
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread t = new Thread(r, "shard-search");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Returns the shard that owns an Andrew ID among the given number of
+     * shards, by the jump consistent hash of Lamping and Veach. Going from n
+     * to n + 1 shards only changes the owner of IDs that go to shard n.
+     * @param andrewId This represents a student's Andrew ID.
+     * @param shards This represents the number of shards.
+     * @return The index of the owning shard.
+     */
+    static int shardOf(String andrewId, int shards) {
+        long key = andrewId.hashCode();
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        long b = -1;
+        long j = 0;
+        while (j < shards) {
+            b = j;
+            key = key * 2862933555777941757L + 1;
+            j = (long) ((b + 1) * ((double) (1L << 31)
+                / ((key >>> 33) + 1)));
+        }
+        return (int) b;
+    }
+
+    /**
+     * This is the getter for the shards.
+     * @return A read-only list of the shards, in order.
+     */
+    public List<DirectoryShard> getShards() {
+        return Collections.unmodifiableList(Arrays.asList(layout.shards));
+    }
+
+    /**
+     * Tells whether students are still to be moved to an added shard, as
+     * after a rebalance that failed.
+     * @return true if rebalance has work to do.
+     */
+    public boolean isRebalancing() {
+        Layout l = layout;
+        return l.settled != l.shards.length;
+    }
+
+    /**
+     * Adds a student to the shard that owns its Andrew ID.
+     * @param s This represents the student to add.
+     * @throws IllegalArgumentException if the student is null, if its Andrew
+     * ID is already present, or if its first or last name is null.
+     */
+    public void addStudent(Student s) throws IllegalArgumentException {
+        if (s == null) {
+            throw new IllegalArgumentException("Student must be non-null");
+        }
+        String id = s.getAndrewId();
+        if (id == null) {
+            throw new IllegalArgumentException("Missing student data");
+        }
+        moveLock.readLock().lock();
+        try {
+            Layout l = layout;
+            DirectoryShard before = l.previousOwner(id);
+            if (before != l.owner(id) && before.searchByAndrewId(id) != null) {
+                throw new IllegalArgumentException(
+                    "Student already in directory");
+            }
+            l.owner(id).addStudent(s);
+        } finally {
+            moveLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Deletes the student with the given Andrew ID from its shard.
+     * @param andrewId This represents the Andrew ID of the student.
+     * @throws IllegalArgumentException if the ID is null or not found.
+     */
+    public void deleteStudent(String andrewId) throws
+        IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew id must be non-null");
+        }
+        moveLock.readLock().lock();
+        try {
+            Layout l = layout;
+            DirectoryShard owner = l.owner(andrewId);
+            DirectoryShard before = l.previousOwner(andrewId);
+            boolean deleted = owner.deleteStudent(andrewId) != null
+                || before != owner && before.deleteStudent(andrewId) != null;
+            if (!deleted) {
+                throw new IllegalArgumentException(
+                    "Andrew id specified not found");
+            }
+        } finally {
+            moveLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the student with the given Andrew ID from its shard. While a
+     * shard is being added, the shard that owned the ID before is tried
+     * first: a student is added to its new shard before it is deleted from
+     * its old one, so it is found in one or the other.
+     * @param andrewId This represents a student's Andrew ID.
+     * @return The student, or null if there is none with the ID.
+     * @throws IllegalArgumentException if the ID is null.
+     */
+    public Student searchByAndrewId(String andrewId) throws
+        IllegalArgumentException {
+        if (andrewId == null) {
+            throw new IllegalArgumentException("Andrew Id must be non-null");
+        }
+        while (true) {
+            Layout l = layout;
+            DirectoryShard owner = l.owner(andrewId);
+            DirectoryShard before = l.previousOwner(andrewId);
+            Student s = before == owner ? null
+                : before.searchByAndrewId(andrewId);
+            if (s == null) {
+                s = owner.searchByAndrewId(andrewId);
+            }
+            // Moves only start once a new layout is published, so a lookup
+            // made with a layout that is still current missed none.
+            if (s != null || layout == l) {
+                return s;
+            }
+        }
+    }
+
+    /**
+     * Returns the students with the given first name from every shard.
+     * @param firstName This is the first name to match.
+     * @return A read-only list of the matching students, grouped by shard.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException {
+        if (firstName == null) {
+            throw new IllegalArgumentException("First Name must be non-null");
+        }
+        return search(firstName, true);
+    }
+
+    /**
+     * Returns the students with the given last name from every shard.
+     * @param lastName This is the last name to match.
+     * @return A read-only list of the matching students, grouped by shard.
+     * @throws IllegalArgumentException if the name is null.
+     */
+    public List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException {
+        if (lastName == null) {
+            throw new IllegalArgumentException("Last name must be non-null");
+        }
+        return search(lastName, false);
+    }
+
+    /**
+     * Searches every shard by name, again if a batch of students was moved
+     * meanwhile.
+     * @param name This is the name to match.
+     * @param first This is true for first names and false for last names.
+     * @return A read-only list of the matching students, grouped by shard.
+     */
+    private List<Student> search(String name, boolean first) {
+        while (true) {
+            long stamp = moves;
+            if ((stamp & 1) == 0) {
+                List<Student> found = gather(layout.shards, name, first);
+                if (moves == stamp) {
+                    return Collections.unmodifiableList(found);
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Searches the shards by name in parallel, the first one in the calling
+     * thread, and concatenates the results in shard order.
+     * @param shards This holds the shards to search.
+     * @param name This is the name to match.
+     * @param first This is true for first names and false for last names.
+     * @return The matching students, grouped by shard.
+     */
+    private List<Student> gather(DirectoryShard[] shards, String name,
+        boolean first) {
+        List<Future<List<Student>>> futures =
+            new ArrayList<>(shards.length - 1);
+        for (int i = 1; i < shards.length; i++) {
+            DirectoryShard shard = shards[i];
+            futures.add(executor.submit(() -> first
+                ? shard.searchByFirstName(name)
+                : shard.searchByLastName(name)));
+        }
+        List<Student> found = new ArrayList<>(first
+            ? shards[0].searchByFirstName(name)
+            : shards[0].searchByLastName(name));
+        for (Future<List<Student>> future : futures) {
+            try {
+                found.addAll(future.get());
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(
+                    "Interrupted while searching the shards", e);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Adds a shard at the end of the shards and moves to it the students it
+     * now owns. The directory can be used by other threads meanwhile. If
+     * the move fails, the directory stays correct but keeps trying the old
+     * shards, and rebalance finishes the move.
+     * @param shard This is the shard to add, which must be empty.
+     * @return The number of students moved.
+     * @throws IllegalArgumentException if the shard is null or already one
+     * of the shards.
+     */
+    public int addShard(DirectoryShard shard) throws
+        IllegalArgumentException {
+        if (shard == null) {
+            throw new IllegalArgumentException("Shard must be non-null");
+        }
+        synchronized (rebalanceLock) {
+            int moved = rebalance();
+            moveLock.writeLock().lock();
+            try {
+                DirectoryShard[] shards = layout.shards;
+                for (DirectoryShard s : shards) {
+                    if (s == shard) {
+                        throw new IllegalArgumentException(
+                            "Shard already in directory");
+                    }
+                }
+                shards = Arrays.copyOf(shards, shards.length + 1);
+                shards[shards.length - 1] = shard;
+                layout = new Layout(shards, shards.length - 1);
+            } finally {
+                moveLock.writeLock().unlock();
+            }
+            return moved + rebalance();
+        }
+    }
+
+    /**
+     * Moves the students that are not in the shard owning them since a
+     * shard was added, in batches.
+     * @return The number of students moved.
+     */
+    public int rebalance() {
+        synchronized (rebalanceLock) {
+            Layout l = layout;
+            int moved = 0;
+            for (int i = 0; i < l.settled; i++) {
+                DirectoryShard from = l.shards[i];
+                List<Student> misplaced = new ArrayList<>();
+                for (Student s : from.students()) {
+                    if (shardOf(s.getAndrewId(), l.shards.length) != i) {
+                        misplaced.add(s);
+                    }
+                }
+                for (int start = 0; start < misplaced.size();
+                    start += MOVE_BATCH) {
+                    moved += move(l, from, misplaced.subList(start,
+                        Math.min(start + MOVE_BATCH, misplaced.size())));
+                }
+            }
+            moveLock.writeLock().lock();
+            try {
+                layout = new Layout(l.shards, l.shards.length);
+            } finally {
+                moveLock.writeLock().unlock();
+            }
+            return moved;
+        }
+    }
+
+    /**
+     * Moves a batch of students from a shard to the shards owning them,
+     * while adds, deletes and name searches wait. Each student is added to
+     * its new shard before it is deleted from the old one.
+     * @param l This is the layout being rebalanced to.
+     * @param from This is the shard the students are in.
+     * @param students This holds the students to move, as they were when
+     * listed. Those deleted since are skipped, and those changed since are
+     * moved as they are now.
+     * @return The number of students moved.
+     */
+    private int move(Layout l, DirectoryShard from, List<Student> students) {
+        int moved = 0;
+        moveLock.writeLock().lock();
+        moves++;
+        try {
+            for (Student listed : students) {
+                String id = listed.getAndrewId();
+                Student s = from.searchByAndrewId(id);
+                if (s == null) {
+                    continue;
+                }
+                DirectoryShard to = l.owner(id);
+                try {
+                    to.addStudent(s);
+                } catch (IllegalArgumentException e) {
+                    // Left in both shards by a move that failed part way.
+                    if (to.searchByAndrewId(id) == null) {
+                        throw e;
+                    }
+                }
+                from.deleteStudent(id);
+                moved++;
+            }
+        } finally {
+            moves++;
+            moveLock.writeLock().unlock();
+        }
+        return moved;
+    }
+
+    /**
+     * Stops the threads searching the shards. The shards are not closed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Layout - The shards, in order, and the number of them students were
+     * spread over before the shard being added, if any.
+     */
+    private static final class Layout {
+
+        /**
+         * This holds the shards, in order.
+         */
+        private final DirectoryShard[] shards;
+
+        /**
+         * This represents the number of shards students were spread over
+         * before the last shard was added, or the number of shards once its
+         * students have all been moved.
+         */
+        private final int settled;
+
+        /**
+         * This is the two argument constructor for the Layout class.
+         * @param shards This holds the shards, in order.
+         * @param settled This represents the number of shards students were
+         * spread over.
+         */
+        Layout(DirectoryShard[] shards, int settled) {
+            this.shards = shards;
+            this.settled = settled;
+        }
+
+        /**
+         * Returns the shard that owns an Andrew ID.
+         * @param andrewId This represents a student's Andrew ID.
+         * @return The shard.
+         */
+        DirectoryShard owner(String andrewId) {
+            return shards[shardOf(andrewId, shards.length)];
+        }
+
+        /**
+         * Returns the shard that owned an Andrew ID before the last shard
+         * was added.
+         * @param andrewId This represents a student's Andrew ID.
+         * @return The shard, which is the owner once the students are moved.
+         */
+        DirectoryShard previousOwner(String andrewId) {
+            return shards[shardOf(andrewId, settled)];
+        }
+    }
+}
@@ -1,41 +1,62 @@
+import java.util.Objects;
+
 /**
  * Student - This is a class to model a single student including first name,
- * last name, andrew id, and phone number.
+ * last name, andrew id, and phone number. Students are immutable and are
+ * created with a Student.Builder, so a directory can hand out the instances
+ * it stores without copying them.
  * @author Tony Padilla (apadilla)
  */
 public final class Student {
 
     /**
-     * This is a prime number use din hashCode method.
+     * This is a prime number used in the hashCode method.
      */
     private static final int HASH = 31;
 
     /**
      * This represents a Student's first name.
      */
-    private String firstName;
+    private final String firstName;
 
     /**
      * This represents a Student's last name.
      */
-    private String lastName;
+    private final String lastName;
 
     /**
      * This represents a Student's andrew Id.
      */
-    private String id;
+    private final String id;
 
     /**
      * This represents a student's phone number.
      */
-    private String phoneNum;
+    private final String phoneNum;
+
+    /**
+     * This represents the hash code, computed once as the fields never
+     * change.
+     */
+    private final int hash;
 
     /**
-     * This is the one argument constructor for the Student class.
-     * @param andrewId This represents the student's andrew id.
+     * This is the constructor used by the Builder class. The names are kept
+     * as given; the loaders intern them in NameDictionary.shared() before
+     * building, and Directory interns those of every student it stores, so
+     * that the students of a roster share one String per name.
+     * @param b This is the builder holding the student's data.
      */
-    public Student(String andrewId) {
-        id = andrewId;
+    private Student(Builder b) {
+        id = b.id;
+        firstName = b.firstName;
+        lastName = b.lastName;
+        phoneNum = b.phoneNum;
+        int result = Objects.hashCode(id);
+        result = HASH * result + Objects.hashCode(firstName);
+        result = HASH * result + Objects.hashCode(lastName);
+        result = HASH * result + Objects.hashCode(phoneNum);
+        hash = result;
     }
 
     /**
@@ -71,27 +92,13 @@ public final class Student {
     }
 
     /**
-     * This is the setter for a Student instance's first name.
-     * @param s This represents the student's first name.
-     */
-    public void setFirstName(String s) {
-        firstName = s;
-    }
-
-    /**
-     * This is the setter for a Student instance's last name.
-     * @param s This represents the student's last name.
+     * Returns a builder initialized with this student's data, to create a
+     * changed copy of this student.
+     * @return A new builder holding this student's data.
      */
-    public void setLastName(String s) {
-        lastName = s;
-    }
-
-    /**
-     * This is the setter for a Student instance's phone number.
-     * @param s This represents the student's number formatted '###-###-####'
-     */
-    public void setPhoneNumber(String s) {
-        phoneNum = s;
+    public Builder toBuilder() {
+        return new Builder(id).firstName(firstName).lastName(lastName)
+            .phoneNumber(phoneNum);
     }
 
     @Override
@@ -100,40 +107,122 @@ public final class Student {
             firstName, lastName, id, phoneNum);
     }
 
+    /**
+     * Two students are equal when all four fields are equal, where a field
+     * that is null only equals a null field. The hash codes are compared
+     * first, and then the Andrew IDs, as those differ between almost any
+     * two students, so that most unequal students are told apart without
+     * comparing names.
+     * @param o This is the object to compare with.
+     * @return True if the object is an equal student.
+     */
     @Override
     public boolean equals(Object o) {
         if (o == this) {
             return true;
         }
-        if (!(o instanceof  Student)) {
+        if (!(o instanceof Student)) {
             return false;
         }
         Student s = (Student) o;
-        return s.phoneNum.equals(phoneNum) && s.firstName.equals(firstName)
-            && s.lastName.equals(lastName) && s.id.equals(id);
+        return s.hash == hash && Objects.equals(s.id, id)
+            && Objects.equals(s.firstName, firstName)
+            && Objects.equals(s.lastName, lastName)
+            && Objects.equals(s.phoneNum, phoneNum);
     }
 
+    /**
+     * Returns the hash code of the four fields, a null field hashing as
+     * zero. It is computed when the student is built.
+     * @return The hash code.
+     */
     @Override
     public int hashCode() {
-        int result = id.hashCode();
-        result = HASH * result + firstName.hashCode();
-        result = HASH * result + lastName.hashCode();
-        result = HASH * result + phoneNum.hashCode();
-        return  result;
-
+        return hash;
     }
 
     /**
-     * This method creates a copy of a Student object.
+     * This method creates a copy of a Student object. Students are immutable,
+     * so this is only needed by callers that want a distinct instance.
      * @param s This represents the Student object to copy.
      * @return This is a new Student object identical to the one given.
      */
     public static Student duplicate(Student s) {
-        Student result = new Student(s.getAndrewId());
-        result.setFirstName(s.getFirstName());
-        result.setLastName(s.getLastName());
-        result.setPhoneNumber(s.getPhoneNumber());
-        return result;
+        return s.toBuilder().build();
+    }
+
+    /**
+     * Builder - Collects the data of a student before creating the immutable
+     * Student object.
+     */
+    public static final class Builder {
+
+        /**
+         * This represents the student's andrew Id.
+         */
+        private final String id;
+
+        /**
+         * This represents the student's first name.
+         */
+        private String firstName;
+
+        /**
+         * This represents the student's last name.
+         */
+        private String lastName;
+
+        /**
+         * This represents the student's phone number.
+         */
+        private String phoneNum;
+
+        /**
+         * This is the one argument constructor for the Builder class.
+         * @param andrewId This represents the student's andrew id.
+         */
+        public Builder(String andrewId) {
+            id = andrewId;
+        }
+
+        /**
+         * This is the setter for the student's first name.
+         * @param s This represents the student's first name.
+         * @return This builder.
+         */
+        public Builder firstName(String s) {
+            firstName = s;
+            return this;
+        }
+
+        /**
+         * This is the setter for the student's last name.
+         * @param s This represents the student's last name.
+         * @return This builder.
+         */
+        public Builder lastName(String s) {
+            lastName = s;
+            return this;
+        }
+
+        /**
+         * This is the setter for the student's phone number.
+         * @param s This represents the student's number formatted
+         * '###-###-####'
+         * @return This builder.
+         */
+        public Builder phoneNumber(String s) {
+            phoneNum = s;
+            return this;
+        }
+
+        /**
+         * Creates the student.
+         * @return A new Student object holding the data of this builder.
+         */
+        public Student build() {
+            return new Student(this);
+        }
     }
 
 }
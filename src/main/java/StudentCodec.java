@@ -0,0 +1,106 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * StudentCodec - Reads and writes students and strings in the binary layout
+ * shared by the directory's log and snapshot files. A string is its length
+ * in UTF-8 bytes as an int, or -1 for null, followed by the bytes. A student
+ * is its Andrew ID, first name, last name and phone number in that order.
+ * @author Tony Padilla (apadilla)
+ */
+final class StudentCodec {
+
+    /**
+     * Constant that represents the length written for a null string.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * This is a private constructor, as the class only has static methods.
+     */
+    private StudentCodec() {
+    }
+
+    /**
+     * Returns the number of bytes the given string takes when written.
+     * @param s This is the string, which may be null.
+     * @return The encoded size of the string.
+     */
+    static int size(String s) {
+        return Integer.BYTES + (s == null ? 0
+            : s.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    /**
+     * Returns the number of bytes the given student takes when written.
+     * @param s This is the student.
+     * @return The encoded size of the student.
+     */
+    static int size(Student s) {
+        return size(s.getAndrewId()) + size(s.getFirstName())
+            + size(s.getLastName()) + size(s.getPhoneNumber());
+    }
+
+    /**
+     * Writes a string to the buffer.
+     * @param buffer This is the buffer to write to.
+     * @param s This is the string, which may be null.
+     */
+    static void putString(ByteBuffer buffer, String s) {
+        if (s == null) {
+            buffer.putInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * Reads a string from the buffer.
+     * @param buffer This is the buffer to read from.
+     * @return The string, which may be null.
+     * @throws IllegalArgumentException if the length read is not valid.
+     */
+    static String getString(ByteBuffer buffer) throws
+        IllegalArgumentException {
+        int length = buffer.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a student to the buffer.
+     * @param buffer This is the buffer to write to.
+     * @param s This is the student.
+     */
+    static void putStudent(ByteBuffer buffer, Student s) {
+        putString(buffer, s.getAndrewId());
+        putString(buffer, s.getFirstName());
+        putString(buffer, s.getLastName());
+        putString(buffer, s.getPhoneNumber());
+    }
+
+    /**
+     * Reads a student from the buffer, interning its names in the shared
+     * NameDictionary.
+     * @param buffer This is the buffer to read from.
+     * @return The student.
+     * @throws IllegalArgumentException if a length read is not valid.
+     */
+    static Student getStudent(ByteBuffer buffer) throws
+        IllegalArgumentException {
+        NameDictionary names = NameDictionary.shared();
+        return new Student.Builder(getString(buffer))
+            .firstName(names.intern(getString(buffer)))
+            .lastName(names.intern(getString(buffer)))
+            .phoneNumber(getString(buffer)).build();
+    }
+}
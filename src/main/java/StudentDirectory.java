@@ -0,0 +1,75 @@
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * StudentDirectory - The core operations of a student directory: adding and
+ * deleting students, and searching by Andrew ID, first name and last name.
+ * Directory, ColumnarDirectory and ConcurrentDirectory each implement it
+ * with a different layout, so code that only needs these operations can be
+ * given any of them.
+ * @author Tony Padilla (apadilla)
+ */
+public interface StudentDirectory {
+
+    /**
+     * Adds the given student if its Andrew ID is not in the directory.
+     * @param s This represents the student to add to the directory.
+     * @throws IllegalArgumentException if the student's Andrew ID is already
+     * present, or if the student is missing data.
+     */
+    void addStudent(Student s) throws IllegalArgumentException;
+
+    /**
+     * Adds all of the given students. The whole collection is validated
+     * before the directory is changed, so either every student is added or
+     * none is.
+     * @param students This represents the students to add to the directory.
+     * @throws IllegalArgumentException if the collection or any student in it
+     * is null, if a student is missing data, or if an Andrew ID is already
+     * present or appears more than once in the collection.
+     */
+    void addAll(Collection<Student> students) throws IllegalArgumentException;
+
+    /**
+     * Removes the student with the given Andrew ID.
+     * @param andrewId This represents the Andrew Id of the student to remove
+     * @throws IllegalArgumentException if the Andrew ID is null or not in the
+     * directory.
+     */
+    void deleteStudent(String andrewId) throws IllegalArgumentException;
+
+    /**
+     * Returns the student with the given Andrew ID.
+     * @param andrewId This represents a student's andrew id.
+     * @return This is the student with the andrew id searched, or null.
+     * @throws IllegalArgumentException if the specified id is null.
+     */
+    Student searchByAndrewId(String andrewId) throws
+        IllegalArgumentException;
+
+    /**
+     * Returns the students with the given first name.
+     * @param firstName This is the first name to match in the directory search.
+     * @return A read-only list containing all students with the given first
+     * name, or an empty list if there is no match.
+     * @throws IllegalArgumentException if the specified first name is null.
+     */
+    List<Student> searchByFirstName(String firstName) throws
+        IllegalArgumentException;
+
+    /**
+     * Returns the students with the given last name.
+     * @param lastName This is the last name to match in the directory search.
+     * @return A read-only list containing all students with the given last
+     * name, or an empty list if there is no match.
+     * @throws IllegalArgumentException if the specified last name is null.
+     */
+    List<Student> searchByLastName(String lastName) throws
+        IllegalArgumentException;
+
+    /**
+     * This represents the size of the directory.
+     * @return The number of students in the directory.
+     */
+    int size();
+}
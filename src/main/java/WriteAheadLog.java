@@ -0,0 +1,426 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog - An append-only log of the changes made to a Directory.
+ * Each record is the length of its payload, a CRC32 of the payload, and the
+ * payload: an operation byte followed by the student added or the Andrew ID
+ * deleted, or, for a batch, the number of operations followed by each
+ * operation in the same form. A batch is one record, so a crash in the
+ * middle of writing it leaves none of it to replay. Appending a record only
+ * buffers it and hands back its sequence number; sync writes and forces the
+ * buffer. Commits are grouped: a thread that forces the log makes every
+ * record appended before it durable, so threads that append while holding
+ * the directory's monitor and sync after releasing it share one force.
+ * <p>
+ * Once a write or force fails the log is failed for good: the records that
+ * were not forced may or may not be on disk, so every later sync and append
+ * throws rather than report records durable that a replay would drop.
+ * @author Tony Padilla (apadilla)
+ */
+final class WriteAheadLog implements Closeable {
+
+    /**
+     * Constant that represents the operation byte of an add.
+     */
+    private static final byte ADD = 1;
+
+    /**
+     * Constant that represents the operation byte of a delete.
+     */
+    private static final byte DELETE = 2;
+
+    /**
+     * Constant that represents the operation byte of a batch.
+     */
+    private static final byte BATCH = 3;
+
+    /**
+     * Constant that represents the size of a record header: the payload
+     * length and its CRC32.
+     */
+    private static final int HEADER = 2 * Integer.BYTES;
+
+    /**
+     * Constant that represents the initial size of the append buffer.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * This is the channel of the log file.
+     */
+    private final FileChannel channel;
+
+    /**
+     * This guards the append buffer and the append count.
+     */
+    private final Object appendLock = new Object();
+
+    /**
+     * This guards the channel while it is written and forced.
+     */
+    private final Object syncLock = new Object();
+
+    /**
+     * This holds the records appended but not yet written.
+     */
+    private ByteBuffer pending;
+
+    /**
+     * This represents the number of records appended.
+     */
+    private long appended;
+
+    /**
+     * This represents the number of records written and forced to disk.
+     */
+    private long durable;
+
+    /**
+     * This holds the error that failed the log, or is null.
+     */
+    private volatile IOException failure;
+
+    /**
+     * This is the one argument constructor for the WriteAheadLog class. It
+     * opens the log file for appending, creating it if needed.
+     * @param file This is the log file.
+     * @throws IOException if the file cannot be opened.
+     */
+    WriteAheadLog(Path file) throws IOException {
+        boolean created = !Files.exists(file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        pending = ByteBuffer.allocate(BUFFER_SIZE);
+        if (created) {
+            try {
+                forceDirectory(file.toAbsolutePath().getParent());
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Forces the entries of a folder to disk, so that a file created or
+     * renamed in it is still there after a crash.
+     * @param dir This is the folder.
+     * @throws IOException if the folder cannot be forced.
+     */
+    static void forceDirectory(Path dir) throws IOException {
+        try (FileChannel folder = FileChannel.open(dir,
+            StandardOpenOption.READ)) {
+            folder.force(true);
+        }
+    }
+
+    /**
+     * Returns the payload of a record adding the given student.
+     * @param s This represents the student added.
+     * @return The payload, ready to be appended.
+     */
+    static ByteBuffer addPayload(Student s) {
+        ByteBuffer payload = ByteBuffer.allocate(1 + StudentCodec.size(s));
+        payload.put(ADD);
+        StudentCodec.putStudent(payload, s);
+        return payload;
+    }
+
+    /**
+     * Returns the payload of a record deleting the given student.
+     * @param s This represents the student deleted.
+     * @return The payload, ready to be appended.
+     */
+    static ByteBuffer deletePayload(Student s) {
+        ByteBuffer payload =
+            ByteBuffer.allocate(1 + StudentCodec.size(s.getAndrewId()));
+        payload.put(DELETE);
+        StudentCodec.putString(payload, s.getAndrewId());
+        return payload;
+    }
+
+    /**
+     * Returns the payload of a record applying the given operations in one
+     * step.
+     * @param operations This holds the operations, in order.
+     * @return The payload, ready to be appended.
+     */
+    static ByteBuffer batchPayload(Collection<BatchOperation> operations) {
+        int size = 1 + Integer.BYTES;
+        for (BatchOperation op : operations) {
+            size += 1 + (op.isAdd() ? StudentCodec.size(op.getStudent())
+                : StudentCodec.size(op.getAndrewId()));
+        }
+        ByteBuffer payload = ByteBuffer.allocate(size);
+        payload.put(BATCH);
+        payload.putInt(operations.size());
+        for (BatchOperation op : operations) {
+            if (op.isAdd()) {
+                payload.put(ADD);
+                StudentCodec.putStudent(payload, op.getStudent());
+            } else {
+                payload.put(DELETE);
+                StudentCodec.putString(payload, op.getAndrewId());
+            }
+        }
+        return payload;
+    }
+
+    /**
+     * Appends a record to the buffer of records not yet written.
+     * @param payload This holds the payload of the record.
+     * @return The sequence number of the record, to pass to sync.
+     * @throws UncheckedIOException if the log has failed.
+     */
+    long append(ByteBuffer payload) throws UncheckedIOException {
+        payload.flip();
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        synchronized (appendLock) {
+            checkNotFailed();
+            int needed = HEADER + payload.remaining();
+            if (pending.remaining() < needed) {
+                ByteBuffer grown = ByteBuffer.allocate(
+                    Math.max(2 * pending.capacity(),
+                    pending.position() + needed));
+                pending.flip();
+                grown.put(pending);
+                pending = grown;
+            }
+            pending.putInt(payload.remaining());
+            pending.putInt((int) crc.getValue());
+            pending.put(payload);
+            return ++appended;
+        }
+    }
+
+    /**
+     * This returns the sequence number of the last record appended.
+     * @return The number of records appended.
+     */
+    long appended() {
+        synchronized (appendLock) {
+            return appended;
+        }
+    }
+
+    /**
+     * Makes sure the record with the given sequence number is on disk,
+     * writing and forcing every record appended so far if it is not.
+     * @param seq This is the sequence number of the record.
+     * @throws UncheckedIOException if the log cannot be written, or has
+     * failed before the record was forced.
+     */
+    void sync(long seq) throws UncheckedIOException {
+        synchronized (syncLock) {
+            if (durable >= seq) {
+                return;
+            }
+            checkNotFailed();
+            try {
+                write();
+            } catch (IOException e) {
+                failure = e;
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes every record appended so far and forces them to disk. Called
+     * with the sync lock held.
+     * @throws IOException if the log cannot be written.
+     */
+    private void write() throws IOException {
+        ByteBuffer batch;
+        long upTo;
+        synchronized (appendLock) {
+            batch = pending;
+            upTo = appended;
+            pending = ByteBuffer.allocate(batch.capacity());
+        }
+        batch.flip();
+        while (batch.hasRemaining()) {
+            channel.write(batch);
+        }
+        channel.force(false);
+        durable = upTo;
+    }
+
+    /**
+     * Throws if a write or force of the log has failed.
+     * @throws UncheckedIOException if the log has failed.
+     */
+    private void checkNotFailed() throws UncheckedIOException {
+        IOException e = failure;
+        if (e != null) {
+            throw new UncheckedIOException(
+                "Log cannot be used after an I/O error", e);
+        }
+    }
+
+    /**
+     * Forces every record appended and closes the log.
+     * @throws IOException if the records cannot be forced or the log
+     * cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            try {
+                if (failure == null) {
+                    sync(appended());
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Applies the records of a log file to the directory, in order. Reading
+     * stops at the first record that is cut short or fails its checksum,
+     * which is what a crash in the middle of a write leaves behind, and the
+     * file is truncated there so new records follow the last good one.
+     * @param file This is the log file.
+     * @param directory This is the directory to apply the records to.
+     * @return The number of records applied.
+     * @throws IOException if the file cannot be read, or if a record with a
+     * good checksum cannot be applied.
+     */
+    static long replay(Path file, Directory directory) throws IOException {
+        long applied = 0;
+        long good = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+            long size = in.size();
+            if (size == 0) {
+                return 0;
+            }
+            MappedByteBuffer log =
+                in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            while (log.remaining() >= HEADER) {
+                int length = log.getInt();
+                int checksum = log.getInt();
+                if (length <= 0 || length > log.remaining()) {
+                    break;
+                }
+                ByteBuffer payload = log.slice();
+                payload.limit(length);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                log.position(log.position() + length);
+                apply(payload, directory);
+                applied++;
+                good = log.position();
+            }
+            if (good < size) {
+                in.truncate(good);
+                in.force(true);
+            }
+        }
+        return applied;
+    }
+
+    /**
+     * Applies the payload of one record to the directory, a batch in one
+     * step.
+     * @param payload This holds the payload of the record.
+     * @param directory This is the directory to apply the record to.
+     * @throws IOException if the record cannot be decoded or applied.
+     */
+    private static void apply(ByteBuffer payload, Directory directory) throws
+        IOException {
+        if (payload.get(payload.position()) == BATCH) {
+            List<BatchOperation> operations = decodeRecord(payload);
+            BatchReport report = directory.applyBatch(operations);
+            if (!report.isApplied()) {
+                throw new IOException("Log record cannot be applied: "
+                    + report);
+            }
+            return;
+        }
+        BatchOperation op = decode(payload);
+        try {
+            if (op.isAdd()) {
+                directory.addStudent(op.getStudent());
+            } else {
+                directory.deleteStudent(op.getAndrewId());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Log record cannot be applied", e);
+        }
+    }
+
+    /**
+     * Decodes the payload of any record, as also sent to replicas by
+     * ReplicationPrimary, which must apply a batch record in one step.
+     * @param payload This holds the payload of the record.
+     * @return The operations of the record, in order: one for an add or a
+     * delete, and those of the batch for a batch.
+     * @throws IOException if the payload is not a valid record.
+     */
+    static List<BatchOperation> decodeRecord(ByteBuffer payload)
+        throws IOException {
+        try {
+            if (payload.get(payload.position()) != BATCH) {
+                return Collections.singletonList(decode(payload));
+            }
+            payload.get();
+            int count = payload.getInt();
+            if (count < 0 || count > payload.remaining()) {
+                throw new IOException("Bad batch size " + count);
+            }
+            List<BatchOperation> operations = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                operations.add(decode(payload));
+            }
+            return operations;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Log record cannot be decoded", e);
+        }
+    }
+
+    /**
+     * Decodes the payload of an add or delete record, or one operation of
+     * a batch.
+     * @param payload This holds the payload of the record.
+     * @return The add or delete of the record.
+     * @throws IOException if the payload is not a valid record.
+     */
+    private static BatchOperation decode(ByteBuffer payload) throws
+        IOException {
+        try {
+            byte op = payload.get();
+            if (op == ADD) {
+                return BatchOperation.add(StudentCodec.getStudent(payload));
+            } else if (op == DELETE) {
+                return BatchOperation.delete(StudentCodec.getString(payload));
+            }
+            throw new IOException("Unknown log operation " + op);
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException("Log record cannot be decoded", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * BulkLoaderTest - Tests that a file loads the same whatever size its
+ * chunks are, even when quoted values hold newlines and text that looks
+ * like records, so that chunk boundaries guessed inside them have to be
+ * put right.
+ * @author Tony Padilla (apadilla)
+ */
+public class BulkLoaderTest {
+
+    /**
+     * This is the CSV file under test.
+     */
+    private Path file;
+
+    /**
+     * Writes a roster whose quoted values hold commas, newlines, escaped
+     * quotes and whole fake records, with a few bad rows and stray quotes
+     * among them.
+     * @throws IOException if the file cannot be written.
+     */
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder csv = new StringBuilder(
+            "\"First Name\",\"Last Name\",\"Andrew ID\",\"Phone Number\"\n");
+        for (int i = 0; i < 300; i++) {
+            switch (i % 6) {
+            case 0:
+                csv.append("First").append(i).append(",Last,id").append(i)
+                    .append(",412-268-").append(1000 + i).append('\n');
+                break;
+            case 1:
+                csv.append("\"Multi\nline\n\",\"a, b\",id").append(i)
+                    .append(",\"412\"\"268\"\r\n");
+                break;
+            case 2:
+                csv.append("\"Fake\nx").append(i).append(",\"\"y\"\",z")
+                    .append(i).append(",w\n\",Last,id").append(i)
+                    .append('\n');
+                break;
+            case 3:
+                csv.append("\"\n\"\"\n\",\"L\",id").append(i).append('\n');
+                break;
+            case 4:
+                csv.append("Bad,,\nO\"Neil,Last,id").append(i)
+                    .append(",\"1\n\"\n");
+                break;
+            default:
+                csv.append("\"\"\"Quoted\"\"\",\"Last\n").append(i)
+                    .append(",x\",id").append(i).append(",\n");
+                break;
+            }
+        }
+        file = Files.createTempFile("roster", ".csv");
+        Files.write(file, csv.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Deletes the CSV file.
+     * @throws IOException if the file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Loads the file with chunks of the given size.
+     * @param chunkSize This represents the target size of a chunk.
+     * @param directory This is the directory to load into.
+     * @return The report of the load.
+     * @throws IOException if the file cannot be read.
+     */
+    private LoadReport load(int chunkSize, Directory directory)
+        throws IOException {
+        return new BulkLoader(4, chunkSize).load(directory, file.toString());
+    }
+
+    @Test
+    public void everyChunkSizeLoadsTheSameStudents() throws IOException {
+        Directory whole = new Directory();
+        LoadReport expected = load(Integer.MAX_VALUE, whole);
+        assertEquals(300, expected.getLoaded());
+        assertEquals(50, expected.getErrors().size());
+        Student fake = whole.searchByAndrewId("id2");
+        assertEquals("Fake\nx2,\"y\",z2,w\n", fake.getFirstName());
+        assertEquals("\"Quoted\"", whole.searchByAndrewId("id5")
+            .getFirstName());
+        for (int chunkSize = 1; chunkSize < 200; chunkSize += 7) {
+            Directory directory = new Directory();
+            LoadReport report = load(chunkSize, directory);
+            assertEquals(new ArrayList<>(whole.students()),
+                new ArrayList<>(directory.students()));
+            assertEquals(rows(expected), rows(report));
+        }
+    }
+
+    @Test
+    public void splitBoundariesIncrease() throws IOException {
+        try (FileChannel channel =
+            FileChannel.open(file)) {
+            long[] bounds = MappedCSVParser.split(channel, 16);
+            assertEquals(0, bounds[0]);
+            assertEquals(channel.size(), bounds[bounds.length - 1]);
+            for (int i = 1; i < bounds.length; i++) {
+                assertTrue(bounds[i] > bounds[i - 1]);
+            }
+        }
+    }
+
+    /**
+     * Returns the rows of the errors of a load.
+     * @param report This is the report of the load.
+     * @return The row of each error, in order.
+     */
+    private static List<Long> rows(LoadReport report) {
+        List<Long> rows = new ArrayList<>();
+        for (LoadReport.RowError error : report.getErrors()) {
+            rows.add(error.getRow());
+        }
+        return rows;
+    }
+}
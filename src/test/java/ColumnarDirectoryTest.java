@@ -0,0 +1,106 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * ColumnarDirectoryTest - Tests that a ColumnarDirectory answers every
+ * search as a Directory given the same changes does, through the
+ * StudentDirectory interface, while deletes leave tombstones, rows are
+ * reused and the columns are compacted.
+ * @author Tony Padilla (apadilla)
+ */
+public class ColumnarDirectoryTest {
+
+    /**
+     * Constant that represents the number of distinct Andrew IDs used.
+     */
+    private static final int IDS = 5000;
+
+    /**
+     * Constant that represents the number of distinct names used.
+     */
+    private static final int NAMES = 5;
+
+    /**
+     * Checks that two directories hold the same students, in the same
+     * order for every name.
+     * @param expected This is the directory to compare with.
+     * @param actual This is the directory under test.
+     */
+    private static void assertSame(StudentDirectory expected,
+        StudentDirectory actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < NAMES; i++) {
+            assertEquals(expected.searchByFirstName("First" + i),
+                actual.searchByFirstName("First" + i));
+            assertEquals(expected.searchByLastName("Last" + i),
+                actual.searchByLastName("Last" + i));
+        }
+        for (int id = 0; id < IDS; id += 97) {
+            assertEquals(expected.searchByAndrewId("id" + id),
+                actual.searchByAndrewId("id" + id));
+        }
+    }
+
+    @Test
+    public void changesMatchDirectory() {
+        Random random = new Random(7);
+        StudentDirectory expected = new Directory();
+        ColumnarDirectory actual = new ColumnarDirectory();
+        for (int step = 0; step < 60000; step++) {
+            int id = random.nextInt(IDS);
+            if (expected.searchByAndrewId("id" + id) != null) {
+                expected.deleteStudent("id" + id);
+                actual.deleteStudent("id" + id);
+            } else if (random.nextInt(10) == 0) {
+                List<Student> batch = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    int other = (id + i * IDS / 3) % IDS;
+                    if (expected.searchByAndrewId("id" + other) == null) {
+                        batch.add(Students.random(other, NAMES, random));
+                    }
+                }
+                expected.addAll(batch);
+                actual.addAll(batch);
+            } else {
+                Student s = Students.random(id, NAMES, random);
+                expected.addStudent(s);
+                actual.addStudent(s);
+            }
+            if (step % 5000 == 0) {
+                assertSame(expected, actual);
+            }
+        }
+        assertSame(expected, actual);
+        actual.compact();
+        assertSame(expected, actual);
+    }
+
+    @Test
+    public void deletingEveryoneLeavesNothingToFind() {
+        Random random = new Random(11);
+        ColumnarDirectory directory = new ColumnarDirectory();
+        for (int round = 0; round < 3; round++) {
+            for (int id = 0; id < IDS; id++) {
+                directory.addStudent(Students.random(id, NAMES, random));
+            }
+            for (int id = 0; id < IDS; id++) {
+                directory.deleteStudent("id" + id);
+            }
+            assertEquals(0, directory.size());
+            for (int i = 0; i < NAMES; i++) {
+                assertEquals(0, directory.searchByFirstName("First" + i)
+                    .size());
+            }
+            assertNull(directory.searchByAndrewId("id0"));
+        }
+        directory.compact();
+        directory.addStudent(Students.random(1, NAMES, random));
+        assertEquals(1, directory.size());
+        assertEquals("id1", directory.searchByAndrewId("id1").getAndrewId());
+    }
+}
@@ -0,0 +1,176 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * ConcurrentDirectoryTest - Stress tests of ConcurrentDirectory: several
+ * threads add and delete students at once, and afterwards the Andrew ID,
+ * first name and last name indexes must agree with each other and with
+ * what the threads did.
+ * @author Tony Padilla (apadilla)
+ */
+public class ConcurrentDirectoryTest {
+
+    /**
+     * Constant that represents the number of threads changing the directory.
+     */
+    private static final int THREADS = 8;
+
+    /**
+     * Constant that represents the number of changes each thread makes.
+     */
+    private static final int CHANGES = 20000;
+
+    /**
+     * Constant that represents the number of distinct first and last
+     * names, few enough that threads share name lists.
+     */
+    private static final int NAMES = 7;
+
+    /**
+     * Runs a task on THREADS threads at once and waits for all of them.
+     * @param task This is given the number of the thread.
+     * @throws Exception if a thread failed.
+     */
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    task.run(thread);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that the three indexes hold the same students: every student
+     * in a name list is found by its Andrew ID, and every name list holds
+     * each student of that name once.
+     * @param d This is the directory.
+     * @return The Andrew IDs of the students in the directory.
+     */
+    private static Set<String> checkIndexesAgree(ConcurrentDirectory d) {
+        Set<String> byFirst = new HashSet<>();
+        for (int i = 0; i < NAMES; i++) {
+            for (Student s : d.searchByFirstName("First" + i)) {
+                assertEquals("First" + i, s.getFirstName());
+                assertTrue(byFirst.add(s.getAndrewId()));
+                assertSame(s, d.searchByAndrewId(s.getAndrewId()));
+            }
+        }
+        Set<String> byLast = new HashSet<>();
+        for (int i = 0; i < NAMES + 2; i++) {
+            for (Student s : d.searchByLastName("Last" + i)) {
+                assertEquals("Last" + i, s.getLastName());
+                assertTrue(byLast.add(s.getAndrewId()));
+                assertSame(s, d.searchByAndrewId(s.getAndrewId()));
+            }
+        }
+        assertEquals(byFirst, byLast);
+        assertEquals(byFirst.size(), d.size());
+        return byFirst;
+    }
+
+    @Test
+    public void disjointWritersLeaveWhatEachThreadExpects() throws Exception {
+        ConcurrentDirectory d = new ConcurrentDirectory();
+        List<Set<String>> expected = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            expected.add(new HashSet<>());
+        }
+        runConcurrently(thread -> {
+            Random random = new Random(thread);
+            Set<String> live = expected.get(thread);
+            for (int i = 0; i < CHANGES; i++) {
+                int n = thread + THREADS * random.nextInt(500);
+                Student s = Students.numbered(n, NAMES, NAMES + 2);
+                if (live.remove(s.getAndrewId())) {
+                    d.deleteStudent(s.getAndrewId());
+                } else {
+                    d.addStudent(s);
+                    live.add(s.getAndrewId());
+                }
+            }
+        });
+        Set<String> all = new HashSet<>();
+        for (Set<String> live : expected) {
+            all.addAll(live);
+        }
+        assertEquals(all, checkIndexesAgree(d));
+        for (int n = 0; n < 500 * THREADS; n++) {
+            String id = "id" + n;
+            if (!all.contains(id)) {
+                assertNull(d.searchByAndrewId(id));
+            }
+        }
+    }
+
+    @Test
+    public void racingWritersKeepIndexesInAgreement() throws Exception {
+        ConcurrentDirectory d = new ConcurrentDirectory();
+        runConcurrently(thread -> {
+            Random random = new Random(100 + thread);
+            for (int i = 0; i < CHANGES; i++) {
+                int n = random.nextInt(300);
+                try {
+                    if (random.nextBoolean()) {
+                        d.addStudent(Students.numbered(n, NAMES, NAMES + 2));
+                    } else {
+                        d.deleteStudent("id" + n);
+                    }
+                } catch (IllegalArgumentException e) {
+                    continue;
+                }
+                if (random.nextInt(4) == 0) {
+                    int first = 300 + 2 * (thread * CHANGES + i);
+                    List<Student> batch = new ArrayList<>();
+                    batch.add(Students.numbered(first, NAMES, NAMES + 2));
+                    batch.add(Students.numbered(first + 1, NAMES, NAMES + 2));
+                    d.addAll(batch);
+                    d.deleteStudent(batch.get(0).getAndrewId());
+                    d.deleteStudent(batch.get(1).getAndrewId());
+                }
+            }
+        });
+        for (String id : checkIndexesAgree(d)) {
+            assertTrue(Integer.parseInt(id.substring(2)) < 300);
+        }
+    }
+
+    /**
+     * ThreadTask - The work of one thread of a stress test.
+     */
+    private interface ThreadTask {
+
+        /**
+         * Does the work of one thread.
+         * @param thread This is the number of the thread.
+         * @throws Exception if the work fails.
+         */
+        void run(int thread) throws Exception;
+    }
+}
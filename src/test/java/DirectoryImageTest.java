@@ -0,0 +1,135 @@
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * DirectoryImageTest - Tests that an image gives back the directory it was
+ * written from, that an image written from an array of students is the one
+ * written from a directory of them, and that a corrupt image is refused
+ * with an IOException.
+ * @author Tony Padilla (apadilla)
+ */
+public class DirectoryImageTest {
+
+    /**
+     * This is the image file under test.
+     */
+    private Path file;
+
+    /**
+     * Creates a temporary file for the image.
+     * @throws IOException if the file cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("directory", ".img");
+    }
+
+    /**
+     * Deletes the image file.
+     * @throws IOException if the file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Returns a directory of students sharing a few first and last names.
+     * @param count This is the number of students.
+     * @return The directory.
+     */
+    private static Directory roster(int count) {
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            students.add(Students.of("s" + (count - i), "First" + i % 5,
+                "Last" + i % 3, "412-268-" + (1000 + i % 7)));
+        }
+        Directory directory = new Directory();
+        directory.addAll(students);
+        return directory;
+    }
+
+    @Test
+    public void imageKeepsStudentsAndIndexes() throws IOException {
+        Directory written = roster(40);
+        written.deleteStudent("s7");
+        DirectoryImage.write(written, file);
+        Directory read = DirectoryImage.read(file);
+        assertEquals(new ArrayList<>(written.students()),
+            new ArrayList<>(read.students()));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(written.searchByFirstName("First" + i),
+                read.searchByFirstName("First" + i));
+        }
+        for (int i = 0; i < 3; i++) {
+            assertEquals(written.searchByLastName("Last" + i),
+                read.searchByLastName("Last" + i));
+        }
+        assertEquals(written.searchByPhonePrefix("412268100"),
+            read.searchByPhonePrefix("412268100"));
+        assertEquals(written.completeFirstName("Fi", 10),
+            read.completeFirstName("Fi", 10));
+        read.addStudent(Students.of("s7", "First0", "Last0"));
+        assertEquals(40, read.size());
+    }
+
+    @Test
+    public void imageOfStudentsIsImageOfTheirDirectory() throws IOException {
+        Directory directory = roster(40);
+        directory.deleteStudent("s7");
+        directory.deleteStudent("s30");
+        directory.addStudent(Students.of("s7", "First4", "Last1",
+            "412-268-1003"));
+        directory.addStudent(Students.of("a1", "First4", "Other"));
+        directory.addStudent(Students.of("b1", "Zed", "Last1", "ext."));
+        directory.addStudent(Students.of("c1", "Ann", "Last2",
+            "+1 412 268 1000 0000 0000"));
+        directory.addStudent(Students.of("c2", "Ann", "Last0",
+            "4122681000 00000 000"));
+        Student[] students = directory.students().toArray(new Student[0]);
+        ByteArrayOutputStream fromDirectory = new ByteArrayOutputStream();
+        try (WritableByteChannel out = Channels.newChannel(fromDirectory)) {
+            DirectoryImage.write(directory, out);
+        }
+        ByteArrayOutputStream fromStudents = new ByteArrayOutputStream();
+        try (WritableByteChannel out = Channels.newChannel(fromStudents)) {
+            DirectoryImage.write(students, out);
+        }
+        assertArrayEquals(fromDirectory.toByteArray(),
+            fromStudents.toByteArray());
+    }
+
+    @Test
+    public void corruptStringLengthIsRefused() throws IOException {
+        DirectoryImage.write(roster(3), file);
+        try (FileChannel channel = FileChannel.open(file,
+            StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            length.putInt(Integer.MAX_VALUE - 8);
+            length.flip();
+            channel.write(length, 4 * Integer.BYTES);
+        }
+        try {
+            DirectoryImage.read(file);
+            fail("The image should be refused");
+        } catch (IOException e) {
+            assertEquals("Image ends early", e.getMessage());
+        }
+    }
+}
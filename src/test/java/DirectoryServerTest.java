@@ -0,0 +1,220 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * DirectoryServerTest - Tests the status codes and JSON bodies of the
+ * DirectoryServer resources: lookups, searches, adds and deletes of a
+ * primary's directory, the batch lookup, and the 403 and 503 responses of
+ * a server whose replica has not caught up.
+ * @author Tony Padilla (apadilla)
+ */
+public class DirectoryServerTest {
+
+    /**
+     * Constant that represents the JSON of the student added in setUp.
+     */
+    private static final String TONY = "{\"andrewId\":\"apadilla\","
+        + "\"firstName\":\"Tony\",\"lastName\":\"Padilla\","
+        + "\"phoneNumber\":\"412-268-3000\"}";
+
+    /**
+     * This is the directory served.
+     */
+    private Directory directory;
+
+    /**
+     * This is the server under test, or null.
+     */
+    private DirectoryServer server;
+
+    /**
+     * Creates a directory holding one student.
+     */
+    @Before
+    public void setUp() {
+        directory = new Directory();
+        directory.addStudent(Students.of("apadilla", "Tony", "Padilla",
+            "412-268-3000"));
+    }
+
+    /**
+     * Stops the server.
+     */
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    /**
+     * Starts a server over the directory on a free loopback port.
+     * @param replica This is the replica whose copy is served, or null.
+     * @throws IOException if the server cannot be bound.
+     */
+    private void start(Replica replica) throws IOException {
+        server = new DirectoryServer(directory, new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 0), 2);
+        server.setReplica(replica);
+        server.start();
+    }
+
+    /**
+     * Sends a request to the server and reads the response.
+     * @param method This is the request method.
+     * @param path This is the path and query of the request.
+     * @param body This is the JSON body to send, or null.
+     * @return The response.
+     * @throws IOException if the request fails.
+     */
+    private Response request(String method, String path, String body)
+        throws IOException {
+        InetSocketAddress address = server.getAddress();
+        URL url = new URL("http", address.getHostString(),
+            address.getPort(), path);
+        HttpURLConnection connection = (HttpURLConnection) url
+            .openConnection();
+        connection.setRequestMethod(method);
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type",
+                "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (InputStream in = status >= 400 ? connection.getErrorStream()
+            : connection.getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+        }
+        assertTrue(connection.getContentType()
+            .startsWith("application/json"));
+        return new Response(status,
+            new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void studentIsReturnedAsAnObject() throws IOException {
+        start(null);
+        Response found = request("GET", "/students/apadilla", null);
+        assertEquals(200, found.status);
+        assertEquals(TONY, found.body);
+        Response missing = request("GET", "/students/nobody", null);
+        assertEquals(404, missing.status);
+        assertEquals("{\"error\":\"Andrew id specified not found\"}",
+            missing.body);
+        assertEquals(404, request("GET", "/students/a/b", null).status);
+    }
+
+    @Test
+    public void searchReturnsAnArray() throws IOException {
+        start(null);
+        Response found = request("GET", "/students?lastName=Padilla", null);
+        assertEquals(200, found.status);
+        assertEquals("[" + TONY + "]", found.body);
+        Response none = request("GET", "/students?firstName=Nobody", null);
+        assertEquals(200, none.status);
+        assertEquals("[]", none.body);
+        Response bad = request("GET", "/students?shoeSize=9", null);
+        assertEquals(400, bad.status);
+        assertTrue(bad.body.startsWith("{\"error\":"));
+    }
+
+    @Test
+    public void addAndDeleteReportConflictsAndMissingStudents()
+        throws IOException {
+        start(null);
+        String ann = "{\"andrewId\":\"ann\",\"firstName\":\"Ann\","
+            + "\"lastName\":\"Lee\",\"phoneNumber\":null}";
+        Response added = request("POST", "/students", ann);
+        assertEquals(201, added.status);
+        assertEquals(ann, added.body);
+        Response taken = request("POST", "/students", ann);
+        assertEquals(409, taken.status);
+        assertEquals("{\"error\":\"Student already in directory\"}",
+            taken.body);
+        Response deleted = request("DELETE", "/students/ann", null);
+        assertEquals(200, deleted.status);
+        assertEquals(ann, deleted.body);
+        assertEquals(404, request("DELETE", "/students/ann", null).status);
+        synchronized (directory) {
+            assertEquals(1, directory.size());
+        }
+    }
+
+    @Test
+    public void lookupAnswersEachIdInOrder() throws IOException {
+        start(null);
+        Response found = request("POST", "/students/lookup",
+            "[\"nobody\",\"apadilla\"]");
+        assertEquals(200, found.status);
+        assertEquals("[null," + TONY + "]", found.body);
+        assertEquals(400, request("POST", "/students/lookup",
+            "[\"apadilla\",7]").status);
+    }
+
+    @Test
+    public void replicaRefusesChangesAndStaleReads() throws IOException {
+        Replica replica = new Replica(directory, new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), 1),
+            Replica.DEFAULT_MAX_STALENESS_MILLIS);
+        start(replica);
+        Response add = request("POST", "/students", "{\"andrewId\":\"ann\","
+            + "\"firstName\":\"Ann\",\"lastName\":\"Lee\"}");
+        assertEquals(403, add.status);
+        assertEquals("{\"error\":\"Read-only replica\"}", add.body);
+        assertEquals(403, request("DELETE", "/students/apadilla", null)
+            .status);
+        assertEquals(503, request("GET", "/students/apadilla", null).status);
+        assertEquals(503, request("POST", "/students/lookup",
+            "[\"apadilla\"]").status);
+        synchronized (directory) {
+            assertEquals(1, directory.size());
+        }
+    }
+
+    /**
+     * Response - The status code and body of a response.
+     */
+    private static final class Response {
+
+        /**
+         * This represents the status code.
+         */
+        private final int status;
+
+        /**
+         * This is the body, decoded as UTF-8.
+         */
+        private final String body;
+
+        /**
+         * This is the two argument constructor for the Response class.
+         * @param status This represents the status code.
+         * @param body This is the body.
+         */
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
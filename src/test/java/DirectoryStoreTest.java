@@ -0,0 +1,249 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * DirectoryStoreTest - Tests that a DirectoryStore recovers what was
+ * durable before a crash: a record cut short or failing its checksum at the
+ * end of a log is dropped, a batch cut short is dropped whole, a change a
+ * listener refused is not logged, and changes made after a checkpoint are
+ * replayed on top of the snapshot.
+ * @author Tony Padilla (apadilla)
+ */
+public class DirectoryStoreTest {
+
+    /**
+     * This is the folder of the store under test.
+     */
+    private Path dir;
+
+    /**
+     * Creates an empty folder for the store.
+     * @throws IOException if the folder cannot be created.
+     */
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("store");
+    }
+
+    /**
+     * Deletes the folder of the store.
+     * @throws IOException if the folder cannot be deleted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(dir);
+    }
+
+    /**
+     * Adds students to the store's directory and waits for them to be
+     * durable.
+     * @param store This is the store.
+     * @param ids This holds the Andrew IDs of the students.
+     */
+    private static void add(DirectoryStore store, String... ids) {
+        Directory directory = store.getDirectory();
+        for (String id : ids) {
+            synchronized (directory) {
+                directory.addStudent(Students.named(id));
+            }
+            store.sync();
+        }
+    }
+
+    /**
+     * Returns the log files of the store, oldest first.
+     * @return The log files.
+     * @throws IOException if the folder cannot be read.
+     */
+    private List<Path> logs() throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (DirectoryStream<Path> files =
+            Files.newDirectoryStream(dir, "wal-*.log")) {
+            for (Path file : files) {
+                result.add(file);
+            }
+        }
+        result.sort(null);
+        return result;
+    }
+
+    @Test
+    public void changesSurviveReopening() throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            add(store, "1000", "1001", "1002");
+            synchronized (store.getDirectory()) {
+                store.getDirectory().deleteStudent("1001");
+            }
+            store.sync();
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(2, directory.size());
+            assertTrue(directory.contains("1000"));
+            assertFalse(directory.contains("1001"));
+            assertEquals(Students.named("1002"),
+                directory.searchByAndrewId("1002"));
+        }
+    }
+
+    @Test
+    public void truncatedFinalRecordIsDropped() throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            add(store, "1000", "1001", "1002");
+        }
+        Path log = logs().get(0);
+        try (FileChannel channel = FileChannel.open(log,
+            StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(2, directory.size());
+            assertNull(directory.searchByAndrewId("1002"));
+            add(store, "1003");
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(3, directory.size());
+            assertNotNull(directory.searchByAndrewId("1003"));
+        }
+    }
+
+    @Test
+    public void recordWithBadChecksumEndsReplay() throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            add(store, "1000", "1001", "1002");
+        }
+        Path log = logs().get(0);
+        try (FileChannel channel = FileChannel.open(log,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            long at = channel.size() - 1;
+            channel.read(last, at);
+            last.put(0, (byte) (last.get(0) ^ 1));
+            last.rewind();
+            channel.write(last, at);
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(2, directory.size());
+            assertNull(directory.searchByAndrewId("1002"));
+        }
+    }
+
+    @Test
+    public void batchCutShortIsDroppedWhole() throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            add(store, "1000");
+            List<BatchOperation> batch = new ArrayList<>();
+            batch.add(BatchOperation.delete("1000"));
+            batch.add(BatchOperation.add(Students.named("1001")));
+            batch.add(BatchOperation.add(Students.named("1002")));
+            synchronized (store.getDirectory()) {
+                assertTrue(store.getDirectory().applyBatch(batch)
+                    .isApplied());
+            }
+            store.sync();
+        }
+        Path log = logs().get(0);
+        try (FileChannel channel = FileChannel.open(log,
+            StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(1, directory.size());
+            assertTrue(directory.contains("1000"));
+        }
+    }
+
+    @Test
+    public void changeRefusedByListenerIsNotLogged() throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            add(store, "1000");
+            store.getDirectory().addMutationListener(new MutationListener() {
+                @Override
+                public void onAdd(Student s) {
+                    throw new IllegalStateException("Refused");
+                }
+
+                @Override
+                public void onDelete(Student s) {
+                }
+            });
+            try {
+                add(store, "1001");
+                fail("The listener should refuse the add");
+            } catch (IllegalStateException e) {
+                assertEquals("Refused", e.getMessage());
+            }
+            assertFalse(store.getDirectory().contains("1001"));
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(1, directory.size());
+            assertFalse(directory.contains("1001"));
+        }
+    }
+
+    @Test
+    public void changesAfterCheckpointAreReplayed() throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            add(store, "1000", "1001");
+            store.checkpoint();
+            add(store, "1002");
+            synchronized (store.getDirectory()) {
+                store.getDirectory().deleteStudent("1000");
+            }
+            store.sync();
+        }
+        assertTrue(Files.exists(dir.resolve("snapshot.bin")));
+        assertEquals(1, logs().size());
+        try (DirectoryStore store = DirectoryStore.open(dir)) {
+            Directory directory = store.getDirectory();
+            assertEquals(2, directory.size());
+            assertFalse(directory.contains("1000"));
+            assertTrue(directory.contains("1001"));
+            assertTrue(directory.contains("1002"));
+        }
+    }
+
+    @Test
+    public void checkpointsTakenByTheJournalKeepEveryChange()
+        throws IOException {
+        try (DirectoryStore store = DirectoryStore.open(dir, 10)) {
+            for (int i = 0; i < 95; i++) {
+                add(store, Integer.toString(1000 + i));
+            }
+        }
+        try (DirectoryStore store = DirectoryStore.open(dir, 10)) {
+            Directory directory = store.getDirectory();
+            assertEquals(95, directory.size());
+            for (int i = 0; i < 95; i++) {
+                assertTrue(directory.contains(Integer.toString(1000 + i)));
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * FuzzySearchTest - Tests that the fuzzy name searches of a Directory rank
+ * the closest names first and names at the same distance in sorted order,
+ * and that they find exactly the names within the distance asked for,
+ * both for short queries, which are answered from the BK-tree, and for
+ * longer ones, which are answered from the bigrams, after names are
+ * removed as well.
+ * @author Tony Padilla (apadilla)
+ */
+public class FuzzySearchTest {
+
+    /**
+     * Returns the last names of the students, in order.
+     * @param students This holds the students.
+     * @return The last names.
+     */
+    private static List<String> lastNames(List<Student> students) {
+        List<String> names = new ArrayList<>();
+        for (Student s : students) {
+            names.add(s.getLastName());
+        }
+        return names;
+    }
+
+    /**
+     * Computes the Levenshtein distance between two names by the textbook
+     * recurrence, to check the index against.
+     * @param a This is the first name.
+     * @param b This is the second name.
+     * @return The distance.
+     */
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            for (int j = 0; j <= b.length(); j++) {
+                if (i == 0 || j == 0) {
+                    d[i][j] = i + j;
+                } else {
+                    int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                    d[i][j] = Math.min(Math.min(d[i - 1][j] + 1,
+                        d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    @Test
+    public void closestNamesComeFirst() {
+        Directory directory = new Directory();
+        directory.addStudent(Students.of("a", "First", "Smyth"));
+        directory.addStudent(Students.of("b", "First", "Smith"));
+        directory.addStudent(Students.of("c", "First", "Smit"));
+        directory.addStudent(Students.of("d", "First", "Schmidt"));
+        directory.addStudent(Students.of("e", "First", "Smith"));
+        directory.addStudent(Students.of("f", "First", "Smithe"));
+        assertEquals(Arrays.asList("Smith", "Smith", "Smit", "Smithe",
+            "Smyth"), lastNames(directory.fuzzySearchByLastName("Smith", 1)));
+        assertEquals(Arrays.asList("Smith", "Smith"),
+            lastNames(directory.fuzzySearchByLastName("Smith", 0)));
+        assertEquals(Arrays.asList("Smith", "Smith", "Smit", "Smithe",
+            "Smyth"), lastNames(directory.fuzzySearchByLastName("Smith", 2)));
+        assertEquals(Arrays.asList("Smith", "Smith", "Smit", "Smithe",
+            "Smyth", "Schmidt"),
+            lastNames(directory.fuzzySearchByLastName("Smith", 4)));
+    }
+
+    @Test
+    public void shortQueriesRankByDistance() {
+        Directory directory = new Directory();
+        directory.addStudent(Students.of("a", "First", "Li"));
+        directory.addStudent(Students.of("b", "First", "Lee"));
+        directory.addStudent(Students.of("c", "First", "Le"));
+        directory.addStudent(Students.of("d", "First", "Lopez"));
+        directory.addStudent(Students.of("e", "First", "Ng"));
+        assertEquals(Arrays.asList("Le", "Lee", "Li"),
+            lastNames(directory.fuzzySearchByLastName("Le", 1)));
+        assertEquals(Arrays.asList("Le", "Lee", "Li", "Ng"),
+            lastNames(directory.fuzzySearchByLastName("Le", 2)));
+        directory.deleteStudent("c");
+        assertEquals(Arrays.asList("Lee", "Li"),
+            lastNames(directory.fuzzySearchByLastName("Le", 1)));
+    }
+
+    @Test
+    public void matchesAreExactlyTheNamesWithinTheDistance() {
+        Random random = new Random(42);
+        List<String> names = new ArrayList<>();
+        Directory directory = new Directory();
+        for (int i = 0; i < 600; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 1 + random.nextInt(7);
+            for (int j = 0; j < length; j++) {
+                name.append((char) ('a' + random.nextInt(4)));
+            }
+            names.add(name.toString());
+            directory.addStudent(Students.of("id" + i, "First",
+                name.toString()));
+        }
+        for (int i = 0; i < 600; i += 3) {
+            directory.deleteStudent("id" + i);
+        }
+        for (int q = 0; q < 60; q++) {
+            StringBuilder query = new StringBuilder();
+            int length = 1 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                query.append((char) ('a' + random.nextInt(5)));
+            }
+            for (int distance = 0; distance <= 3; distance++) {
+                List<String> expected = new ArrayList<>();
+                for (int i = 0; i < names.size(); i++) {
+                    if (i % 3 != 0
+                        && levenshtein(query.toString(), names.get(i))
+                        <= distance) {
+                        expected.add(names.get(i));
+                    }
+                }
+                List<String> found = lastNames(directory
+                    .fuzzySearchByLastName(query.toString(), distance));
+                int last = 0;
+                for (String name : found) {
+                    int d = levenshtein(query.toString(), name);
+                    assertTrue(query + " " + name, d >= last);
+                    last = d;
+                }
+                Collections.sort(expected);
+                Collections.sort(found);
+                assertEquals(query + " within " + distance, expected, found);
+            }
+        }
+    }
+}
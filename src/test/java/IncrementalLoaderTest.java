@@ -0,0 +1,136 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * IncrementalLoaderTest - Tests that an IncrementalLoader applies only the
+ * complete rows written after its offset, resumes from a saved offset,
+ * updates a student whose row changes, deletes a student whose row has
+ * empty names, and reads a file that shrinks again from its start. The
+ * loader is polled directly rather than started, so that each check
+ * happens when the test asks for it.
+ * @author Tony Padilla (apadilla)
+ */
+public class IncrementalLoaderTest {
+
+    /**
+     * Constant that represents the header of the roster.
+     */
+    private static final String HEADER =
+        "First Name,Last Name,Andrew ID,Phone Number\n";
+
+    /**
+     * This is the CSV file followed.
+     */
+    private Path file;
+
+    /**
+     * This is the directory the rows are applied to.
+     */
+    private Directory directory;
+
+    /**
+     * Creates a roster holding only its header.
+     * @throws IOException if the file cannot be written.
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = Files.createTempFile("roster", ".csv");
+        Files.write(file, HEADER.getBytes(StandardCharsets.UTF_8));
+        directory = new Directory();
+    }
+
+    /**
+     * Deletes the roster.
+     * @throws IOException if the file cannot be deleted.
+     */
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Appends text to the roster.
+     * @param text This is the text to append.
+     * @throws IOException if the file cannot be written.
+     */
+    private void append(String text) throws IOException {
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8),
+            StandardOpenOption.APPEND);
+    }
+
+    @Test
+    public void onlyCompleteRowsAfterTheOffsetAreApplied() throws IOException {
+        IncrementalLoader loader = new IncrementalLoader(directory, file);
+        append("Tony,Padilla,apadilla,412-268-3000\nAnn,Lee,alee,\n");
+        assertEquals(2, loader.poll());
+        assertEquals(Files.size(file), loader.getOffset());
+        assertEquals(0, loader.getLagBytes());
+        append("Bo,Kim,bk");
+        assertEquals(0, loader.poll());
+        assertEquals(Files.size(file) - 9, loader.getOffset());
+        assertFalse(directory.contains("bk"));
+        append("im,\n");
+        assertEquals(1, loader.poll());
+        assertEquals("Kim", directory.searchByAndrewId("bkim").getLastName());
+        assertEquals(3, loader.getAdded());
+        assertEquals(0, loader.poll());
+    }
+
+    @Test
+    public void loaderResumesFromASavedOffset() throws IOException {
+        append("Tony,Padilla,apadilla,412-268-3000\n");
+        IncrementalLoader first = new IncrementalLoader(directory, file);
+        assertEquals(1, first.poll());
+        long offset = first.getOffset();
+        append("Ann,Lee,alee,\n");
+        Directory resumed = new Directory();
+        IncrementalLoader second = new IncrementalLoader(resumed, file,
+            offset, null);
+        assertEquals(1, second.poll());
+        assertEquals(1, resumed.size());
+        assertEquals("Lee", resumed.searchByAndrewId("alee").getLastName());
+        assertEquals(Files.size(file), second.getOffset());
+    }
+
+    @Test
+    public void changedRowsUpdateAndEmptyNamesDelete() throws IOException {
+        IncrementalLoader loader = new IncrementalLoader(directory, file);
+        append("Tony,Padilla,apadilla,412-268-3000\nAnn,Lee,alee,\n");
+        loader.poll();
+        append("Tony,Padilla,apadilla,412-268-3000\n");
+        assertEquals(0, loader.poll());
+        append("Tony,Padilla,apadilla,412-268-9999\n,,alee,\n,,nobody,\n");
+        assertEquals(2, loader.poll());
+        assertEquals("412-268-9999",
+            directory.searchByAndrewId("apadilla").getPhoneNumber());
+        assertNull(directory.searchByAndrewId("alee"));
+        assertEquals(1, loader.getUpdated());
+        assertEquals(1, loader.getDeleted());
+        append("Bo,,bkim,\n");
+        assertEquals(0, loader.poll());
+        assertEquals(1, loader.getRejected());
+        assertEquals(1, directory.size());
+    }
+
+    @Test
+    public void fileThatShrinksIsReadFromItsStart() throws IOException {
+        IncrementalLoader loader = new IncrementalLoader(directory, file);
+        append("Tony,Padilla,apadilla,412-268-3000\nAnn,Lee,alee,\n");
+        loader.poll();
+        Files.write(file, (HEADER + "Bo,Kim,bkim,\n")
+            .getBytes(StandardCharsets.UTF_8));
+        assertEquals(1, loader.poll());
+        assertEquals(Files.size(file), loader.getOffset());
+        assertEquals(3, directory.size());
+    }
+}
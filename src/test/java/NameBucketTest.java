@@ -0,0 +1,82 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * NameBucketTest - Tests that a NameBucket keeps its students in the order
+ * they were added across removals, additions and the squeezes that remove
+ * empty slots, whether read by position or by iterating.
+ * @author Tony Padilla (apadilla)
+ */
+public class NameBucketTest {
+
+    /**
+     * Checks that the bucket holds the expected students, in order, both by
+     * position and by iterating.
+     * @param expected This holds the students expected, in order.
+     * @param bucket This is the bucket checked.
+     */
+    private static void assertOrder(List<Student> expected,
+        NameBucket bucket) {
+        assertEquals(expected.size(), bucket.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame(expected.get(i), bucket.get(i));
+        }
+        assertEquals(expected, new ArrayList<>(bucket));
+    }
+
+    @Test
+    public void orderIsKeptAcrossRemoveAddAndCompact() {
+        NameBucket bucket = new NameBucket();
+        List<Student> expected = new ArrayList<>();
+        for (int n = 0; n < 40; n++) {
+            Student s = Students.numbered(n);
+            bucket.add(s);
+            expected.add(s);
+        }
+        for (int n = 0; n < 40; n += 3) {
+            assertTrue(bucket.removeStudent(expected.get(n)));
+        }
+        expected.removeIf(s -> Integer.parseInt(
+            s.getAndrewId().substring(2)) % 3 == 0);
+        assertOrder(expected, bucket);
+        for (int n = 40; n < 45; n++) {
+            Student s = Students.numbered(n);
+            bucket.add(s);
+            expected.add(s);
+        }
+        assertOrder(expected, bucket);
+        while (expected.size() > 8) {
+            assertTrue(bucket.removeStudent(expected.remove(1)));
+        }
+        assertOrder(expected, bucket);
+        for (int n = 45; n < 60; n++) {
+            Student s = Students.numbered(n);
+            bucket.add(s);
+            expected.add(s);
+        }
+        assertOrder(expected, bucket);
+    }
+
+    @Test
+    public void readByPositionSeesEveryWrite() {
+        NameBucket bucket = new NameBucket();
+        for (int n = 0; n < 10; n++) {
+            bucket.add(Students.numbered(n));
+        }
+        Student second = bucket.get(1);
+        bucket.removeStudent(bucket.get(0));
+        assertSame(second, bucket.get(0));
+        Student added = Students.numbered(10);
+        bucket.add(added);
+        assertSame(added, bucket.get(bucket.size() - 1));
+        bucket.removeStudent(second);
+        assertEquals("id2", bucket.get(0).getAndrewId());
+        assertEquals(9, bucket.readOnlyView().size());
+        assertSame(added, bucket.readOnlyView().get(8));
+    }
+}
@@ -0,0 +1,81 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * NormalizedNameIndexTest - Tests that NormalizedNameIndex folds case,
+ * accents and compatibility forms both when names are added and when they
+ * are looked up, and that names stay reachable as others are removed.
+ * @author Tony Padilla (apadilla)
+ */
+public class NormalizedNameIndexTest {
+
+    /**
+     * Returns the Andrew IDs of the students found under a name.
+     * @param index This is the index.
+     * @param name This is the name to look up.
+     * @return The Andrew IDs, in order, or an empty list if none.
+     */
+    private static List<String> ids(NormalizedNameIndex index, String name) {
+        List<String> ids = new ArrayList<>();
+        NameBucket bucket = index.get(name);
+        if (bucket != null) {
+            for (Student s : bucket) {
+                ids.add(s.getAndrewId());
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    public void namesAreFolded() {
+        assertEquals("tony", NormalizedNameIndex.normalize("tony"));
+        assertEquals("tony", NormalizedNameIndex.normalize("TONY"));
+        assertEquals("tony", NormalizedNameIndex.normalize("T\u00f3ny"));
+        assertEquals("tony", NormalizedNameIndex.normalize("To\u0301ny"));
+        assertEquals("zoe", NormalizedNameIndex.normalize("Zo\u00cb"));
+        assertEquals("fiona", NormalizedNameIndex.normalize("\ufb01ona"));
+        assertEquals("ann", NormalizedNameIndex.normalize("\uff21nn"));
+        assertEquals("strasse", NormalizedNameIndex.normalize("Stra\u00dfe"));
+    }
+
+    @Test
+    public void lookupsFindEveryFormOfAName() {
+        NormalizedNameIndex index = new NormalizedNameIndex();
+        index.add(Students.of("a", "Tony", "Last"), "Tony");
+        index.add(Students.of("b", "T\u00f3ny", "Last"), "T\u00f3ny");
+        index.add(Students.of("c", "TONY", "Last"), "TONY");
+        index.add(Students.of("d", "\ufb01ona", "Last"), "\ufb01ona");
+        assertEquals(2, index.size());
+        List<String> tonys = Arrays.asList("a", "b", "c");
+        assertEquals(tonys, ids(index, "tony"));
+        assertEquals(tonys, ids(index, "tOnY"));
+        assertEquals(tonys, ids(index, "TO\u0301NY"));
+        assertEquals(Arrays.asList("d"), ids(index, "FIONA"));
+        assertNull(index.get("Tonya"));
+    }
+
+    @Test
+    public void namesStayReachableAsOthersAreRemoved() {
+        NormalizedNameIndex index = new NormalizedNameIndex();
+        List<Student> students = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Student s = Students.of("id" + i, "Name" + i, "Last");
+            students.add(s);
+            index.add(s, s.getFirstName());
+        }
+        for (int i = 0; i < 300; i += 2) {
+            index.remove(students.get(i), students.get(i).getFirstName());
+        }
+        assertEquals(150, index.size());
+        for (int i = 0; i < 300; i++) {
+            List<String> expected = i % 2 == 0 ? new ArrayList<>()
+                : Arrays.asList("id" + i);
+            assertEquals(expected, ids(index, "NAME" + i));
+        }
+    }
+}
@@ -0,0 +1,68 @@
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * PhoneIndexTest - Tests of the phone number lookups of PhoneIndex: both
+ * North American forms of a number are found together, and prefix
+ * iterators fail fast when the index changes.
+ * @author Tony Padilla (apadilla)
+ */
+public class PhoneIndexTest {
+
+    /**
+     * Returns the Andrew IDs of the students, in order.
+     * @param students This holds the students.
+     * @return The Andrew IDs.
+     */
+    private static List<String> ids(Iterable<Student> students) {
+        List<String> ids = new ArrayList<>();
+        for (Student s : students) {
+            ids.add(s.getAndrewId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void lookupFindsBothNorthAmericanForms() {
+        PhoneIndex index = new PhoneIndex();
+        index.add(Students.of("national", "First", "Last", "412-268-3000"));
+        index.add(Students.of("international", "First", "Last",
+            "+1 (412) 268-3000"));
+        index.add(Students.of("other", "First", "Last", "412-268-3001"));
+        assertEquals(ids(index.get("4122683000")),
+            Arrays.asList("national", "international"));
+        assertEquals(ids(index.get("1-412-268-3000")),
+            Arrays.asList("international", "national"));
+        assertEquals(ids(index.get("412.268.3001")),
+            Collections.singletonList("other"));
+        assertEquals(0, index.get("1-412-268-3001-9").size());
+    }
+
+    @Test
+    public void lookupFindsTheOtherFormAlone() {
+        PhoneIndex index = new PhoneIndex();
+        index.add(Students.of("international", "First", "Last",
+            "1 412 268 3000"));
+        assertEquals(ids(index.get("(412) 268-3000")),
+            Collections.singletonList("international"));
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void prefixIteratorFailsFast() {
+        PhoneIndex index = new PhoneIndex();
+        for (int i = 0; i < 5; i++) {
+            index.add(Students.of("s" + i, "First", "Last", "412-268-300" + i));
+        }
+        Iterator<Student> it = index.withPrefix("412");
+        it.next();
+        index.remove(index.get("412-268-3004").get(0));
+        it.next();
+    }
+}
@@ -0,0 +1,112 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * QueryTest - Tests that a compound query returns exactly the students
+ * meeting every one of its conditions, whichever index the planner starts
+ * from, and that the planner starts from the index giving the fewest
+ * candidates.
+ * @author Tony Padilla (apadilla)
+ */
+public class QueryTest {
+
+    /**
+     * Constant that represents the number of students in the directory.
+     */
+    private static final int STUDENTS = 200;
+
+    /**
+     * This is the directory queried.
+     */
+    private Directory directory;
+
+    /**
+     * Creates a directory of students with ten first names, four last
+     * names, and a phone number of their own.
+     */
+    @Before
+    public void setUp() {
+        directory = new Directory();
+        for (int i = 0; i < STUDENTS; i++) {
+            directory.addStudent(Students.of("s" + i, "First" + i % 10,
+                "Last" + i % 4, "412-268-" + (1000 + i)));
+        }
+    }
+
+    /**
+     * Runs a query and checks that its plan starts from the given index
+     * and that it returns the students a scan of the directory finds.
+     * @param query This is the query to run.
+     * @param index This names the index the plan should start from.
+     * @return The Andrew IDs of the students returned.
+     */
+    private List<String> assertIntersection(Query query, String index) {
+        QueryCursor cursor = directory.query(query);
+        assertTrue(cursor.getPlan(), cursor.getPlan().startsWith(
+            "index " + index + " ("));
+        List<String> found = new ArrayList<>();
+        cursor.forEachRemaining(s -> found.add(s.getAndrewId()));
+        List<String> expected = new ArrayList<>();
+        for (Student s : directory.students()) {
+            if (query.matches(s)) {
+                expected.add(s.getAndrewId());
+            }
+        }
+        List<String> sorted = new ArrayList<>(found);
+        sorted.sort(null);
+        expected.sort(null);
+        assertEquals(expected, sorted);
+        return found;
+    }
+
+    @Test
+    public void namesAreIntersectedFromTheSmallerBucket() {
+        List<String> found = assertIntersection(new Query.Builder()
+            .firstName("First3").lastName("Last1").build(), "first=First3");
+        assertEquals(10, found.size());
+        assertEquals("s13", found.get(0));
+        assertIntersection(new Query.Builder().lastName("Last1")
+            .firstName("First2").build(), "first=First2");
+    }
+
+    @Test
+    public void prefixesAreUsedWhenNarrower() {
+        assertIntersection(new Query.Builder().andrewIdPrefix("s1")
+            .lastName("Last2").build(), "last=Last2");
+        List<String> found = assertIntersection(new Query.Builder()
+            .andrewIdPrefix("s19").firstName("First0").build(), "id=s19*");
+        assertEquals(1, found.size());
+        found = assertIntersection(new Query.Builder()
+            .phonePrefix("412268105").lastName("Last1").build(),
+            "phone=412268105*");
+        assertEquals(2, found.size());
+        assertIntersection(new Query.Builder().phonePrefix("4122681")
+            .firstName("First9").build(), "first=First9");
+    }
+
+    @Test
+    public void filtersAreCheckedOnTheCandidates() {
+        assertIntersection(new Query.Builder()
+            .where(s -> s.getAndrewId().endsWith("7")).build(),
+            "all students");
+        List<String> found = assertIntersection(new Query.Builder()
+            .firstName("First7").where(s -> s.getLastName().equals("Last3"))
+            .build(), "first=First7");
+        assertEquals(10, found.size());
+    }
+
+    @Test
+    public void disjointConditionsFindNothing() {
+        List<String> found = assertIntersection(new Query.Builder()
+            .firstName("First1").lastName("Last2").build(), "first=First1");
+        assertTrue(found.isEmpty());
+        found = assertIntersection(new Query.Builder().firstName("Nobody")
+            .lastName("Last2").build(), "first=Nobody");
+        assertTrue(found.isEmpty());
+    }
+}
@@ -0,0 +1,177 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * RemoteShardTest - Tests a ShardedDirectory whose shards are
+ * DirectoryServers running in JVMs of their own, reached through
+ * RemoteShards: each student is kept by the server owning its Andrew ID,
+ * searches and deletes reach every server, and a server added later
+ * receives only the students it now owns.
+ * @author Tony Padilla (apadilla)
+ */
+public class RemoteShardTest {
+
+    /**
+     * Constant that represents the number of students added.
+     */
+    private static final int STUDENTS = 300;
+
+    /**
+     * Constant that represents the number of seconds a server is given to
+     * start or stop.
+     */
+    private static final int WAIT_SECONDS = 30;
+
+    /**
+     * Constant that represents the words before the port in the line a
+     * server prints once it serves.
+     */
+    private static final String ON_PORT = " students on port ";
+
+    /**
+     * This holds the server processes started.
+     */
+    private final List<Process> servers = new ArrayList<>();
+
+    /**
+     * This is the directory under test, or null.
+     */
+    private ShardedDirectory directory;
+
+    /**
+     * Stops the threads of the directory and the servers.
+     * @throws InterruptedException if interrupted while a server stops.
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+        if (directory != null) {
+            directory.close();
+        }
+        for (Process server : servers) {
+            server.destroy();
+        }
+        for (Process server : servers) {
+            if (!server.waitFor(WAIT_SECONDS, TimeUnit.SECONDS)) {
+                server.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Starts an empty DirectoryServer in a new JVM on a port of its
+     * choosing, and waits until it serves.
+     * @return A shard reaching the server.
+     * @throws IOException if the JVM cannot be started or exits before it
+     * serves.
+     */
+    private RemoteShard startServer() throws IOException {
+        String java = System.getProperty("java.home") + File.separator
+            + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(java, "-cp",
+            System.getProperty("java.class.path"), "DirectoryServer",
+            "-p", "0");
+        builder.redirectErrorStream(true);
+        Process server = builder.start();
+        servers.add(server);
+        BufferedReader out = new BufferedReader(new InputStreamReader(
+            server.getInputStream(), StandardCharsets.UTF_8));
+        String line;
+        while ((line = out.readLine()) != null) {
+            int at = line.indexOf(ON_PORT);
+            if (line.startsWith("Serving ") && at > 0) {
+                return new RemoteShard("http://127.0.0.1:"
+                    + line.substring(at + ON_PORT.length()).trim());
+            }
+        }
+        throw new IOException("Server exited before serving");
+    }
+
+    /**
+     * Returns the Andrew IDs of students.
+     * @param students This holds the students.
+     * @return The Andrew IDs.
+     */
+    private static Set<String> ids(List<Student> students) {
+        Set<String> ids = new HashSet<>();
+        for (Student s : students) {
+            ids.add(s.getAndrewId());
+        }
+        return ids;
+    }
+
+    /**
+     * Checks that every student still in the directory is kept by the
+     * server owning it and by no other.
+     * @param shards This holds the shards, in order.
+     * @param deleted This holds the Andrew IDs of the students deleted.
+     */
+    private static void assertRouted(List<RemoteShard> shards,
+        Set<String> deleted) {
+        List<Set<String>> held = new ArrayList<>();
+        for (RemoteShard shard : shards) {
+            held.add(ids(shard.students()));
+        }
+        for (int n = 0; n < STUDENTS; n++) {
+            String id = "id" + n;
+            int owner = deleted.contains(id) ? -1
+                : ShardedDirectory.shardOf(id, shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                assertEquals(id + " in shard " + i, i == owner,
+                    held.get(i).contains(id));
+            }
+        }
+        int total = 0;
+        for (Set<String> ids : held) {
+            total += ids.size();
+        }
+        assertEquals(STUDENTS - deleted.size(), total);
+    }
+
+    @Test
+    public void studentsAreSpreadOverServersInOtherJvms()
+        throws IOException {
+        List<RemoteShard> shards = new ArrayList<>();
+        shards.add(startServer());
+        shards.add(startServer());
+        RemoteShard added = startServer();
+        directory = new ShardedDirectory(new ArrayList<>(shards));
+        for (int n = 0; n < STUDENTS; n++) {
+            directory.addStudent(Students.numbered(n));
+        }
+        Set<String> deleted = new HashSet<>();
+        assertRouted(shards, deleted);
+        assertEquals(Students.numbered(7), directory.searchByAndrewId("id7"));
+        assertEquals(STUDENTS / Students.FIRST_NAMES,
+            directory.searchByFirstName("First3").size());
+        for (int n = 0; n < STUDENTS; n += 5) {
+            directory.deleteStudent("id" + n);
+            deleted.add("id" + n);
+        }
+        assertNull(directory.searchByAndrewId("id10"));
+        assertRouted(shards, deleted);
+        int moved = directory.addShard(added);
+        shards.add(added);
+        assertEquals(added.students().size(), moved);
+        assertRouted(shards, deleted);
+        for (int n = 1; n < STUDENTS; n += 5) {
+            assertNotNull(directory.searchByAndrewId("id" + n));
+        }
+        assertEquals(STUDENTS / Students.FIRST_NAMES,
+            directory.searchByFirstName("First3").size());
+        assertEquals(0, directory.searchByFirstName("First5").size());
+    }
+}
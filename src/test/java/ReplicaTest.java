@@ -0,0 +1,458 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * ReplicaTest - Tests that a Replica converges on its primary's directory
+ * after losing the connection to it: from the primary's backlog when the
+ * replica was not too far behind, from a snapshot when it was, and from a
+ * snapshot when the primary was restarted over the same directory. It also
+ * checks that a change a listener refused is never shipped and that a
+ * batch is shipped as one change. The
+ * replica always connects through a Link, which stands for the address
+ * of the primary and is pointed at the restarted primary's new port.
+ * @author Tony Padilla (apadilla)
+ */
+public class ReplicaTest {
+
+    /**
+     * Constant that represents the milliseconds to wait for a replica to
+     * converge, several times its retry interval.
+     */
+    private static final long CONVERGE_MILLIS = 10000;
+
+    /**
+     * This is the directory replicated.
+     */
+    private Directory directory;
+
+    /**
+     * This is the primary, or null.
+     */
+    private ReplicationPrimary primary;
+
+    /**
+     * This is the replica, or null.
+     */
+    private Replica replica;
+
+    /**
+     * This is the link between the replica and the primary, or null.
+     */
+    private Link link;
+
+    /**
+     * Creates the directory replicated.
+     */
+    @Before
+    public void setUp() {
+        directory = new Directory();
+    }
+
+    /**
+     * Closes the replica, the link and the primary.
+     * @throws IOException if one cannot be closed.
+     */
+    @After
+    public void tearDown() throws IOException {
+        if (replica != null) {
+            replica.close();
+        }
+        if (link != null) {
+            link.close();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    /**
+     * Adds students to the primary's directory.
+     * @param from This is the number of the first student.
+     * @param to This is one past the number of the last student.
+     */
+    private void add(int from, int to) {
+        for (int n = from; n < to; n++) {
+            synchronized (directory) {
+                directory.addStudent(Students.numbered(n));
+            }
+        }
+    }
+
+    /**
+     * Deletes students from the primary's directory.
+     * @param from This is the number of the first student.
+     * @param to This is one past the number of the last student.
+     */
+    private void delete(int from, int to) {
+        for (int n = from; n < to; n++) {
+            synchronized (directory) {
+                directory.deleteStudent("id" + n);
+            }
+        }
+    }
+
+    /**
+     * Starts a primary over the directory on the given address.
+     * @param address This is the address to listen on.
+     * @param backlog This represents the number of changes kept.
+     * @throws IOException if the address cannot be bound.
+     */
+    private void startPrimary(InetSocketAddress address, int backlog)
+        throws IOException {
+        primary = new ReplicationPrimary(directory, address, backlog);
+        primary.start();
+    }
+
+    /**
+     * Starts a replica of the primary, connected through a link.
+     * @throws IOException if the link cannot listen.
+     */
+    private void startLinkedReplica() throws IOException {
+        link = new Link(primary.getAddress());
+        replica = new Replica(new Directory(), link.getAddress(),
+            Replica.DEFAULT_MAX_STALENESS_MILLIS);
+        replica.start();
+    }
+
+    /**
+     * Returns the students of a directory, read holding its lock.
+     * @param d This is the directory.
+     * @return A copy of its students.
+     */
+    private static Set<Student> students(Directory d) {
+        synchronized (d) {
+            return new HashSet<>(d.students());
+        }
+    }
+
+    /**
+     * Waits until the replica holds the same students as the primary and
+     * has applied every change the primary made.
+     * @throws InterruptedException if the wait is interrupted.
+     */
+    private void awaitConverged() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + CONVERGE_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            if (replica.getAppliedSequence() == primary.getSequence()
+                && students(directory).equals(
+                students(replica.getDirectory()))) {
+                return;
+            }
+            Thread.sleep(20);
+        }
+        fail("Replica did not converge, applied "
+            + replica.getAppliedSequence() + " of " + primary.getSequence()
+            + ", last error " + replica.getLastError());
+    }
+
+    /**
+     * Returns the number of snapshots the replica has loaded.
+     * @return The number of snapshots.
+     */
+    private long snapshots() {
+        long[] found = new long[1];
+        replica.exportTo(new MetricsExporter() {
+            @Override
+            public void gauge(String name, double value) {
+            }
+
+            @Override
+            public void counter(String name, long value) {
+                if (name.equals("replica_snapshots_total")) {
+                    found[0] = value;
+                }
+            }
+
+            @Override
+            public void histogram(String name, Histogram histogram) {
+            }
+        }, "replica");
+        return found[0];
+    }
+
+    @Test
+    public void replicaCatchesUpFromBacklogAfterConnectionIsLost()
+        throws Exception {
+        startPrimary(loopback(), ReplicationPrimary.DEFAULT_BACKLOG);
+        add(0, 100);
+        startLinkedReplica();
+        awaitConverged();
+        assertEquals(1, snapshots());
+        link.setOpen(false);
+        add(100, 150);
+        delete(0, 20);
+        assertFalse(students(directory).equals(
+            students(replica.getDirectory())));
+        link.setOpen(true);
+        awaitConverged();
+        assertNotNull(replica.getLastError());
+        assertEquals(1, snapshots());
+        assertEquals(130, replica.getDirectory().size());
+    }
+
+    @Test
+    public void replicaTooFarBehindLoadsSnapshotAfterConnectionIsLost()
+        throws Exception {
+        startPrimary(loopback(), 10);
+        add(0, 100);
+        startLinkedReplica();
+        awaitConverged();
+        link.setOpen(false);
+        add(100, 150);
+        delete(0, 20);
+        link.setOpen(true);
+        awaitConverged();
+        assertEquals(2, snapshots());
+        assertEquals(130, replica.getDirectory().size());
+    }
+
+    @Test
+    public void replicaConvergesWhenPrimaryIsRestarted() throws Exception {
+        startPrimary(loopback(), ReplicationPrimary.DEFAULT_BACKLOG);
+        add(0, 100);
+        startLinkedReplica();
+        awaitConverged();
+        primary.close();
+        primary = null;
+        add(100, 150);
+        delete(0, 20);
+        startPrimary(loopback(), ReplicationPrimary.DEFAULT_BACKLOG);
+        link.setTarget(primary.getAddress());
+        add(150, 160);
+        awaitConverged();
+        assertEquals(2, snapshots());
+        assertEquals(140, replica.getDirectory().size());
+    }
+
+    @Test
+    public void changeRefusedByListenerIsNotShipped() throws Exception {
+        startPrimary(loopback(), ReplicationPrimary.DEFAULT_BACKLOG);
+        add(0, 10);
+        directory.addMutationListener(new MutationListener() {
+            @Override
+            public void onAdd(Student s) {
+                if (s.getAndrewId().equals("id10")) {
+                    throw new IllegalStateException("Refused");
+                }
+            }
+
+            @Override
+            public void onDelete(Student s) {
+            }
+        });
+        long before = primary.getSequence();
+        try {
+            add(10, 11);
+            fail("The listener should refuse the add");
+        } catch (IllegalStateException e) {
+            assertEquals(before, primary.getSequence());
+        }
+        add(11, 12);
+        startLinkedReplica();
+        awaitConverged();
+        assertFalse(replica.getDirectory().contains("id10"));
+        assertEquals(11, replica.getDirectory().size());
+    }
+
+    @Test
+    public void batchIsShippedAsOneChange() throws Exception {
+        startPrimary(loopback(), ReplicationPrimary.DEFAULT_BACKLOG);
+        add(0, 10);
+        startLinkedReplica();
+        awaitConverged();
+        long before = primary.getSequence();
+        List<BatchOperation> batch = new ArrayList<>();
+        batch.add(BatchOperation.delete("id0"));
+        batch.add(BatchOperation.add(Students.numbered(10)));
+        batch.add(BatchOperation.add(Students.numbered(11)));
+        synchronized (directory) {
+            assertTrue(directory.applyBatch(batch).isApplied());
+        }
+        assertEquals(before + 1, primary.getSequence());
+        awaitConverged();
+        assertEquals(11, replica.getDirectory().size());
+        assertFalse(replica.getDirectory().contains("id0"));
+    }
+
+    /**
+     * Returns a loopback address with a free port.
+     * @return The address.
+     */
+    private static InetSocketAddress loopback() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+    }
+
+    /**
+     * Link - Relays connections to an address, and can drop them all and
+     * refuse new ones until it is opened again, like a network that fails
+     * between the replica and the primary while both keep running.
+     */
+    private static final class Link implements Closeable {
+
+        /**
+         * This accepts the connections relayed.
+         */
+        private final ServerSocket server;
+
+        /**
+         * This is the address connections are relayed to.
+         */
+        private volatile InetSocketAddress target;
+
+        /**
+         * This holds both ends of the connections relayed.
+         */
+        private final List<Socket> sockets = new ArrayList<>();
+
+        /**
+         * This is false while connections are refused.
+         */
+        private boolean open = true;
+
+        /**
+         * This is the one argument constructor for the Link class.
+         * @param target This is the address to relay to.
+         * @throws IOException if the link cannot listen.
+         */
+        Link(InetSocketAddress target) throws IOException {
+            this.target = target;
+            server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            Thread t = new Thread(this::accept, "link");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * This returns the address the link listens on.
+         * @return The address.
+         */
+        InetSocketAddress getAddress() {
+            return (InetSocketAddress) server.getLocalSocketAddress();
+        }
+
+        /**
+         * Relays the connections made from now on to another address.
+         * @param target This is the address to relay to.
+         */
+        void setTarget(InetSocketAddress target) {
+            this.target = target;
+        }
+
+        /**
+         * Opens or fails the link. Failing it closes every connection
+         * relayed.
+         * @param open This is true to relay connections again.
+         * @throws IOException if a connection cannot be closed.
+         */
+        synchronized void setOpen(boolean open) throws IOException {
+            this.open = open;
+            if (!open) {
+                for (Socket s : sockets) {
+                    s.close();
+                }
+                sockets.clear();
+            }
+        }
+
+        /**
+         * Accepts connections and relays each while the link is open,
+         * until the link is closed.
+         */
+        private void accept() {
+            while (true) {
+                Socket from;
+                try {
+                    from = server.accept();
+                } catch (IOException e) {
+                    return;
+                }
+                try {
+                    InetSocketAddress address = target;
+                    Socket to = new Socket(address.getAddress(),
+                        address.getPort());
+                    synchronized (this) {
+                        if (!open) {
+                            to.close();
+                            from.close();
+                            continue;
+                        }
+                        sockets.add(from);
+                        sockets.add(to);
+                    }
+                    relay(from, to);
+                    relay(to, from);
+                } catch (IOException e) {
+                    close(from);
+                }
+            }
+        }
+
+        /**
+         * Copies what arrives on one socket to the other on a thread of its
+         * own, and closes both when either end closes.
+         * @param from This is the socket read.
+         * @param to This is the socket written.
+         */
+        private static void relay(Socket from, Socket to) {
+            Thread t = new Thread(() -> {
+                byte[] buffer = new byte[8192];
+                try {
+                    InputStream in = from.getInputStream();
+                    OutputStream out = to.getOutputStream();
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                } catch (IOException e) {
+                    // Either end closed.
+                } finally {
+                    close(from);
+                    close(to);
+                }
+            }, "link-relay");
+            t.setDaemon(true);
+            t.start();
+        }
+
+        /**
+         * Closes a socket, ignoring failures.
+         * @param socket This is the socket to close.
+         */
+        private static void close(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed.
+            }
+        }
+
+        /**
+         * Stops accepting and closes every connection relayed.
+         * @throws IOException if the link cannot be closed.
+         */
+        @Override
+        public void close() throws IOException {
+            server.close();
+            setOpen(false);
+        }
+    }
+}
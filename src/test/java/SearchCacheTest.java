@@ -0,0 +1,107 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * SearchCacheTest - Tests that a SearchCache drops only the entries of the
+ * names of a student added or deleted, and that it evicts the least
+ * recently used entry under LRU and keeps a name searched often under
+ * W-TinyLFU while rare names stream past.
+ * @author Tony Padilla (apadilla)
+ */
+public class SearchCacheTest {
+
+    /**
+     * This is the directory in front of which the cache sits.
+     */
+    private Directory directory;
+
+    /**
+     * Creates a directory with a few students.
+     */
+    @Before
+    public void setUp() {
+        directory = new Directory();
+        directory.addStudent(Students.of("apadilla", "Tony", "Padilla"));
+        directory.addStudent(Students.of("tstark", "Tony", "Stark"));
+        directory.addStudent(Students.of("alee", "Ann", "Lee"));
+    }
+
+    @Test
+    public void entrySurvivesAnAddUnderAnotherName() {
+        for (SearchCache.Policy policy : SearchCache.Policy.values()) {
+            setUp();
+            SearchCache<List<Student>> cache =
+                SearchCache.copying(directory, 10, policy);
+            List<Student> tonys = cache.searchByFirstName("Tony");
+            List<Student> padillas = cache.searchByLastName("Padilla");
+            assertEquals(2, tonys.size());
+            directory.addStudent(Students.of("bkim", "Bo", "Kim"));
+            directory.addStudent(Students.of("jpadilla", "Padilla", "Jones"));
+            assertSame(policy.name(), tonys,
+                cache.searchByFirstName("Tony"));
+            assertSame(policy.name(), padillas,
+                cache.searchByLastName("Padilla"));
+            assertEquals(0, cache.getInvalidations());
+            assertEquals(2, cache.getHits());
+            directory.addStudent(Students.of("tlee", "Tony", "Lee"));
+            assertEquals(1, cache.getInvalidations());
+            List<Student> more = cache.searchByFirstName("Tony");
+            assertNotSame(tonys, more);
+            assertEquals(3, more.size());
+            assertSame(padillas, cache.searchByLastName("Padilla"));
+            cache.close();
+        }
+    }
+
+    @Test
+    public void deleteDropsTheEntriesOfBothNames() {
+        SearchCache<List<Student>> cache =
+            SearchCache.copying(directory, 10, SearchCache.Policy.LRU);
+        cache.searchByFirstName("Tony");
+        cache.searchByLastName("Stark");
+        List<Student> lees = cache.searchByLastName("Lee");
+        directory.deleteStudent("tstark");
+        assertEquals(2, cache.getInvalidations());
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.searchByFirstName("Tony").size());
+        assertEquals(0, cache.searchByLastName("Stark").size());
+        assertSame(lees, cache.searchByLastName("Lee"));
+    }
+
+    @Test
+    public void lruEvictsTheLeastRecentlyUsedEntry() {
+        SearchCache<List<Student>> cache =
+            SearchCache.copying(directory, 2, SearchCache.Policy.LRU);
+        List<Student> tonys = cache.searchByFirstName("Tony");
+        cache.searchByFirstName("Ann");
+        cache.searchByFirstName("Tony");
+        cache.searchByLastName("Lee");
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+        assertSame(tonys, cache.searchByFirstName("Tony"));
+        long misses = cache.getMisses();
+        cache.searchByFirstName("Ann");
+        assertEquals(misses + 1, cache.getMisses());
+    }
+
+    @Test
+    public void tinyLfuKeepsAFrequentNameAgainstAScan() {
+        SearchCache<List<Student>> cache =
+            SearchCache.copying(directory, 20, SearchCache.Policy.TINY_LFU);
+        List<Student> tonys = cache.searchByFirstName("Tony");
+        for (int i = 0; i < 500; i++) {
+            cache.searchByLastName("Rare" + i);
+            if (i % 10 == 0) {
+                assertSame(tonys, cache.searchByFirstName("Tony"));
+            }
+        }
+        assertEquals(20, cache.size());
+        assertEquals(1 + 500, cache.getMisses());
+        assertSame(tonys, cache.searchByFirstName("Tony"));
+    }
+}
@@ -0,0 +1,132 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * ShardedDirectoryTest - Tests that a ShardedDirectory keeps each student
+ * in the shard that owns its Andrew ID, that the IDs are spread evenly,
+ * and that adding a shard only moves to it the students it now owns.
+ * @author Tony Padilla (apadilla)
+ */
+public class ShardedDirectoryTest {
+
+    /**
+     * Constant that represents the number of students added.
+     */
+    private static final int STUDENTS = 4000;
+
+    /**
+     * This is the directory under test, or null.
+     */
+    private ShardedDirectory directory;
+
+    /**
+     * Stops the threads of the directory.
+     */
+    @After
+    public void tearDown() {
+        if (directory != null) {
+            directory.close();
+        }
+    }
+
+    /**
+     * Creates the directory over new empty local shards and adds STUDENTS
+     * students to it.
+     * @param count This represents the number of shards.
+     * @return The shards, in order.
+     */
+    private List<LocalShard> fill(int count) {
+        List<LocalShard> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            shards.add(new LocalShard());
+        }
+        directory = new ShardedDirectory(new ArrayList<>(shards));
+        for (int n = 0; n < STUDENTS; n++) {
+            directory.addStudent(Students.numbered(n));
+        }
+        return shards;
+    }
+
+    /**
+     * Checks that every student is in the shard owning it and in no other.
+     * @param shards This holds the shards, in order.
+     */
+    private static void assertRouted(List<LocalShard> shards) {
+        for (int n = 0; n < STUDENTS; n++) {
+            String id = "id" + n;
+            int owner = ShardedDirectory.shardOf(id, shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                Directory d = shards.get(i).getDirectory();
+                assertEquals(id + " in shard " + i, i == owner,
+                    d.contains(id));
+            }
+        }
+    }
+
+    @Test
+    public void keysAreRoutedToTheShardOwningThem() {
+        List<LocalShard> shards = fill(4);
+        assertRouted(shards);
+        for (LocalShard shard : shards) {
+            int size = shard.getDirectory().size();
+            assertTrue("Shard size " + size, size > STUDENTS / 4 * 3 / 4
+                && size < STUDENTS / 4 * 5 / 4);
+        }
+        for (int n = 0; n < STUDENTS; n += 97) {
+            assertEquals(Students.numbered(n),
+                directory.searchByAndrewId("id" + n));
+        }
+        assertEquals(STUDENTS / 10, directory.searchByFirstName("First3")
+            .size());
+    }
+
+    @Test
+    public void deletesGoToTheShardOwningTheKey() {
+        List<LocalShard> shards = fill(3);
+        for (int n = 0; n < STUDENTS; n += 2) {
+            directory.deleteStudent("id" + n);
+        }
+        int total = 0;
+        for (LocalShard shard : shards) {
+            total += shard.getDirectory().size();
+        }
+        assertEquals(STUDENTS / 2, total);
+        for (int n = 0; n < STUDENTS; n++) {
+            String id = "id" + n;
+            Directory owner = shards.get(ShardedDirectory.shardOf(id, 3))
+                .getDirectory();
+            assertEquals(id, n % 2 == 1, owner.contains(id));
+        }
+    }
+
+    @Test
+    public void addingAShardOnlyMovesStudentsToIt() {
+        List<LocalShard> shards = fill(3);
+        LocalShard added = new LocalShard();
+        int expected = 0;
+        for (int n = 0; n < STUDENTS; n++) {
+            String id = "id" + n;
+            int before = ShardedDirectory.shardOf(id, 3);
+            int after = ShardedDirectory.shardOf(id, 4);
+            assertTrue(id, after == before || after == 3);
+            if (after == 3) {
+                expected++;
+            }
+        }
+        assertEquals(expected, directory.addShard(added));
+        assertFalse(directory.isRebalancing());
+        shards.add(added);
+        assertRouted(shards);
+        assertEquals(expected, added.getDirectory().size());
+        for (int n = 0; n < STUDENTS; n += 97) {
+            assertEquals(Students.numbered(n),
+                directory.searchByAndrewId("id" + n));
+        }
+    }
+}
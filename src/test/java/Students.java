@@ -0,0 +1,98 @@
+import java.util.Random;
+
+/**
+ * Students - The students the tests fill their directories with, made in
+ * one place so that every test builds them the same way.
+ * @author Tony Padilla (apadilla)
+ */
+final class Students {
+
+    /**
+     * Constant that represents the number of first names numbered students
+     * share unless told otherwise.
+     */
+    static final int FIRST_NAMES = 10;
+
+    /**
+     * Constant that represents the number of last names numbered students
+     * share unless told otherwise.
+     */
+    static final int LAST_NAMES = 7;
+
+    /**
+     * This is the private constructor for the Students class, which only
+     * has static methods.
+     */
+    private Students() {
+    }
+
+    /**
+     * Returns the student of the given number, with Andrew ID "id" and the
+     * number, and one of FIRST_NAMES first names and LAST_NAMES last names.
+     * @param n This is the number of the student.
+     * @return The student, without a phone number.
+     */
+    static Student numbered(int n) {
+        return numbered(n, FIRST_NAMES, LAST_NAMES);
+    }
+
+    /**
+     * Returns the student of the given number, with Andrew ID "id" and the
+     * number, and names chosen by the number among the given counts.
+     * @param n This is the number of the student.
+     * @param firstNames This represents the number of first names shared.
+     * @param lastNames This represents the number of last names shared.
+     * @return The student, without a phone number.
+     */
+    static Student numbered(int n, int firstNames, int lastNames) {
+        return of("id" + n, "First" + n % firstNames, "Last" + n % lastNames);
+    }
+
+    /**
+     * Returns the student of the given number with names chosen at random
+     * among the given count and, three times in four, a random phone number.
+     * @param n This is the number of the student.
+     * @param names This represents the number of first and last names.
+     * @param random This is the source of the names and phone number.
+     * @return The student.
+     */
+    static Student random(int n, int names, Random random) {
+        return of("id" + n, "First" + random.nextInt(names),
+            "Last" + random.nextInt(names), random.nextInt(4) == 0 ? null
+                : "412-268-" + random.nextInt(10000));
+    }
+
+    /**
+     * Returns a student whose names and phone number are made from its
+     * Andrew ID, so that every field differs from those of other students.
+     * @param id This is the Andrew ID.
+     * @return The student.
+     */
+    static Student named(String id) {
+        return of(id, "First" + id, "Last" + id, "412-268-" + id);
+    }
+
+    /**
+     * Returns a student without a phone number.
+     * @param id This is the Andrew ID.
+     * @param first This is the first name.
+     * @param last This is the last name.
+     * @return The student.
+     */
+    static Student of(String id, String first, String last) {
+        return of(id, first, last, null);
+    }
+
+    /**
+     * Returns a student.
+     * @param id This is the Andrew ID.
+     * @param first This is the first name.
+     * @param last This is the last name.
+     * @param phone This is the phone number, or null.
+     * @return The student.
+     */
+    static Student of(String id, String first, String last, String phone) {
+        return new Student.Builder(id).firstName(first).lastName(last)
+            .phoneNumber(phone).build();
+    }
+}